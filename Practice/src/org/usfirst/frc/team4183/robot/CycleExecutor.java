@@ -0,0 +1,205 @@
+/**
+ * CycleExecutor - runs the hardware work of every PhasedSubsystem in two
+ * phases of its own around the commands' work, so each periodic cycle is
+ *
+ *     read        all subsystems read their sensors
+ *     compute     the caller runs the Scheduler (and anything else) on its
+ *                 own thread, exactly as before
+ *     write       all subsystems send their outputs
+ *
+ * The commands always see a complete set of this cycle's readings and the
+ * controllers always get the last thing each command asked for, whatever
+ * order the Scheduler happened to run them in; and since the compute phase
+ * is still single threaded the commands behave exactly as they did.
+ *
+ * The subsystems do not share anything, so within a phase they are shared
+ * out between the caller and a few worker threads (RobotMap.CYCLE_WORKERS)
+ * and the phase ends when the last of them is done: a read waiting on the
+ * CAN bus no longer holds up the others. There is no point in a worker with
+ * only one subsystem, so then (as now, with only the drive) everything runs
+ * on the caller's thread and this costs a couple of calls.
+ *
+ * The hand-off to the workers allocates nothing: the caller sets the phase
+ * and the count of subsystems to do, then opens the phase by resetting the
+ * claim counter and waking the workers; everyone claims subsystems from the
+ * counter until there are none left, and whoever finishes the last one
+ * wakes the caller.
+ *
+ * The caller times the phases with its own LoopTimer (e.g., "teleop/read"
+ * and "teleop/write"), alongside the parts of its compute phase.
+ */
+package org.usfirst.frc.team4183.robot;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.usfirst.frc.team4183.robot.subsystems.PhasedSubsystem;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * The CycleExecutor class definition
+ */
+public class CycleExecutor
+{
+    private static final int IDLE  = 0;
+    private static final int READ  = 1;
+    private static final int WRITE = 2;
+
+    private final PhasedSubsystem[] subsystems;
+    private final Thread[] workers;
+
+    // The phase in progress; the claim counter starts past the end so
+    // there is nothing to claim until a phase is opened
+    private volatile int phase = IDLE;
+    private volatile long generation = 0;
+    private final AtomicInteger next;
+    private final AtomicInteger remaining = new AtomicInteger();
+    private volatile Thread caller;
+
+    private volatile boolean running = true;
+
+    /**
+     * Constructor
+     *
+     * @param aWorkers - how many threads to add to the caller's; fewer are
+     *        started if there are not enough subsystems to go round
+     * @param someSubsystems - the subsystems to read and write every cycle
+     */
+    public CycleExecutor(int aWorkers, PhasedSubsystem... someSubsystems)
+    {
+        subsystems = someSubsystems.clone();
+        next = new AtomicInteger(subsystems.length);
+
+        workers = new Thread[Math.max(0, Math.min(aWorkers, subsystems.length - 1))];
+        for (int i = 0; i < workers.length; ++i)
+        {
+            workers[i] = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    loop();
+                }
+            }, "CycleWorker" + i);
+            workers[i].setDaemon(true);
+            workers[i].setPriority(Thread.currentThread().getPriority());
+            workers[i].start();
+        }
+    }
+
+    /**
+     * read - every subsystem reads its sensors; returns when all have
+     */
+    public void read()
+    {
+        runPhase(READ);
+    }
+
+    /**
+     * write - every subsystem sends its outputs; returns when all have
+     */
+    public void write()
+    {
+        runPhase(WRITE);
+    }
+
+    /**
+     * stop - let the worker threads end (e.g., a tool that is done); the
+     * phases run on the caller's thread alone from then on
+     */
+    public void stop()
+    {
+        running = false;
+        for (Thread worker : workers)
+        {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    public int getWorkerCount()
+    {
+        return workers.length;
+    }
+
+    private void runPhase(int aPhase)
+    {
+        if ((workers.length == 0) || ! running)
+        {
+            for (PhasedSubsystem subsystem : subsystems)
+            {
+                perform(aPhase, subsystem);
+            }
+            return;
+        }
+
+        // Everything a worker needs is set before the claim counter is
+        // reset, so even a worker still looking for more of the last phase
+        // sees this one complete
+        remaining.set(subsystems.length);
+        phase = aPhase;
+        caller = Thread.currentThread();
+        next.set(0);
+        ++generation;
+        for (Thread worker : workers)
+        {
+            LockSupport.unpark(worker);
+        }
+
+        work();
+        while (remaining.get() != 0)
+        {
+            LockSupport.park(this);
+        }
+        phase = IDLE;
+    }
+
+    private void loop()
+    {
+        long seen = 0;
+        while (running)
+        {
+            long g = generation;
+            if (g == seen)
+            {
+                LockSupport.park(this);
+                continue;
+            }
+            seen = g;
+            work();
+        }
+    }
+
+    private void work()
+    {
+        for (int i = next.getAndIncrement(); i < subsystems.length; i = next.getAndIncrement())
+        {
+            perform(phase, subsystems[i]);
+            if (remaining.decrementAndGet() == 0)
+            {
+                LockSupport.unpark(caller);
+            }
+        }
+    }
+
+    private static void perform(int aPhase, PhasedSubsystem aSubsystem)
+    {
+        // One subsystem failing must not stop the others (or, on a worker,
+        // leave the caller waiting forever)
+        try
+        {
+            if (READ == aPhase)
+            {
+                aSubsystem.readInputs();
+            }
+            else if (WRITE == aPhase)
+            {
+                aSubsystem.writeOutputs();
+            }
+        }
+        catch (RuntimeException e)
+        {
+            DriverStation.reportError(aSubsystem.getClass().getSimpleName() +
+                                      ((READ == aPhase) ? " read failed: " : " write failed: ") + e, false);
+        }
+    }
+}
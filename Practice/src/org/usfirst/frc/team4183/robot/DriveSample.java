@@ -0,0 +1,90 @@
+/**
+ * DriveSample - one reading of the drive controls: both axes, raw and
+ * conditioned, and when they were read.
+ *
+ * OI.read fills one of these per cycle with both axes taken from the same
+ * poll of the driver station, so speed and turn always describe the same
+ * moment. Like DriveState it is allocated once and refilled; only OI
+ * writes it.
+ */
+package org.usfirst.frc.team4183.robot;
+
+/**
+ * The DriveSample class definition
+ */
+public final class DriveSample
+{
+    private double timestamp_sec = 0.0;
+    private double delta_sec = 0.0;
+    private double rawSpeed = 0.0;
+    private double rawTurn = 0.0;
+    private double speed = 0.0;
+    private double turn = 0.0;
+    private long sequence = 0;
+
+    /**
+     * update - called by the OI only
+     */
+    void update(double aTimestamp_sec, double aDelta_sec,
+                double aRawSpeed, double aRawTurn,
+                double aSpeed, double aTurn)
+    {
+        timestamp_sec = aTimestamp_sec;
+        delta_sec = aDelta_sec;
+        rawSpeed = aRawSpeed;
+        rawTurn = aRawTurn;
+        speed = aSpeed;
+        turn = aTurn;
+        ++sequence;
+    }
+
+    /**
+     * getTimestamp_sec returns when the axes were read (FPGA time)
+     */
+    public double getTimestamp_sec()
+    {
+        return timestamp_sec;
+    }
+
+    /**
+     * getDelta_sec returns the time since the previous sample
+     */
+    public double getDelta_sec()
+    {
+        return delta_sec;
+    }
+
+    public double getRawSpeed()
+    {
+        return rawSpeed;
+    }
+
+    public double getRawTurn()
+    {
+        return rawTurn;
+    }
+
+    /**
+     * getSpeed returns the conditioned speed coefficient, -1 to +1
+     */
+    public double getSpeed()
+    {
+        return speed;
+    }
+
+    /**
+     * getTurn returns the conditioned turn coefficient, -1 to +1
+     */
+    public double getTurn()
+    {
+        return turn;
+    }
+
+    /**
+     * getSequence returns how many samples have been taken
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+}
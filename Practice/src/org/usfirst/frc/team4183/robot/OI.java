@@ -5,6 +5,16 @@ package org.usfirst.frc.team4183.robot;
  */
 import edu.wpi.first.wpilibj.Joystick;
 import edu.wpi.first.wpilibj.Joystick.AxisType;
+import edu.wpi.first.wpilibj.Timer;
+
+import org.usfirst.frc.team4183.robot.oi.AxisFilter;
+import org.usfirst.frc.team4183.robot.oi.Deadband;
+import org.usfirst.frc.team4183.robot.oi.Expo;
+import org.usfirst.frc.team4183.robot.oi.FilterChain;
+import org.usfirst.frc.team4183.robot.oi.InputPlayer;
+import org.usfirst.frc.team4183.robot.oi.InputRecorder;
+import org.usfirst.frc.team4183.robot.oi.LowPassFilter;
+import org.usfirst.frc.team4183.robot.oi.SlewRateLimiter;
 
 // LATER when we need buttons we will want to bind buttons to commands
 //import edu.wpi.first.wpilibj.buttons.Button;
@@ -49,9 +59,13 @@ public class OI
      * we create here... the only thing that the Robot will require is
      * this OI class and the static interfaces we provide to represent
      * the functions we intend
+     * 
+     * NOTE: The Joystick is created on first use rather than here, because
+     * creating one starts the driver station interface, which a desktop
+     * replay (see startReplay) does not have
      */
 
-    private static final Joystick driveControl = new Joystick(0);
+    private static Joystick driveControl = null;
 
     // Provide better names for each joystick axis
     
@@ -63,22 +77,173 @@ public class OI
                                                                       // on LEFT joystick of
                                                                       // DualShock 4
 
+    // Conditioning for each axis, built once; see the oi package for what
+    // each stage does and RobotMap for the settings
+    //
+    // The deadband goes first so noise around center never reaches the
+    // stateful stages; the slew rate limit goes last so nothing undoes it
+    private static final AxisFilter speedFilter = new FilterChain(new Deadband(RobotMap.OI_DEADBAND),
+                                                                  new Expo(RobotMap.OI_SPEED_EXPO),
+                                                                  new LowPassFilter(RobotMap.OI_FILTER_TIME_CONSTANT_sec),
+                                                                  new SlewRateLimiter(RobotMap.OI_SPEED_SLEW_per_sec));
+    private static final AxisFilter turnFilter = new FilterChain(new Deadband(RobotMap.OI_DEADBAND),
+                                                                 new Expo(RobotMap.OI_TURN_EXPO),
+                                                                 new LowPassFilter(RobotMap.OI_FILTER_TIME_CONSTANT_sec),
+                                                                 new SlewRateLimiter(RobotMap.OI_TURN_SLEW_per_sec));
+    
+    // When the previous sample was taken; < 0 means no history
+    private static double lastSample_sec = -1.0;
+    
+    // Where the raw axes go (recording) or come from (replay), if anywhere
+    private static InputRecorder recorder = null;
+    private static InputPlayer player = null;
+    
+    private OI()
+    {
+        // Static interface only
+    }
+    
+    /**
+     * read - take one sample of the drive controls: both axes, read back to
+     * back and stamped with one time, then conditioned
+     * 
+     * NOTE: The driver station data only changes when a new packet arrives,
+     * which is also what triggers the periodic functions; reading both
+     * axes together at the start of the cycle means both come from the
+     * same packet, where two separate getters called at different points
+     * in the cycle might not
+     * 
+     * Nothing is allocated; call once per cycle with the same sample
+     */
+    public static void read(DriveSample aSample)
+    {
+        double now_sec;
+        double rawSpeed;
+        double rawTurn;
+        if (player != null)
+        {
+            // The replay owns the clock and decides when to move on
+            now_sec = player.getTimestamp_sec();
+            rawSpeed = player.getRawSpeed();
+            rawTurn = player.getRawTurn();
+        }
+        else
+        {
+            Joystick stick = getDriveControl();
+            now_sec = Timer.getFPGATimestamp();
+            rawSpeed = stick.getAxis(speedCommandAxis);
+            rawTurn = stick.getAxis(turnCommandAxis);
+            if (recorder != null)
+            {
+                recorder.append(now_sec, rawSpeed, rawTurn);
+            }
+        }
+        
+        double delta_sec = (lastSample_sec < 0.0) ? 0.0 : (now_sec - lastSample_sec);
+        lastSample_sec = now_sec;
+        
+        aSample.update(now_sec,
+                       delta_sec,
+                       rawSpeed,
+                       rawTurn,
+                       speedFilter.apply(rawSpeed, delta_sec),
+                       turnFilter.apply(rawTurn, delta_sec));
+    }
+    
+    /**
+     * resetFilters - start the conditioning over from rest (e.g., when
+     * teleop begins) so old history and a long gap do not leak into the
+     * first samples
+     */
+    public static void resetFilters()
+    {
+        speedFilter.reset(0.0);
+        turnFilter.reset(0.0);
+        lastSample_sec = -1.0;
+    }
+    
+    /**
+     * startRecording - append the raw axes of every read to the specified
+     * log from now on (replaces any log already being recorded, which is
+     * left as is)
+     */
+    public static void startRecording(InputRecorder aRecorder)
+    {
+        recorder = aRecorder;
+    }
+    
+    /**
+     * stopRecording - stop recording and make sure the log is written
+     * 
+     * NOTE: Flushing blocks until the file system has the log, so call
+     * this when the robot is disabled, not from a periodic function
+     * 
+     * @return the log that was being recorded, or null if none was
+     */
+    public static InputRecorder stopRecording()
+    {
+        InputRecorder stopped = recorder;
+        recorder = null;
+        if (stopped != null)
+        {
+            stopped.flush();
+        }
+        return stopped;
+    }
+    
+    /**
+     * startReplay - take the axes and times from the current record of
+     * the specified log instead of the joystick; the caller moves through
+     * the log with InputPlayer.next() once per cycle, before read
+     * 
+     * Since the conditioning only depends on the axes and the time between
+     * samples, a replay reproduces the recorded session exactly, however
+     * fast it is run
+     */
+    public static void startReplay(InputPlayer aPlayer)
+    {
+        player = aPlayer;
+        resetFilters();
+    }
+    
+    /**
+     * stopReplay - go back to reading the joystick
+     */
+    public static void stopReplay()
+    {
+        player = null;
+        resetFilters();
+    }
+    
+    private static Joystick getDriveControl()
+    {
+        if (null == driveControl)
+        {
+            driveControl = new Joystick(0);
+        }
+        return driveControl;
+    }
+    
     /**
      * getDriveSpeedCoefficient returns a value between -1 and +1 from
      * the operator interface defined to provide drive speed control
+     * 
+     * NOTE: This is the raw axis, without conditioning; see read
      */
     public static double getDriveSpeedCoefficient()
     {
-        return driveControl.getAxis(speedCommandAxis);
+        return getDriveControl().getAxis(speedCommandAxis);
     }
     
     /**
      * getTurnSpeedCoefficient returns a value between -1 and +1 from
      * the operator interface defined to provide turn control
+     * 
+     * NOTE: This is the raw axis, without conditioning; see read
      */
     public static double getTurnSpeedCoefficient()
     {
-        return driveControl.getAxis(turnCommandAxis);
+        return getDriveControl().getAxis(turnCommandAxis);
     }    
     // There are a few additional built in buttons you can use. Additionally,
     // by subclassing Button you can create custom triggers and bind those to
@@ -1,16 +1,28 @@
 
 package org.usfirst.frc.team4183.robot;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.usfirst.frc.team4183.robot.OI;
 
-import org.usfirst.frc.team4183.robot.commands.DoNothingCommand;
-import org.usfirst.frc.team4183.robot.commands.MoveCommand;
-import org.usfirst.frc.team4183.robot.commands.TurnCommand;
-import org.usfirst.frc.team4183.robot.commands.TestDriveCommand;
-import org.usfirst.frc.team4183.robot.commands.SquareCommand;
+import org.usfirst.frc.team4183.robot.commands.AutonomousFactory;
+import org.usfirst.frc.team4183.robot.commands.AutonomousRehearsal;
+import org.usfirst.frc.team4183.robot.commands.AutonomousRoutines;
+import org.usfirst.frc.team4183.robot.commands.CommandProfiler;
+
+import org.usfirst.frc.team4183.robot.oi.InputRecorder;
 
+import org.usfirst.frc.team4183.robot.params.Parameters;
+
+import org.usfirst.frc.team4183.robot.subsystems.DriveSignals;
 import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
 
+import org.usfirst.frc.team4183.robot.telemetry.LoopTimer;
+import org.usfirst.frc.team4183.robot.telemetry.SignalLog;
+import org.usfirst.frc.team4183.robot.telemetry.Telemetry;
+
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.IterativeRobot;
 import edu.wpi.first.wpilibj.command.Command;
 import edu.wpi.first.wpilibj.command.Scheduler;
@@ -50,8 +62,43 @@ public class Robot extends IterativeRobot
 	// we transmit from our SendableChooser. When the operator
 	// selects a setting we can initialize our autonomousCommand
 	// to the selection
+    //
+    // NOTE: The chooser holds factories rather than commands so only the
+    // routine that is selected ever gets built
     Command autonomousCommand;
     SendableChooser chooser = new SendableChooser();
+    
+    // Runs the selected routine against a simulated drive while disabled
+    // so it is compiled before autonomous starts (see AutonomousRehearsal)
+    private AutonomousRehearsal rehearsal;
+    
+    // How long the start of autonomous took, and how much rehearsal came
+    // before it; reported when the robot is next disabled
+    private static final int autonomousInitChannel = Telemetry.channel("autonomous/init_ms");
+    private static final int firstCycleChannel = Telemetry.channel("autonomous/firstCycle_ms");
+    private static final int rehearsalCyclesChannel = Telemetry.channel("autonomous/rehearsalCycles");
+    private double autonomousInit_ms = -1.0;
+    private double firstCycle_ms = -1.0;
+    private long rehearsalCycles = 0;
+    private boolean firstAutonomousCycle = false;
+    
+    // Measure how much of each cycle goes to each phase of the periodic
+    // functions; the index of each name is the phase ID passed to mark()
+    private static final int READ_PHASE      = 0;
+    private static final int SCHEDULER_PHASE = 1;
+    private static final int WRITE_PHASE     = 2;
+    
+    private final LoopTimer autonomousTimer = new LoopTimer("autonomous",
+                                                            RobotMap.LOOP_PERIOD_sec,
+                                                            RobotMap.LOOP_STATS_PUBLISH_CYCLES,
+                                                            "read", "scheduler", "write");
+    
+    // Reads every subsystem before the commands run and writes them after
+    // (see CycleExecutor); add each new subsystem here
+    private final CycleExecutor cycle = new CycleExecutor(RobotMap.CYCLE_WORKERS, driveSubsystem);
+    
+    // The work of teleopPeriodic, which has its own LoopTimer
+    private final TeleopCycle teleop = new TeleopCycle(driveSubsystem, cycle);
 
     /**
      * This function is run when the robot is first started up and should be
@@ -59,18 +106,56 @@ public class Robot extends IterativeRobot
      */
     public void robotInit() 
     {
-    	// Add items to the dashboard menu for the user to select
-        chooser.addDefault("Default Auto", new DoNothingCommand());
-        chooser.addObject( "Auto Test Drive", new TestDriveCommand());
-        chooser.addObject( "1 Meter Forward", new MoveCommand(RobotMap.FORWARD * 1.0, 0.05));
-        chooser.addObject( "1 Meter Backward", new MoveCommand(RobotMap.BACKWARD * 1.0, 0.05));        
-        chooser.addObject( "45 deg Right", new TurnCommand(RobotMap.RIGHT * 45.0, 1.0));
-        chooser.addObject( "45 deg Left", new TurnCommand(RobotMap.LEFT * 45.0, 1.0));   
-        chooser.addObject( "Square", new SquareCommand());   
+    	// Add items to the dashboard menu for the user to select; the list
+        // lives in AutonomousRoutines so the desktop simulation offers the
+        // same ones
+        chooser.addDefault(AutonomousRoutines.getName(0), AutonomousRoutines.getFactory(0));
+        for (int i = 1; i < AutonomousRoutines.getCount(); ++i)
+        {
+            chooser.addObject(AutonomousRoutines.getName(i), AutonomousRoutines.getFactory(i));
+        }
         
         // Send the choose data to the dashboard so the user
         // will see the available choices
         SmartDashboard.putData("Autonomous Chooser", chooser);
+        
+        // Start the background thread that moves telemetry to the dashboard
+        Telemetry.start();
+        
+        // And the one that picks up gains changed on the dashboard or in
+        // the parameter file
+        Parameters.start();
+        
+        // Log every drive signal for after the match
+        if (RobotMap.SIGNAL_LOG)
+        {
+            try
+            {
+                driveSubsystem.setSignalLog(SignalLog.create(new File(RobotMap.SIGNAL_LOG_DIRECTORY),
+                                                             RobotMap.SIGNAL_LOG_PREFIX,
+                                                             DriveSignals.NAMES,
+                                                             RobotMap.SIGNAL_LOG_CHUNK_ROWS,
+                                                             RobotMap.SIGNAL_LOG_MAX_BYTES,
+                                                             RobotMap.SIGNAL_LOG_WRITE_PERIOD_sec,
+                                                             RobotMap.SIGNAL_LOG_KEEP_FILES,
+                                                             RobotMap.SIGNAL_LOG_MAX_TOTAL_BYTES));
+            }
+            catch (IOException e)
+            {
+                DriverStation.reportError("Not logging signals: " + e.getMessage(), false);
+            }
+        }
+        
+        // Optionally give the drive its own steady control thread
+        if (RobotMap.DRIVE_CONTROL_THREAD)
+        {
+            driveSubsystem.startControlLoop(RobotMap.DRIVE_CONTROL_RATE_Hz);
+        }
+        
+        if (RobotMap.AUTONOMOUS_REHEARSAL)
+        {
+            rehearsal = new AutonomousRehearsal(RobotMap.REHEARSAL_CYCLES, RobotMap.REHEARSAL_STEP_CYCLES);
+        }
     }
 	
 	/**
@@ -80,12 +165,56 @@ public class Robot extends IterativeRobot
      */
     public void disabledInit()
     {
-
+        // Report how the periodic functions performed in the modes we just
+        // left (and which commands used the time) if asked, and start fresh
+        // for the next ones
+        if (RobotMap.DISABLED_REPORT)
+        {
+            autonomousTimer.dump(System.out);
+            teleop.getTimer().dump(System.out);
+            if (firstCycle_ms >= 0.0)
+            {
+                // Compare runs with AUTONOMOUS_REHEARSAL on and off to see
+                // what the rehearsal buys (also on the dashboard)
+                System.out.printf("autonomous start: init %.3f ms, first cycle %.3f ms, after %d rehearsal cycles%n",
+                                  autonomousInit_ms, firstCycle_ms, rehearsalCycles);
+            }
+            CommandProfiler.dump(System.out);
+        }
+        firstCycle_ms = -1.0;
+        autonomousTimer.reset();
+        teleop.getTimer().reset();
+        CommandProfiler.reset();
+        
+        // Get the signals of the mode we just left into the file, in case
+        // the power goes off next
+        SignalLog signalLog = driveSubsystem.getSignalLog();
+        if (signalLog != null)
+        {
+            signalLog.flush();
+        }
+        
+        // Finish the log of the teleop period we just left, if any
+        InputRecorder recording = OI.stopRecording();
+        if ((recording != null) && RobotMap.DISABLED_REPORT)
+        {
+            System.out.printf("recorded %d inputs (%d dropped) to %s%n",
+                              recording.getCount(), recording.getDroppedCount(), recording.getFile());
+        }
     }
 	
 	public void disabledPeriodic() 
 	{
+		cycle.read();
 		Scheduler.getInstance().run();
+		cycle.write();
+		
+		// Use the idle time to rehearse whatever routine is selected now
+		if (rehearsal != null)
+		{
+			rehearsal.select((AutonomousFactory) chooser.getSelected());
+			rehearsal.run(RobotMap.REHEARSAL_BUDGET_sec);
+		}
 	}
 
 	/**
@@ -99,8 +228,19 @@ public class Robot extends IterativeRobot
 	 */
     public void autonomousInit() 
     {
+        // Map the precomputed motion profiles (only the first time) so the
+        // commands below do not have to calculate any
+        driveSubsystem.loadTrajectories(new File(RobotMap.TRAJECTORY_FILE));
+        
+        long start_ns = System.nanoTime();
+        
     	// The following selects the user's choice from the Java SmartDashboard
-        autonomousCommand = (Command) chooser.getSelected();
+        // and builds it for the real drive
+        // (profiled, if a command can be, starting a fresh table without
+        // what the rehearsal built)
+        CommandProfiler.reset();
+        AutonomousFactory factory = (AutonomousFactory) chooser.getSelected();
+        autonomousCommand = (factory != null) ? CommandProfiler.profile(factory.create(driveSubsystem)) : null;
         
         // The following commented out example is how to use the LabVIEW Dashboard
 		/* String autoSelected = SmartDashboard.getString("Auto Selector", "Default");
@@ -116,6 +256,10 @@ public class Robot extends IterativeRobot
     	
     	// schedule the autonomous command (example)
         if (autonomousCommand != null) autonomousCommand.start();
+        
+        autonomousInit_ms = (System.nanoTime() - start_ns) / 1.0e6;
+        rehearsalCycles = (rehearsal != null) ? rehearsal.getCycles() : 0;
+        firstAutonomousCycle = true;
     }
 
     /**
@@ -123,7 +267,32 @@ public class Robot extends IterativeRobot
      */
     public void autonomousPeriodic() 
     {
+        autonomousTimer.begin();
+        
+        // Take one snapshot of the drive for all commands to share this cycle
+        cycle.read();
+        autonomousTimer.mark(READ_PHASE);
+        
+        CommandProfiler.schedulerBegin();
         Scheduler.getInstance().run();
+        CommandProfiler.schedulerEnd();
+        autonomousTimer.mark(SCHEDULER_PHASE);
+        
+        // Then send what the commands decided
+        cycle.write();
+        autonomousTimer.mark(WRITE_PHASE);
+        
+        autonomousTimer.end();
+        
+        if (firstAutonomousCycle)
+        {
+            // The cycle the rehearsal is meant to speed up
+            firstCycle_ms = autonomousTimer.getLastTotal_ms();
+            Telemetry.put(autonomousInitChannel, autonomousInit_ms);
+            Telemetry.put(firstCycleChannel, firstCycle_ms);
+            Telemetry.put(rehearsalCyclesChannel, rehearsalCycles);
+            firstAutonomousCycle = false;
+        }
     }
 
     public void teleopInit() 
@@ -133,6 +302,26 @@ public class Robot extends IterativeRobot
         // continue until interrupted by another command, remove
         // this line or comment it out.
         if (autonomousCommand != null) autonomousCommand.cancel();
+        
+        // Start the stick conditioning from rest
+        OI.resetFilters();
+        
+        // Log the sticks for this teleop period so it can be replayed on a
+        // desktop (see sim.TeleopReplay); the log is finished in disabledInit
+        if (RobotMap.OI_RECORD)
+        {
+            try
+            {
+                OI.startRecording(InputRecorder.create(new File(RobotMap.OI_RECORD_DIRECTORY),
+                                                       RobotMap.OI_RECORD_PREFIX,
+                                                       RobotMap.OI_RECORD_CAPACITY,
+                                                       RobotMap.OI_RECORD_KEEP_FILES));
+            }
+            catch (IOException e)
+            {
+                DriverStation.reportError("Not recording inputs: " + e.getMessage(), false);
+            }
+        }
     }
 
     /**
@@ -140,43 +329,8 @@ public class Robot extends IterativeRobot
      */
     public void teleopPeriodic() 
     {
-        Scheduler.getInstance().run();
-        
-        // This is where we need to put code to read the controllers (joysticks)
-        // and pass a controlled value to the driveSubsystem
-        // 
-        // A single joystick solution that provides a balance between
-        // turning and moving; when forward/backward speed is low, more
-        // power is passed into turning (i.e., variable speed power steering)
-        // In this example the variable steering will be a simple linear function
-        // starting at 50% power when maximum forward/backward is commanded.
-        //
-        // NOTE: The API documentation is NOT clear about the range of the values
-        // when getting the axes. However, digging deep into the DriverStation
-        // class where the raw port is read we find that the byte-oriented interface
-        // is scaled to -1 to +1 (as a double). This makes the math simple
-        //
-        // NOTE: We use named mappings to improve maintenance and readability
-        // NOTE: We grab a copy of the value "now" so all subsequent computations
-        // represent this moment in time (or as near a moment as we can get)
-        double speedCoefficient = OI.getDriveSpeedCoefficient();
-        double turnCoefficient  = OI.getTurnSpeedCoefficient();
-              	
-      	// Pass our desired speed/turn values to the drive subsystem
-        // NOTE: The driveSubsystem may adjust our request to keep the robot
-        // from skidding out of control
-      	double modifiedTurnCoefficient = driveSubsystem.arcadeDrive(speedCoefficient, turnCoefficient);
-      	
-      	// To allow us to monitor what is going on each time
-      	// the function runs, we will output something to the SmartDashboard
-      	//
-      	// NOTE: Ideally we don't to slow down control functions for telemetry, but we will
-      	// use the framework as designed and will examine how SmartDashboard
-      	// works, later.
-      	SmartDashboard.putNumber("speedCoefficient",speedCoefficient);
-      	SmartDashboard.putNumber("turnCoefficient",turnCoefficient);
-      	SmartDashboard.putNumber("modifiedTurnCoefficient",modifiedTurnCoefficient);
-      	
+        // See TeleopCycle for what happens each cycle
+        teleop.run();
     }
     
     /**
@@ -11,6 +11,14 @@ import com.ctre.CANTalon;
  */
 public class RobotMap
 {
+    // **********************************************************************
+    // Simulation
+    // **********************************************************************
+    // When true the subsystems are built on simulated hardware so the robot
+    // code can run on a desktop JVM, e.g., java -Dteam4183.simulation=true
+    public static final String SIMULATION_PROPERTY = "team4183.simulation";
+    public static final boolean SIMULATION = Boolean.getBoolean(SIMULATION_PROPERTY);
+    
     // **********************************************************************
     // Physical constants
     // **********************************************************************
@@ -35,6 +43,17 @@ public class RobotMap
                                                         // should also be derivable by checking gear
                                                         // and sprocket ratios
     
+    // Derived scalings, computed once here rather than in every function
+    // that needs them
+    //
+    // Trig 101: arclen = angle * radius --> wheel rotations = distance / (PI * diameter)
+    public static final double ENCODER_ROT_PER_METER = WHEEL_TO_ENCODER / (Math.PI * WHEEL_DIAMETER_m);
+    public static final double METERS_PER_ENCODER_ROT = 1.0 / ENCODER_ROT_PER_METER;
+    
+    // Rotating the body by an angle moves each wheel along an arc of
+    // radius track/2, i.e., (angle/360) * (track/diameter) wheel rotations
+    public static final double ENCODER_ROT_PER_DEGREE = WHEEL_TO_ENCODER * DIAMETER_TO_TRACK / 360.0;
+    
     // NOTE: In some cases the concept of forward and backward can get confusing
     // due to wiring and gearing; once established it is nice to not need to remember
     // whether the command needs to be + or -
@@ -59,10 +78,92 @@ public class RobotMap
     public static final int DRIVE_PULSES_PER_REV = 1024;     // AMT103 can do up to 2048 but this is 
                                                              // current DIP switch settings
     
+    // Encoders do not come and go very often, so there is no need to ask
+    // the controllers about them every cycle
+    public static final double SENSOR_HEALTH_PERIOD_sec = 0.25;
+    
+    // Only send the controllers configuration that changed (see
+    // hardware.CachingMotorController); everything is sent again at least
+    // this often in case a controller browned out and forgot it
+    public static final boolean CAN_CONFIG_CACHE = true;
+    public static final double CAN_CONFIG_REFRESH_sec = 1.0;
+
+    // **********************************************************************
+    // Heading
+    // **********************************************************************
+    // Set (e.g., java -Dteam4183.gyro=true, on the robot or to simulate
+    // one) when the ADXRS450 gyro board is fitted to the onboard SPI port;
+    // the odometry heading (and so the turns) then fuses it with the
+    // encoders (see subsystems.HeadingEstimator). Without it the heading
+    // comes from the encoders alone, scrub and all (as before)
+    public static final String GYRO_PROPERTY = "team4183.gyro";
+    public static final boolean HEADING_GYRO = Boolean.getBoolean(GYRO_PROPERTY);
+    
+    // A gyro that is set here but not fitted reads the same forever; once
+    // the encoders have turned this far without it moving at all, the
+    // heading goes on with the encoders alone
+    public static final double GYRO_MISSING_TURN_deg = 20.0;
+
+    // How much to trust each: the gyro's noise and how fast its drift
+    // wanders, how unsure of the drift we are at power up, and the error
+    // of the encoders' rate of turn, a little noise plus a fraction of the
+    // rate for the scrub (the simulation skids 10%; kept generous)
+    public static final double GYRO_ANGLE_WALK_deg_per_rtsec = 0.02;
+    public static final double GYRO_BIAS_WALK_dps_per_rtsec = 0.01;
+    public static final double GYRO_INITIAL_BIAS_dps = 0.5;
+    public static final double ENCODER_TURN_NOISE_dps = 0.5;
+    public static final double ENCODER_SCRUB_FRACTION = 0.2;
+
+    // **********************************************************************
+    // Drive characterization
+    // **********************************************************************
+    // The volts each side needs: kS (to break free) * sign(speed) + kV *
+    // speed + kA * acceleration, speed in encoder rotations per second.
+    // Fitted per side by tools.DriveCharacterizer from a log of the
+    // "Characterize Drive" routine (commands.CharacterizeDriveCommand).
+    // NOTE: These values are from the simulated drivetrain (whose sides are
+    // the same) and nothing uses them yet; the speed loop keeps F = 0 until
+    // the robot itself has been characterized
+    public static final double DRIVE_LEFT_KS_V = 0.074;
+    public static final double DRIVE_LEFT_KV_V_per_rps = 0.940;
+    public static final double DRIVE_LEFT_KA_V_per_rps2 = 0.106;
+    
+    public static final double DRIVE_RIGHT_KS_V = 0.074;
+    public static final double DRIVE_RIGHT_KV_V_per_rps = 0.940;
+    public static final double DRIVE_RIGHT_KA_V_per_rps2 = 0.106;
     
+    // The Talon's F is a fraction of full output, not volts, so it assumes
+    // a battery at this voltage; it can only carry kV (kS and kA are left
+    // to P)
+    public static final double DRIVE_NOMINAL_V = 12.0;
+    
+    // The routine drives several meters open loop, so it is only offered in
+    // the autonomous chooser when this is set (on the practice field, never
+    // for a match)
+    public static final boolean CHARACTERIZATION_ROUTINE = false;
+    
+    // The routine: a slow ramp (so acceleration is negligible) and then a
+    // step, forward and back again; each ends at the distance or time
+    // limit, then the robot rests until the next
+    public static final double CHARACTERIZATION_RAMP_V_per_sec = 0.5;
+    public static final double CHARACTERIZATION_STEP_V = 6.0;
+    public static final double CHARACTERIZATION_MAX_V = 10.0;
+    public static final double CHARACTERIZATION_MAX_DISTANCE_m = 3.0;
+    public static final double CHARACTERIZATION_MAX_sec = 15.0;
+    public static final double CHARACTERIZATION_REST_sec = 1.5;
+    
+    // Every cycle of the routine goes to the next unused
+    // <prefix>-NNN.siglog in the directory
+    public static final String CHARACTERIZATION_DIRECTORY = "/home/lvuser";
+    public static final String CHARACTERIZATION_PREFIX = "characterization";
+
+
     // **********************************************************************
     // PID Constants
     // **********************************************************************
+    // These are the defaults; each can be changed while the robot runs from
+    // the dashboard ("params/drive/...") or the parameter file (see
+    // params.Parameters) and the drive picks the change up next cycle
     
     public static final double DRIVE_POSITION_P = 0.2;  // To be tuned as needed
     public static final double DRIVE_POSITION_I = 0.0;
@@ -74,6 +175,174 @@ public class RobotMap
     public static final double DRIVE_SPEED_D = 0.0;
     public static final double DRIVE_SPEED_F = 0.0;   
     
+    // Motion profiles: P and D act on the position error, F on the velocity
+    // of each point (full output / native units per 100 ms at free speed,
+    // 1023 / 5120 for 750 RPM on a 1024 count encoder)
+    public static final double DRIVE_PROFILE_P = 0.2;  // To be tuned as needed
+    public static final double DRIVE_PROFILE_I = 0.0;
+    public static final double DRIVE_PROFILE_D = 0.0;
+    public static final double DRIVE_PROFILE_F = 0.2;
+    
+    // Lines of <name> = <value> (e.g., drive/position/P = 0.3), read
+    // whenever the file changes; the dashboard and the file are checked
+    // this often
+    public static final String PARAMETER_FILE = "/home/lvuser/parameters.properties";
+    public static final double PARAMETER_POLL_PERIOD_sec = 0.25;
+    
+    // **********************************************************************
+    // Motion profiles
+    // **********************************************************************
+    // When true MoveCommand and TurnCommand run a profile on the Talons
+    // instead of stepping the position target straight to the end
+    public static final boolean DRIVE_USE_MOTION_PROFILES = true;
+    
+    public static final int PROFILE_POINT_DURATION_ms = 10;
+    public static final int PROFILE_MAX_POINTS = 2048;      // 20 seconds at 10 ms
+    
+    // Limits at the wheel surface; the jerk limit rounds the corners of
+    // the trapezoid (0 for a plain trapezoid)
+    public static final double PROFILE_MAX_SPEED_mps = 1.5;
+    public static final double PROFILE_MAX_ACCEL_mps2 = 1.5;
+    public static final double PROFILE_MAX_JERK_mps3 = 6.0;
+    
+    // Profiles precomputed by tools.TrajectoryCompiler (ant trajectories)
+    // and copied to the robot; missing or stale files are ignored
+    public static final String TRAJECTORY_FILE = "/home/lvuser/trajectories.bin";
+
+    // MoveCommand and TurnCommand finish once within their tolerance for
+    // this long (see subsystems.DriveTriggers), not just passing through;
+    // the table holds the triggers of all the commands running at once
+    public static final double DRIVE_SETTLE_sec = 0.06;
+    public static final int DRIVE_TRIGGER_CAPACITY = 8;
+
+    // A turn to a heading sends the wheels to a target fixed when it starts,
+    // pushed further by the fused heading's error (plus this much of its
+    // integral per second) up to this much, so the wheel scrub does not
+    // leave the position loop too little to close on (see
+    // DriveSubsystem.maintainHeading)
+    public static final double DRIVE_HEADING_TRIM_deg = 5.0;
+    public static final double DRIVE_HEADING_TRIM_I_per_sec = 4.0;
+
+    // Run autonomous routines made only of moves and turns as blended
+    // profiles, one up to each corner, instead of stopping between steps
+    // (see commands.SequenceFuser); every corner still closes on the fused
+    // heading, so the square ends within its tolerances of where the steps
+    // put it, about 1.4 s sooner (see commands.FusionReport)
+    public static final boolean DRIVE_FUSE_SEQUENCES = true;
+
+    // **********************************************************************
+    // Operator interface conditioning (see OI)
+    // **********************************************************************
+    // Sticks that do not quite center are ignored inside this deflection
+    public static final double OI_DEADBAND = 0.08;
+    
+    // Response curve, 0 (linear) to 1 (cubic); NOTE: the DriveMixer already
+    // squares its inputs, so only add curve here if that is not enough
+    public static final double OI_SPEED_EXPO = 0.0;
+    public static final double OI_TURN_EXPO = 0.0;
+    
+    // Smooths sensor noise without being felt by the driver
+    public static final double OI_FILTER_TIME_CONSTANT_sec = 0.03;
+    
+    // Full stop to full speed in no less than 0.5 second; turning may
+    // change faster
+    public static final double OI_SPEED_SLEW_per_sec = 4.0;
+    public static final double OI_TURN_SLEW_per_sec = 8.0;
+    
+    // Each teleop period the raw sticks are logged to the next
+    // <prefix>-NNN.oilog in the directory, for replay on a desktop (see
+    // sim.TeleopReplay); 16 bytes per cycle, so the capacity is about 20
+    // minutes in 1 MB. The oldest are deleted to keep the number given
+    public static final boolean OI_RECORD = true;
+    public static final String OI_RECORD_DIRECTORY = "/home/lvuser";
+    public static final String OI_RECORD_PREFIX = "teleop";
+    public static final int OI_RECORD_CAPACITY = 65536;
+    public static final int OI_RECORD_KEEP_FILES = 20;
+    
+    // **********************************************************************
+    // Loop timing
+    // **********************************************************************
+    // The IterativeRobot periodic functions are nominally called every 20 ms
+    // (whenever a driver station packet arrives)
+    public static final double LOOP_PERIOD_sec = 0.020;
+    
+    // Publish loop timing statistics about once per second
+    public static final int LOOP_STATS_PUBLISH_CYCLES = 50;
+
+    // Time each command's initialize, execute, isFinished, end and
+    // interrupted (see commands.CommandProfiler); when false the commands
+    // are not wrapped at all. The table holds the commands of one mode.
+    public static final boolean COMMAND_PROFILING = true;
+    public static final int COMMAND_PROFILE_CAPACITY = 64;
+    
+    // Print the loop timing and command profile tables to the console (the
+    // riolog) on every disable; the same numbers are on the dashboard
+    // either way, so this is off to keep the console quiet
+    public static final boolean DISABLED_REPORT = false;
+
+    // OPTIONAL: run the drive closed-loop work on its own thread at a
+    // fixed rate rather than whenever a driver station packet arrives
+    public static final boolean DRIVE_CONTROL_THREAD = false;
+    public static final double DRIVE_CONTROL_RATE_Hz = 200.0;    // 100 to 1000
+    
+    // When the drive thread has not received a request for this long it
+    // stops the motors (same as the RobotDrive motor safety expiration)
+    public static final double DRIVE_REQUEST_TIMEOUT_sec = 0.1;
+
+    // Threads, besides the robot's main thread, that read and write the
+    // subsystems in parallel (see CycleExecutor); the roboRIO has two cores.
+    // Only used when there are at least two subsystems to share out.
+    public static final int CYCLE_WORKERS = 1;
+
+    // **********************************************************************
+    // Autonomous rehearsal
+    // **********************************************************************
+    // While disabled, run the selected autonomous routine against a
+    // simulated drive so it is compiled before autonomous starts. Off until
+    // it has been tried on the robot: it builds a second drive and keeps
+    // the main thread busy a few ms every disabled cycle
+    public static final boolean AUTONOMOUS_REHEARSAL = false;
+    
+    // Enough cycles for the JIT to compile everything on the path; spent a
+    // few ms at a time so disabledPeriodic stays on schedule
+    public static final long REHEARSAL_CYCLES = 20000;
+    public static final double REHEARSAL_BUDGET_sec = 0.005;
+    
+    // Give up on a command that has not finished in this many cycles
+    public static final int REHEARSAL_STEP_CYCLES = 500;
+    
+    // **********************************************************************
+    // Telemetry
+    // **********************************************************************
+    // The dashboard is for humans; 10 updates per second is plenty
+    public static final double TELEMETRY_PERIOD_sec = 0.1;
+    
+    // Samples queued between publishes (must be a power of 2); at 50 Hz
+    // this covers several seconds of a few dozen channels
+    public static final int TELEMETRY_CAPACITY = 4096;
+    
+    // Every drive signal, every cycle, to the next <prefix>-NNN.siglog
+    // in the directory (decode with tools.SignalLogDecoder); one log per
+    // boot, under 4 KB per second at 50 Hz. The oldest are deleted to keep
+    // the number and total size below the limits at the end of this section
+    public static final boolean SIGNAL_LOG = true;
+    public static final String SIGNAL_LOG_DIRECTORY = "/home/lvuser";
+    public static final String SIGNAL_LOG_PREFIX = "signals";
+    
+    // Rows per chunk (5 seconds at 50 Hz) and how often the writer thread
+    // looks for full ones; the writer may fall 4 chunks behind before rows
+    // are dropped
+    public static final int SIGNAL_LOG_CHUNK_ROWS = 250;
+    public static final double SIGNAL_LOG_WRITE_PERIOD_sec = 0.5;
+    
+    // Stop logging before the file gets this big (over 5 hours)
+    public static final long SIGNAL_LOG_MAX_BYTES = 64L * 1024 * 1024;
+    
+    // Keep this many logs (this boot's included), and no more than will
+    // fit in the total if this boot's grows to its limit
+    public static final int SIGNAL_LOG_KEEP_FILES = 10;
+    public static final long SIGNAL_LOG_MAX_TOTAL_BYTES = 192L * 1024 * 1024;
+    
     // **********************************************************************
     // Port Assignment
     // **********************************************************************
@@ -0,0 +1,183 @@
+/**
+ * TeleopCycle - one cycle of operator control: take a snapshot of the
+ * drive, run the commands, read the sticks and drive with them, then send
+ * the outputs (the read and write phases of a CycleExecutor).
+ *
+ * This is what Robot.teleopPeriodic does, kept apart from the Robot so the
+ * same code can be run without an IterativeRobot (which needs a driver
+ * station); sim.TeleopReplay runs it on a desktop from a recorded log of
+ * the sticks.
+ */
+package org.usfirst.frc.team4183.robot;
+
+import org.usfirst.frc.team4183.robot.commands.CommandProfiler;
+import org.usfirst.frc.team4183.robot.subsystems.DriveState;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+import org.usfirst.frc.team4183.robot.subsystems.Pose;
+
+import org.usfirst.frc.team4183.robot.telemetry.LoopTimer;
+import org.usfirst.frc.team4183.robot.telemetry.Telemetry;
+
+import edu.wpi.first.wpilibj.command.Scheduler;
+
+/**
+ * The TeleopCycle class definition
+ */
+public class TeleopCycle
+{
+    // Telemetry channels are looked up once, here, so the cycle only
+    // passes small integers around
+    private static final int speedCoefficientChannel = Telemetry.channel("speedCoefficient");
+    private static final int turnCoefficientChannel = Telemetry.channel("turnCoefficient");
+    private static final int modifiedTurnCoefficientChannel = Telemetry.channel("modifiedTurnCoefficient");
+    private static final int leftPositionChannel = Telemetry.channel("leftPosition_rot");
+    private static final int rightPositionChannel = Telemetry.channel("rightPosition_rot");
+    private static final int poseXChannel = Telemetry.channel("pose/x_m");
+    private static final int poseYChannel = Telemetry.channel("pose/y_m");
+    private static final int poseHeadingChannel = Telemetry.channel("pose/heading_deg");
+
+    // Measure how much of each cycle goes to each phase; the index of each
+    // name is the phase ID passed to mark()
+    private static final int READ_PHASE      = 0;
+    private static final int SCHEDULER_PHASE = 1;
+    private static final int OI_PHASE        = 2;
+    private static final int DRIVE_PHASE     = 3;
+    private static final int TELEMETRY_PHASE = 4;
+    private static final int WRITE_PHASE     = 5;
+
+    private final LoopTimer timer = new LoopTimer("teleop",
+                                                  RobotMap.LOOP_PERIOD_sec,
+                                                  RobotMap.LOOP_STATS_PUBLISH_CYCLES,
+                                                  "read", "scheduler", "oi", "drive", "telemetry", "write");
+
+    private final DriveSubsystem driveSubsystem;
+    private final CycleExecutor executor;
+
+    // Reused every cycle to receive the odometry pose
+    private final Pose pose = new Pose();
+
+    // Reused every cycle to receive the drive controls
+    private final DriveSample driveSample = new DriveSample();
+
+    private double modifiedTurnCoefficient = 0.0;
+
+    /**
+     * Constructor
+     *
+     * @param aDriveSubsystem - the drive to control
+     */
+    public TeleopCycle(DriveSubsystem aDriveSubsystem)
+    {
+        this(aDriveSubsystem, new CycleExecutor(RobotMap.CYCLE_WORKERS, aDriveSubsystem));
+    }
+    
+    /**
+     * Constructor
+     *
+     * @param aDriveSubsystem - the drive to control
+     * @param anExecutor - reads and writes the subsystems (the drive among
+     *        them) around each cycle
+     */
+    public TeleopCycle(DriveSubsystem aDriveSubsystem, CycleExecutor anExecutor)
+    {
+        driveSubsystem = aDriveSubsystem;
+        executor = anExecutor;
+    }
+
+    /**
+     * run - do one cycle
+     */
+    public void run()
+    {
+        timer.begin();
+
+        // Take one snapshot of the drive for all commands to share this cycle
+        executor.read();
+        timer.mark(READ_PHASE);
+
+        CommandProfiler.schedulerBegin();
+        Scheduler.getInstance().run();
+        CommandProfiler.schedulerEnd();
+        timer.mark(SCHEDULER_PHASE);
+
+        // This is where we need to put code to read the controllers (joysticks)
+        // and pass a controlled value to the driveSubsystem
+        //
+        // A single joystick solution that provides a balance between
+        // turning and moving; when forward/backward speed is low, more
+        // power is passed into turning (i.e., variable speed power steering)
+        // In this example the variable steering will be a simple linear function
+        // starting at 50% power when maximum forward/backward is commanded.
+        //
+        // NOTE: The API documentation is NOT clear about the range of the values
+        // when getting the axes. However, digging deep into the DriverStation
+        // class where the raw port is read we find that the byte-oriented interface
+        // is scaled to -1 to +1 (as a double). This makes the math simple
+        //
+        // NOTE: We use named mappings to improve maintenance and readability
+        // NOTE: We grab a copy of the value "now" so all subsequent computations
+        // represent this moment in time (or as near a moment as we can get);
+        // the OI reads both axes together and conditions them (deadband,
+        // smoothing, slew rate limit) so the drive does not see stick noise
+        OI.read(driveSample);
+        double speedCoefficient = driveSample.getSpeed();
+        double turnCoefficient  = driveSample.getTurn();
+        timer.mark(OI_PHASE);
+
+        // Pass our desired speed/turn values to the drive subsystem
+        // NOTE: The driveSubsystem may adjust our request to keep the robot
+        // from skidding out of control
+        modifiedTurnCoefficient = driveSubsystem.arcadeDrive(speedCoefficient, turnCoefficient);
+        timer.mark(DRIVE_PHASE);
+
+        // To allow us to monitor what is going on each time
+        // the function runs, we will output something to the SmartDashboard
+        //
+        // NOTE: We don't want to slow down control functions for telemetry, so
+        // the values are only queued here; the Telemetry thread sends them
+        // to the SmartDashboard in the background
+        Telemetry.put(speedCoefficientChannel,speedCoefficient);
+        Telemetry.put(turnCoefficientChannel,turnCoefficient);
+        Telemetry.put(modifiedTurnCoefficientChannel,modifiedTurnCoefficient);
+
+        // The encoder positions come from the same snapshot the commands used
+        // so there is no need to ask the controllers again
+        DriveState driveState = driveSubsystem.getState();
+        Telemetry.put(leftPositionChannel,driveState.getLeftPosition_rot());
+        Telemetry.put(rightPositionChannel,driveState.getRightPosition_rot());
+
+        driveSubsystem.getOdometry().getPose(pose);
+        Telemetry.put(poseXChannel,pose.x_m);
+        Telemetry.put(poseYChannel,pose.y_m);
+        Telemetry.put(poseHeadingChannel,pose.getHeading_deg());
+        timer.mark(TELEMETRY_PHASE);
+
+        // Only now do the motors get what the commands and sticks asked for
+        executor.write();
+        timer.mark(WRITE_PHASE);
+
+        timer.end();
+    }
+
+    /**
+     * getSample returns the drive controls read by the last cycle
+     */
+    public DriveSample getSample()
+    {
+        return driveSample;
+    }
+
+    /**
+     * getModifiedTurnCoefficient returns the turn the drive actually used
+     * in the last cycle
+     */
+    public double getModifiedTurnCoefficient()
+    {
+        return modifiedTurnCoefficient;
+    }
+
+    public LoopTimer getTimer()
+    {
+        return timer;
+    }
+}
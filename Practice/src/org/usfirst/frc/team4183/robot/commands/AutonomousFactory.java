@@ -0,0 +1,26 @@
+/**
+ * AutonomousFactory - what the autonomous chooser holds instead of the
+ * commands themselves.
+ *
+ * Building every autonomous routine in robotInit allocates (and for groups,
+ * wires together) commands that will never run. The chooser holds one of
+ * these per routine instead and only the selected one is built, at
+ * autonomousInit. The drive is a parameter so the same routine can also be
+ * built against a simulated drive for rehearsal (see AutonomousRehearsal).
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * The AutonomousFactory interface definition
+ */
+public interface AutonomousFactory
+{
+    /**
+     * create - build the routine to run on the specified drive
+     */
+    Command create(DriveSubsystem aDrive);
+}
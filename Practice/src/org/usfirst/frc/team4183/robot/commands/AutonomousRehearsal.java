@@ -0,0 +1,258 @@
+/**
+ * AutonomousRehearsal - runs the selected autonomous routine over and over
+ * against a simulated drive while the robot is disabled, so its code is
+ * already compiled when autonomous starts.
+ *
+ * The JVM interprets a method until it has been called (or looped) often
+ * enough to be worth compiling. Left alone, that happens during the first
+ * seconds of autonomous, and the first cycles take many times longer than
+ * the rest. Rehearsing the routine in disabledPeriodic moves that cost to
+ * when nobody cares.
+ *
+ * The rehearsal builds the routine with the selected AutonomousFactory on
+ * a DriveSubsystem made of SimulatedMotorControllers (and a SimulatedGyro,
+ * if the robot has a gyro) on a private SimulatedHardware (with its own
+ * DrivetrainPhysics), so nothing real moves and the shared simulation (if
+ * any) is not disturbed. Each command's initialize, execute, isFinished and
+ * end are called directly at a virtual 20 ms period, on a SimulatedClock of
+ * the rehearsal's own (never installed, so the robot's Timer is left
+ * alone) that the drive's state is read against; so a command's settle
+ * times pass just as they would in autonomous. The Scheduler is not
+ * involved: the drive is taken back out of it as soon as it is built (a
+ * WPILib Subsystem always registers itself), so only RehearsableCommands
+ * are rehearsed, and groups must be CommandSequences to be rehearsed step
+ * by step. Commands that never finish are cut off after a fixed number of
+ * cycles.
+ *
+ * Work is done in slices bounded by wall clock time so disabledPeriodic
+ * stays on schedule, and stops after a fixed number of cycles.
+ *
+ * NOTE: The compiled code is specialized for the SimulatedMotorController;
+ * the first calls that reach a Talon through those paths may recompile.
+ * The drive's state reading is not affected since disabledPeriodic already
+ * reads the real Talons every cycle. Rehearsal also adds to the shared
+ * "profile/..." telemetry counters.
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.sim.DrivetrainPhysics;
+import org.usfirst.frc.team4183.robot.sim.SimulatedClock;
+import org.usfirst.frc.team4183.robot.sim.SimulatedHardware;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.command.Command;
+import edu.wpi.first.wpilibj.command.Scheduler;
+import edu.wpi.first.wpilibj.command.Subsystem;
+
+/**
+ * The AutonomousRehearsal class definition
+ */
+public class AutonomousRehearsal
+{
+    public static final double PERIOD_sec = 0.020;     // Virtual, same as IterativeRobot
+
+    private final SimulatedHardware rig = new SimulatedHardware();
+    private final SimulatedClock clock = new SimulatedClock();
+    private final DriveSubsystem drive;
+
+    private AutonomousFactory factory;
+    private RehearsableCommand[] steps;
+    private int step = 0;
+    private int stepCycles = 0;
+    private boolean initialized = false;
+
+    private long cycles = 0;
+    private final long targetCycles;
+    private final int maxStepCycles;
+
+    /**
+     * Constructor
+     *
+     * @param aTargetCycles - stop rehearsing after this many cycles
+     * @param aMaxStepCycles - give up on a command after this many cycles
+     */
+    public AutonomousRehearsal(long aTargetCycles, int aMaxStepCycles)
+    {
+        targetCycles = aTargetCycles;
+        maxStepCycles = aMaxStepCycles;
+        drive = new DriveSubsystem(rig.createMotorController(RobotMap.leftMotor0),
+                                   rig.createMotorController(RobotMap.leftMotor1),
+                                   rig.createMotorController(RobotMap.rightMotor0),
+                                   rig.createMotorController(RobotMap.rightMotor1),
+                                   RobotMap.HEADING_GYRO ? rig.createGyro() : null);
+        leaveScheduler(drive);
+        
+        // The turns finish on the fused heading, so the robot must really turn
+        DrivetrainPhysics.create(rig);
+    }
+
+    /**
+     * leaveScheduler - take the specified subsystem back out of the
+     * Scheduler, which the Subsystem constructor put it in; WPILib has no
+     * way to do this, so it is done on the Scheduler's own set. Should that
+     * change, the subsystem is only left in (it has no default command, so
+     * the Scheduler just looks at it every cycle)
+     */
+    private static void leaveScheduler(Subsystem aSubsystem)
+    {
+        try
+        {
+            Field subsystems = Scheduler.class.getDeclaredField("subsystems");
+            subsystems.setAccessible(true);
+            Object set = subsystems.get(Scheduler.getInstance());
+            Field elements = set.getClass().getDeclaredField("set");
+            elements.setAccessible(true);
+            ((Vector<?>) elements.get(set)).remove(aSubsystem);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            String message = "Rehearsal drive left in the Scheduler: " + e;
+            
+            // The desktop simulation has no driver station (it needs the
+            // roboRIO's HAL)
+            if (RobotMap.SIMULATION)
+            {
+                System.err.println(message);
+            }
+            else
+            {
+                DriverStation.reportWarning(message, false);
+            }
+        }
+    }
+
+    /**
+     * select - rehearse the specified routine; selecting a different one
+     * starts over
+     */
+    public void select(AutonomousFactory aFactory)
+    {
+        if (aFactory == factory)
+        {
+            return;
+        }
+
+        abandonStep();
+        factory = aFactory;
+        steps = null;
+        step = 0;
+        cycles = 0;
+
+        if (factory != null)
+        {
+            Command routine = factory.create(drive);
+            Command[] commands;
+            if (routine instanceof CommandSequence)
+            {
+                commands = ((CommandSequence) routine).getSteps();
+            }
+            else
+            {
+                commands = new Command[] { routine };
+            }
+            
+            // Keep the steps we know how to run (e.g., not DoNothingCommand)
+            int count = 0;
+            steps = new RehearsableCommand[commands.length];
+            for (int i = 0; i < commands.length; ++i)
+            {
+                if (commands[i] instanceof RehearsableCommand)
+                {
+                    steps[count++] = (RehearsableCommand) commands[i];
+                }
+            }
+            steps = Arrays.copyOf(steps, count);
+        }
+    }
+
+    /**
+     * run - rehearse until the time budget is used up or enough cycles have
+     * been run
+     */
+    public void run(double aBudget_sec)
+    {
+        if ((steps == null) || (steps.length == 0))
+        {
+            return;
+        }
+
+        long end_ns = System.nanoTime() + (long) (aBudget_sec * 1.0e9);
+        while ((cycles < targetCycles) && (System.nanoTime() < end_ns))
+        {
+            cycle();
+        }
+    }
+
+    /**
+     * step - rehearse exactly one cycle, however many have been run (e.g.,
+     * to measure a cycle; see tools.AllocationBudget)
+     */
+    public void step()
+    {
+        if ((steps != null) && (steps.length > 0))
+        {
+            cycle();
+        }
+    }
+
+    private void cycle()
+    {
+        RehearsableCommand command = steps[step];
+
+        drive.updateState(clock.getFPGATimestamp());
+        if ( ! initialized)
+        {
+            command.initialize();
+            initialized = true;
+        }
+        command.execute();
+        boolean finished = command.isFinished();
+
+        rig.step(PERIOD_sec);
+        clock.advance(PERIOD_sec);
+        ++cycles;
+
+        if (finished || (++stepCycles >= maxStepCycles))
+        {
+            command.end();
+            initialized = false;
+            stepCycles = 0;
+            step = (step + 1) % steps.length;
+        }
+    }
+
+    private void abandonStep()
+    {
+        if (initialized)
+        {
+            steps[step].end();
+            initialized = false;
+        }
+        stepCycles = 0;
+    }
+
+    public long getCycles()
+    {
+        return cycles;
+    }
+
+    /**
+     * isComplete returns true once enough cycles have been run, or if there
+     * is nothing to rehearse (e.g., DoNothingCommand)
+     */
+    public boolean isComplete()
+    {
+        return (steps == null) || (steps.length == 0) || (cycles >= targetCycles);
+    }
+
+    public AutonomousFactory getFactory()
+    {
+        return factory;
+    }
+}
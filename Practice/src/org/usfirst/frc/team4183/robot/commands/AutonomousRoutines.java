@@ -0,0 +1,158 @@
+/**
+ * AutonomousRoutines - every autonomous routine the robot offers, by name,
+ * in one place so the dashboard chooser (Robot.robotInit) and the desktop
+ * simulation (sim.HeadlessRunner) offer the same ones.
+ *
+ * The first routine is the chooser's default. The last, "Characterize
+ * Drive", is left out unless RobotMap.CHARACTERIZATION_ROUTINE is set.
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import java.io.File;
+
+import org.usfirst.frc.team4183.robot.Robot;
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * The AutonomousRoutines class definition
+ */
+public class AutonomousRoutines
+{
+    private static final String[] names =
+    {
+        "Default Auto",
+        "Auto Test Drive",
+        "1 Meter Forward",
+        "1 Meter Backward",
+        "45 deg Right",
+        "45 deg Left",
+        "Square",
+        "Characterize Drive"    // Practice only; must stay last (see count)
+    };
+
+    // Indexed the same as the names
+    private static final AutonomousFactory[] factories =
+    {
+        new AutonomousFactory()
+        {
+            public Command create(DriveSubsystem aDrive)
+            {
+                return new DoNothingCommand();
+            }
+        },
+        new AutonomousFactory()
+        {
+            public Command create(DriveSubsystem aDrive)
+            {
+                return new TestDriveCommand(aDrive);
+            }
+        },
+        new AutonomousFactory()
+        {
+            public Command create(DriveSubsystem aDrive)
+            {
+                return new MoveCommand(aDrive, RobotMap.FORWARD * 1.0, 0.05);
+            }
+        },
+        new AutonomousFactory()
+        {
+            public Command create(DriveSubsystem aDrive)
+            {
+                return new MoveCommand(aDrive, RobotMap.BACKWARD * 1.0, 0.05);
+            }
+        },
+        new AutonomousFactory()
+        {
+            public Command create(DriveSubsystem aDrive)
+            {
+                return new TurnCommand(aDrive, RobotMap.RIGHT * 45.0, 1.0);
+            }
+        },
+        new AutonomousFactory()
+        {
+            public Command create(DriveSubsystem aDrive)
+            {
+                return new TurnCommand(aDrive, RobotMap.LEFT * 45.0, 1.0);
+            }
+        },
+        new AutonomousFactory()
+        {
+            public Command create(DriveSubsystem aDrive)
+            {
+                return new SquareCommand(aDrive);
+            }
+        },
+        new AutonomousFactory()
+        {
+            public Command create(DriveSubsystem aDrive)
+            {
+                // Only the robot's own drive is logged; a rehearsal (on its
+                // own simulated drive) must not leave logs behind
+                File directory = (aDrive == Robot.driveSubsystem) ? new File(RobotMap.CHARACTERIZATION_DIRECTORY)
+                                                                  : null;
+                return new CharacterizeDriveCommand(aDrive, directory);
+            }
+        }
+    };
+
+    // How many of the routines above are offered
+    private static final int count = RobotMap.CHARACTERIZATION_ROUTINE ? names.length : names.length - 1;
+
+    // What the chooser offers: the routines above, fused into one blended
+    // path where they can be (see SequenceFuser) if RobotMap says so
+    private static final AutonomousFactory[] offered = new AutonomousFactory[factories.length];
+    static
+    {
+        for (int i = 0; i < factories.length; ++i)
+        {
+            offered[i] = RobotMap.DRIVE_FUSE_SEQUENCES ? SequenceFuser.fuse(factories[i]) : factories[i];
+        }
+    }
+
+    private AutonomousRoutines()
+    {
+        // Static interface only
+    }
+
+    public static int getCount()
+    {
+        return count;
+    }
+
+    public static String getName(int anIndex)
+    {
+        return names[anIndex];
+    }
+
+    public static AutonomousFactory getFactory(int anIndex)
+    {
+        return offered[anIndex];
+    }
+
+    /**
+     * getSequenceFactory returns the routine as written, never fused (e.g.,
+     * to compare with the fused one)
+     */
+    public static AutonomousFactory getSequenceFactory(int anIndex)
+    {
+        return factories[anIndex];
+    }
+
+    /**
+     * find - the index of the named routine (ignoring case), or -1
+     */
+    public static int find(String aName)
+    {
+        for (int i = 0; i < count; ++i)
+        {
+            if (names[i].equalsIgnoreCase(aName))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,317 @@
+/**
+ * CharacterizeDriveCommand - drives the robot open loop with known voltages
+ * and logs how each side responds, so tools.DriveCharacterizer can work out
+ * the volts it takes to hold a speed (kV), to break free (kS) and to
+ * accelerate (kA).
+ *
+ * The routine, each part followed by a rest so the next starts from a stop:
+ *
+ *     QUASISTATIC_FORWARD     the voltage ramps up slowly from 0, so the
+ *     QUASISTATIC_BACKWARD    acceleration is negligible and the speed
+ *                             follows kS and kV alone
+ *     STEP_FORWARD            a fixed voltage all at once, so most of the
+ *     STEP_BACKWARD           voltage goes to acceleration at first (kA)
+ *
+ * Each part ends at RobotMap.CHARACTERIZATION_MAX_DISTANCE_m or _MAX_sec,
+ * whichever comes first, and goes back the way the one before came; so
+ * leave that much room in front of and behind the robot.
+ *
+ * Every cycle one row goes to a SignalLog (chunks allocated up front, so
+ * this costs a few stores): the part being run and, per side, the voltage
+ * applied over the last cycle with the average speed and the acceleration
+ * over that same cycle, in encoder rotations. Pairing them this way keeps
+ * the one cycle the Talons take to apply a voltage out of the fit.
+ *
+ * The same rows (moving ones only) are also fitted per side as the robot
+ * drives (subsystems.FeedforwardFit) and the kS, kV and kA of each side are
+ * put on the dashboard when the routine ends, for a first look before the
+ * log is fitted properly (tools.DriveCharacterizer).
+ *
+ * Without a log directory (e.g., a rehearsal) the robot still drives but
+ * nothing is written.
+ *
+ * The routine is only offered in the autonomous chooser when
+ * RobotMap.CHARACTERIZATION_ROUTINE is set (see AutonomousRoutines).
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.usfirst.frc.team4183.robot.Robot;
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.subsystems.DriveState;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+import org.usfirst.frc.team4183.robot.subsystems.FeedforwardFit;
+import org.usfirst.frc.team4183.robot.telemetry.SignalLog;
+import org.usfirst.frc.team4183.robot.telemetry.Telemetry;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * The CharacterizeDriveCommand class definition
+ */
+public class CharacterizeDriveCommand extends RehearsableCommand
+{
+    // The parts of the routine, in order, logged in the PHASE column
+    public static final int REST                 = -1;
+    public static final int QUASISTATIC_FORWARD  = 0;
+    public static final int QUASISTATIC_BACKWARD = 1;
+    public static final int STEP_FORWARD         = 2;
+    public static final int STEP_BACKWARD        = 3;
+    public static final int PHASES               = 4;
+
+    // The columns of the log
+    public static final int PHASE               = 0;
+    public static final int LEFT_VOLTAGE        = 1;
+    public static final int RIGHT_VOLTAGE       = 2;
+    public static final int LEFT_SPEED          = 3;
+    public static final int RIGHT_SPEED         = 4;
+    public static final int LEFT_ACCELERATION   = 5;
+    public static final int RIGHT_ACCELERATION  = 6;
+
+    // Indexed by the constants above
+    public static final String[] NAMES =
+    {
+        "phase",
+        "left/voltage_V",
+        "right/voltage_V",
+        "left/speed_rps",
+        "right/speed_rps",
+        "left/acceleration_rps2",
+        "right/acceleration_rps2"
+    };
+
+    // The fits of this run, published when it ends
+    private static final int leftKSChannel = Telemetry.channel("characterization/left/kS_V");
+    private static final int leftKVChannel = Telemetry.channel("characterization/left/kV_V_per_rps");
+    private static final int leftKAChannel = Telemetry.channel("characterization/left/kA_V_per_rps2");
+    private static final int leftRSquaredChannel = Telemetry.channel("characterization/left/r2");
+    private static final int rightKSChannel = Telemetry.channel("characterization/right/kS_V");
+    private static final int rightKVChannel = Telemetry.channel("characterization/right/kV_V_per_rps");
+    private static final int rightKAChannel = Telemetry.channel("characterization/right/kA_V_per_rps2");
+    private static final int rightRSquaredChannel = Telemetry.channel("characterization/right/r2");
+
+    private final DriveSubsystem drive;
+    private final File directory;
+    private SignalLog log;
+    private FeedforwardFit leftFit;
+    private FeedforwardFit rightFit;
+
+    private int phase;
+    private boolean resting;
+    private double phaseStart_sec;
+    private double startLeft_rot;
+    private double startRight_rot;
+
+    // The previous cycle, to pair with this one
+    private boolean haveLast;
+    private double last_sec;
+    private double lastLeftSpeed_rps;
+    private double lastRightSpeed_rps;
+    private double lastVoltage_V;
+
+    public CharacterizeDriveCommand()
+    {
+        this(Robot.driveSubsystem, new File(RobotMap.CHARACTERIZATION_DIRECTORY));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param aDrive - the drive to characterize
+     * @param aDirectory - where to write the log, or null for no log
+     */
+    public CharacterizeDriveCommand(DriveSubsystem aDrive, File aDirectory)
+    {
+        drive = aDrive;
+        directory = aDirectory;
+
+        // Use requires() here to declare subsystem dependencies
+        requires(drive);
+    }
+
+    // Called just before this Command runs the first time
+    protected void initialize()
+    {
+        log = null;
+        if (directory != null)
+        {
+            try
+            {
+                log = SignalLog.create(directory,
+                                       RobotMap.CHARACTERIZATION_PREFIX,
+                                       NAMES,
+                                       RobotMap.SIGNAL_LOG_CHUNK_ROWS,
+                                       RobotMap.SIGNAL_LOG_MAX_BYTES,
+                                       RobotMap.SIGNAL_LOG_WRITE_PERIOD_sec,
+                                       RobotMap.SIGNAL_LOG_KEEP_FILES,
+                                       RobotMap.SIGNAL_LOG_MAX_TOTAL_BYTES);
+            }
+            catch (IOException e)
+            {
+                report("Not logging the characterization: " + e.getMessage());
+            }
+        }
+        leftFit = new FeedforwardFit("left");
+        rightFit = new FeedforwardFit("right");
+
+        phase = QUASISTATIC_FORWARD;
+        resting = false;
+        haveLast = false;
+        lastVoltage_V = 0.0;
+        startPhase(drive.getState());
+    }
+
+    // Called repeatedly when this Command is scheduled to run
+    protected void execute()
+    {
+        DriveState state = drive.getState();
+        double now_sec = state.getTimestamp_sec();
+        double left_rps = state.getLeftSpeed_rpm() / 60.0;
+        double right_rps = state.getRightSpeed_rpm() / 60.0;
+
+        // What the last cycle's voltage did over the last cycle
+        if (haveLast && (now_sec > last_sec))
+        {
+            double delta_sec = now_sec - last_sec;
+            double leftSpeed_rps = 0.5 * (left_rps + lastLeftSpeed_rps);
+            double rightSpeed_rps = 0.5 * (right_rps + lastRightSpeed_rps);
+            double leftAcceleration_rps2 = (left_rps - lastLeftSpeed_rps) / delta_sec;
+            double rightAcceleration_rps2 = (right_rps - lastRightSpeed_rps) / delta_sec;
+            if (log != null)
+            {
+                log.put(PHASE, resting ? REST : phase);
+                log.put(LEFT_VOLTAGE, lastVoltage_V);
+                log.put(RIGHT_VOLTAGE, lastVoltage_V);
+                log.put(LEFT_SPEED, leftSpeed_rps);
+                log.put(RIGHT_SPEED, rightSpeed_rps);
+                log.put(LEFT_ACCELERATION, leftAcceleration_rps2);
+                log.put(RIGHT_ACCELERATION, rightAcceleration_rps2);
+                log.endRow(now_sec);
+            }
+            if ( ! resting)
+            {
+                addToFit(leftFit, lastVoltage_V, leftSpeed_rps, leftAcceleration_rps2);
+                addToFit(rightFit, lastVoltage_V, rightSpeed_rps, rightAcceleration_rps2);
+            }
+        }
+        haveLast = true;
+        last_sec = now_sec;
+        lastLeftSpeed_rps = left_rps;
+        lastRightSpeed_rps = right_rps;
+
+        double elapsed_sec = now_sec - phaseStart_sec;
+        if (resting)
+        {
+            if (elapsed_sec >= RobotMap.CHARACTERIZATION_REST_sec)
+            {
+                ++phase;
+                resting = false;
+                startPhase(state);
+            }
+        }
+        else
+        {
+            double traveled_m = 0.5 * (Math.abs(state.getLeftPosition_rot() - startLeft_rot) +
+                                       Math.abs(state.getRightPosition_rot() - startRight_rot)) *
+                                RobotMap.METERS_PER_ENCODER_ROT;
+            if ((traveled_m >= RobotMap.CHARACTERIZATION_MAX_DISTANCE_m) ||
+                (elapsed_sec >= RobotMap.CHARACTERIZATION_MAX_sec))
+            {
+                resting = true;
+                phaseStart_sec = now_sec;
+            }
+        }
+
+        double voltage_V = 0.0;
+        if (( ! resting) && (phase < PHASES))
+        {
+            voltage_V = (phase <= QUASISTATIC_BACKWARD) ? RobotMap.CHARACTERIZATION_RAMP_V_per_sec * elapsed_sec
+                                                        : RobotMap.CHARACTERIZATION_STEP_V;
+            voltage_V = Math.min(voltage_V, RobotMap.CHARACTERIZATION_MAX_V);
+
+            // Forward first, then back to about where we started
+            voltage_V *= ((phase == QUASISTATIC_FORWARD) || (phase == STEP_FORWARD)) ? RobotMap.FORWARD
+                                                                                     : RobotMap.BACKWARD;
+        }
+        drive.driveVoltage(voltage_V, voltage_V);
+        lastVoltage_V = voltage_V;
+    }
+
+    private static void addToFit(FeedforwardFit aFit, double aVoltage_V, double aSpeed_rps,
+                                 double anAcceleration_rps2)
+    {
+        if (Math.abs(aSpeed_rps) >= FeedforwardFit.MIN_SPEED_rps)
+        {
+            aFit.add(aVoltage_V, aSpeed_rps, anAcceleration_rps2);
+        }
+    }
+
+    private void startPhase(DriveState aState)
+    {
+        phaseStart_sec = aState.getTimestamp_sec();
+        startLeft_rot = aState.getLeftPosition_rot();
+        startRight_rot = aState.getRightPosition_rot();
+    }
+
+    // Make this return true when this Command no longer needs to run execute()
+    protected boolean isFinished()
+    {
+        return phase >= PHASES;
+    }
+
+    // Called once after isFinished returns true
+    protected void end()
+    {
+        drive.stop();
+        if (log != null)
+        {
+            try
+            {
+                log.close();
+            }
+            catch (IOException e)
+            {
+                report("Characterization log incomplete: " + e.getMessage());
+            }
+            log = null;
+        }
+
+        // Nothing (NaN) if the routine was stopped before there was enough
+        leftFit.solve();
+        Telemetry.put(leftKSChannel, leftFit.getKS_V());
+        Telemetry.put(leftKVChannel, leftFit.getKV_V_per_rps());
+        Telemetry.put(leftKAChannel, leftFit.getKA_V_per_rps2());
+        Telemetry.put(leftRSquaredChannel, leftFit.getRSquared());
+        rightFit.solve();
+        Telemetry.put(rightKSChannel, rightFit.getKS_V());
+        Telemetry.put(rightKVChannel, rightFit.getKV_V_per_rps());
+        Telemetry.put(rightKAChannel, rightFit.getKA_V_per_rps2());
+        Telemetry.put(rightRSquaredChannel, rightFit.getRSquared());
+    }
+
+    /**
+     * report - to the driver station on the robot; the desktop simulation
+     * has no driver station (DriverStation needs the roboRIO's HAL), so
+     * there it goes to the console
+     */
+    private static void report(String aMessage)
+    {
+        if (RobotMap.SIMULATION)
+        {
+            System.err.println(aMessage);
+        }
+        else
+        {
+            DriverStation.reportError(aMessage, false);
+        }
+    }
+
+    // Called when another command which requires one or more of the same
+    // subsystems is scheduled to run
+    protected void interrupted()
+    {
+        end();  // Keep whatever was logged; the fitter uses what is there
+    }
+}
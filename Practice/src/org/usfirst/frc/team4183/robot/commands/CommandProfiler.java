@@ -0,0 +1,312 @@
+/**
+ * CommandProfiler - finds out which command (or the Scheduler itself) is
+ * using the time when autonomous runs long.
+ *
+ * The Scheduler calls each command's lifecycle functions itself, so there
+ * is nowhere to put a timer around them from outside. Instead:
+ *
+ *     1. profile(command) wraps a command in a ProfiledCommand that times
+ *        each call to initialize, execute, isFinished, end and interrupted,
+ *        and remembers it in the table; commands that make up a group are
+ *        wrapped where the group adds them (e.g., SquareCommand)
+ *     2. schedulerBegin() and schedulerEnd() go around Scheduler.run(); the
+ *        time in between that was not spent inside a profiled command is
+ *        the Scheduler's own (plus any commands not profiled)
+ *     3. Every RobotMap.LOOP_STATS_PUBLISH_CYCLES Scheduler runs the totals
+ *        per command name are queued to Telemetry, with each name's rank
+ *        (1 is the hottest), e.g. "commands/MoveCommand/total_ms" and
+ *        "commands/MoveCommand/rank"; dump() prints the whole table, per
+ *        command instance and function, hottest first
+ *
+ * When RobotMap.COMMAND_PROFILING is false profile() returns the command
+ * itself and the Scheduler calls cost a test of a constant, so nothing is
+ * measured and nothing is paid. Only RehearsableCommands can be wrapped;
+ * others are returned as they are.
+ *
+ * The table holds the commands of one mode: Robot dumps and resets it when
+ * disabled (and resets it when autonomous starts, dropping whatever the
+ * rehearsal made). Commands profiled once the table is full are not
+ * wrapped, only counted.
+ *
+ * Commands run on the main thread only, and so does this; like Telemetry
+ * it is a static interface since there is only ever one Scheduler.
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import java.io.PrintStream;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.telemetry.Telemetry;
+
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * The CommandProfiler class definition
+ */
+public class CommandProfiler
+{
+    // Command names published to Telemetry; each name uses 3 channels, and
+    // channels are never given back, so this is kept small
+    public static final int MAX_NAMES = 16;
+
+    private static final ProfiledCommand[] profiled = new ProfiledCommand[RobotMap.COMMAND_PROFILE_CAPACITY];
+    private static final int[] nameOf = new int[RobotMap.COMMAND_PROFILE_CAPACITY];
+    private static int count = 0;
+    private static int created = 0;
+    private static long notProfiled = 0;
+
+    private static final String[] names = new String[MAX_NAMES];
+    private static final int[] totalChannels = new int[MAX_NAMES];
+    private static final int[] maxChannels = new int[MAX_NAMES];
+    private static final int[] rankChannels = new int[MAX_NAMES];
+    private static final double[] nameTotal_ms = new double[MAX_NAMES];
+    private static final double[] nameMax_ms = new double[MAX_NAMES];
+    private static int nameCount = 0;
+
+    private static final int overheadChannel = Telemetry.channel("commands/scheduler/overhead_ms");
+    private static final int overheadMaxChannel = Telemetry.channel("commands/scheduler/max_ms");
+
+    // The Scheduler's own time: per run, what was not spent in commands
+    private static long schedulerStart_ns = 0;
+    private static long commandTime_ns = 0;
+    private static long schedulerRuns = 0;
+    private static long overheadTotal_ns = 0;
+    private static long overheadMax_ns = 0;
+    private static int runsSincePublish = 0;
+
+    private CommandProfiler()
+    {
+        // Static interface only
+    }
+
+    /**
+     * profile - return a command that runs the specified one and times it,
+     * or the command itself when profiling is off, the command cannot be
+     * wrapped or the table is full. Do this when building commands, not on
+     * the control path (the first command of each name creates telemetry
+     * channels).
+     */
+    public static Command profile(Command aCommand)
+    {
+        if (( ! RobotMap.COMMAND_PROFILING) ||
+            ( ! (aCommand instanceof RehearsableCommand)) ||
+            (aCommand instanceof ProfiledCommand))
+        {
+            return aCommand;
+        }
+        if (count == profiled.length)
+        {
+            ++notProfiled;
+            return aCommand;
+        }
+
+        // Profiles are by class, whatever the command was named
+        RehearsableCommand command = (RehearsableCommand) aCommand;
+        String name = command.getClass().getSimpleName();
+        ProfiledCommand wrapper = new ProfiledCommand(command, name + "#" + (++created));
+        nameOf[count] = nameIndex(name);
+        profiled[count++] = wrapper;
+        return wrapper;
+    }
+
+    /**
+     * nameIndex - the slot for the command name, creating its telemetry
+     * channels if needed; -1 once there are MAX_NAMES
+     */
+    private static int nameIndex(String aName)
+    {
+        for (int i = 0; i < nameCount; ++i)
+        {
+            if (names[i].equals(aName))
+            {
+                return i;
+            }
+        }
+        if (nameCount == MAX_NAMES)
+        {
+            return -1;
+        }
+        String prefix = "commands/" + aName + "/";
+        names[nameCount] = aName;
+        totalChannels[nameCount] = Telemetry.channel(prefix + "total_ms");
+        maxChannels[nameCount] = Telemetry.channel(prefix + "max_ms");
+        rankChannels[nameCount] = Telemetry.channel(prefix + "rank");
+        return nameCount++;
+    }
+
+    /**
+     * commandTime - called by ProfiledCommand for the time spent in a
+     * command
+     */
+    static void commandTime(long anElapsed_ns)
+    {
+        commandTime_ns += anElapsed_ns;
+    }
+
+    /**
+     * schedulerBegin - call just before Scheduler.run()
+     */
+    public static void schedulerBegin()
+    {
+        if ( ! RobotMap.COMMAND_PROFILING)
+        {
+            return;
+        }
+        commandTime_ns = 0;
+        schedulerStart_ns = System.nanoTime();
+    }
+
+    /**
+     * schedulerEnd - call just after Scheduler.run()
+     */
+    public static void schedulerEnd()
+    {
+        if ( ! RobotMap.COMMAND_PROFILING)
+        {
+            return;
+        }
+        long overhead_ns = (System.nanoTime() - schedulerStart_ns) - commandTime_ns;
+        ++schedulerRuns;
+        overheadTotal_ns += overhead_ns;
+        if (overhead_ns > overheadMax_ns)
+        {
+            overheadMax_ns = overhead_ns;
+        }
+
+        if (++runsSincePublish >= RobotMap.LOOP_STATS_PUBLISH_CYCLES)
+        {
+            publish();
+            runsSincePublish = 0;
+        }
+    }
+
+    /**
+     * publish - queue the totals and rank of each command name to
+     * Telemetry; allocates nothing
+     */
+    public static void publish()
+    {
+        for (int i = 0; i < nameCount; ++i)
+        {
+            nameTotal_ms[i] = 0.0;
+            nameMax_ms[i] = 0.0;
+        }
+        for (int i = 0; i < count; ++i)
+        {
+            int name = nameOf[i];
+            if (name >= 0)
+            {
+                nameTotal_ms[name] += profiled[i].getTotal_ms();
+                nameMax_ms[name] = Math.max(nameMax_ms[name], profiled[i].getMax_ms());
+            }
+        }
+        for (int i = 0; i < nameCount; ++i)
+        {
+            // There are only a few names, so count the hotter ones
+            int rank = 1;
+            for (int j = 0; j < nameCount; ++j)
+            {
+                if ((nameTotal_ms[j] > nameTotal_ms[i]) || ((nameTotal_ms[j] == nameTotal_ms[i]) && (j < i)))
+                {
+                    ++rank;
+                }
+            }
+            Telemetry.put(totalChannels[i], nameTotal_ms[i]);
+            Telemetry.put(maxChannels[i], nameMax_ms[i]);
+            Telemetry.put(rankChannels[i], rank);
+        }
+        Telemetry.put(overheadChannel, overheadTotal_ns / 1.0e6);
+        Telemetry.put(overheadMaxChannel, overheadMax_ns / 1.0e6);
+    }
+
+    /**
+     * getCount returns the number of commands in the table
+     */
+    public static int getCount()
+    {
+        return count;
+    }
+
+    public static ProfiledCommand get(int anIndex)
+    {
+        return profiled[anIndex];
+    }
+
+    /**
+     * getSchedulerOverhead_ms returns the total time Scheduler.run() spent
+     * outside of profiled commands
+     */
+    public static double getSchedulerOverhead_ms()
+    {
+        return overheadTotal_ns / 1.0e6;
+    }
+
+    /**
+     * dump - print the table, hottest command first, with each function's
+     * share (e.g., to the console / riolog)
+     */
+    public static void dump(PrintStream aStream)
+    {
+        if ( ! RobotMap.COMMAND_PROFILING)
+        {
+            return;
+        }
+
+        // Hottest first (insertion sort; the table is small)
+        int[] order = new int[count];
+        for (int i = 0; i < count; ++i)
+        {
+            int j = i;
+            while ((j > 0) && (profiled[order[j - 1]].getTotal_ms() < profiled[i].getTotal_ms()))
+            {
+                order[j] = order[j - 1];
+                --j;
+            }
+            order[j] = i;
+        }
+
+        aStream.printf("commands: %d profiled (%d not, table full); scheduler overhead %.3f ms total, %.3f ms max over %d runs%n",
+                       count, notProfiled, overheadTotal_ns / 1.0e6, overheadMax_ns / 1.0e6, schedulerRuns);
+        aStream.printf("    %-22s %4s %9s %9s %11s %s%n", "command", "runs", "total_ms", "max_ms", "finish_ms", "outcome");
+        for (int i = 0; i < count; ++i)
+        {
+            ProfiledCommand command = profiled[order[i]];
+            aStream.printf("    %-22s %4d %9.3f %9.3f %11.1f %s%n",
+                           command.getLabel(),
+                           command.getRuns(),
+                           command.getTotal_ms(),
+                           command.getMax_ms(),
+                           command.getFinish_ms(),
+                           command.getOutcome());
+            for (int function = 0; function < ProfiledCommand.FUNCTIONS; ++function)
+            {
+                if (command.getCalls(function) > 0)
+                {
+                    aStream.printf("        %-18s %8d calls %9.3f %9.3f%n",
+                                   ProfiledCommand.getFunctionName(function),
+                                   command.getCalls(function),
+                                   command.getTotal_ms(function),
+                                   command.getMax_ms(function));
+                }
+            }
+        }
+    }
+
+    /**
+     * reset - empty the table and the Scheduler statistics (the commands
+     * already wrapped keep timing themselves, but are no longer reported)
+     */
+    public static void reset()
+    {
+        for (int i = 0; i < count; ++i)
+        {
+            profiled[i] = null;
+        }
+        count = 0;
+        notProfiled = 0;
+        schedulerRuns = 0;
+        overheadTotal_ns = 0;
+        overheadMax_ns = 0;
+        runsSincePublish = 0;
+    }
+}
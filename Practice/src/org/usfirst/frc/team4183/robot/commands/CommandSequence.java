@@ -0,0 +1,21 @@
+/**
+ * CommandSequence - a command group that can list its steps.
+ *
+ * A CommandGroup keeps its children to itself, and stepping one requires
+ * the Scheduler. Groups made only of sequential steps implement this so the
+ * steps can be run one at a time without it (see AutonomousRehearsal).
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * The CommandSequence interface definition
+ */
+public interface CommandSequence
+{
+    /**
+     * getSteps returns the commands in the order they run
+     */
+    Command[] getSteps();
+}
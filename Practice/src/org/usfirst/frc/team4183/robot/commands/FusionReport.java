@@ -0,0 +1,181 @@
+/**
+ * FusionReport - how much time SequenceFuser saves on each autonomous
+ * routine, measured on the simulated drivetrain.
+ *
+ * Run on a desktop (the ant "fusion" target runs it):
+ *
+ *     java org.usfirst.frc.team4183.robot.commands.FusionReport
+ *
+ * Every routine in AutonomousRoutines that can be fused is run twice from
+ * rest at the origin, each time on a fresh simulated drive (with a gyro if
+ * RobotMap.HEADING_GYRO): once as written, a step at a time (the next step
+ * starting in the same cycle the last one finished, as a CommandGroup
+ * does), and once fused into PathCommands, a path at a time the same way.
+ * Commands are called directly at a virtual 20 ms period, the same as
+ * AutonomousRehearsal, so no Scheduler is needed.
+ *
+ * For each routine it prints the time each took to finish, how long the
+ * profiles alone take (one after the other, and blended) and the time
+ * blending saves, and how far apart the two runs ended up. Both close on
+ * the fused heading at every corner, so they should end within the
+ * routine's tolerances of each other; the blended path only arcs a little
+ * through the corners.
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.sim.DrivetrainPhysics;
+import org.usfirst.frc.team4183.robot.sim.SimulatedClock;
+import org.usfirst.frc.team4183.robot.sim.SimulatedHardware;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+
+import edu.wpi.first.wpilibj.HLUsageReporting;
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * The FusionReport class definition
+ */
+public class FusionReport
+{
+    public static final double PERIOD_sec = 0.020;     // Virtual, same as IterativeRobot
+    public static final int MAX_CYCLES = 3000;         // 60 virtual seconds
+
+    private final SimulatedClock clock;
+
+    /**
+     * Run - one routine run to the end on its own simulated drive
+     */
+    private static final class Run
+    {
+        final SimulatedHardware rig = new SimulatedHardware();
+        final DriveSubsystem drive;
+        final DrivetrainPhysics physics;
+        int cycles = 0;
+        boolean finished = false;
+
+        Run()
+        {
+            drive = new DriveSubsystem(rig.createMotorController(RobotMap.leftMotor0),
+                                       rig.createMotorController(RobotMap.leftMotor1),
+                                       rig.createMotorController(RobotMap.rightMotor0),
+                                       rig.createMotorController(RobotMap.rightMotor1),
+                                       RobotMap.HEADING_GYRO ? rig.createGyro() : null);
+            physics = DrivetrainPhysics.create(rig);
+        }
+
+        double getTime_sec()
+        {
+            return cycles * PERIOD_sec;
+        }
+    }
+
+    private FusionReport(SimulatedClock aClock)
+    {
+        clock = aClock;
+    }
+
+    public static void main(String[] args)
+    {
+        // This MUST happen before anything touches RobotMap
+        System.setProperty(RobotMap.SIMULATION_PROPERTY, "true");
+
+        SimulatedClock clock = new SimulatedClock();
+        clock.install();
+        HLUsageReporting.SetImplementation(new HLUsageReporting.Null());
+
+        new FusionReport(clock).report();
+    }
+
+    private void report()
+    {
+        System.out.printf("%-22s %5s %11s %9s %15s %9s %6s %22s%n",
+                          "routine", "steps", "sequence_s", "fused_s",
+                          "profiles_s", "saved_s", "saved", "fused ends off by");
+        for (int i = 0; i < AutonomousRoutines.getCount(); ++i)
+        {
+            String name = AutonomousRoutines.getName(i);
+            AutonomousFactory factory = AutonomousRoutines.getSequenceFactory(i);
+
+            Run sequence = new Run();
+            Command routine = factory.create(sequence.drive);
+            if (SequenceFuser.fuse(routine, sequence.drive) == routine)
+            {
+                System.out.printf("%-22s  (not a sequence of moves and turns)%n", name);
+                continue;
+            }
+            Command[] steps = ((CommandSequence) routine).getSteps();
+            run(sequence, steps);
+
+            Run fused = new Run();
+            Command fusedRoutine = SequenceFuser.fuse(factory.create(fused.drive), fused.drive);
+            Command[] paths = (fusedRoutine instanceof CommandSequence) ? ((CommandSequence) fusedRoutine).getSteps()
+                                                                        : new Command[] { fusedRoutine };
+            run(fused, paths);
+
+            double unblended_sec = 0.0;
+            double blended_sec = 0.0;
+            for (Command path : paths)
+            {
+                unblended_sec += ((PathCommand) path).getPath().getUnblendedDuration_sec();
+                blended_sec += ((PathCommand) path).getPath().getDuration_sec();
+            }
+            double saved_sec = unblended_sec - blended_sec;
+            double heading_deg = fused.physics.getHeading_deg() - sequence.physics.getHeading_deg();
+            System.out.printf("%-22s %5d %10.2f%s %8.2f%s %6.2f -> %5.2f %9.2f %5.0f%% %6.3f m %6.1f deg%n",
+                              name,
+                              steps.length,
+                              sequence.getTime_sec(), sequence.finished ? " " : "*",
+                              fused.getTime_sec(), fused.finished ? " " : "*",
+                              unblended_sec,
+                              blended_sec,
+                              saved_sec,
+                              100.0 * saved_sec / unblended_sec,
+                              Math.hypot(fused.physics.getX_m() - sequence.physics.getX_m(),
+                                         fused.physics.getY_m() - sequence.physics.getY_m()),
+                              heading_deg);
+        }
+        System.out.printf("* did not finish in %d cycles%n", MAX_CYCLES);
+    }
+
+    /**
+     * run - the steps in order, until the last finishes or MAX_CYCLES
+     */
+    private void run(Run aRun, Command[] someSteps)
+    {
+        int step = 0;
+        boolean initialized = false;
+        while ((step < someSteps.length) && (aRun.cycles < MAX_CYCLES))
+        {
+            aRun.drive.updateState();
+
+            // A finished step hands over to the next in the same cycle
+            boolean finished = true;
+            while (finished && (step < someSteps.length))
+            {
+                RehearsableCommand command = (RehearsableCommand) someSteps[step];
+                if ( ! initialized)
+                {
+                    command.initialize();
+                    initialized = true;
+                }
+                command.execute();
+                finished = command.isFinished();
+                if (finished)
+                {
+                    command.end();
+                    initialized = false;
+                    ++step;
+                }
+            }
+
+            aRun.rig.step(PERIOD_sec);
+            clock.advance(PERIOD_sec);
+            ++aRun.cycles;
+        }
+        aRun.finished = (step == someSteps.length);
+        if ( ! aRun.finished)
+        {
+            ((RehearsableCommand) someSteps[step]).end();
+        }
+    }
+}
@@ -1,55 +1,135 @@
 package org.usfirst.frc.team4183.robot.commands;
 
 import org.usfirst.frc.team4183.robot.Robot;
-
-import edu.wpi.first.wpilibj.command.Command;
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+import org.usfirst.frc.team4183.robot.subsystems.DriveTriggers;
 
 
 /**
  *
  */
-public class MoveCommand extends Command 
+public class MoveCommand extends RehearsableCommand 
 {
+    private final DriveSubsystem drive;
     private double meters;
     private double tolerance_m;
+    
+    // Where each side is going, absolute (see initialize)
+    private double leftTarget_m;
+    private double rightTarget_m;
+    
+    // Fires when we get there (see DriveTriggers); armed while running
+    private int trigger = DriveTriggers.NO_TRIGGER;
+    
     public MoveCommand(double aMeters, double aTolerance_m) 
     {
+        this(Robot.driveSubsystem, aMeters, aTolerance_m);
+    }
+    
+    /**
+     * Constructor - for running on a drive other than the robot's (e.g.,
+     * a simulated one when rehearsing autonomous)
+     */
+    public MoveCommand(DriveSubsystem aDrive, double aMeters, double aTolerance_m) 
+    {
+        drive = aDrive;
         meters = aMeters;    // The simple way to remember between cycles
         tolerance_m = aTolerance_m;
         
         // Use requires() here to declare subsystem dependencies
-        requires(Robot.driveSubsystem);
+        requires(drive);
+    }
+
+    /**
+     * getMeters returns how far this moves (see SequenceFuser)
+     */
+    public double getMeters()
+    {
+        return meters;
+    }
+    
+    public double getTolerance_m()
+    {
+        return tolerance_m;
     }
 
     // Called just before this Command runs the first time
     protected void initialize() 
     {
+        if (RobotMap.DRIVE_USE_MOTION_PROFILES)
+        {
+            // The profile is generated once here and fed to the Talons
+            // as they use it (see execute)
+            drive.startMoveProfile(meters);
+            arm();
+            return;
+        }
+        
+        // The targets are absolute, from where the wheels are now, so the
+        // move is from here even if the drive was already holding a
+        // position when we started (e.g., at the end of a turn)
+        leftTarget_m = drive.getLeftAbsolute_m() + meters;
+        rightTarget_m = drive.getRightAbsolute_m() + meters;
+        
         // Initialization and execution of the position maintenance
         // is the same function call. The first call will change
         // the subsystem mode internally, but position maintenance
         // must be called repeatedly (execute) to hold the position
         // with force
-        Robot.driveSubsystem.maintainPosition(meters);
-
+        drive.maintainAbsolutePosition(leftTarget_m, rightTarget_m);
+        arm();
+    }
+    
+    private void arm()
+    {
+        // The drive checks for us once per snapshot, after the profile we
+        // just started (if any) is done
+        drive.getTriggers().disarm(trigger);
+        if (RobotMap.DRIVE_USE_MOTION_PROFILES)
+        {
+            trigger = drive.getTriggers().armPosition(meters,
+                                                      tolerance_m,
+                                                      RobotMap.DRIVE_SETTLE_sec,
+                                                      true);
+        }
+        else
+        {
+            trigger = drive.getTriggers().armAbsolute(leftTarget_m,
+                                                      rightTarget_m,
+                                                      tolerance_m,
+                                                      RobotMap.DRIVE_SETTLE_sec,
+                                                      false);
+        }
     }
 
     // Called repeatedly when this Command is scheduled to run
     protected void execute() 
     {
-        Robot.driveSubsystem.maintainPosition(meters);
+        if (RobotMap.DRIVE_USE_MOTION_PROFILES)
+        {
+            drive.maintainProfile();
+        }
+        else
+        {
+            drive.maintainAbsolutePosition(leftTarget_m, rightTarget_m);
+        }
     }
 
     // Make this return true when this Command no longer needs to run execute()
     protected boolean isFinished() 
     {
-        // Return true when motors reached the desired distance
-        return Robot.driveSubsystem.inPosition(meters, tolerance_m);
+        // Return true when motors reached the desired distance (and
+        // stayed there)
+        return drive.getTriggers().hasFired(trigger);
     }
 
     // Called once after isFinished returns true
     protected void end() 
     {
-        Robot.driveSubsystem.stop();
+        drive.stop();
+        drive.getTriggers().disarm(trigger);
+        trigger = DriveTriggers.NO_TRIGGER;
     }
 
     // Called when another command which requires one or more of the same
@@ -0,0 +1,135 @@
+/**
+ * PathCommand - drives a sequence of moves and turns as one blended motion
+ * profile (see motion.DrivePath) instead of stopping after each; what
+ * SequenceFuser makes of a group of MoveCommands and TurnCommands.
+ *
+ * It finishes the way the sequence's last step would have: after a move,
+ * once both sides have settled on where the path ends; after a turn, once
+ * the fused heading has settled on the sum of all the turns (held as
+ * TurnCommand does, so whatever the wheels skidded is made up at the end).
+ * Any corners in between would be turned on the encoders alone, so
+ * SequenceFuser ends a path at every turn.
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.motion.DrivePath;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+import org.usfirst.frc.team4183.robot.subsystems.DriveTriggers;
+
+/**
+ * The PathCommand class definition
+ */
+public class PathCommand extends RehearsableCommand
+{
+    private final DriveSubsystem drive;
+    private final DrivePath path;
+    private final double turn_deg;
+    private final boolean endsWithTurn;
+    private final double tolerance;
+
+    private double targetHeading_deg;
+    private boolean profileDone;
+
+    // Fires when the path is done (see DriveTriggers); armed while running
+    private int trigger = DriveTriggers.NO_TRIGGER;
+
+    /**
+     * Constructor
+     *
+     * @param aName - what to call this (e.g., the group it replaces)
+     * @param aDrive - the drive to run the path on
+     * @param aPath - the blended steps
+     * @param aTurn_deg - the sum of the steps' turns, counter-clockwise
+     *        positive
+     * @param anEndsWithTurn - true if the last step is a turn
+     * @param aTolerance - the last step's tolerance (meters or degrees)
+     */
+    public PathCommand(String aName,
+                       DriveSubsystem aDrive,
+                       DrivePath aPath,
+                       double aTurn_deg,
+                       boolean anEndsWithTurn,
+                       double aTolerance)
+    {
+        super(aName);
+        drive = aDrive;
+        path = aPath;
+        turn_deg = aTurn_deg;
+        endsWithTurn = anEndsWithTurn;
+        tolerance = aTolerance;
+
+        // Use requires() here to declare subsystem dependencies
+        requires(drive);
+    }
+
+    public DrivePath getPath()
+    {
+        return path;
+    }
+
+    // Called just before this Command runs the first time
+    protected void initialize()
+    {
+        targetHeading_deg = drive.getHeading_deg() + turn_deg;
+        profileDone = false;
+        drive.startPath(path);
+
+        drive.getTriggers().disarm(trigger);
+        if (endsWithTurn)
+        {
+            trigger = drive.getTriggers().armHeading(targetHeading_deg,
+                                                     tolerance,
+                                                     RobotMap.DRIVE_SETTLE_sec,
+                                                     true);
+        }
+        else
+        {
+            trigger = drive.getTriggers().armSides(path.getFinalLeft_rot() / RobotMap.ENCODER_ROT_PER_METER,
+                                                   path.getFinalRight_rot() / RobotMap.ENCODER_ROT_PER_METER,
+                                                   tolerance,
+                                                   RobotMap.DRIVE_SETTLE_sec,
+                                                   true);
+        }
+    }
+
+    // Called repeatedly when this Command is scheduled to run
+    protected void execute()
+    {
+        if ( ! profileDone)
+        {
+            profileDone = drive.isProfileComplete();
+        }
+
+        if (endsWithTurn && profileDone)
+        {
+            drive.maintainHeading(targetHeading_deg);
+        }
+        else
+        {
+            // Once done the Talons hold the last point
+            drive.maintainProfile();
+        }
+    }
+
+    // Make this return true when this Command no longer needs to run execute()
+    protected boolean isFinished()
+    {
+        return drive.getTriggers().hasFired(trigger);
+    }
+
+    // Called once after isFinished returns true
+    protected void end()
+    {
+        drive.stop();
+        drive.getTriggers().disarm(trigger);
+        trigger = DriveTriggers.NO_TRIGGER;
+    }
+
+    // Called when another command which requires one or more of the same
+    // subsystems is scheduled to run
+    protected void interrupted()
+    {
+        end();  // Just call end unless there is some special case at an interrupt boundary
+    }
+}
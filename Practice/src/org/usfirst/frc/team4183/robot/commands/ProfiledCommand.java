@@ -0,0 +1,210 @@
+/**
+ * ProfiledCommand - runs another command, timing each of its lifecycle
+ * functions (see CommandProfiler, which makes these).
+ *
+ * The wrapper requires the same subsystems and has the same name as the
+ * command it runs, so the Scheduler and the dashboard treat it exactly as
+ * they would the command. For each of initialize, execute, isFinished, end
+ * and interrupted it counts the calls and keeps the total and the longest
+ * time spent inside; it also keeps how long the command took from
+ * initialize to end (or interrupted), i.e. the time to finish.
+ *
+ * Timing costs two System.nanoTime() per call; nothing is allocated.
+ * Commands run on the main thread only, so nothing here is synchronized.
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import edu.wpi.first.wpilibj.command.Subsystem;
+
+/**
+ * The ProfiledCommand class definition
+ */
+public class ProfiledCommand extends RehearsableCommand
+{
+    // The lifecycle functions, as indexes into the statistics
+    public static final int INITIALIZE = 0;
+    public static final int EXECUTE = 1;
+    public static final int IS_FINISHED = 2;
+    public static final int END = 3;
+    public static final int INTERRUPTED = 4;
+    public static final int FUNCTIONS = 5;
+
+    private static final String[] functionNames = { "initialize", "execute", "isFinished", "end", "interrupted" };
+
+    public enum Outcome { NotRun, Running, Finished, Interrupted }
+
+    private final RehearsableCommand command;
+    private final String label;
+
+    private final long[] calls = new long[FUNCTIONS];
+    private final long[] total_ns = new long[FUNCTIONS];
+    private final long[] max_ns = new long[FUNCTIONS];
+
+    private long start_ns = 0;
+    private long finish_ns = 0;
+    private int runs = 0;
+    private Outcome outcome = Outcome.NotRun;
+
+    /**
+     * Constructor
+     *
+     * @param aCommand - the command to run
+     * @param aLabel - what to call this instance in the profile (e.g.,
+     *        "MoveCommand#3")
+     */
+    ProfiledCommand(RehearsableCommand aCommand, String aLabel)
+    {
+        super(aCommand.getName());
+        command = aCommand;
+        label = aLabel;
+        for (Subsystem subsystem : aCommand.getRequired())
+        {
+            requires(subsystem);
+        }
+    }
+
+    public static String getFunctionName(int aFunction)
+    {
+        return functionNames[aFunction];
+    }
+
+    /**
+     * getCommand returns the command being run
+     */
+    public RehearsableCommand getCommand()
+    {
+        return command;
+    }
+
+    public String getLabel()
+    {
+        return label;
+    }
+
+    protected void initialize()
+    {
+        long begin_ns = System.nanoTime();
+        start_ns = begin_ns;
+        ++runs;
+        outcome = Outcome.Running;
+        command.initialize();
+        record(INITIALIZE, begin_ns);
+    }
+
+    protected void execute()
+    {
+        long begin_ns = System.nanoTime();
+        command.execute();
+        record(EXECUTE, begin_ns);
+    }
+
+    protected boolean isFinished()
+    {
+        long begin_ns = System.nanoTime();
+        boolean finished = command.isFinished();
+        record(IS_FINISHED, begin_ns);
+        return finished;
+    }
+
+    protected void end()
+    {
+        long begin_ns = System.nanoTime();
+        command.end();
+        finish_ns = record(END, begin_ns) - start_ns;
+        outcome = Outcome.Finished;
+    }
+
+    protected void interrupted()
+    {
+        long begin_ns = System.nanoTime();
+        command.interrupted();
+        finish_ns = record(INTERRUPTED, begin_ns) - start_ns;
+        outcome = Outcome.Interrupted;
+    }
+
+    /**
+     * record - count a call that began at the specified time
+     *
+     * @return the time it ended
+     */
+    private long record(int aFunction, long aBegin_ns)
+    {
+        long end_ns = System.nanoTime();
+        long elapsed_ns = end_ns - aBegin_ns;
+        ++calls[aFunction];
+        total_ns[aFunction] += elapsed_ns;
+        if (elapsed_ns > max_ns[aFunction])
+        {
+            max_ns[aFunction] = elapsed_ns;
+        }
+        CommandProfiler.commandTime(elapsed_ns);
+        return end_ns;
+    }
+
+    public long getCalls(int aFunction)
+    {
+        return calls[aFunction];
+    }
+
+    public double getTotal_ms(int aFunction)
+    {
+        return total_ns[aFunction] / 1.0e6;
+    }
+
+    public double getMax_ms(int aFunction)
+    {
+        return max_ns[aFunction] / 1.0e6;
+    }
+
+    /**
+     * getTotal_ms returns the time spent in all of the functions
+     */
+    public double getTotal_ms()
+    {
+        long sum_ns = 0;
+        for (int i = 0; i < FUNCTIONS; ++i)
+        {
+            sum_ns += total_ns[i];
+        }
+        return sum_ns / 1.0e6;
+    }
+
+    /**
+     * getMax_ms returns the longest single call of any function
+     */
+    public double getMax_ms()
+    {
+        long longest_ns = 0;
+        for (int i = 0; i < FUNCTIONS; ++i)
+        {
+            longest_ns = Math.max(longest_ns, max_ns[i]);
+        }
+        return longest_ns / 1.0e6;
+    }
+
+    /**
+     * getFinish_ms returns the time from initialize to end or interrupted
+     * of the latest run, or how long it has been running so far
+     */
+    public double getFinish_ms()
+    {
+        if (Outcome.Running == outcome)
+        {
+            return (System.nanoTime() - start_ns) / 1.0e6;
+        }
+        return finish_ns / 1.0e6;
+    }
+
+    /**
+     * getRuns returns how many times the command has been initialized
+     */
+    public int getRuns()
+    {
+        return runs;
+    }
+
+    public Outcome getOutcome()
+    {
+        return outcome;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * RehearsableCommand - a command that can be stepped through without the
+ * Scheduler (see AutonomousRehearsal).
+ *
+ * The Command lifecycle functions are protected in the WPILib package, so
+ * nothing outside a command can call them. Declaring them again here, in
+ * our own package, lets the rehearsal (and ProfiledCommand) call them on
+ * any command that extends this class; the commands themselves are written
+ * exactly as before.
+ *
+ * The subsystems a command requires are remembered for the same reason
+ * (WPILib keeps them to itself), so a command wrapping this one can
+ * require them too.
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.command.Command;
+import edu.wpi.first.wpilibj.command.Subsystem;
+
+/**
+ * The RehearsableCommand class definition
+ */
+public abstract class RehearsableCommand extends Command
+{
+    private Subsystem[] required = new Subsystem[0];
+
+    public RehearsableCommand()
+    {
+        super();
+    }
+
+    public RehearsableCommand(String aName)
+    {
+        super(aName);
+    }
+
+    protected synchronized void requires(Subsystem aSubsystem)
+    {
+        super.requires(aSubsystem);
+        required = Arrays.copyOf(required, required.length + 1);
+        required[required.length - 1] = aSubsystem;
+    }
+
+    /**
+     * getRequired returns the subsystems passed to requires()
+     */
+    synchronized Subsystem[] getRequired()
+    {
+        return required.clone();
+    }
+
+    protected abstract void initialize();
+
+    protected abstract void execute();
+
+    protected abstract boolean isFinished();
+
+    protected abstract void end();
+
+    protected abstract void interrupted();
+}
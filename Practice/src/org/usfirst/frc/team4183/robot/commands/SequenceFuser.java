@@ -0,0 +1,212 @@
+/**
+ * SequenceFuser - turns a group of MoveCommands and TurnCommands into
+ * PathCommands that drive them as blended profiles.
+ *
+ * Run as a group, each step ends by stopping the drive and the next starts
+ * from rest, marking a new origin and loading a new profile; the robot
+ * stops dead at every step. Fused, the steps up to and including each turn
+ * run back to back as one path, each starting as the last slows down (see
+ * motion.DrivePath), and the path ends the way that turn would have: held
+ * until the fused heading has settled on the target. So every corner still
+ * closes on the fused heading, as the steps do, and the wheels' skid in a
+ * turn is not carried into the rest of the routine; what is saved is the
+ * stop between each move and the turn after it.
+ *
+ * Only CommandSequences of MoveCommands and TurnCommands (profiled or not)
+ * on the same drive, with at least one move before a turn or two moves in
+ * a row to blend, are fused, and only when the drive uses motion
+ * profiles; anything else is returned as it was. With
+ * RobotMap.DRIVE_FUSE_SEQUENCES the autonomous chooser fuses every routine
+ * it can (see AutonomousRoutines); FusionReport shows what that saves.
+ */
+package org.usfirst.frc.team4183.robot.commands;
+
+import java.util.Arrays;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.motion.DrivePath;
+import org.usfirst.frc.team4183.robot.motion.DriveTrajectories;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.command.Command;
+import edu.wpi.first.wpilibj.command.CommandGroup;
+import edu.wpi.first.wpilibj.command.Subsystem;
+
+/**
+ * The SequenceFuser class definition
+ */
+public class SequenceFuser
+{
+    private SequenceFuser()
+    {
+        // Static interface only
+    }
+
+    /**
+     * fuse - the routine as PathCommands (one, or a PathSequence of one
+     * per corner) if it can be (see above), otherwise the routine itself
+     *
+     * @param aRoutine - the command to fuse
+     * @param aDrive - the drive its steps run on
+     */
+    public static Command fuse(Command aRoutine, DriveSubsystem aDrive)
+    {
+        if (( ! RobotMap.DRIVE_USE_MOTION_PROFILES) || ! (aRoutine instanceof CommandSequence))
+        {
+            return aRoutine;
+        }
+
+        Command[] steps = ((CommandSequence) aRoutine).getSteps();
+
+        int[] kinds = new int[steps.length];
+        double[] targets = new double[steps.length];
+        double[] tolerances = new double[steps.length];
+        for (int i = 0; i < steps.length; ++i)
+        {
+            Command step = steps[i];
+            if (step instanceof ProfiledCommand)
+            {
+                step = ((ProfiledCommand) step).getCommand();
+            }
+            if (( ! (step instanceof RehearsableCommand)) || ! requiresOnly((RehearsableCommand) step, aDrive))
+            {
+                return aRoutine;
+            }
+
+            if (step instanceof MoveCommand)
+            {
+                MoveCommand move = (MoveCommand) step;
+                kinds[i] = DriveTrajectories.MOVE;
+                targets[i] = move.getMeters();
+                tolerances[i] = move.getTolerance_m();
+            }
+            else if (step instanceof TurnCommand)
+            {
+                TurnCommand turn = (TurnCommand) step;
+                kinds[i] = DriveTrajectories.TURN;
+                targets[i] = turn.getOrientation_deg();
+                tolerances[i] = turn.getTolerance_deg();
+            }
+            else
+            {
+                return aRoutine;
+            }
+        }
+
+        // One path up to and including each turn, and one for any moves
+        // after the last
+        Command[] paths = new Command[steps.length];
+        int count = 0;
+        int first = 0;
+        boolean blended = false;
+        for (int i = 0; i < steps.length; ++i)
+        {
+            if ((DriveTrajectories.TURN == kinds[i]) || (i == steps.length - 1))
+            {
+                paths[count] = fuse(aRoutine.getName(), aDrive, kinds, targets, tolerances, first, i + 1);
+                if (null == paths[count])
+                {
+                    return aRoutine;
+                }
+                blended |= (i > first);
+                ++count;
+                first = i + 1;
+            }
+        }
+        if ( ! blended)
+        {
+            return aRoutine;
+        }
+        if (1 == count)
+        {
+            return paths[0];
+        }
+        return new PathSequence(aRoutine.getName(), Arrays.copyOf(paths, count));
+    }
+
+    /**
+     * fuse - one PathCommand for the steps from aFirst up to (not
+     * including) anEnd, or null if they do not fit
+     */
+    private static PathCommand fuse(String aName,
+                                    DriveSubsystem aDrive,
+                                    int[] someKinds,
+                                    double[] someTargets,
+                                    double[] someTolerances,
+                                    int aFirst,
+                                    int anEnd)
+    {
+        double turn_deg = 0.0;
+        for (int i = aFirst; i < anEnd; ++i)
+        {
+            if (DriveTrajectories.TURN == someKinds[i])
+            {
+                turn_deg += someTargets[i];
+            }
+        }
+
+        DrivePath path = new DrivePath(RobotMap.PROFILE_MAX_POINTS, RobotMap.PROFILE_POINT_DURATION_ms);
+        try
+        {
+            path.blend(Arrays.copyOfRange(someKinds, aFirst, anEnd), Arrays.copyOfRange(someTargets, aFirst, anEnd));
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Too long to fit; the steps still work one at a time
+            DriverStation.reportError("Not fusing " + aName + ": " + e.getMessage(), false);
+            return null;
+        }
+
+        return new PathCommand(aName,
+                               aDrive,
+                               path,
+                               turn_deg,
+                               DriveTrajectories.TURN == someKinds[anEnd - 1],
+                               someTolerances[anEnd - 1]);
+    }
+
+    /**
+     * fuse - a factory that builds the routine and fuses it (see above)
+     */
+    public static AutonomousFactory fuse(final AutonomousFactory aFactory)
+    {
+        return new AutonomousFactory()
+        {
+            public Command create(DriveSubsystem aDrive)
+            {
+                return fuse(aFactory.create(aDrive), aDrive);
+            }
+        };
+    }
+
+    private static boolean requiresOnly(RehearsableCommand aStep, DriveSubsystem aDrive)
+    {
+        Subsystem[] required = aStep.getRequired();
+        return (1 == required.length) && (required[0] == aDrive);
+    }
+
+    /**
+     * PathSequence - the paths of a routine that turns more than once, one
+     * after the other
+     */
+    public static class PathSequence extends CommandGroup implements CommandSequence
+    {
+        private final Command[] paths;
+
+        PathSequence(String aName, Command[] somePaths)
+        {
+            super(aName);
+            paths = somePaths;
+            for (Command path : paths)
+            {
+                addSequential(path);
+            }
+        }
+
+        public Command[] getSteps()
+        {
+            return paths.clone();
+        }
+    }
+}
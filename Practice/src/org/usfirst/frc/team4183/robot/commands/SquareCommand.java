@@ -1,22 +1,40 @@
 package org.usfirst.frc.team4183.robot.commands;
 
+import edu.wpi.first.wpilibj.command.Command;
 import edu.wpi.first.wpilibj.command.CommandGroup;
 
+import org.usfirst.frc.team4183.robot.Robot;
 import org.usfirst.frc.team4183.robot.RobotMap;
 import org.usfirst.frc.team4183.robot.commands.MoveCommand;
 import org.usfirst.frc.team4183.robot.commands.TurnCommand;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
 
 /**
  *
  */
-public class SquareCommand extends CommandGroup {
+public class SquareCommand extends CommandGroup implements CommandSequence {
+    
+    private final Command[] steps = new Command[8];
     
     public  SquareCommand() 
+    {
+        this(Robot.driveSubsystem);
+    }
+    
+    public  SquareCommand(DriveSubsystem aDrive) 
     {
         for (int i = 0; i < 4; ++i)
         {
-            addSequential(new MoveCommand(RobotMap.FORWARD * 2.0, 0.05));
-            addSequential(new TurnCommand(RobotMap.RIGHT * 90.0, 1.0));
+            // Each step is profiled on its own (when profiling is on)
+            steps[2 * i]     = CommandProfiler.profile(new MoveCommand(aDrive, RobotMap.FORWARD * 2.0, 0.05));
+            steps[2 * i + 1] = CommandProfiler.profile(new TurnCommand(aDrive, RobotMap.RIGHT * 90.0, 1.0));
+            addSequential(steps[2 * i]);
+            addSequential(steps[2 * i + 1]);
         }
     }
+    
+    public Command[] getSteps()
+    {
+        return steps.clone();
+    }
 }
@@ -5,16 +5,29 @@ import edu.wpi.first.wpilibj.command.Command;
 
 import org.usfirst.frc.team4183.robot.Robot;
 import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
 
 /**
  *
  */
-public class TestDriveCommand extends Command
+public class TestDriveCommand extends RehearsableCommand
 {
+    private final DriveSubsystem drive;
+    
     public TestDriveCommand()
     {
+        this(Robot.driveSubsystem);
+    }
+    
+    /**
+     * Constructor - for running on a drive other than the robot's (e.g.,
+     * a simulated one when rehearsing autonomous)
+     */
+    public TestDriveCommand(DriveSubsystem aDrive)
+    {
+        drive = aDrive;
         // Use requires() here to declare subsystem dependencies
-        requires(Robot.driveSubsystem);
+        requires(drive);
     }
 
     // Called just before this Command runs the first time
@@ -22,15 +35,15 @@ public class TestDriveCommand extends Command
     {
         // When this command starts we want the brake mode enabled on
         // the drive system to ensure that stops are as quick as possible
-        Robot.driveSubsystem.configureBrakeMode(true);
+        drive.configureBrakeMode(true);
     }
 
     // Called repeatedly when this Command is scheduled to run
     protected void execute()
     {
         // Just drive slowly in a circle until we are told otherwise
-        Robot.driveSubsystem.autoDrive(RobotMap.FORWARD * 0.2, 
-                                       RobotMap.LEFT * 1.5);
+        drive.autoDrive(RobotMap.FORWARD * 0.2, 
+                        RobotMap.LEFT * 1.5);
     }
 
     // Make this return true when this Command no longer needs to run execute()
@@ -42,7 +55,7 @@ public class TestDriveCommand extends Command
     // Called once after isFinished returns true
     protected void end()
     {
-        Robot.driveSubsystem.stop();
+        drive.stop();
     }
 
     // Called when another command which requires one or more of the same
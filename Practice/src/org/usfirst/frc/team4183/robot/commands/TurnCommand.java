@@ -1,53 +1,132 @@
 package org.usfirst.frc.team4183.robot.commands;
 
 import org.usfirst.frc.team4183.robot.Robot;
-
-import edu.wpi.first.wpilibj.command.Command;
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+import org.usfirst.frc.team4183.robot.subsystems.DriveTriggers;
 
 /**
  *
  */
-public class TurnCommand extends Command {
+public class TurnCommand extends RehearsableCommand {
 
+    private final DriveSubsystem drive;
     private double orientation_deg;
     private double tolerance_deg;
     
+    // The fused heading to end on (see DriveSubsystem.maintainHeading)
+    private double targetHeading_deg;
+    
+    // Once the profile is done the wheels leave profile mode, so the
+    // streamer no longer says so; remember it
+    private boolean profileDone;
+    
+    // Fires when we face the target heading (see DriveTriggers); armed
+    // while running
+    private int trigger = DriveTriggers.NO_TRIGGER;
+    
     public TurnCommand(double anOrientation_deg, double aTolerance_deg) 
     {
+        this(Robot.driveSubsystem, anOrientation_deg, aTolerance_deg);
+    }
+    
+    /**
+     * Constructor - for running on a drive other than the robot's (e.g.,
+     * a simulated one when rehearsing autonomous)
+     */
+    public TurnCommand(DriveSubsystem aDrive, double anOrientation_deg, double aTolerance_deg) 
+    {
+        drive = aDrive;
         orientation_deg = anOrientation_deg;
         tolerance_deg = aTolerance_deg;
         
         // Use requires() here to declare subsystem dependencies
-        requires(Robot.driveSubsystem);
+        requires(drive);
+    }
+
+    /**
+     * getOrientation_deg returns how far this turns, counter-clockwise
+     * positive (see SequenceFuser)
+     */
+    public double getOrientation_deg()
+    {
+        return orientation_deg;
+    }
+    
+    public double getTolerance_deg()
+    {
+        return tolerance_deg;
     }
 
     // Called just before this Command runs the first time
     protected void initialize() 
     {
-        // Initialization and execution of the orientation maintenance
+        // The wheels skid while turning, so the turn is finished against
+        // the fused heading rather than the wheel rotations
+        targetHeading_deg = drive.getHeading_deg() + orientation_deg;
+        profileDone = false;
+        
+        if (RobotMap.DRIVE_USE_MOTION_PROFILES)
+        {
+            // The profile is generated once here and fed to the Talons
+            // as they use it (see execute)
+            drive.startTurnProfile(orientation_deg);
+            arm();
+            return;
+        }
+        
+        // Initialization and execution of the heading maintenance
         // is the same function call. The first call will change
-        // the subsystem mode internally, but orientation maintenance
-        // must be called repeatedly (execute) to hold the orientation
+        // the subsystem mode internally, but heading maintenance
+        // must be called repeatedly (execute) to hold the heading
         // with force
-        Robot.driveSubsystem.maintainOrientation(orientation_deg);
+        drive.maintainHeading(targetHeading_deg);
+        arm();
+    }
+    
+    private void arm()
+    {
+        // The drive checks for us once per snapshot, after the profile we
+        // just started (if any) is done
+        drive.getTriggers().disarm(trigger);
+        trigger = drive.getTriggers().armHeading(targetHeading_deg,
+                                                 tolerance_deg,
+                                                 RobotMap.DRIVE_SETTLE_sec,
+                                                 RobotMap.DRIVE_USE_MOTION_PROFILES);
     }
 
     // Called repeatedly when this Command is scheduled to run
     protected void execute() 
     {
-        Robot.driveSubsystem.maintainOrientation(orientation_deg);
+        if (RobotMap.DRIVE_USE_MOTION_PROFILES && ( ! profileDone))
+        {
+            profileDone = drive.isProfileComplete();
+        }
+        
+        if (RobotMap.DRIVE_USE_MOTION_PROFILES && ( ! profileDone))
+        {
+            drive.maintainProfile();
+        }
+        else
+        {
+            // The profile covers most of the turn; whatever the wheels
+            // skidded is made up here
+            drive.maintainHeading(targetHeading_deg);
+        }
     }
 
     // Make this return true when this Command no longer needs to run execute()
     protected boolean isFinished() 
     {
-        return Robot.driveSubsystem.atOrientation(orientation_deg, tolerance_deg);
+        return drive.getTriggers().hasFired(trigger);
     }
 
     // Called once after isFinished returns true
     protected void end() 
     {
-        Robot.driveSubsystem.stop();
+        drive.stop();
+        drive.getTriggers().disarm(trigger);
+        trigger = DriveTriggers.NO_TRIGGER;
     }
 
     // Called when another command which requires one or more of the same
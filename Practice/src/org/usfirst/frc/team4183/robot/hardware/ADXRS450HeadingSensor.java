@@ -0,0 +1,37 @@
+/**
+ * ADXRS450HeadingSensor - the ADXRS450 gyro on the roboRIO's onboard SPI
+ * port (the FRC kit gyro board), presented through our HeadingSensor
+ * interface.
+ *
+ * The FPGA integrates the gyro's rate on its own at a high rate, so reading
+ * the angle is cheap and never misses a turn between our cycles. The
+ * WPILib constructor calibrates the gyro (about 5 seconds, during
+ * robotInit); the robot must not move meanwhile.
+ */
+package org.usfirst.frc.team4183.robot.hardware;
+
+import edu.wpi.first.wpilibj.ADXRS450_Gyro;
+
+/**
+ * The ADXRS450HeadingSensor class definition
+ */
+public class ADXRS450HeadingSensor implements HeadingSensor
+{
+    private final ADXRS450_Gyro gyro = new ADXRS450_Gyro();
+
+    public double getHeading_deg()
+    {
+        // WPILib gyros are clockwise positive
+        return -gyro.getAngle();
+    }
+
+    public double getRate_dps()
+    {
+        return -gyro.getRate();
+    }
+
+    public void reset()
+    {
+        gyro.reset();
+    }
+}
@@ -0,0 +1,358 @@
+/**
+ * CachingMotorController - remembers the configuration last written to a
+ * controller and only sends what actually changes.
+ *
+ * The drive reconfigures its controllers freely: every enablePositionMode
+ * (and so every maintainPosition that finds the mode wrong) stops, sets the
+ * brake mode, the control mode and four gains, on each Talon, whether or
+ * not any of them is different. Each of those is a frame on the CAN bus.
+ * Wrapped in this, the controller sees only the changes:
+ *
+ *     1. Configuration writes (control mode, brake mode, gains, encoder
+ *        codes) only record what is wanted
+ *     2. Just before anything that depends on the configuration (set,
+ *        setPosition, follow, the motion profile calls, and reading the
+ *        sensor, which depends on the encoder codes) or on flush(),
+ *        the wanted values that differ from what the controller was last
+ *        sent go out together, in the order above; a value changed and
+ *        changed back in between sends nothing
+ *
+ * The getters report the wanted configuration, so callers see what they
+ * asked for even before it is sent.
+ *
+ * Every configuration write asked for is counted, as is every one sent;
+ * the difference is the traffic saved. The totals over all controllers are
+ * published as "can/configRequested", "can/configSent" and
+ * "can/configSuppressed".
+ *
+ * A controller that browns out or is power cycled forgets its
+ * configuration without telling us, so everything is sent again at least
+ * every refresh period of robot time (see RobotMap.CAN_CONFIG_REFRESH_sec),
+ * or on invalidate(). Anything that resets the controller behind our back
+ * must call invalidate(); e.g., SimulatedHardware.reset puts its
+ * controllers back in PercentVbus, and a cache still believing in Position
+ * would never send the next mode change.
+ *
+ * The writes are synchronized, so the control loop thread and the main
+ * thread can both use the drive's controllers.
+ */
+package org.usfirst.frc.team4183.robot.hardware;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.usfirst.frc.team4183.robot.telemetry.Telemetry;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * The CachingMotorController class definition
+ */
+public class CachingMotorController implements MotorController
+{
+    // Configuration items
+    private static final int MODE = 0;
+    private static final int BRAKE = 1;
+    private static final int P = 2;
+    private static final int I = 3;
+    private static final int D = 4;
+    private static final int F = 5;
+    private static final int CODES = 6;
+    private static final int ITEMS = 7;
+
+    // Modes are kept by ordinal; values() copies the array every call
+    private static final ControlMode[] modes = ControlMode.values();
+
+    private static final AtomicLong totalRequested = new AtomicLong();
+    private static final AtomicLong totalSent = new AtomicLong();
+
+    private static final int requestedChannel = Telemetry.channel("can/configRequested");
+    private static final int sentChannel = Telemetry.channel("can/configSent");
+    private static final int suppressedChannel = Telemetry.channel("can/configSuppressed");
+
+    private final MotorController controller;
+    private final double refreshPeriod_sec;
+
+    // What is wanted, what the controller was last sent, and whether it has
+    // been sent at all (since the last refresh); modes and brake modes are
+    // kept as numbers like everything else
+    private final double[] wanted = new double[ITEMS];
+    private final double[] sent = new double[ITEMS];
+    private final boolean[] isWanted = new boolean[ITEMS];
+    private final boolean[] isSent = new boolean[ITEMS];
+    private boolean pending = false;
+    private double lastRefresh_sec;
+
+    private ControlMode mode;
+
+    private volatile long requested = 0;
+    private volatile long sentCount = 0;
+
+    /**
+     * Constructor
+     *
+     * @param aController - the controller to write to
+     * @param aRefreshPeriod_sec - send everything again at least this often
+     */
+    public CachingMotorController(MotorController aController, double aRefreshPeriod_sec)
+    {
+        controller = aController;
+        refreshPeriod_sec = aRefreshPeriod_sec;
+        mode = controller.getControlMode();
+        lastRefresh_sec = Timer.getFPGATimestamp();
+    }
+
+    /**
+     * getController provides the wrapped controller (writes made to it
+     * directly are not known here; call invalidate afterward)
+     */
+    public MotorController getController()
+    {
+        return controller;
+    }
+
+    public int getDeviceID()
+    {
+        return controller.getDeviceID();
+    }
+
+    public synchronized void changeControlMode(ControlMode aMode)
+    {
+        mode = aMode;
+        want(MODE, aMode.ordinal());
+    }
+
+    public synchronized ControlMode getControlMode()
+    {
+        return mode;
+    }
+
+    public synchronized void set(double aValue)
+    {
+        flush();
+        controller.set(aValue);
+    }
+
+    public double getSetpoint()
+    {
+        return controller.getSetpoint();
+    }
+
+    public synchronized void follow(MotorController aMaster)
+    {
+        flush();
+        controller.follow(aMaster);
+
+        // Follow sets the mode itself
+        mode = ControlMode.Follower;
+        wanted[MODE] = sent[MODE] = ControlMode.Follower.ordinal();
+        isWanted[MODE] = isSent[MODE] = true;
+    }
+
+    public synchronized void configEncoderCodesPerRev(int aCodesPerRev)
+    {
+        want(CODES, aCodesPerRev);
+    }
+
+    public synchronized SensorStatus isSensorPresent()
+    {
+        flush();
+        return controller.isSensorPresent();
+    }
+
+    public synchronized void setPosition(double aPosition_rot)
+    {
+        flush();
+        controller.setPosition(aPosition_rot);
+    }
+
+    public synchronized double getPosition()
+    {
+        flush();
+        return controller.getPosition();
+    }
+
+    public synchronized double getSpeed()
+    {
+        flush();
+        return controller.getSpeed();
+    }
+
+    public synchronized void setP(double aGain)
+    {
+        want(P, aGain);
+    }
+
+    public synchronized void setI(double aGain)
+    {
+        want(I, aGain);
+    }
+
+    public synchronized void setD(double aGain)
+    {
+        want(D, aGain);
+    }
+
+    public synchronized void setF(double aGain)
+    {
+        want(F, aGain);
+    }
+
+    public synchronized void enableBrakeMode(boolean aBrakeMode)
+    {
+        want(BRAKE, aBrakeMode ? 1.0 : 0.0);
+    }
+
+    public double getBusVoltage()
+    {
+        return controller.getBusVoltage();
+    }
+
+    public synchronized boolean pushMotionProfilePoint(double aPosition_rot, double aVelocity_rpm,
+                                                       int aDuration_ms, boolean isLast)
+    {
+        flush();
+        return controller.pushMotionProfilePoint(aPosition_rot, aVelocity_rpm, aDuration_ms, isLast);
+    }
+
+    public synchronized void processMotionProfileBuffer()
+    {
+        flush();
+        controller.processMotionProfileBuffer();
+    }
+
+    public synchronized void clearMotionProfileTrajectories()
+    {
+        flush();
+        controller.clearMotionProfileTrajectories();
+    }
+
+    public synchronized void clearMotionProfileHasUnderrun()
+    {
+        flush();
+        controller.clearMotionProfileHasUnderrun();
+    }
+
+    public void getMotionProfileStatus(MotionProfileStatus aStatus)
+    {
+        controller.getMotionProfileStatus(aStatus);
+    }
+
+    private void want(int anItem, double aValue)
+    {
+        wanted[anItem] = aValue;
+        isWanted[anItem] = true;
+        pending = true;
+        requested = requested + 1;
+        totalRequested.incrementAndGet();
+    }
+
+    /**
+     * flush - send whatever configuration differs from what the controller
+     * has; happens by itself before anything that depends on it
+     */
+    public synchronized void flush()
+    {
+        // Robot time, so the refresh happens in simulation too
+        double now_sec = Timer.getFPGATimestamp();
+        if (now_sec - lastRefresh_sec >= refreshPeriod_sec)
+        {
+            invalidate();
+            lastRefresh_sec = now_sec;
+        }
+        if ( ! pending)
+        {
+            return;
+        }
+        pending = false;
+
+        int count = 0;
+        for (int item = 0; item < ITEMS; ++item)
+        {
+            if (isWanted[item] && (( ! isSent[item]) || (sent[item] != wanted[item])))
+            {
+                send(item, wanted[item]);
+                sent[item] = wanted[item];
+                isSent[item] = true;
+                ++count;
+            }
+        }
+
+        sentCount = sentCount + count;
+        long total = totalSent.addAndGet(count);
+        long all = totalRequested.get();
+        Telemetry.put(requestedChannel, all);
+        Telemetry.put(sentChannel, total);
+        Telemetry.put(suppressedChannel, all - total);
+    }
+
+    private void send(int anItem, double aValue)
+    {
+        switch (anItem)
+        {
+        case MODE:
+            controller.changeControlMode(modes[(int) aValue]);
+            break;
+        case BRAKE:
+            controller.enableBrakeMode(aValue != 0.0);
+            break;
+        case P:
+            controller.setP(aValue);
+            break;
+        case I:
+            controller.setI(aValue);
+            break;
+        case D:
+            controller.setD(aValue);
+            break;
+        case F:
+            controller.setF(aValue);
+            break;
+        case CODES:
+            controller.configEncoderCodesPerRev((int) aValue);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * invalidate - forget what the controller was sent, so the next flush
+     * sends everything wanted (e.g., after the controller was reset)
+     */
+    public synchronized void invalidate()
+    {
+        for (int item = 0; item < ITEMS; ++item)
+        {
+            isSent[item] = false;
+            pending |= isWanted[item];
+        }
+    }
+
+    /**
+     * getRequestedCount returns the configuration writes asked of this
+     * controller
+     */
+    public long getRequestedCount()
+    {
+        return requested;
+    }
+
+    /**
+     * getSentCount returns the configuration writes that actually went to
+     * the controller; the rest were suppressed
+     */
+    public long getSentCount()
+    {
+        return sentCount;
+    }
+
+    public static long getTotalRequestedCount()
+    {
+        return totalRequested.get();
+    }
+
+    public static long getTotalSentCount()
+    {
+        return totalSent.get();
+    }
+}
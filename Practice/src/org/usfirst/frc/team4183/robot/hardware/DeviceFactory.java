@@ -0,0 +1,33 @@
+/**
+ * DeviceFactory - makes the devices MotorControllers and HeadingSensors
+ * hand out when RobotMap.SIMULATION is set.
+ *
+ * The robot code only knows this interface; the simulation implements it
+ * (sim.SimulatedHardware) and installs itself with
+ * MotorControllers.installSimulation before the subsystems are created, so
+ * nothing here depends on the simulation.
+ */
+package org.usfirst.frc.team4183.robot.hardware;
+
+/**
+ * The DeviceFactory interface definition
+ */
+public interface DeviceFactory
+{
+    /**
+     * createMotorController - create (or return the existing) controller
+     * at the specified CAN ID
+     */
+    MotorController createMotorController(int aDeviceID);
+
+    /**
+     * createHeadingSensor - create (or return the existing) gyro
+     */
+    HeadingSensor createHeadingSensor();
+
+    /**
+     * addCache - a configuration cache wrapping one of this factory's
+     * controllers, to be told whenever they forget their configuration
+     */
+    void addCache(CachingMotorController aCache);
+}
@@ -0,0 +1,39 @@
+/**
+ * HeadingSensor - something that measures how far the robot has turned
+ * (a gyro), independent of the wheels.
+ *
+ * The encoders only know how far each wheel rolled; when the robot turns
+ * the wheels skid sideways (scrub), so the heading worked out from them is
+ * off by however much they skidded. A gyro measures the turn of the frame
+ * itself, but drifts slowly. The DriveOdometry uses both (see
+ * subsystems.HeadingEstimator).
+ *
+ * As with MotorController this lets the same code use the real gyro
+ * (ADXRS450HeadingSensor) or a simulated one (sim.SimulatedGyro).
+ *
+ * Unlike the WPILib Gyro, which is clockwise positive, this is in robot
+ * terms: counter-clockwise positive, like the odometry.
+ */
+package org.usfirst.frc.team4183.robot.hardware;
+
+/**
+ * The HeadingSensor interface definition
+ */
+public interface HeadingSensor
+{
+    /**
+     * getHeading_deg returns how far the robot has turned since the last
+     * reset, counter-clockwise positive (not wrapped at 360)
+     */
+    double getHeading_deg();
+
+    /**
+     * getRate_dps returns the rate of turn, counter-clockwise positive
+     */
+    double getRate_dps();
+
+    /**
+     * reset - make the current heading zero
+     */
+    void reset();
+}
@@ -0,0 +1,36 @@
+/**
+ * HeadingSensors - the one place that decides whether we read the real gyro
+ * or a simulated one (same idea as MotorControllers, and from the same
+ * DeviceFactory).
+ */
+package org.usfirst.frc.team4183.robot.hardware;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+
+/**
+ * The HeadingSensors class definition
+ */
+public class HeadingSensors
+{
+    private HeadingSensors()
+    {
+        // Static interface only
+    }
+
+    /**
+     * create - return the robot's gyro, or null if RobotMap.HEADING_GYRO
+     * says there is none (the heading then comes from the encoders alone)
+     */
+    public static HeadingSensor create()
+    {
+        if ( ! RobotMap.HEADING_GYRO)
+        {
+            return null;
+        }
+        if (RobotMap.SIMULATION)
+        {
+            return MotorControllers.getSimulation().createHeadingSensor();
+        }
+        return new ADXRS450HeadingSensor();
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * MotionProfileStatus - what a controller reports about its motion profile
+ * buffers, copied into a holder owned by the caller (so polling the status
+ * every cycle allocates nothing).
+ *
+ * The Talon keeps two buffers: the "top" buffer in the roboRIO side API
+ * where we push points, and the "bottom" buffer in the Talon itself which
+ * it executes from. processMotionProfileBuffer() moves points from the top
+ * to the bottom.
+ */
+package org.usfirst.frc.team4183.robot.hardware;
+
+/**
+ * The MotionProfileStatus class definition
+ */
+public final class MotionProfileStatus
+{
+    public int topBufferRem;        // Room left in the top buffer
+    public int topBufferCnt;        // Points waiting in the top buffer
+    public int btmBufferCnt;        // Points waiting in the controller
+    public boolean hasUnderrun;     // Latched until cleared
+    public boolean isUnderrun;      // Currently starved
+    public boolean activePointValid;
+    public boolean activePointIsLast;
+    public double activePosition_rot;
+}
@@ -0,0 +1,132 @@
+/**
+ * MotorController - the parts of a smart motor controller that our
+ * subsystems actually use.
+ *
+ * The DriveSubsystem used to create com.ctre.CANTalon objects directly,
+ * which meant none of the drive logic could run anywhere but on the
+ * roboRIO (the CANTalon class needs the native CTRE library and a CAN bus).
+ * By describing what we need as an interface we can plug in either the real
+ * Talon SRX (TalonMotorController) or a pure Java model of one
+ * (sim.SimulatedMotorController) without the subsystem knowing the
+ * difference.
+ *
+ * The method names intentionally mirror the CANTalon API so the subsystem
+ * code reads the same as the vendor documentation.
+ */
+package org.usfirst.frc.team4183.robot.hardware;
+
+/**
+ * The MotorController interface definition
+ */
+public interface MotorController
+{
+    /**
+     * The control modes we use; the meaning of set() depends on the mode
+     *
+     *      PercentVbus - fraction of bus voltage, -1 to +1
+     *      Position    - encoder rotations
+     *      Speed       - encoder rotations per minute
+     *      Follower    - the device ID of the controller to follow
+     *      MotionProfile - MP_DISABLE, MP_ENABLE or MP_HOLD
+     */
+    enum ControlMode
+    {
+        PercentVbus,
+        Position,
+        Speed,
+        Follower,
+        MotionProfile
+    }
+
+    // set() values in MotionProfile mode
+    int MP_DISABLE = 0;     // Neutral output
+    int MP_ENABLE  = 1;     // Execute points from the buffer
+    int MP_HOLD    = 2;     // Hold the position of the active point
+
+    /**
+     * Whether the configured feedback sensor is attached
+     */
+    enum SensorStatus
+    {
+        Unknown,
+        Present,
+        NotPresent
+    }
+
+    int getDeviceID();
+
+    void changeControlMode(ControlMode aMode);
+
+    ControlMode getControlMode();
+
+    /**
+     * set the output or target; units depend on the control mode
+     */
+    void set(double aValue);
+
+    /**
+     * getSetpoint returns the last value passed to set(), without asking
+     * the device
+     */
+    double getSetpoint();
+
+    /**
+     * follow - convenience for putting this controller in Follower mode
+     * slaved to the specified master
+     */
+    void follow(MotorController aMaster);
+
+    /**
+     * configEncoderCodesPerRev - declare a quadrature encoder with the
+     * specified number of codes per revolution so position and speed are
+     * reported in rotations rather than pulses
+     */
+    void configEncoderCodesPerRev(int aCodesPerRev);
+
+    SensorStatus isSensorPresent();
+
+    /**
+     * setPosition - redefine the current sensor position (e.g., 0.0 to zero)
+     */
+    void setPosition(double aPosition_rot);
+
+    double getPosition();
+
+    double getSpeed();
+
+    void setP(double aGain);
+
+    void setI(double aGain);
+
+    void setD(double aGain);
+
+    void setF(double aGain);
+
+    void enableBrakeMode(boolean aBrakeMode);
+
+    double getBusVoltage();
+
+    /**
+     * pushMotionProfilePoint - add one point to the top buffer
+     *
+     * @param aPosition_rot - where to be at the end of this point
+     * @param aVelocity_rpm - how fast to be going (used as feed forward)
+     * @param aDuration_ms - how long this point lasts
+     * @param isLast - true for the final point; the controller holds it
+     *
+     * @return false if the top buffer is full
+     */
+    boolean pushMotionProfilePoint(double aPosition_rot, double aVelocity_rpm, int aDuration_ms, boolean isLast);
+
+    /**
+     * processMotionProfileBuffer - move one point from the top buffer into
+     * the controller
+     */
+    void processMotionProfileBuffer();
+
+    void clearMotionProfileTrajectories();
+
+    void clearMotionProfileHasUnderrun();
+
+    void getMotionProfileStatus(MotionProfileStatus aStatus);
+}
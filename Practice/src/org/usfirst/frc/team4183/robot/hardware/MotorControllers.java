@@ -0,0 +1,80 @@
+/**
+ * MotorControllers - the one place that decides whether we are talking to
+ * real Talon SRX controllers or to simulated ones.
+ *
+ * Subsystems ask for a controller by CAN ID and get back a MotorController;
+ * when RobotMap.SIMULATION is set (e.g., java -Dteam4183.simulation=true ...)
+ * the controllers come from the DeviceFactory the simulation installed
+ * (see installSimulation) so the subsystem can run on any desktop JVM. Either way they can be wrapped in a
+ * CachingMotorController, so the simulation sends (and counts) the same
+ * configuration traffic the robot would.
+ */
+package org.usfirst.frc.team4183.robot.hardware;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+
+/**
+ * The MotorControllers class definition
+ */
+public class MotorControllers
+{
+    private static volatile DeviceFactory simulation = null;
+
+    private MotorControllers()
+    {
+        // Static interface only
+    }
+
+    /**
+     * installSimulation - where the devices come from when
+     * RobotMap.SIMULATION is set; must be called before any are created
+     */
+    public static void installSimulation(DeviceFactory aFactory)
+    {
+        simulation = aFactory;
+    }
+
+    /**
+     * getSimulation - the installed DeviceFactory
+     *
+     * @throws IllegalStateException if none has been installed
+     */
+    static DeviceFactory getSimulation()
+    {
+        DeviceFactory factory = simulation;
+        if (factory == null)
+        {
+            throw new IllegalStateException("RobotMap.SIMULATION is set but no simulated devices are installed");
+        }
+        return factory;
+    }
+
+    /**
+     * create - return a drive motor controller for the specified CAN ID,
+     * behind a configuration cache if RobotMap.CAN_CONFIG_CACHE is set
+     */
+    public static MotorController create(int aDeviceID)
+    {
+        MotorController controller;
+        if (RobotMap.SIMULATION)
+        {
+            controller = getSimulation().createMotorController(aDeviceID);
+        }
+        else
+        {
+            controller = new TalonMotorController(aDeviceID, RobotMap.DRIVE_ENCODER_TYPE);
+        }
+
+        if (RobotMap.CAN_CONFIG_CACHE)
+        {
+            CachingMotorController cache = new CachingMotorController(controller, RobotMap.CAN_CONFIG_REFRESH_sec);
+            if (RobotMap.SIMULATION)
+            {
+                // Resetting the simulation resets the controllers under it
+                getSimulation().addCache(cache);
+            }
+            controller = cache;
+        }
+        return controller;
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * TalonMotorController - the real Talon SRX on the CAN bus, presented
+ * through our MotorController interface.
+ *
+ * Nothing clever happens here; each method simply translates our names and
+ * enumerations to the CANTalon equivalents.
+ */
+package org.usfirst.frc.team4183.robot.hardware;
+
+import com.ctre.CANTalon;
+import com.ctre.CANTalon.FeedbackDevice;
+import com.ctre.CANTalon.FeedbackDeviceStatus;
+import com.ctre.CANTalon.TalonControlMode;
+
+/**
+ * The TalonMotorController class definition
+ */
+public class TalonMotorController implements MotorController
+{
+    private final CANTalon talon;
+    private final FeedbackDevice sensorType;
+
+    // Reused so streaming points and polling status allocate nothing
+    private final CANTalon.TrajectoryPoint point = new CANTalon.TrajectoryPoint();
+    private final CANTalon.MotionProfileStatus status = new CANTalon.MotionProfileStatus();
+
+    // The last value set, so logging it costs no trip to the Talon
+    private volatile double setpoint = 0.0;
+
+    /**
+     * Constructor
+     *
+     * @param aDeviceID - the CAN ID of the Talon SRX
+     * @param aSensorType - the type of encoder we expect to be attached
+     *        (only used if configEncoderCodesPerRev is called)
+     */
+    public TalonMotorController(int aDeviceID, FeedbackDevice aSensorType)
+    {
+        talon = new CANTalon(aDeviceID);
+        sensorType = aSensorType;
+    }
+
+    /**
+     * getTalon - escape hatch for the few vendor specific features that
+     * do not belong in the generic interface
+     */
+    public CANTalon getTalon()
+    {
+        return talon;
+    }
+
+    public int getDeviceID()
+    {
+        return talon.getDeviceID();
+    }
+
+    public void changeControlMode(ControlMode aMode)
+    {
+        talon.changeControlMode(toTalon(aMode));
+    }
+
+    public ControlMode getControlMode()
+    {
+        return fromTalon(talon.getControlMode());
+    }
+
+    public void set(double aValue)
+    {
+        talon.set(aValue);
+        setpoint = aValue;
+    }
+
+    public double getSetpoint()
+    {
+        return setpoint;
+    }
+
+    public void follow(MotorController aMaster)
+    {
+        talon.changeControlMode(TalonControlMode.Follower);
+        talon.set(aMaster.getDeviceID());
+    }
+
+    public void configEncoderCodesPerRev(int aCodesPerRev)
+    {
+        talon.setFeedbackDevice(sensorType);
+        talon.configEncoderCodesPerRev(aCodesPerRev);
+    }
+
+    public SensorStatus isSensorPresent()
+    {
+        FeedbackDeviceStatus status = talon.isSensorPresent(sensorType);
+        if (FeedbackDeviceStatus.FeedbackStatusPresent == status)
+        {
+            return SensorStatus.Present;
+        }
+        else if (FeedbackDeviceStatus.FeedbackStatusNotPresent == status)
+        {
+            return SensorStatus.NotPresent;
+        }
+        return SensorStatus.Unknown;
+    }
+
+    public void setPosition(double aPosition_rot)
+    {
+        talon.setPosition(aPosition_rot);
+    }
+
+    public double getPosition()
+    {
+        return talon.getPosition();
+    }
+
+    public double getSpeed()
+    {
+        return talon.getSpeed();
+    }
+
+    public void setP(double aGain)
+    {
+        talon.setP(aGain);
+    }
+
+    public void setI(double aGain)
+    {
+        talon.setI(aGain);
+    }
+
+    public void setD(double aGain)
+    {
+        talon.setD(aGain);
+    }
+
+    public void setF(double aGain)
+    {
+        talon.setF(aGain);
+    }
+
+    public void enableBrakeMode(boolean aBrakeMode)
+    {
+        talon.enableBrakeMode(aBrakeMode);
+    }
+
+    public double getBusVoltage()
+    {
+        return talon.getBusVoltage();
+    }
+
+    public boolean pushMotionProfilePoint(double aPosition_rot, double aVelocity_rpm, int aDuration_ms, boolean isLast)
+    {
+        point.position = aPosition_rot;
+        point.velocity = aVelocity_rpm;
+        point.timeDurMs = aDuration_ms;
+        point.profileSlotSelect = 0;
+        point.velocityOnly = false;
+        point.zeroPos = false;
+        point.isLastPoint = isLast;
+        return talon.pushMotionProfileTrajectory(point);
+    }
+
+    public void processMotionProfileBuffer()
+    {
+        talon.processMotionProfileBuffer();
+    }
+
+    public void clearMotionProfileTrajectories()
+    {
+        talon.clearMotionProfileTrajectories();
+    }
+
+    public void clearMotionProfileHasUnderrun()
+    {
+        talon.clearMotionProfileHasUnderrun();
+    }
+
+    public void getMotionProfileStatus(MotionProfileStatus aStatus)
+    {
+        talon.getMotionProfileStatus(status);
+        aStatus.topBufferRem = status.topBufferRem;
+        aStatus.topBufferCnt = status.topBufferCnt;
+        aStatus.btmBufferCnt = status.btmBufferCnt;
+        aStatus.hasUnderrun = status.hasUnderrun;
+        aStatus.isUnderrun = status.isUnderrun;
+        aStatus.activePointValid = status.activePointValid;
+        aStatus.activePointIsLast = status.activePoint.isLastPoint;
+        aStatus.activePosition_rot = status.activePoint.position;
+    }
+
+    private static TalonControlMode toTalon(ControlMode aMode)
+    {
+        switch (aMode)
+        {
+        case Position:
+            return TalonControlMode.Position;
+        case Speed:
+            return TalonControlMode.Speed;
+        case Follower:
+            return TalonControlMode.Follower;
+        case MotionProfile:
+            return TalonControlMode.MotionProfile;
+        case PercentVbus:
+        default:
+            return TalonControlMode.PercentVbus;
+        }
+    }
+
+    private static ControlMode fromTalon(TalonControlMode aMode)
+    {
+        switch (aMode)
+        {
+        case Position:
+            return ControlMode.Position;
+        case Speed:
+            return ControlMode.Speed;
+        case Follower:
+            return ControlMode.Follower;
+        case MotionProfile:
+            return ControlMode.MotionProfile;
+        case PercentVbus:
+        default:
+            // Any mode we do not use looks like open loop to us
+            return ControlMode.PercentVbus;
+        }
+    }
+}
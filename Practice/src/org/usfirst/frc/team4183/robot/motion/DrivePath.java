@@ -0,0 +1,233 @@
+/**
+ * DrivePath - a sequence of drive profiles (straight moves and turns in
+ * place) blended into one continuous trajectory, with its own points for
+ * each side.
+ *
+ * Run one after the other, every profile comes to rest before the next
+ * starts. Here each step's profile is laid out for each wheel (a move
+ * turns both wheels the same way, a turn in place turns them opposite ways)
+ * and each starts while the one before is still slowing down. The wheel
+ * positions and velocities of the overlapping steps simply add, so every
+ * step still covers exactly its own distance and the path ends where the
+ * steps would have ended in wheel terms; the robot just does not stop in
+ * between. While both are moving the robot arcs, so it cuts the corners
+ * a little rather than driving through them.
+ *
+ * How much two steps overlap depends on what the wheels do:
+ *
+ *     no wheel reverses   the whole of the first step's slowing down and
+ *     (e.g., two moves)   the second's speeding up; one accelerates as
+ *                         fast as the other decelerates, so a wheel's
+ *                         speed and acceleration stay within the limits
+ *     a wheel reverses    only the jerk limited ends of the two ramps
+ *     (a move and a       (PROFILE_MAX_ACCEL / PROFILE_MAX_JERK), where
+ *     turn)               the two accelerations add up to no more than
+ *                         the limit; nothing with a plain trapezoid
+ *
+ * Building a path generates each step twice (once to lay them out, once to
+ * add them up) into arrays allocated with the path, so it is done when the
+ * command is built, not while it runs.
+ */
+package org.usfirst.frc.team4183.robot.motion;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+
+/**
+ * The DrivePath class definition
+ */
+public class DrivePath
+{
+    private final MotionProfile left;
+    private final MotionProfile right;
+
+    // One step at a time
+    private final MotionProfile step;
+
+    private int steps = 0;
+    private double unblended_sec = 0.0;
+
+    /**
+     * Constructor
+     *
+     * @param aCapacity - the most points the whole path may have
+     * @param aPointDuration_ms - the time step between points
+     */
+    public DrivePath(int aCapacity, int aPointDuration_ms)
+    {
+        left = new MotionProfile(aCapacity, aPointDuration_ms);
+        right = new MotionProfile(aCapacity, aPointDuration_ms);
+        step = new MotionProfile(aCapacity, aPointDuration_ms);
+    }
+
+    /**
+     * blend - replace the path with the specified steps, blended
+     *
+     * @param someKinds - DriveTrajectories.MOVE or TURN for each step
+     * @param someTargets - meters or degrees for each step, as for
+     *        DriveTrajectories.generate
+     *
+     * @throws IllegalArgumentException if the path does not fit
+     */
+    public void blend(int[] someKinds, double[] someTargets)
+    {
+        long start_ns = System.nanoTime();
+
+        int count = someKinds.length;
+        int[] first = new int[count];
+        double[] rightSign = new double[count];
+
+        // The ends of two ramps may overlap this much when a wheel reverses
+        double dt_sec = step.getPointDuration_ms() / 1000.0;
+        int jerkPoints = 0;
+        if (RobotMap.PROFILE_MAX_JERK_mps3 > 0.0)
+        {
+            jerkPoints = (int) Math.floor(RobotMap.PROFILE_MAX_ACCEL_mps2 / RobotMap.PROFILE_MAX_JERK_mps3 / dt_sec);
+        }
+
+        // Lay the steps out
+        int end = 0;
+        int lastDown = 0;
+        double lastLeft = 0.0;
+        double lastRight = 0.0;
+        double unblended = 0.0;
+        for (int i = 0; i < count; ++i)
+        {
+            DriveTrajectories.generate(someKinds[i], someTargets[i], step);
+            rightSign[i] = DriveTrajectories.getRightSign(someKinds[i]);
+
+            int points = step.getCount();
+            double direction = Math.signum(step.getPosition_rot(points - 1));
+            double leftDirection = direction;
+            double rightDirection = rightSign[i] * direction;
+
+            int overlap = 0;
+            if (i > 0)
+            {
+                overlap = Math.min(lastDown, getRampUp(step));
+                if ((leftDirection != lastLeft) || (rightDirection != lastRight))
+                {
+                    overlap = Math.min(overlap, jerkPoints);
+                }
+            }
+            first[i] = end - overlap;
+            end = first[i] + points;
+
+            lastDown = getRampDown(step);
+            lastLeft = leftDirection;
+            lastRight = rightDirection;
+            unblended += step.getDuration_sec();
+        }
+
+        // Add them up; a step that has finished stays where it ended
+        left.clear(end);
+        right.clear(end);
+        for (int i = 0; i < count; ++i)
+        {
+            DriveTrajectories.generate(someKinds[i], someTargets[i], step);
+            int points = step.getCount();
+            double final_rot = step.getPosition_rot(points - 1);
+            for (int k = first[i]; k < end; ++k)
+            {
+                int j = k - first[i];
+                double position_rot = (j < points) ? step.getPosition_rot(j) : final_rot;
+                double velocity_rpm = (j < points) ? step.getVelocity_rpm(j) : 0.0;
+                left.add(k, position_rot, velocity_rpm);
+                right.add(k, rightSign[i] * position_rot, rightSign[i] * velocity_rpm);
+            }
+        }
+
+        steps = count;
+        unblended_sec = unblended;
+        left.setGenerationTime_ns(System.nanoTime() - start_ns);
+        right.setGenerationTime_ns(left.getGenerationTime_ns());
+    }
+
+    /**
+     * getRampUp returns how many points the profile takes to reach its top
+     * speed
+     */
+    private static int getRampUp(MotionProfile aProfile)
+    {
+        double peak = getPeak_rpm(aProfile);
+        int k = 0;
+        while (Math.abs(aProfile.getVelocity_rpm(k)) < peak)
+        {
+            ++k;
+        }
+        return k;
+    }
+
+    /**
+     * getRampDown returns how many points the profile takes to stop from
+     * its top speed
+     */
+    private static int getRampDown(MotionProfile aProfile)
+    {
+        double peak = getPeak_rpm(aProfile);
+        int last = aProfile.getCount() - 1;
+        int k = last;
+        while (Math.abs(aProfile.getVelocity_rpm(k)) < peak)
+        {
+            --k;
+        }
+        return last - k;
+    }
+
+    private static double getPeak_rpm(MotionProfile aProfile)
+    {
+        double peak_rpm = 0.0;
+        for (int k = 0; k < aProfile.getCount(); ++k)
+        {
+            peak_rpm = Math.max(peak_rpm, Math.abs(aProfile.getVelocity_rpm(k)));
+        }
+
+        // Allow for rounding in the cruise
+        return peak_rpm * (1.0 - 1.0e-9);
+    }
+
+    public MotionProfile getLeft()
+    {
+        return left;
+    }
+
+    public MotionProfile getRight()
+    {
+        return right;
+    }
+
+    public int getStepCount()
+    {
+        return steps;
+    }
+
+    /**
+     * getDuration_sec returns how long the blended path takes to run
+     */
+    public double getDuration_sec()
+    {
+        return left.getDuration_sec();
+    }
+
+    /**
+     * getUnblendedDuration_sec returns how long the steps' profiles take
+     * to run one after the other
+     */
+    public double getUnblendedDuration_sec()
+    {
+        return unblended_sec;
+    }
+
+    /**
+     * getFinalLeft_rot returns where the left encoder ends up (the path
+     * starts at 0)
+     */
+    public double getFinalLeft_rot()
+    {
+        return left.getPosition_rot(left.getCount() - 1);
+    }
+
+    public double getFinalRight_rot()
+    {
+        return right.getPosition_rot(right.getCount() - 1);
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * DriveTrajectories - how the drive's motion profiles are made, in one place
+ * so the robot and the offline TrajectoryCompiler make them identically.
+ *
+ * A drive profile is identified by its kind (a straight move or a turn in
+ * place) and its target (meters or degrees, with the same signs as
+ * maintainPosition and maintainOrientation). prepare() fills a profile from
+ * the TrajectoryStore when it has that profile, and generates it otherwise;
+ * either way the result is the same points (to float precision).
+ *
+ * The autonomous targets listed here are the ones precomputed into the
+ * store. They should track AutonomousRoutines (the chooser) and the command
+ * groups; anything missing still works, it is just generated on the spot
+ * (and counted as a miss in "profile/cacheMisses").
+ */
+package org.usfirst.frc.team4183.robot.motion;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.telemetry.Telemetry;
+
+/**
+ * The DriveTrajectories class definition
+ */
+public class DriveTrajectories
+{
+    // Kinds of drive profile
+    public static final int MOVE = 0;   // target in meters
+    public static final int TURN = 1;   // target in degrees
+
+    // Targets precomputed into the store
+    public static final double[] AUTONOMOUS_MOVES_m =
+    {
+        RobotMap.FORWARD * 1.0,
+        RobotMap.BACKWARD * 1.0,
+        RobotMap.FORWARD * 2.0
+    };
+    public static final double[] AUTONOMOUS_TURNS_deg =
+    {
+        RobotMap.RIGHT * 45.0,
+        RobotMap.LEFT * 45.0,
+        RobotMap.RIGHT * 90.0,
+        RobotMap.LEFT * 90.0
+    };
+
+    private static final int hitChannel = Telemetry.channel("profile/cacheHits");
+    private static final int missChannel = Telemetry.channel("profile/cacheMisses");
+
+    private static volatile long hits = 0;
+    private static volatile long misses = 0;
+
+    private DriveTrajectories()
+    {
+        // Static interface only
+    }
+
+    /**
+     * fingerprint - a hash of everything a drive profile depends on; a
+     * store written with a different fingerprint is stale
+     */
+    public static long fingerprint()
+    {
+        long hash = TrajectoryStore.FORMAT_VERSION;
+        hash = mix(hash, RobotMap.PROFILE_POINT_DURATION_ms);
+        hash = mix(hash, RobotMap.PROFILE_MAX_SPEED_mps);
+        hash = mix(hash, RobotMap.PROFILE_MAX_ACCEL_mps2);
+        hash = mix(hash, RobotMap.PROFILE_MAX_JERK_mps3);
+        hash = mix(hash, RobotMap.ENCODER_ROT_PER_METER);
+        hash = mix(hash, RobotMap.ENCODER_ROT_PER_DEGREE);
+        return hash;
+    }
+
+    private static long mix(long aHash, double aValue)
+    {
+        return (aHash * 1000003L) ^ Double.doubleToLongBits(aValue);
+    }
+
+    /**
+     * getRightSign returns the multiplier for the right side; the left
+     * side always follows the profile as is
+     */
+    public static double getRightSign(int aKind)
+    {
+        // Turning in place means the sides go opposite ways
+        return (TURN == aKind) ? -1.0 : 1.0;
+    }
+
+    /**
+     * generate - compute the profile for a kind and target
+     *
+     * @throws IllegalArgumentException if it does not fit in the profile
+     */
+    public static void generate(int aKind, double aTarget, MotionProfile aProfile)
+    {
+        // The limits are at the wheel surface so they scale the same way
+        // for moves and turns
+        double distance_rot = (TURN == aKind) ? RobotMap.ENCODER_ROT_PER_DEGREE * aTarget
+                                              : RobotMap.ENCODER_ROT_PER_METER * aTarget;
+        aProfile.generate(distance_rot,
+                          RobotMap.ENCODER_ROT_PER_METER * RobotMap.PROFILE_MAX_SPEED_mps,
+                          RobotMap.ENCODER_ROT_PER_METER * RobotMap.PROFILE_MAX_ACCEL_mps2,
+                          RobotMap.ENCODER_ROT_PER_METER * RobotMap.PROFILE_MAX_JERK_mps3);
+    }
+
+    /**
+     * prepare - fill the profile from the store if it has it, otherwise
+     * generate it
+     *
+     * @param aStore - may be null (no store loaded)
+     *
+     * @throws IllegalArgumentException if it does not fit in the profile
+     */
+    public static void prepare(TrajectoryStore aStore, int aKind, double aTarget, MotionProfile aProfile)
+    {
+        if ((aStore != null) && aStore.find(aKind, aTarget, aProfile))
+        {
+            Telemetry.put(hitChannel, ++hits);
+        }
+        else
+        {
+            generate(aKind, aTarget, aProfile);
+            Telemetry.put(missChannel, ++misses);
+        }
+    }
+
+    public static long getHitCount()
+    {
+        return hits;
+    }
+
+    public static long getMissCount()
+    {
+        return misses;
+    }
+}
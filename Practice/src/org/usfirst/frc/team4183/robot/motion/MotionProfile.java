@@ -0,0 +1,253 @@
+/**
+ * MotionProfile - a list of (position, velocity) points, one per fixed time
+ * step, that takes a wheel from rest to rest over a given distance without
+ * exceeding a maximum velocity, acceleration and (optionally) jerk.
+ *
+ * Stepping a position controller straight to the final target asks for
+ * an instantaneous jump in velocity; the P gain then decides how hard the
+ * robot lurches. Feeding the controller a profile instead means the target
+ * only ever moves as fast as the robot can follow, and the velocity of each
+ * point can be used as feed forward so the controller does most of the work
+ * without needing an error first.
+ *
+ * The profile is generated by filtering: a rectangular velocity pulse at the
+ * cruise speed, as long as it takes to cover the distance, is smoothed by a
+ * moving average as long as the time to reach cruise speed (which turns the
+ * rectangle into a trapezoid) and then by a second moving average as long
+ * as the time to reach full acceleration (which rounds the corners into an
+ * S-curve). Moving averages do not change the area under the curve, so the
+ * distance comes out exactly right, and both averages reduce to counting
+ * so no intermediate arrays are needed.
+ *
+ *      velocity
+ *         ^     ______________                 ______________
+ *         |    /              \              /                \
+ *         |   /                \            |                  |
+ *         |  /                  \          /                    \
+ *         +-------------------------->   +------------------------->
+ *                 trapezoid                      S-curve
+ *
+ * The points live in arrays allocated once at construction; generating a
+ * new profile (or loading one from a TrajectoryStore) overwrites them and
+ * allocates nothing.
+ *
+ * Units are encoder rotations (position) and encoder RPM (velocity), the
+ * units the motor controllers use.
+ */
+package org.usfirst.frc.team4183.robot.motion;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The MotionProfile class definition
+ */
+public class MotionProfile
+{
+    private final double[] position_rot;
+    private final double[] velocity_rpm;
+    private final int pointDuration_ms;
+    private int count = 0;
+
+    private long generationTime_ns = 0;
+
+    /**
+     * Constructor
+     *
+     * @param aCapacity - the most points a profile may have
+     * @param aPointDuration_ms - the time step between points
+     */
+    public MotionProfile(int aCapacity, int aPointDuration_ms)
+    {
+        if (aPointDuration_ms <= 0)
+        {
+            throw new IllegalArgumentException("Point duration must be positive: " + aPointDuration_ms);
+        }
+        position_rot = new double[aCapacity];
+        velocity_rpm = new double[aCapacity];
+        pointDuration_ms = aPointDuration_ms;
+    }
+
+    /**
+     * generate - replace the points with a profile covering the specified
+     * distance
+     *
+     * @param aDistance_rot - how far to go; negative to go backward
+     * @param aMaxVelocity_rps - rotations per second, > 0
+     * @param anAcceleration_rps2 - rotations per second per second, > 0
+     * @param aJerk_rps3 - rotations per second^3; 0 for a trapezoid
+     *
+     * @throws IllegalArgumentException if the limits are not positive or
+     *         the profile would not fit in the capacity
+     */
+    public void generate(double aDistance_rot, double aMaxVelocity_rps, double anAcceleration_rps2, double aJerk_rps3)
+    {
+        long start_ns = System.nanoTime();
+
+        if ((aMaxVelocity_rps <= 0.0) || (anAcceleration_rps2 <= 0.0) || (aJerk_rps3 < 0.0))
+        {
+            throw new IllegalArgumentException("Profile limits must be positive: " + aMaxVelocity_rps +
+                                               ", " + anAcceleration_rps2 + ", " + aJerk_rps3);
+        }
+
+        double sign = (aDistance_rot < 0.0) ? -1.0 : 1.0;
+        double distance_rot = Math.abs(aDistance_rot);
+        double dt_sec = pointDuration_ms / 1000.0;
+
+        // Length (in points) of the cruise pulse; rounding up means cruising
+        // a little slower than the limit so the distance comes out exact
+        int cruisePoints = Math.max(1, (int) Math.ceil(distance_rot / aMaxVelocity_rps / dt_sec));
+        double cruise_rps = distance_rot / (cruisePoints * dt_sec);
+
+        // Lengths of the two moving averages
+        int accelPoints = Math.max(1, (int) Math.ceil(cruise_rps / anAcceleration_rps2 / dt_sec));
+        int jerkPoints = 1;
+        if (aJerk_rps3 > 0.0)
+        {
+            jerkPoints = Math.max(1, (int) Math.ceil(anAcceleration_rps2 / aJerk_rps3 / dt_sec));
+        }
+
+        int points = cruisePoints + accelPoints + jerkPoints - 2;
+        if (points + 1 > position_rot.length)
+        {
+            throw new IllegalArgumentException("Profile needs " + (points + 1) + " points, capacity is " +
+                                               position_rot.length);
+        }
+
+        // The first average at step k is (count of pulse points in its
+        // window) / accelPoints; the second keeps a running sum of those
+        // counts over its own window. Integers keep the sum exact.
+        long windowSum = 0;
+        double travelled_rot = 0.0;
+        double scale_rps = cruise_rps / ((double) accelPoints * jerkPoints);
+        for (int k = 0; k < points; ++k)
+        {
+            windowSum += pulsePointsInWindow(k, cruisePoints, accelPoints) -
+                         pulsePointsInWindow(k - jerkPoints, cruisePoints, accelPoints);
+
+            double v_rps = scale_rps * windowSum;
+            travelled_rot += v_rps * dt_sec;
+
+            position_rot[k] = sign * travelled_rot;
+            velocity_rpm[k] = sign * v_rps * 60.0;
+        }
+
+        // Finish exactly on the target, stopped
+        position_rot[points] = sign * distance_rot;
+        velocity_rpm[points] = 0.0;
+        count = points + 1;
+
+        generationTime_ns = System.nanoTime() - start_ns;
+    }
+
+    /**
+     * load - replace the points with ones from a TrajectoryStore buffer
+     * (float position, float velocity per point)
+     */
+    void load(ByteBuffer aBuffer, int anOffset, int aCount)
+    {
+        long start_ns = System.nanoTime();
+
+        if (aCount > position_rot.length)
+        {
+            throw new IllegalArgumentException("Profile has " + aCount + " points, capacity is " +
+                                               position_rot.length);
+        }
+
+        int offset = anOffset;
+        for (int i = 0; i < aCount; ++i)
+        {
+            position_rot[i] = aBuffer.getFloat(offset);
+            velocity_rpm[i] = aBuffer.getFloat(offset + 4);
+            offset += TrajectoryStore.POINT_BYTES;
+        }
+        count = aCount;
+
+        generationTime_ns = System.nanoTime() - start_ns;
+    }
+
+    /**
+     * clear - replace the points with the specified number of zero points,
+     * to be built up with add (see DrivePath)
+     */
+    void clear(int aCount)
+    {
+        if (aCount > position_rot.length)
+        {
+            throw new IllegalArgumentException("Profile needs " + aCount + " points, capacity is " +
+                                               position_rot.length);
+        }
+        for (int i = 0; i < aCount; ++i)
+        {
+            position_rot[i] = 0.0;
+            velocity_rpm[i] = 0.0;
+        }
+        count = aCount;
+        generationTime_ns = 0;
+    }
+
+    /**
+     * add - add to one point (see clear)
+     */
+    void add(int anIndex, double aPosition_rot, double aVelocity_rpm)
+    {
+        position_rot[anIndex] += aPosition_rot;
+        velocity_rpm[anIndex] += aVelocity_rpm;
+    }
+
+    void setGenerationTime_ns(long aTime_ns)
+    {
+        generationTime_ns = aTime_ns;
+    }
+
+    /**
+     * pulsePointsInWindow - how many points of the cruise pulse
+     * [0, aPulseLength) fall in the window (aStep - aWindow, aStep]
+     */
+    private static int pulsePointsInWindow(int aStep, int aPulseLength, int aWindow)
+    {
+        int first = Math.max(0, aStep - aWindow + 1);
+        int last = Math.min(aPulseLength - 1, aStep);
+        return Math.max(0, last - first + 1);
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+
+    public int getCapacity()
+    {
+        return position_rot.length;
+    }
+
+    public int getPointDuration_ms()
+    {
+        return pointDuration_ms;
+    }
+
+    public double getPosition_rot(int anIndex)
+    {
+        return position_rot[anIndex];
+    }
+
+    public double getVelocity_rpm(int anIndex)
+    {
+        return velocity_rpm[anIndex];
+    }
+
+    /**
+     * getDuration_sec returns how long the profile takes to run
+     */
+    public double getDuration_sec()
+    {
+        return count * pointDuration_ms / 1000.0;
+    }
+
+    /**
+     * getGenerationTime_ns returns how long the last generate (or load) took
+     */
+    public long getGenerationTime_ns()
+    {
+        return generationTime_ns;
+    }
+}
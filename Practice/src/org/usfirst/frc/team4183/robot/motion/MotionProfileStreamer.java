@@ -0,0 +1,295 @@
+/**
+ * MotionProfileStreamer - feeds a MotionProfile to a pair of motor
+ * controllers (the left and right drive masters) and lets the controllers
+ * run it themselves.
+ *
+ * The Talon SRX executes motion profiles from its own buffer, closing the
+ * loop at 1 kHz with the point's velocity as feed forward, so once points
+ * are loaded the roboRIO is out of the loop. Getting the points there is a
+ * pipeline with two stages:
+ *
+ *     1. pushMotionProfilePoint adds a point to the top buffer (in the
+ *        roboRIO, no CAN traffic); we push in batches whenever the top
+ *        buffer runs low rather than one point at a time
+ *     2. processMotionProfileBuffer sends ONE point from the top buffer to
+ *        the Talon's bottom buffer; we call it several times per cycle so
+ *        the Talon always has more points than it will use before we are
+ *        called again
+ *
+ * The profile is enabled once enough points are in the bottom buffer, and
+ * switched to hold when the Talon reaches the last point. If the bottom
+ * buffer runs dry before then (an underrun) the Talon stops the profile
+ * where it is; underruns are counted so we know if the feeding rate needs
+ * to change.
+ *
+ * CTRE's example funnels points with a Notifier at twice the point rate. We
+ * are called from the periodic functions (or the drive control loop) so we
+ * instead move several points per call, enough for a 20 ms cycle with
+ * margin, and the underrun count tells us if that was a bad bet.
+ *
+ * The refill, point and underrun counts and the time to generate the
+ * profile are published to Telemetry as "profile/...".
+ *
+ * start() and process() must be called from the same thread.
+ */
+package org.usfirst.frc.team4183.robot.motion;
+
+import org.usfirst.frc.team4183.robot.hardware.MotionProfileStatus;
+import org.usfirst.frc.team4183.robot.hardware.MotorController;
+import org.usfirst.frc.team4183.robot.telemetry.Telemetry;
+
+/**
+ * The MotionProfileStreamer class definition
+ */
+public class MotionProfileStreamer
+{
+    // Where a profile is in its life
+    public enum State
+    {
+        Idle,       // Nothing to do
+        Loading,    // Filling the buffers, not yet moving
+        Running,    // Controllers executing points
+        Done        // Holding the last point
+    }
+
+    // Points pushed per refill, and the top buffer level that triggers one
+    public static final int BATCH_POINTS = 128;
+    public static final int LOW_WATER_POINTS = 64;
+
+    // Points moved to the bottom buffer per call; the controllers consume
+    // about 2 per 20 ms cycle with 10 ms points
+    public static final int PROCESS_CALLS = 4;
+
+    // Points that must be in the bottom buffer before the profile starts
+    public static final int MIN_BUFFERED_POINTS = 5;
+
+    private static final int refillChannel = Telemetry.channel("profile/refills");
+    private static final int pushedChannel = Telemetry.channel("profile/pointsPushed");
+    private static final int underrunChannel = Telemetry.channel("profile/underruns");
+    private static final int generateChannel = Telemetry.channel("profile/generate_ms");
+    private static final int lengthChannel = Telemetry.channel("profile/points");
+
+    private final MotorController left;
+    private final MotorController right;
+
+    // Reused so polling the controllers allocates nothing
+    private final MotionProfileStatus leftStatus = new MotionProfileStatus();
+    private final MotionProfileStatus rightStatus = new MotionProfileStatus();
+
+    private MotionProfile profile;
+    private MotionProfile rightProfile;
+    private double leftSign = 1.0;
+    private double rightSign = 1.0;
+    private double leftOrigin_rot = 0.0;
+    private double rightOrigin_rot = 0.0;
+    private int nextPoint = 0;
+
+    private volatile State state = State.Idle;
+
+    // Metrics (written by the streaming thread only)
+    private volatile long refills = 0;
+    private volatile long pointsPushed = 0;
+    private volatile long underruns = 0;
+
+    /**
+     * Constructor
+     *
+     * @param aLeft - left master controller, already in MotionProfile mode
+     *        when process() is called
+     * @param aRight - right master controller, ditto
+     */
+    public MotionProfileStreamer(MotorController aLeft, MotorController aRight)
+    {
+        left = aLeft;
+        right = aRight;
+    }
+
+    /**
+     * setOrigin - where each side's profile starts from; the points are
+     * relative, the controllers' encoders are not (they are never zeroed,
+     * see DriveSubsystem.markOrigin). Applies to the profiles started
+     * after it.
+     */
+    public void setOrigin(double aLeft_rot, double aRight_rot)
+    {
+        leftOrigin_rot = aLeft_rot;
+        rightOrigin_rot = aRight_rot;
+    }
+
+    /**
+     * start - begin streaming a profile; the controllers are disabled and
+     * their buffers cleared, and points will be loaded by process()
+     *
+     * @param aProfile - the points; must not be changed until done
+     * @param aLeftSign - multiplier for the left side (+1 or -1)
+     * @param aRightSign - multiplier for the right side
+     */
+    public void start(MotionProfile aProfile, double aLeftSign, double aRightSign)
+    {
+        start(aProfile, aLeftSign, aProfile, aRightSign);
+    }
+
+    /**
+     * start - begin streaming a different profile to each side (e.g., a
+     * DrivePath); they must have the same number of points
+     *
+     * @param aLeftProfile - the left side's points; must not be changed
+     *        until done
+     * @param aLeftSign - multiplier for the left side (+1 or -1)
+     * @param aRightProfile - the right side's points, ditto
+     * @param aRightSign - multiplier for the right side
+     */
+    public void start(MotionProfile aLeftProfile, double aLeftSign, MotionProfile aRightProfile, double aRightSign)
+    {
+        if (aLeftProfile.getCount() != aRightProfile.getCount())
+        {
+            throw new IllegalArgumentException("Sides have " + aLeftProfile.getCount() + " and " +
+                                               aRightProfile.getCount() + " points");
+        }
+
+        left.set(MotorController.MP_DISABLE);
+        right.set(MotorController.MP_DISABLE);
+        left.clearMotionProfileTrajectories();
+        right.clearMotionProfileTrajectories();
+        left.clearMotionProfileHasUnderrun();
+        right.clearMotionProfileHasUnderrun();
+
+        profile = aLeftProfile;
+        rightProfile = aRightProfile;
+        leftSign = aLeftSign;
+        rightSign = aRightSign;
+        nextPoint = 0;
+
+        Telemetry.put(generateChannel, aLeftProfile.getGenerationTime_ns() / 1.0e6);
+        Telemetry.put(lengthChannel, aLeftProfile.getCount());
+
+        state = State.Loading;
+    }
+
+    /**
+     * reset - forget the current profile (e.g., when the drive is stopped);
+     * the controllers are left as they are
+     */
+    public void reset()
+    {
+        profile = null;
+        rightProfile = null;
+        state = State.Idle;
+    }
+
+    /**
+     * process - call every cycle while the profile runs; refills and funnels
+     * the buffers, and enables, watches and finishes the profile
+     */
+    public void process()
+    {
+        State current = state;
+        if ((State.Idle == current) || (State.Done == current))
+        {
+            return;
+        }
+
+        left.getMotionProfileStatus(leftStatus);
+        right.getMotionProfileStatus(rightStatus);
+
+        if (leftStatus.hasUnderrun || rightStatus.hasUnderrun)
+        {
+            ++underruns;
+            Telemetry.put(underrunChannel, underruns);
+            left.clearMotionProfileHasUnderrun();
+            right.clearMotionProfileHasUnderrun();
+        }
+
+        // Stage 1: top up the top buffer in batches
+        int count = profile.getCount();
+        if ((nextPoint < count) &&
+            (Math.max(leftStatus.topBufferCnt, rightStatus.topBufferCnt) < LOW_WATER_POINTS))
+        {
+            refill(Math.min(count, nextPoint + BATCH_POINTS));
+        }
+
+        // Stage 2: move points down to the controllers
+        for (int i = 0; i < PROCESS_CALLS; ++i)
+        {
+            left.processMotionProfileBuffer();
+            right.processMotionProfileBuffer();
+        }
+
+        if (State.Loading == current)
+        {
+            boolean allSent = (nextPoint == count) && (0 == leftStatus.topBufferCnt) && (0 == rightStatus.topBufferCnt);
+            if (allSent ||
+                (Math.min(leftStatus.btmBufferCnt, rightStatus.btmBufferCnt) >= MIN_BUFFERED_POINTS))
+            {
+                left.set(MotorController.MP_ENABLE);
+                right.set(MotorController.MP_ENABLE);
+                state = State.Running;
+            }
+        }
+        else if (leftStatus.activePointValid && leftStatus.activePointIsLast &&
+                 rightStatus.activePointValid && rightStatus.activePointIsLast)
+        {
+            // Both sides are on the final point; hold it
+            left.set(MotorController.MP_HOLD);
+            right.set(MotorController.MP_HOLD);
+            state = State.Done;
+        }
+    }
+
+    private void refill(int anEnd)
+    {
+        int pointDuration_ms = profile.getPointDuration_ms();
+        int last = profile.getCount() - 1;
+        int i = nextPoint;
+        while (i < anEnd)
+        {
+            boolean isLast = (i == last);
+            if ( ! left.pushMotionProfilePoint(leftOrigin_rot + leftSign * profile.getPosition_rot(i),
+                                               leftSign * profile.getVelocity_rpm(i),
+                                               pointDuration_ms, isLast))
+            {
+                break;
+            }
+            if ( ! right.pushMotionProfilePoint(rightOrigin_rot + rightSign * rightProfile.getPosition_rot(i),
+                                                rightSign * rightProfile.getVelocity_rpm(i),
+                                                pointDuration_ms, isLast))
+            {
+                // Cannot happen while both top buffers are filled in
+                // step, but do not run ahead of the right side if it does
+                break;
+            }
+            ++i;
+        }
+        pointsPushed += i - nextPoint;
+        nextPoint = i;
+        ++refills;
+
+        Telemetry.put(refillChannel, refills);
+        Telemetry.put(pushedChannel, pointsPushed);
+    }
+
+    public State getState()
+    {
+        return state;
+    }
+
+    public boolean isDone()
+    {
+        return State.Done == state;
+    }
+
+    public long getRefillCount()
+    {
+        return refills;
+    }
+
+    public long getPointsPushed()
+    {
+        return pointsPushed;
+    }
+
+    public long getUnderrunCount()
+    {
+        return underruns;
+    }
+}
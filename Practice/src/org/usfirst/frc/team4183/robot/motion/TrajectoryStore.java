@@ -0,0 +1,265 @@
+/**
+ * TrajectoryStore - motion profiles computed ahead of time and kept in a
+ * file, so starting an autonomous move is a copy rather than a calculation.
+ *
+ * The file is written on a desktop (tools.TrajectoryCompiler, or the ant
+ * "trajectories" target which also copies it to the robot) and memory
+ * mapped on the robot. Mapping costs one system call; the operating system
+ * pages the data in as it is read, and nothing is parsed up front except
+ * the small directory.
+ *
+ * Layout (big-endian, as ByteBuffer defaults to):
+ *
+ *      header      int magic, int format version, long fingerprint,
+ *                  int point duration (ms), int entry count,
+ *                  int point count, int CRC-32 of everything after the
+ *                  header
+ *      directory   per entry: int kind, double target, int first point,
+ *                  int point count
+ *      points      per point: float position (rot), float velocity (RPM)
+ *
+ * Floats are plenty for a few hundred encoder rotations and halve the size.
+ *
+ * The fingerprint is a hash of everything the profiles were generated from
+ * (limits, point duration, wheel and encoder scalings; see
+ * DriveTrajectories.fingerprint). If any of those change the file is stale
+ * and open() refuses it, as it does a file whose CRC does not match; the
+ * caller is then expected to generate profiles as needed instead.
+ *
+ * A store is immutable once opened and only uses absolute reads, so it can
+ * be shared between the main thread and the drive control loop.
+ */
+package org.usfirst.frc.team4183.robot.motion;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The TrajectoryStore class definition
+ */
+public class TrajectoryStore
+{
+    public static final int MAGIC = 0x34313833;    // "4183"
+    public static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_BYTES = 32;
+    static final int ENTRY_BYTES = 20;
+    static final int POINT_BYTES = 8;
+
+    // Tolerance when matching targets (they are computed the same way on
+    // both sides, so this only absorbs rounding)
+    private static final double TARGET_TOLERANCE = 1.0e-9;
+
+    /**
+     * Entry - one profile to be written (see write)
+     */
+    public static final class Entry
+    {
+        final int kind;
+        final double target;
+        final MotionProfile profile;
+
+        public Entry(int aKind, double aTarget, MotionProfile aProfile)
+        {
+            kind = aKind;
+            target = aTarget;
+            profile = aProfile;
+        }
+    }
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int pointsStart;
+
+    private TrajectoryStore(File aFile, ByteBuffer aBuffer, int anEntryCount)
+    {
+        file = aFile;
+        buffer = aBuffer;
+        entryCount = anEntryCount;
+        pointsStart = HEADER_BYTES + anEntryCount * ENTRY_BYTES;
+    }
+
+    /**
+     * open - map and validate a trajectory file
+     *
+     * @param aFile - the file written by write()
+     * @param aFingerprint - the fingerprint of the current generation
+     *        parameters
+     * @param aPointDuration_ms - the point duration the profiles must have
+     *
+     * @throws IOException if the file is missing, unreadable, corrupt or
+     *         stale; the message says which
+     */
+    public static TrajectoryStore open(File aFile, long aFingerprint, int aPointDuration_ms) throws IOException
+    {
+        MappedByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(aFile, "r");
+        try
+        {
+            // The mapping stays valid after the channel is closed
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        if (buffer.capacity() < HEADER_BYTES)
+        {
+            throw new IOException(aFile + " is too short");
+        }
+        if (buffer.getInt(0) != MAGIC)
+        {
+            throw new IOException(aFile + " is not a trajectory file");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION)
+        {
+            throw new IOException(aFile + " has format " + buffer.getInt(4) + ", expected " + FORMAT_VERSION);
+        }
+        if ((buffer.getLong(8) != aFingerprint) || (buffer.getInt(16) != aPointDuration_ms))
+        {
+            throw new IOException(aFile + " is stale (generated with different limits or scalings)");
+        }
+
+        int entryCount = buffer.getInt(20);
+        int pointCount = buffer.getInt(24);
+        long expectedBytes = HEADER_BYTES + (long) entryCount * ENTRY_BYTES + (long) pointCount * POINT_BYTES;
+        if ((entryCount < 0) || (pointCount < 0) || (expectedBytes != buffer.capacity()))
+        {
+            throw new IOException(aFile + " is truncated or has a bad header");
+        }
+
+        ByteBuffer body = buffer.duplicate();
+        body.position(HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != buffer.getInt(28))
+        {
+            throw new IOException(aFile + " failed its checksum");
+        }
+
+        // Make sure every entry points inside the file before trusting it
+        for (int i = 0; i < entryCount; ++i)
+        {
+            int entry = HEADER_BYTES + i * ENTRY_BYTES;
+            int first = buffer.getInt(entry + 12);
+            int count = buffer.getInt(entry + 16);
+            if ((first < 0) || (count < 1) || ((long) first + count > pointCount))
+            {
+                throw new IOException(aFile + " entry " + i + " is out of range");
+            }
+        }
+
+        return new TrajectoryStore(aFile, buffer, entryCount);
+    }
+
+    /**
+     * find - copy the profile stored for a kind and target into the
+     * specified profile
+     *
+     * @return false if there is no such profile (or it does not fit), in
+     *         which case aProfile is unchanged
+     */
+    public boolean find(int aKind, double aTarget, MotionProfile aProfile)
+    {
+        for (int i = 0; i < entryCount; ++i)
+        {
+            int entry = HEADER_BYTES + i * ENTRY_BYTES;
+            if ((buffer.getInt(entry) == aKind) &&
+                (Math.abs(buffer.getDouble(entry + 4) - aTarget) <= TARGET_TOLERANCE))
+            {
+                int first = buffer.getInt(entry + 12);
+                int count = buffer.getInt(entry + 16);
+                if (count > aProfile.getCapacity())
+                {
+                    return false;
+                }
+                aProfile.load(buffer, pointsStart + first * POINT_BYTES, count);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getEntryCount()
+    {
+        return entryCount;
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * write - save profiles in the format open() expects; this is for the
+     * offline tools and allocates freely
+     */
+    public static void write(File aFile, long aFingerprint, int aPointDuration_ms, List<Entry> someEntries)
+        throws IOException
+    {
+        int pointCount = 0;
+        for (Entry entry : someEntries)
+        {
+            if (entry.profile.getPointDuration_ms() != aPointDuration_ms)
+            {
+                throw new IllegalArgumentException("Profile for " + entry.target + " has the wrong point duration");
+            }
+            pointCount += entry.profile.getCount();
+        }
+
+        int size = HEADER_BYTES + someEntries.size() * ENTRY_BYTES + pointCount * POINT_BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putLong(aFingerprint);
+        buffer.putInt(aPointDuration_ms);
+        buffer.putInt(someEntries.size());
+        buffer.putInt(pointCount);
+        buffer.putInt(0);   // CRC, filled in below
+
+        int first = 0;
+        for (Entry entry : someEntries)
+        {
+            buffer.putInt(entry.kind);
+            buffer.putDouble(entry.target);
+            buffer.putInt(first);
+            buffer.putInt(entry.profile.getCount());
+            first += entry.profile.getCount();
+        }
+
+        for (Entry entry : someEntries)
+        {
+            for (int i = 0; i < entry.profile.getCount(); ++i)
+            {
+                buffer.putFloat((float) entry.profile.getPosition_rot(i));
+                buffer.putFloat((float) entry.profile.getVelocity_rpm(i));
+            }
+        }
+
+        buffer.position(HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        buffer.putInt(28, (int) crc.getValue());
+
+        FileOutputStream out = new FileOutputStream(aFile);
+        try
+        {
+            out.write(buffer.array());
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * AxisFilter - one stage of conditioning applied to a joystick axis.
+ *
+ * Stages work on primitive doubles (no boxing) and keep whatever state they
+ * need in their own fields, so once a chain is built running it allocates
+ * nothing. Stateful stages (slew rate, low pass) need to know how much time
+ * passed since the previous sample, which is why it is a parameter even
+ * though the simple stages ignore it.
+ *
+ * Stages are combined with FilterChain.
+ */
+package org.usfirst.frc.team4183.robot.oi;
+
+/**
+ * The AxisFilter interface definition
+ */
+public interface AxisFilter
+{
+    /**
+     * apply - condition one sample
+     *
+     * @param aValue - the input, nominally -1 to +1
+     * @param aDelta_sec - time since the previous sample (0 for the first)
+     */
+    double apply(double aValue, double aDelta_sec);
+
+    /**
+     * reset - forget any history and start from the specified output
+     */
+    void reset(double aValue);
+}
@@ -0,0 +1,46 @@
+/**
+ * Deadband - ignores small deflections around center.
+ *
+ * Joysticks rarely return exactly 0 when released, so without a deadband
+ * the robot creeps. Values inside the band become 0 and the rest of the
+ * range is stretched to start from 0 at the edge of the band, so there is
+ * no jump when leaving it and full deflection is still 1.
+ */
+package org.usfirst.frc.team4183.robot.oi;
+
+/**
+ * The Deadband class definition
+ */
+public class Deadband implements AxisFilter
+{
+    private final double width;
+
+    /**
+     * Constructor
+     *
+     * @param aWidth - half width of the band, 0 to less than 1
+     */
+    public Deadband(double aWidth)
+    {
+        if ((aWidth < 0.0) || (aWidth >= 1.0))
+        {
+            throw new IllegalArgumentException("Deadband must be 0 to less than 1: " + aWidth);
+        }
+        width = aWidth;
+    }
+
+    public double apply(double aValue, double aDelta_sec)
+    {
+        double magnitude = Math.abs(aValue);
+        if (magnitude <= width)
+        {
+            return 0.0;
+        }
+        return Math.signum(aValue) * (magnitude - width) / (1.0 - width);
+    }
+
+    public void reset(double aValue)
+    {
+        // No history
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Expo - a response curve that gives finer control near center.
+ *
+ * The output is a blend of the input and its cube:
+ *
+ *      out = k * in^3 + (1 - k) * in
+ *
+ * With k = 0 the response is linear; with k = 1 it is a pure cube. Either
+ * way full deflection is still full output and the sign is kept.
+ */
+package org.usfirst.frc.team4183.robot.oi;
+
+/**
+ * The Expo class definition
+ */
+public class Expo implements AxisFilter
+{
+    private final double k;
+
+    /**
+     * Constructor
+     *
+     * @param aK - amount of curve, 0 (linear) to 1 (cubic)
+     */
+    public Expo(double aK)
+    {
+        if ((aK < 0.0) || (aK > 1.0))
+        {
+            throw new IllegalArgumentException("Expo must be 0 to 1: " + aK);
+        }
+        k = aK;
+    }
+
+    public double apply(double aValue, double aDelta_sec)
+    {
+        return (k * aValue * aValue * aValue) + ((1.0 - k) * aValue);
+    }
+
+    public void reset(double aValue)
+    {
+        // No history
+    }
+}
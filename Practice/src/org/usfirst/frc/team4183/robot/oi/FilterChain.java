@@ -0,0 +1,47 @@
+/**
+ * FilterChain - runs a sample through several AxisFilters in order.
+ *
+ * The chain is built once (e.g., in a static final) and reused; apply just
+ * walks a fixed array, so it allocates nothing. A chain is itself an
+ * AxisFilter so chains can be nested.
+ *
+ *      AxisFilter speed = new FilterChain(new Deadband(0.05),
+ *                                         new Expo(0.3),
+ *                                         new SlewRateLimiter(3.0));
+ *
+ * Order matters: a deadband belongs first (so noise around center never
+ * reaches the stateful stages) and a slew rate limit last (so nothing after
+ * it can undo the limit).
+ */
+package org.usfirst.frc.team4183.robot.oi;
+
+/**
+ * The FilterChain class definition
+ */
+public class FilterChain implements AxisFilter
+{
+    private final AxisFilter[] stages;
+
+    public FilterChain(AxisFilter... someStages)
+    {
+        stages = someStages.clone();
+    }
+
+    public double apply(double aValue, double aDelta_sec)
+    {
+        double value = aValue;
+        for (int i = 0; i < stages.length; ++i)
+        {
+            value = stages[i].apply(value, aDelta_sec);
+        }
+        return value;
+    }
+
+    public void reset(double aValue)
+    {
+        for (int i = 0; i < stages.length; ++i)
+        {
+            stages[i].reset(aValue);
+        }
+    }
+}
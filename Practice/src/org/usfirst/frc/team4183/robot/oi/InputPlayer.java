@@ -0,0 +1,160 @@
+/**
+ * InputPlayer - reads back a log written by InputRecorder, one record at a
+ * time, so OI can replay a teleop session instead of reading a joystick.
+ *
+ * The log is memory mapped read-only and only the header is checked when
+ * it is opened; records are read in place as they are needed. Nothing is
+ * allocated after open(), so replaying does not disturb the measurements
+ * it is used for.
+ */
+package org.usfirst.frc.team4183.robot.oi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The InputPlayer class definition
+ */
+public class InputPlayer
+{
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int count;
+
+    // The current record; -1 before the first call to next()
+    private int index = -1;
+
+    private InputPlayer(File aFile, ByteBuffer aBuffer, int aCount)
+    {
+        file = aFile;
+        buffer = aBuffer;
+        count = aCount;
+    }
+
+    /**
+     * open - map and check a log
+     *
+     * @throws IOException if the file is missing, unreadable or not a log
+     *         in the current format; the message says which
+     */
+    public static InputPlayer open(File aFile) throws IOException
+    {
+        ByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(aFile, "r");
+        try
+        {
+            // The mapping stays valid after the channel is closed
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        if (buffer.capacity() < InputRecorder.HEADER_BYTES)
+        {
+            throw new IOException(aFile + " is too short");
+        }
+        if (buffer.getInt(0) != InputRecorder.MAGIC)
+        {
+            throw new IOException(aFile + " is not an input log");
+        }
+        if ((buffer.getInt(4) != InputRecorder.FORMAT_VERSION) ||
+            (buffer.getInt(8) != InputRecorder.RECORD_BYTES))
+        {
+            throw new IOException(aFile + " has format " + buffer.getInt(4) + ", expected " +
+                                  InputRecorder.FORMAT_VERSION);
+        }
+
+        int count = buffer.getInt(InputRecorder.COUNT_OFFSET);
+        long expectedBytes = InputRecorder.HEADER_BYTES + (long) count * InputRecorder.RECORD_BYTES;
+        if ((count < 0) || (expectedBytes > buffer.capacity()))
+        {
+            throw new IOException(aFile + " is truncated or has a bad header");
+        }
+
+        return new InputPlayer(aFile, buffer, count);
+    }
+
+    /**
+     * next - move to the next record
+     *
+     * @return false when there are no more (the last one stays current)
+     */
+    public boolean next()
+    {
+        if (index + 1 >= count)
+        {
+            return false;
+        }
+        ++index;
+        return true;
+    }
+
+    /**
+     * rewind - go back to before the first record
+     */
+    public void rewind()
+    {
+        index = -1;
+    }
+
+    private int offset()
+    {
+        if (index < 0)
+        {
+            throw new IllegalStateException("No current record; call next() first");
+        }
+        return InputRecorder.HEADER_BYTES + index * InputRecorder.RECORD_BYTES;
+    }
+
+    /**
+     * getTimestamp_sec returns when the current record was read (FPGA time)
+     */
+    public double getTimestamp_sec()
+    {
+        return buffer.getDouble(offset());
+    }
+
+    public double getRawSpeed()
+    {
+        return buffer.getFloat(offset() + 8);
+    }
+
+    public double getRawTurn()
+    {
+        return buffer.getFloat(offset() + 12);
+    }
+
+    /**
+     * getDuration_sec returns the time from the first record to the last
+     */
+    public double getDuration_sec()
+    {
+        if (count < 2)
+        {
+            return 0.0;
+        }
+        return buffer.getDouble(InputRecorder.HEADER_BYTES + (count - 1) * InputRecorder.RECORD_BYTES) -
+               buffer.getDouble(InputRecorder.HEADER_BYTES);
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+}
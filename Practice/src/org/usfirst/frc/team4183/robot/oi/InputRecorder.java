@@ -0,0 +1,171 @@
+/**
+ * InputRecorder - writes every sample of the drive controls to a memory
+ * mapped log, so a teleop session can be replayed later (see InputPlayer
+ * and sim.TeleopReplay).
+ *
+ * The log is append-only. Each record is the raw axes exactly as they came
+ * from the driver station, with the FPGA time they were read; the
+ * conditioning is not recorded because replay runs it again. Records are
+ * written straight into the mapped file, which is an ordinary memory store
+ * for the control thread; the operating system writes the pages out in the
+ * background.
+ *
+ * Layout (big-endian, as ByteBuffer defaults to):
+ *
+ *      header      int magic, int format version, int record size (bytes),
+ *                  int record count
+ *      records     per record: double timestamp (sec), float raw speed,
+ *                  float raw turn
+ *
+ * The file is sized for its capacity when it is created and every page is
+ * touched then, so appending never grows the file or takes a page fault.
+ * The count in the header is updated after each record is complete, so a
+ * log cut short (e.g., by the power going off) still reads back up to the
+ * last whole record. Once the capacity is reached further records are
+ * dropped and counted.
+ *
+ * Floats hold the axes exactly: the driver station sends each one as a
+ * byte, scaled to -1 to +1.
+ */
+package org.usfirst.frc.team4183.robot.oi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.usfirst.frc.team4183.robot.telemetry.LogFiles;
+
+/**
+ * The InputRecorder class definition
+ */
+public class InputRecorder
+{
+    public static final int MAGIC = 0x4F494C47;     // "OILG"
+    public static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 16;
+    static final int COUNT_OFFSET = 12;
+
+    private static final int PAGE_BYTES = 4096;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int count = 0;
+    private long dropped = 0;
+
+    /**
+     * Constructor - creates (or replaces) the log file
+     *
+     * @param aFile - where to write the log
+     * @param aCapacity - the most records the log will hold
+     *
+     * @throws IOException if the file cannot be created and mapped
+     */
+    public InputRecorder(File aFile, int aCapacity) throws IOException
+    {
+        if (aCapacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + aCapacity);
+        }
+        file = aFile;
+        capacity = aCapacity;
+
+        long size = HEADER_BYTES + (long) aCapacity * RECORD_BYTES;
+        RandomAccessFile raf = new RandomAccessFile(aFile, "rw");
+        try
+        {
+            // The mapping stays valid after the channel is closed
+            raf.setLength(size);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        // Fault every page in now rather than one at a time while recording
+        for (int offset = 0; offset < size; offset += PAGE_BYTES)
+        {
+            buffer.put(offset, (byte) 0);
+        }
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putInt(8, RECORD_BYTES);
+        buffer.putInt(COUNT_OFFSET, 0);
+    }
+
+    /**
+     * create - start a log in the specified directory named by LogFiles
+     * (<prefix>-NNN.oilog), first deleting the oldest so that at most the
+     * specified number are kept; every log is its full size from the
+     * start, so that also bounds the room they take
+     *
+     * @throws IOException if an old log cannot be deleted or the file
+     * cannot be created
+     */
+    public static InputRecorder create(File aDirectory, String aPrefix, int aCapacity, int aKeepFiles)
+        throws IOException
+    {
+        long size = HEADER_BYTES + (long) aCapacity * RECORD_BYTES;
+        File file = LogFiles.next(aDirectory, aPrefix, "oilog", aKeepFiles, (long) aKeepFiles * size, size);
+        return new InputRecorder(file, aCapacity);
+    }
+
+    /**
+     * append - add one record; allocates nothing
+     */
+    public void append(double aTimestamp_sec, double aRawSpeed, double aRawTurn)
+    {
+        if (count >= capacity)
+        {
+            ++dropped;
+            return;
+        }
+
+        int offset = HEADER_BYTES + count * RECORD_BYTES;
+        buffer.putDouble(offset, aTimestamp_sec);
+        buffer.putFloat(offset + 8, (float) aRawSpeed);
+        buffer.putFloat(offset + 12, (float) aRawTurn);
+
+        // Only now does the record count
+        ++count;
+        buffer.putInt(COUNT_OFFSET, count);
+    }
+
+    /**
+     * flush - wait for the log to reach the file system; this is a system
+     * call that may block, so not for the periodic functions
+     */
+    public void flush()
+    {
+        buffer.force();
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * getDroppedCount returns how many records did not fit
+     */
+    public long getDroppedCount()
+    {
+        return dropped;
+    }
+}
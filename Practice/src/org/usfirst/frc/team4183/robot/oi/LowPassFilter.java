@@ -0,0 +1,45 @@
+/**
+ * LowPassFilter - smooths out noise with a first order (exponential)
+ * filter.
+ *
+ * Each sample moves the output part of the way toward the input; how far
+ * depends on the time since the previous sample relative to the time
+ * constant, so the filter behaves the same even if samples arrive late.
+ * After one time constant the output has covered about 63% of a step.
+ */
+package org.usfirst.frc.team4183.robot.oi;
+
+/**
+ * The LowPassFilter class definition
+ */
+public class LowPassFilter implements AxisFilter
+{
+    private final double timeConstant_sec;
+    private double output = 0.0;
+
+    /**
+     * Constructor
+     *
+     * @param aTimeConstant_sec - how quickly the output follows, > 0
+     */
+    public LowPassFilter(double aTimeConstant_sec)
+    {
+        if (aTimeConstant_sec <= 0.0)
+        {
+            throw new IllegalArgumentException("Time constant must be positive: " + aTimeConstant_sec);
+        }
+        timeConstant_sec = aTimeConstant_sec;
+    }
+
+    public double apply(double aValue, double aDelta_sec)
+    {
+        double alpha = aDelta_sec / (timeConstant_sec + aDelta_sec);
+        output += alpha * (aValue - output);
+        return output;
+    }
+
+    public void reset(double aValue)
+    {
+        output = aValue;
+    }
+}
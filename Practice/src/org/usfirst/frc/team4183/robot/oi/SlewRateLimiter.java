@@ -0,0 +1,45 @@
+/**
+ * SlewRateLimiter - limits how fast the output may change.
+ *
+ * Slamming the stick from full reverse to full forward asks the drive for
+ * an instant change that the wheels can only answer by slipping (or the
+ * robot by tipping). The output follows the input but never moves faster
+ * than the rate allows, e.g., 2.0 per second takes a second to go from 0
+ * to full.
+ */
+package org.usfirst.frc.team4183.robot.oi;
+
+/**
+ * The SlewRateLimiter class definition
+ */
+public class SlewRateLimiter implements AxisFilter
+{
+    private final double rate_per_sec;
+    private double output = 0.0;
+
+    /**
+     * Constructor
+     *
+     * @param aRate_per_sec - largest change in output per second, > 0
+     */
+    public SlewRateLimiter(double aRate_per_sec)
+    {
+        if (aRate_per_sec <= 0.0)
+        {
+            throw new IllegalArgumentException("Slew rate must be positive: " + aRate_per_sec);
+        }
+        rate_per_sec = aRate_per_sec;
+    }
+
+    public double apply(double aValue, double aDelta_sec)
+    {
+        double maxChange = rate_per_sec * aDelta_sec;
+        output += Math.max(-maxChange, Math.min(maxChange, aValue - output));
+        return output;
+    }
+
+    public void reset(double aValue)
+    {
+        output = aValue;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * DashboardParameterSource - shows every parameter on the dashboard as
+ * "params/<name>" and takes any value typed in there as a change.
+ *
+ * Changes made elsewhere (e.g., the file) are shown on the dashboard as
+ * they happen. The values typed in one poll go to the store as a single
+ * update.
+ */
+package org.usfirst.frc.team4183.robot.params;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * The DashboardParameterSource class definition
+ */
+public class DashboardParameterSource implements ParameterSource
+{
+    private static final String PREFIX = "params/";
+
+    // What the dashboard was last given, so anything else was typed in
+    private final String[] keys = new String[Parameters.MAX_PARAMETERS];
+    private final double[] shown = new double[Parameters.MAX_PARAMETERS];
+    private int shownCount = 0;
+    private long shownVersion = -1;
+
+    // One update's worth of changes
+    private final int[] changed = new int[Parameters.MAX_PARAMETERS];
+    private final double[] values = new double[Parameters.MAX_PARAMETERS];
+
+    public void poll()
+    {
+        // Show the store's values first, so a value just changed elsewhere
+        // is not mistaken for one typed in
+        ParameterSnapshot snapshot = Parameters.snapshot();
+        if (snapshot.getVersion() != shownVersion)
+        {
+            for (int i = 0; i < snapshot.getCount(); ++i)
+            {
+                if (i >= shownCount)
+                {
+                    keys[i] = PREFIX + Parameters.getName(i);
+                    shown[i] = Double.NaN;
+                }
+                if (Double.doubleToLongBits(snapshot.get(i)) != Double.doubleToLongBits(shown[i]))
+                {
+                    shown[i] = snapshot.get(i);
+                    SmartDashboard.putNumber(keys[i], shown[i]);
+                }
+            }
+            shownCount = snapshot.getCount();
+            shownVersion = snapshot.getVersion();
+        }
+
+        int count = 0;
+        for (int i = 0; i < shownCount; ++i)
+        {
+            double value = SmartDashboard.getNumber(keys[i], shown[i]);
+            if (Double.isNaN(value) || Double.isInfinite(value))
+            {
+                continue;   // Not something a gain can be; leave it be
+            }
+            if (value != shown[i])
+            {
+                changed[count] = i;
+                values[count] = value;
+                ++count;
+                shown[i] = value;
+            }
+        }
+        if (count > 0)
+        {
+            // Our own change; nothing new to show
+            long version = Parameters.set(changed, values, count);
+            if (version == shownVersion + 1)
+            {
+                shownVersion = version;
+            }
+        }
+    }
+}
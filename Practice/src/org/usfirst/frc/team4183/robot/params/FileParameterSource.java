@@ -0,0 +1,103 @@
+/**
+ * FileParameterSource - reads parameter changes from a file on the robot,
+ * e.g. one copied over with the tuned gains:
+ *
+ *     # Lines of <name> = <value>
+ *     drive/position/P = 0.3
+ *     drive/position/D = 20
+ *
+ * The file is read whenever its modification time changes, and all of its
+ * values go to the store as a single update. Parameters not in the file
+ * keep whatever value they have; taking a line out does not put it back to
+ * its default. Names that are not parameters and values that are not
+ * (finite) numbers are reported to the driver station and skipped.
+ */
+package org.usfirst.frc.team4183.robot.params;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * The FileParameterSource class definition
+ */
+public class FileParameterSource implements ParameterSource
+{
+    private final File file;
+    private long lastModified = 0;     // 0 is also what a missing file reports
+
+    private final int[] changed = new int[Parameters.MAX_PARAMETERS];
+    private final double[] values = new double[Parameters.MAX_PARAMETERS];
+
+    public FileParameterSource(File aFile)
+    {
+        file = aFile;
+    }
+
+    public void poll()
+    {
+        long modified = file.lastModified();
+        if (modified == lastModified)
+        {
+            return;
+        }
+        lastModified = modified;
+        if (0 == modified)
+        {
+            return;     // Gone; the values stay as they are
+        }
+
+        Properties properties = new Properties();
+        try
+        {
+            InputStream in = new FileInputStream(file);
+            try
+            {
+                properties.load(in);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            DriverStation.reportError("Cannot read parameters from " + file + ": " + e.getMessage(), false);
+            return;
+        }
+
+        int count = 0;
+        for (String name : properties.stringPropertyNames())
+        {
+            int id = Parameters.find(name);
+            if (id < 0)
+            {
+                DriverStation.reportError("Unknown parameter " + name + " in " + file, false);
+                continue;
+            }
+            try
+            {
+                double value = Double.parseDouble(properties.getProperty(name).trim());
+                if (Double.isNaN(value) || Double.isInfinite(value))
+                {
+                    throw new NumberFormatException();
+                }
+                values[count] = value;
+                changed[count] = id;
+                ++count;
+            }
+            catch (NumberFormatException e)
+            {
+                DriverStation.reportError("Parameter " + name + " in " + file + " is not a number", false);
+            }
+        }
+        if (count > 0)
+        {
+            Parameters.set(changed, values, count);
+        }
+    }
+}
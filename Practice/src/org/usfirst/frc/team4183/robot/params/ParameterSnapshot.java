@@ -0,0 +1,54 @@
+/**
+ * ParameterSnapshot - every parameter's value as of one version of the
+ * store (see Parameters).
+ *
+ * A snapshot never changes once published; an update makes a new one. So
+ * whoever holds a snapshot reads a consistent set of values (all of the
+ * gains of one update, never some old and some new) without a lock, and
+ * can tell from the version whether anything has changed since.
+ */
+package org.usfirst.frc.team4183.robot.params;
+
+/**
+ * The ParameterSnapshot class definition
+ */
+public final class ParameterSnapshot
+{
+    private final long version;
+    private final long updateTime_ns;
+    private final double[] values;
+
+    ParameterSnapshot(long aVersion, long anUpdateTime_ns, double[] someValues)
+    {
+        version = aVersion;
+        updateTime_ns = anUpdateTime_ns;
+        values = someValues;
+    }
+
+    /**
+     * getVersion returns the version, which increases with every update
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * getUpdateTime_ns returns when this version was made (System.nanoTime),
+     * to measure how long a change takes to be applied
+     */
+    public long getUpdateTime_ns()
+    {
+        return updateTime_ns;
+    }
+
+    public double get(int aParameter)
+    {
+        return values[aParameter];
+    }
+
+    public int getCount()
+    {
+        return values.length;
+    }
+}
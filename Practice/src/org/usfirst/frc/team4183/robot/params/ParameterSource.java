@@ -0,0 +1,17 @@
+/**
+ * ParameterSource - somewhere parameter changes come from (the dashboard,
+ * a file on the robot); polled by the Parameters thread
+ */
+package org.usfirst.frc.team4183.robot.params;
+
+/**
+ * The ParameterSource interface definition
+ */
+public interface ParameterSource
+{
+    /**
+     * poll - look for changes and pass them to Parameters.set; called
+     * periodically on the Parameters thread only
+     */
+    void poll();
+}
@@ -0,0 +1,288 @@
+/**
+ * Parameters - values that can be changed while the robot runs (e.g., the
+ * drive gains), from the dashboard or a file, without a redeploy.
+ *
+ * RobotMap constants are compiled in; changing one means building and
+ * deploying again, which makes tuning on the carpet slow. A parameter
+ * starts at its RobotMap value and can then be changed at any time:
+ *
+ *     1. Each parameter is defined once by name, with its default, and
+ *        given an ID (like a telemetry channel)
+ *     2. An update (one or several values) copies the current values, makes
+ *        the changes and publishes the result as a new ParameterSnapshot
+ *        with the next version number, in a single volatile write
+ *     3. Readers (e.g., the drive, once per cycle) read the current
+ *        snapshot, a single volatile read, and compare its version with the
+ *        one they last acted on; only when it differs is there anything to do
+ *
+ * Readers never lock and never see a half-made update: the snapshot they
+ * hold is complete and never changes, and the version tells them whether a
+ * newer one exists. Updates are rare and take a lock among themselves.
+ *
+ * A background thread polls the sources (see ParameterSource) for changes;
+ * start() polls the dashboard ("params/...") and the parameter file.
+ *
+ * Like Telemetry this is a static interface since there is only ever one.
+ */
+package org.usfirst.frc.team4183.robot.params;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+
+/**
+ * The Parameters class definition
+ */
+public class Parameters
+{
+    public static final int MAX_PARAMETERS = 64;
+
+    // Registry; only grows
+    private static final String[] names = new String[MAX_PARAMETERS];
+    private static final double[] defaults = new double[MAX_PARAMETERS];
+    private static int count = 0;
+
+    private static volatile ParameterSnapshot current = new ParameterSnapshot(0, System.nanoTime(), new double[0]);
+
+    // The drive gains, each a group of 4 consecutive parameters (P, I, D, F)
+    public static final int DRIVE_POSITION_GAINS = defineGains("drive/position",
+                                                               RobotMap.DRIVE_POSITION_P,
+                                                               RobotMap.DRIVE_POSITION_I,
+                                                               RobotMap.DRIVE_POSITION_D,
+                                                               RobotMap.DRIVE_POSITION_F);
+    public static final int DRIVE_SPEED_GAINS = defineGains("drive/speed",
+                                                            RobotMap.DRIVE_SPEED_P,
+                                                            RobotMap.DRIVE_SPEED_I,
+                                                            RobotMap.DRIVE_SPEED_D,
+                                                            RobotMap.DRIVE_SPEED_F);
+    public static final int DRIVE_PROFILE_GAINS = defineGains("drive/profile",
+                                                              RobotMap.DRIVE_PROFILE_P,
+                                                              RobotMap.DRIVE_PROFILE_I,
+                                                              RobotMap.DRIVE_PROFILE_D,
+                                                              RobotMap.DRIVE_PROFILE_F);
+
+    private static Thread poller;
+
+    private Parameters()
+    {
+        // Static interface only
+    }
+
+    /**
+     * define - return the ID of the named parameter, creating it with the
+     * specified default if needed. This takes a lock and should be done once
+     * (e.g., in a static final) rather than on the control path.
+     */
+    public static synchronized int define(String aName, double aDefault)
+    {
+        int id = find(aName);
+        if (id >= 0)
+        {
+            return id;
+        }
+        if (count == MAX_PARAMETERS)
+        {
+            throw new IllegalStateException("Too many parameters, cannot add " + aName);
+        }
+        names[count] = aName;
+        defaults[count] = aDefault;
+        id = count++;
+
+        double[] values = Arrays.copyOf(valuesOf(current), count);
+        values[id] = aDefault;
+        publish(values);
+        return id;
+    }
+
+    /**
+     * defineGains - define <prefix>/P, /I, /D and /F, in that order
+     *
+     * @return the ID of P; the others follow
+     */
+    private static synchronized int defineGains(String aPrefix, double aP, double anI, double aD, double anF)
+    {
+        int p = define(aPrefix + "/P", aP);
+        define(aPrefix + "/I", anI);
+        define(aPrefix + "/D", aD);
+        define(aPrefix + "/F", anF);
+        return p;
+    }
+
+    /**
+     * find - the ID of the named parameter, or -1
+     */
+    public static synchronized int find(String aName)
+    {
+        for (int i = 0; i < count; ++i)
+        {
+            if (names[i].equals(aName))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static synchronized int getCount()
+    {
+        return count;
+    }
+
+    public static synchronized String getName(int aParameter)
+    {
+        return names[aParameter];
+    }
+
+    public static synchronized double getDefault(int aParameter)
+    {
+        return defaults[aParameter];
+    }
+
+    /**
+     * snapshot returns the current values; lock-free, safe to call from the
+     * control loop
+     */
+    public static ParameterSnapshot snapshot()
+    {
+        return current;
+    }
+
+    /**
+     * set - change one parameter
+     *
+     * @return the version holding the change (the current one if the value
+     *         was already the same)
+     */
+    public static long set(int aParameter, double aValue)
+    {
+        return set(new int[] { aParameter }, new double[] { aValue }, 1);
+    }
+
+    /**
+     * set - change several parameters at once, so readers see all of the
+     * changes or none of them
+     *
+     * @throws IllegalArgumentException for an unknown ID or a value that is
+     *         not a finite number (and changes nothing)
+     *
+     * @return the version holding the changes (the current one if every
+     *         value was already the same)
+     */
+    public static synchronized long set(int[] someParameters, double[] someValues, int aCount)
+    {
+        double[] values = null;
+        for (int i = 0; i < aCount; ++i)
+        {
+            int id = someParameters[i];
+            if ((id < 0) || (id >= count))
+            {
+                throw new IllegalArgumentException("No parameter " + id);
+            }
+            if (Double.isNaN(someValues[i]) || Double.isInfinite(someValues[i]))
+            {
+                throw new IllegalArgumentException(names[id] + " cannot be " + someValues[i]);
+            }
+
+            if (current.get(id) != someValues[i])
+            {
+                if (values == null)
+                {
+                    values = valuesOf(current);
+                }
+                values[id] = someValues[i];
+            }
+        }
+        if (values != null)
+        {
+            publish(values);
+        }
+        return current.getVersion();
+    }
+
+    /**
+     * reset - put every parameter back to its default
+     */
+    public static synchronized long reset()
+    {
+        publish(Arrays.copyOf(defaults, count));
+        return current.getVersion();
+    }
+
+    private static double[] valuesOf(ParameterSnapshot aSnapshot)
+    {
+        double[] values = new double[aSnapshot.getCount()];
+        for (int i = 0; i < values.length; ++i)
+        {
+            values[i] = aSnapshot.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * publish - make the values (which must not be touched afterward) the
+     * next version; callers hold the lock
+     */
+    private static void publish(double[] someValues)
+    {
+        current = new ParameterSnapshot(current.getVersion() + 1, System.nanoTime(), someValues);
+    }
+
+    /**
+     * start - poll the sources at the specified period; calling start again
+     * has no effect
+     */
+    public static synchronized void start(final ParameterSource[] someSources, double aPeriod_sec)
+    {
+        if (poller != null)
+        {
+            return;
+        }
+
+        final long period_ms = Math.max(1L, (long) (aPeriod_sec * 1000.0));
+        poller = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                while ( ! Thread.currentThread().isInterrupted())
+                {
+                    for (ParameterSource source : someSources)
+                    {
+                        source.poll();
+                    }
+                    try
+                    {
+                        Thread.sleep(period_ms);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "Parameters");
+        poller.setDaemon(true);
+        poller.setPriority(Thread.MIN_PRIORITY);
+        poller.start();
+    }
+
+    /**
+     * start - poll the parameter file and the dashboard at the default
+     * period; the file is read first, so the dashboard starts with its values
+     */
+    public static void start()
+    {
+        start(new ParameterSource[] { new FileParameterSource(new File(RobotMap.PARAMETER_FILE)),
+                                      new DashboardParameterSource() },
+              RobotMap.PARAMETER_POLL_PERIOD_sec);
+    }
+
+    public static synchronized void stop()
+    {
+        if (poller != null)
+        {
+            poller.interrupt();
+            poller = null;
+        }
+    }
+}
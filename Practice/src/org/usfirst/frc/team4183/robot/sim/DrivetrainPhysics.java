@@ -0,0 +1,285 @@
+/**
+ * DrivetrainPhysics - a pure Java model of our drivetrain: two CIMs per
+ * side through a gearbox to 9 inch wheels 18 inches apart (see RobotMap),
+ * pushing a robot with mass and rotational inertia.
+ *
+ * Each closed loop period (1 ms), after every SimulatedMotorController has
+ * worked out its output the way a Talon would:
+ *
+ *     1. Each motor's current comes from the DC motor equation,
+ *        I = (output * bus voltage - speed / kV) / R, so torque falls off
+ *        linearly from stall to free speed; with no output a braking motor
+ *        is shorted (back EMF alone drives the current) and a coasting one
+ *        carries none
+ *     2. The torques, through the gearbox and wheels, push each side; the
+ *        sum accelerates the mass and the difference (times half the track)
+ *        turns the inertia, less rolling resistance and the scrub of the
+ *        wheels skidding sideways when turning
+ *     3. The wheel speed of each side moves the encoders on that side;
+ *        when turning the wheels also skid sideways, so they roll further
+ *        than the turn of the frame accounts for (TURN_SCRUB_FACTOR) and
+ *        a heading worked out from the encoders alone reads too much
+ *     4. The current drawn through the battery's resistance sets the bus
+ *        voltage for the next period
+ *
+ * The chassis is in robot terms (forward, counter-clockwise positive) and
+ * the encoders count RobotMap.FORWARD when driving forward, which is what
+ * the odometry and closed loops assume; a positive output moves a motor's
+ * encoder positive, as a Talon needs to close a loop.
+ *
+ * The wheels do not slip along the ground, the motors heat up not at all, and the numbers
+ * below are estimates for a practice chassis, so this is not a substitute
+ * for the real robot; but it accelerates, coasts, brakes and sags the way a
+ * robot does, which is what the commands need to be tried against.
+ */
+package org.usfirst.frc.team4183.robot.sim;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+
+/**
+ * The DrivetrainPhysics class definition
+ */
+public class DrivetrainPhysics
+{
+    // CIM motor (FRC kit of parts)
+    public static final double CIM_STALL_TORQUE_Nm = 2.42;
+    public static final double CIM_STALL_CURRENT_A = 133.0;
+    public static final double CIM_FREE_SPEED_rpm = 5310.0;
+    public static final double CIM_FREE_CURRENT_A = 2.7;
+
+    // Motor turns per wheel turn; makes the free speed the same ~3 m/s as
+    // the simple SimulatedMotorController model
+    public static final double GEAR_RATIO = CIM_FREE_SPEED_rpm * RobotMap.WHEEL_TO_ENCODER /
+                                            SimulatedMotorController.FREE_SPEED_rpm;
+    public static final double GEARBOX_EFFICIENCY = 0.85;
+
+    // About 120 pounds with battery and bumpers; the inertia is that of a
+    // uniform 0.8 x 0.7 meter slab about its center
+    public static final double ROBOT_MASS_kg = 54.0;
+    public static final double MOMENT_OF_INERTIA_kgm2 = ROBOT_MASS_kg * (0.8 * 0.8 + 0.7 * 0.7) / 12.0;
+
+    // Resistance to rolling (force) and to turning (torque, the wheels
+    // skidding sideways); both ramp in over a small speed so they hold the
+    // robot still without chattering
+    public static final double ROLLING_RESISTANCE_N = 0.02 * ROBOT_MASS_kg * 9.81;
+    public static final double TURN_SCRUB_Nm = 25.0;
+
+    // How much further the wheels roll than the frame turns (the effective
+    // track is this much wider than the real one); 1 would be no skid
+    public static final double TURN_SCRUB_FACTOR = 1.1;
+    public static final double FRICTION_SPEED_mps = 0.01;
+
+    // Battery (and wiring) as an ideal source behind a resistance
+    public static final double BATTERY_VOLTAGE_V = 12.5;
+    public static final double BATTERY_RESISTANCE_ohm = 0.02;
+
+    // The DC motor constants follow from the CIM data
+    private static final double RESISTANCE_ohm = SimulatedHardware.NOMINAL_BUS_VOLTAGE_V / CIM_STALL_CURRENT_A;
+    private static final double KT_Nm_per_A = CIM_STALL_TORQUE_Nm / CIM_STALL_CURRENT_A;
+    private static final double KV_radps_per_V = (CIM_FREE_SPEED_rpm * 2.0 * Math.PI / 60.0) /
+                                                 (SimulatedHardware.NOMINAL_BUS_VOLTAGE_V -
+                                                  RESISTANCE_ohm * CIM_FREE_CURRENT_A);
+
+    private static final double HALF_TRACK_m = RobotMap.WHEEL_TRACK_m / 2.0;
+    private static final double WHEEL_HALF_TRACK_m = HALF_TRACK_m * TURN_SCRUB_FACTOR;
+
+    // Meters per second at the wheel to encoder RPM, with the direction the
+    // encoders count
+    private static final double ENCODER_RPM_PER_mps = RobotMap.FORWARD * RobotMap.ENCODER_ROT_PER_METER * 60.0;
+
+    private final SimulatedMotorController[] leftMotors;
+    private final SimulatedMotorController[] rightMotors;
+
+    // Chassis state
+    private double x_m = 0.0;
+    private double y_m = 0.0;
+    private double heading_rad = 0.0;
+    private double speed_mps = 0.0;
+    private double turnRate_radps = 0.0;
+
+    private double busVoltage_V = BATTERY_VOLTAGE_V;
+    private double batteryCurrent_A = 0.0;
+
+    /**
+     * Constructor
+     *
+     * @param someLeftMotors - every motor on the left side
+     * @param someRightMotors - every motor on the right side
+     */
+    public DrivetrainPhysics(SimulatedMotorController[] someLeftMotors, SimulatedMotorController[] someRightMotors)
+    {
+        leftMotors = someLeftMotors.clone();
+        rightMotors = someRightMotors.clone();
+    }
+
+    /**
+     * create - a drivetrain for the drive motors at the RobotMap CAN IDs of
+     * the specified hardware (creating them if need be), attached to it
+     */
+    public static DrivetrainPhysics create(SimulatedHardware aHardware)
+    {
+        DrivetrainPhysics drivetrain = new DrivetrainPhysics(
+            new SimulatedMotorController[] { aHardware.createMotorController(RobotMap.leftMotor0),
+                                             aHardware.createMotorController(RobotMap.leftMotor1) },
+            new SimulatedMotorController[] { aHardware.createMotorController(RobotMap.rightMotor0),
+                                             aHardware.createMotorController(RobotMap.rightMotor1) });
+        aHardware.setDrivetrain(drivetrain);
+        return drivetrain;
+    }
+
+    void attach()
+    {
+        setDriven(true);
+    }
+
+    void detach()
+    {
+        setDriven(false);
+    }
+
+    private void setDriven(boolean aDriven)
+    {
+        for (SimulatedMotorController motor : leftMotors)
+        {
+            motor.setDriven(aDriven);
+        }
+        for (SimulatedMotorController motor : rightMotors)
+        {
+            motor.setDriven(aDriven);
+        }
+    }
+
+    /**
+     * reset - at rest at the origin, facing along x, battery rested
+     */
+    void reset()
+    {
+        x_m = 0.0;
+        y_m = 0.0;
+        heading_rad = 0.0;
+        speed_mps = 0.0;
+        turnRate_radps = 0.0;
+        busVoltage_V = BATTERY_VOLTAGE_V;
+        batteryCurrent_A = 0.0;
+    }
+
+    /**
+     * step - advance by the specified time using the outputs the motors
+     * have just computed
+     */
+    void step(double aDelta_sec)
+    {
+        double leftSpeed_mps = speed_mps - turnRate_radps * WHEEL_HALF_TRACK_m;
+        double rightSpeed_mps = speed_mps + turnRate_radps * WHEEL_HALF_TRACK_m;
+
+        batteryCurrent_A = 0.0;
+        double leftForce_N = sideForce(leftMotors, leftSpeed_mps);
+        double rightForce_N = sideForce(rightMotors, rightSpeed_mps);
+
+        double force_N = leftForce_N + rightForce_N -
+                         ROLLING_RESISTANCE_N * friction(speed_mps);
+        double torque_Nm = (rightForce_N - leftForce_N) * HALF_TRACK_m -
+                           TURN_SCRUB_Nm * friction(turnRate_radps * HALF_TRACK_m);
+
+        // Semi-implicit Euler: speeds first, then positions with the new
+        // speeds (stable at this step size)
+        speed_mps += force_N / ROBOT_MASS_kg * aDelta_sec;
+        turnRate_radps += torque_Nm / MOMENT_OF_INERTIA_kgm2 * aDelta_sec;
+
+        double midHeading_rad = heading_rad + 0.5 * turnRate_radps * aDelta_sec;
+        x_m += speed_mps * Math.cos(midHeading_rad) * aDelta_sec;
+        y_m += speed_mps * Math.sin(midHeading_rad) * aDelta_sec;
+        heading_rad += turnRate_radps * aDelta_sec;
+
+        leftSpeed_mps = speed_mps - turnRate_radps * WHEEL_HALF_TRACK_m;
+        rightSpeed_mps = speed_mps + turnRate_radps * WHEEL_HALF_TRACK_m;
+        moveEncoders(leftMotors, leftSpeed_mps, aDelta_sec);
+        moveEncoders(rightMotors, rightSpeed_mps, aDelta_sec);
+
+        busVoltage_V = Math.max(0.0, BATTERY_VOLTAGE_V - BATTERY_RESISTANCE_ohm * batteryCurrent_A);
+    }
+
+    /**
+     * sideForce - the forward force of the motors on one side at the
+     * specified wheel speed; adds their draw to the battery current
+     */
+    private double sideForce(SimulatedMotorController[] someMotors, double aWheelSpeed_mps)
+    {
+        // In the direction a positive output turns the motor
+        double motorSpeed_radps = RobotMap.FORWARD * aWheelSpeed_mps / RobotMap.WHEEL_RADIUS_m * GEAR_RATIO;
+
+        double torque_Nm = 0.0;
+        for (SimulatedMotorController motor : someMotors)
+        {
+            double output = motor.getOutput();
+            if ((0.0 == output) && ( ! motor.isBrakeMode()))
+            {
+                continue;   // Coasting; the motor is disconnected
+            }
+
+            double current_A = (output * busVoltage_V - motorSpeed_radps / KV_radps_per_V) / RESISTANCE_ohm;
+            torque_Nm += KT_Nm_per_A * current_A;
+
+            // The controller passes on the current in proportion to its
+            // output (a shorted, braking motor draws nothing from the battery)
+            batteryCurrent_A += output * current_A;
+        }
+
+        return RobotMap.FORWARD * torque_Nm * GEAR_RATIO * GEARBOX_EFFICIENCY / RobotMap.WHEEL_RADIUS_m;
+    }
+
+    private static void moveEncoders(SimulatedMotorController[] someMotors, double aWheelSpeed_mps, double aDelta_sec)
+    {
+        double speed_rpm = aWheelSpeed_mps * ENCODER_RPM_PER_mps;
+        for (SimulatedMotorController motor : someMotors)
+        {
+            motor.move(speed_rpm, aDelta_sec);
+        }
+    }
+
+    /**
+     * friction - the direction of a resisting force, ramped in near zero
+     */
+    private static double friction(double aSpeed_mps)
+    {
+        return Math.max(-1.0, Math.min(1.0, aSpeed_mps / FRICTION_SPEED_mps));
+    }
+
+    public double getX_m()
+    {
+        return x_m;
+    }
+
+    public double getY_m()
+    {
+        return y_m;
+    }
+
+    /**
+     * getHeading_deg returns the heading, counter-clockwise positive
+     */
+    public double getHeading_deg()
+    {
+        return Math.toDegrees(heading_rad);
+    }
+
+    public double getSpeed_mps()
+    {
+        return speed_mps;
+    }
+
+    public double getTurnRate_dps()
+    {
+        return Math.toDegrees(turnRate_radps);
+    }
+
+    public double getBusVoltage_V()
+    {
+        return busVoltage_V;
+    }
+
+    public double getBatteryCurrent_A()
+    {
+        return batteryCurrent_A;
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * HeadlessRunner - runs our autonomous routines against a simulated
+ * drivetrain on an ordinary desktop JVM (no roboRIO, no CAN bus, no driver
+ * station, no FRCSim/Gazebo).
+ *
+ * Usage (with the WPILib and CTRE jars on the classpath; the ant
+ * "simulate" target runs them all):
+ *
+ *     java org.usfirst.frc.team4183.robot.sim.HeadlessRunner [routine|all] [cycles] [rehearse]
+ *
+ * The routine is any name in AutonomousRoutines (the dashboard chooser,
+ * e.g. "Square"), or move, turn or square for short. Each one is built
+ * for Robot.driveSubsystem, whose motors are SimulatedMotorControllers
+ * moved by a DrivetrainPhysics, and run by the Scheduler at a virtual
+ * 20 ms period exactly as autonomousPeriodic would, but without waiting
+ * for the time to pass; the Talons' closed loops and the physics are
+ * stepped every virtual millisecond in between. A routine runs until it
+ * finishes or for the specified number of cycles (routines that never
+ * finish, like the default, use them all). Between routines the robot is
+ * put back at rest at the origin.
+ *
+ * For each routine the virtual and wall clock time are printed, with how
+ * many times faster than real time it ran, where the model says the robot
+ * ended up and where the odometry thinks it is, followed by the command
+ * profile (see CommandProfiler) of the routine.
+ *
+ * Routines with a known destination (see EXPECTED) are also checked: they
+ * must finish, and the odometry must end within the routine's tolerances
+ * of where it meant to go. With a gyro (RobotMap.HEADING_GYRO) the model's
+ * pose is held to the same tolerances; without one the encoders cannot see
+ * the wheels scrub in turns, so the robot really turns short and only the
+ * odometry is checked. Any failure is printed and, after all the routines
+ * have run, the exit status is 1 (so "ant simulate" fails).
+ *
+ * With "rehearse" each routine is first run through an
+ * AutonomousRehearsal, as the robot does while disabled. The time taken by
+ * the first cycle is printed either way, so running with and without shows
+ * what the rehearsal saves (each run must be a fresh JVM).
+ */
+package org.usfirst.frc.team4183.robot.sim;
+
+import org.usfirst.frc.team4183.robot.CycleExecutor;
+import org.usfirst.frc.team4183.robot.Robot;
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.commands.AutonomousFactory;
+import org.usfirst.frc.team4183.robot.commands.AutonomousRehearsal;
+import org.usfirst.frc.team4183.robot.commands.AutonomousRoutines;
+import org.usfirst.frc.team4183.robot.commands.CommandProfiler;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+import org.usfirst.frc.team4183.robot.subsystems.Pose;
+
+import edu.wpi.first.wpilibj.HLUsageReporting;
+import edu.wpi.first.wpilibj.command.Command;
+import edu.wpi.first.wpilibj.command.Scheduler;
+
+/**
+ * The HeadlessRunner class definition
+ */
+public class HeadlessRunner
+{
+    public static final double PERIOD_sec = 0.020;  // Same as IterativeRobot
+
+    private static final int DEFAULT_MAX_CYCLES = 3000; // 60 virtual seconds
+
+    /**
+     * Expected - where a routine should leave the robot, starting at rest
+     * at the origin (x forward, y left, heading counter-clockwise, not
+     * wrapped), and how close is close enough; each step of a routine
+     * may stop anywhere within its own tolerance, so the errors of a
+     * routine of several steps add up
+     */
+    private static class Expected
+    {
+        final String name;
+        final double x_m;
+        final double y_m;
+        final double heading_deg;
+        final double tolerance_m;
+        final double tolerance_deg;
+
+        Expected(String aName, double anX_m, double aY_m, double aHeading_deg,
+                 double aTolerance_m, double aTolerance_deg)
+        {
+            name = aName;
+            x_m = anX_m;
+            y_m = aY_m;
+            heading_deg = aHeading_deg;
+            tolerance_m = aTolerance_m;
+            tolerance_deg = aTolerance_deg;
+        }
+    }
+
+    // Routines that never finish (the default and the test drive) have no
+    // destination and are only run
+    private static final Expected[] EXPECTED =
+    {
+        new Expected("1 Meter Forward", 1.0, 0.0, 0.0, 0.05, 2.0),
+        new Expected("1 Meter Backward", -1.0, 0.0, 0.0, 0.05, 2.0),
+        new Expected("45 deg Right", 0.0, 0.0, -45.0, 0.05, 2.0),
+        new Expected("45 deg Left", 0.0, 0.0, 45.0, 0.05, 2.0),
+        new Expected("Square", 0.0, 0.0, -360.0, 0.15, 5.0)
+    };
+
+    private final SimulatedClock clock;
+    private final DrivetrainPhysics drivetrain;
+    private final Pose pose = new Pose();
+
+    private double totalVirtual_sec = 0.0;
+    private double totalWall_sec = 0.0;
+    private int failures = 0;
+
+    private HeadlessRunner(SimulatedClock aClock, DrivetrainPhysics aDrivetrain)
+    {
+        clock = aClock;
+        drivetrain = aDrivetrain;
+    }
+
+    public static void main(String[] args)
+    {
+        // This MUST happen before anything touches RobotMap (or Robot)
+        System.setProperty(RobotMap.SIMULATION_PROPERTY, "true");
+
+        String which = (args.length > 0) ? args[0] : "square";
+        int maxCycles = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_MAX_CYCLES;
+        boolean rehearse = (args.length > 2) && "rehearse".equals(args[2]);
+
+        SimulatedClock clock = new SimulatedClock();
+        clock.install();
+        SimulatedRobotState robotState = new SimulatedRobotState();
+        robotState.install();
+        SimulatedHardware.getInstance().install();
+        HLUsageReporting.SetImplementation(new HLUsageReporting.Null());
+
+        robotState.setMode(SimulatedRobotState.Mode.Autonomous);
+
+        // Creating the drive subsystem creates its simulated motors, which
+        // the physics then takes over
+        DriveSubsystem drive = Robot.driveSubsystem;
+        HeadlessRunner runner = new HeadlessRunner(clock, DrivetrainPhysics.create(SimulatedHardware.getInstance()));
+
+        if ("all".equalsIgnoreCase(which))
+        {
+            for (int i = 0; i < AutonomousRoutines.getCount(); ++i)
+            {
+                runner.run(drive, AutonomousRoutines.getName(i), AutonomousRoutines.getFactory(i), maxCycles, rehearse);
+            }
+        }
+        else
+        {
+            int index = AutonomousRoutines.find(alias(which));
+            if (index < 0)
+            {
+                System.err.println("No autonomous routine named " + which);
+                System.exit(1);
+            }
+            runner.run(drive, AutonomousRoutines.getName(index), AutonomousRoutines.getFactory(index), maxCycles, rehearse);
+        }
+
+        System.out.printf("total: %.2f virtual sec in %.1f ms wall clock, %.0fx real time%n",
+                          runner.totalVirtual_sec,
+                          runner.totalWall_sec * 1000.0,
+                          runner.totalVirtual_sec / runner.totalWall_sec);
+        if (runner.failures > 0)
+        {
+            System.out.printf("FAILED: %d check(s)%n", runner.failures);
+            System.exit(1);
+        }
+        System.out.println("passed");
+    }
+
+    /**
+     * alias - the short names from before the chooser list was shared
+     */
+    private static String alias(String aName)
+    {
+        if ("move".equals(aName))
+        {
+            return "1 Meter Forward";
+        }
+        else if ("turn".equals(aName))
+        {
+            return "45 deg Right";
+        }
+        return aName;
+    }
+
+    private void run(DriveSubsystem aDrive, String aName, AutonomousFactory aFactory, int aMaxCycles, boolean aRehearse)
+    {
+        // Start from rest at the origin, with nothing left over from the
+        // routine before
+        Scheduler.getInstance().removeAll();
+        aDrive.stop();
+        SimulatedHardware.getInstance().reset();
+        aDrive.updateState();
+        aDrive.markOrigin();
+        aDrive.getOdometry().encodersReset(0.0, 0.0);
+        aDrive.getOdometry().reset(0.0, 0.0, 0.0);
+
+        long rehearsalCycles = 0;
+        if (aRehearse)
+        {
+            AutonomousRehearsal rehearsal = new AutonomousRehearsal(RobotMap.REHEARSAL_CYCLES,
+                                                                    RobotMap.REHEARSAL_STEP_CYCLES);
+            rehearsal.select(aFactory);
+            while ( ! rehearsal.isComplete())
+            {
+                rehearsal.run(RobotMap.REHEARSAL_BUDGET_sec);
+            }
+            rehearsalCycles = rehearsal.getCycles();
+        }
+
+        CommandProfiler.reset();
+        Command command = CommandProfiler.profile(aFactory.create(aDrive));
+        command.start();
+        CycleExecutor cycle = new CycleExecutor(RobotMap.CYCLE_WORKERS, aDrive);
+
+        double minBusVoltage_V = SimulatedHardware.getInstance().getBusVoltage();
+        long start_ns = System.nanoTime();
+        long firstCycle_ns = 0;
+        int cycles = 0;
+        do
+        {
+            long cycleStart_ns = System.nanoTime();
+            cycle.read();
+            CommandProfiler.schedulerBegin();
+            Scheduler.getInstance().run();
+            CommandProfiler.schedulerEnd();
+            cycle.write();
+            if (0 == cycles)
+            {
+                firstCycle_ns = System.nanoTime() - cycleStart_ns;
+            }
+
+            SimulatedHardware.getInstance().step(PERIOD_sec);
+            clock.advance(PERIOD_sec);
+            minBusVoltage_V = Math.min(minBusVoltage_V, drivetrain.getBusVoltage_V());
+            ++cycles;
+        } while (command.isRunning() && (cycles < aMaxCycles));
+        long elapsed_ns = System.nanoTime() - start_ns;
+
+        boolean finished = ! command.isRunning();
+        command.cancel();
+        Scheduler.getInstance().run();
+
+        double virtual_sec = cycles * PERIOD_sec;
+        totalVirtual_sec += virtual_sec;
+        totalWall_sec += elapsed_ns / 1.0e9;
+
+        aDrive.updateState();
+        aDrive.getOdometry().getPose(pose);
+        System.out.printf("%s: %s after %d cycles (%.2f virtual sec) in %.1f ms wall clock, %.0fx real time%n",
+                          aName,
+                          finished ? "finished" : "still running",
+                          cycles,
+                          virtual_sec,
+                          elapsed_ns / 1.0e6,
+                          virtual_sec / (elapsed_ns / 1.0e9));
+        System.out.printf("    robot at x = %.3f m, y = %.3f m, heading = %.1f deg (odometry %.3f, %.3f, %.1f); lowest bus %.2f V%n",
+                          drivetrain.getX_m(), drivetrain.getY_m(), drivetrain.getHeading_deg(),
+                          pose.x_m, pose.y_m, pose.getHeading_deg(),
+                          minBusVoltage_V);
+        System.out.printf("    first cycle %.3f ms after %d rehearsal cycles%n",
+                          firstCycle_ns / 1.0e6, rehearsalCycles);
+        check(aName, finished);
+        CommandProfiler.dump(System.out);
+    }
+
+    /**
+     * check - the routine against its expected destination, if it has one
+     */
+    private void check(String aName, boolean aFinished)
+    {
+        Expected expected = null;
+        for (Expected candidate : EXPECTED)
+        {
+            if (candidate.name.equals(aName))
+            {
+                expected = candidate;
+            }
+        }
+        if (expected == null)
+        {
+            return;
+        }
+
+        if ( ! aFinished)
+        {
+            fail(aName + " did not finish");
+        }
+        checkPose(aName + " odometry", expected, pose.x_m, pose.y_m, pose.getHeading_deg());
+        if (RobotMap.HEADING_GYRO)
+        {
+            checkPose(aName + " model", expected,
+                      drivetrain.getX_m(), drivetrain.getY_m(), drivetrain.getHeading_deg());
+        }
+    }
+
+    private void checkPose(String aWhat, Expected anExpected, double anX_m, double aY_m, double aHeading_deg)
+    {
+        double miss_m = Math.hypot(anX_m - anExpected.x_m, aY_m - anExpected.y_m);
+        double miss_deg = Math.abs(aHeading_deg - anExpected.heading_deg);
+        if ((miss_m > anExpected.tolerance_m) || (miss_deg > anExpected.tolerance_deg))
+        {
+            fail(String.format("%s ended %.3f m and %.1f deg from (%.3f, %.3f, %.1f)",
+                               aWhat, miss_m, miss_deg, anExpected.x_m, anExpected.y_m, anExpected.heading_deg));
+        }
+    }
+
+    private void fail(String aMessage)
+    {
+        System.out.println("    FAILED: " + aMessage);
+        ++failures;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * SimulatedClock - a virtual clock for WPILib's Timer.
+ *
+ * On the robot, Timer.getFPGATimestamp() reads the FPGA; on a desktop there
+ * is no FPGA so we install this clock instead. Time only moves when we say
+ * so, which lets the simulation run as fast as the host can compute while
+ * every command still sees consistent 20 ms cycles.
+ */
+package org.usfirst.frc.team4183.robot.sim;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * The SimulatedClock class definition
+ */
+public class SimulatedClock implements Timer.StaticInterface
+{
+    private volatile double now_sec = 0.0;
+
+    /**
+     * install - make this clock the source for all WPILib timing
+     */
+    public void install()
+    {
+        Timer.SetImplementation(this);
+    }
+
+    public void advance(double aDelta_sec)
+    {
+        now_sec += aDelta_sec;
+    }
+
+    public double getFPGATimestamp()
+    {
+        return now_sec;
+    }
+
+    public double getMatchTime()
+    {
+        return now_sec;
+    }
+
+    public void delay(double aSeconds)
+    {
+        advance(aSeconds);
+    }
+
+    public Timer.Interface newTimer()
+    {
+        return new Timer.Interface()
+        {
+            private double startTime_sec = now_sec;
+            private double accumulated_sec = 0.0;
+            private boolean running = false;
+
+            public double get()
+            {
+                return running ? accumulated_sec + (now_sec - startTime_sec) : accumulated_sec;
+            }
+
+            public void reset()
+            {
+                accumulated_sec = 0.0;
+                startTime_sec = now_sec;
+            }
+
+            public void start()
+            {
+                startTime_sec = now_sec;
+                running = true;
+            }
+
+            public void stop()
+            {
+                accumulated_sec = get();
+                running = false;
+            }
+
+            public boolean hasPeriodPassed(double aPeriod_sec)
+            {
+                if (get() > aPeriod_sec)
+                {
+                    startTime_sec += aPeriod_sec;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+}
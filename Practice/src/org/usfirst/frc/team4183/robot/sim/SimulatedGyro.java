@@ -0,0 +1,63 @@
+/**
+ * SimulatedGyro - a pure Java stand-in for the ADXRS450.
+ *
+ * The SimulatedHardware steps it with the drivetrain's true rate of turn
+ * (none without a DrivetrainPhysics), and it integrates that plus a
+ * constant bias, the way a real gyro drifts; so its heading follows the
+ * frame, not the wheels, and wanders off slowly when standing still.
+ */
+package org.usfirst.frc.team4183.robot.sim;
+
+import org.usfirst.frc.team4183.robot.hardware.HeadingSensor;
+
+/**
+ * The SimulatedGyro class definition
+ */
+public class SimulatedGyro implements HeadingSensor
+{
+    // A little worse than the ADXRS450 data sheet's bias stability, so the
+    // drift can be seen in a simulated match
+    public static final double DEFAULT_BIAS_dps = 0.05;
+
+    private volatile double bias_dps = DEFAULT_BIAS_dps;
+    private volatile double heading_deg = 0.0;
+    private volatile double rate_dps = 0.0;
+
+    /**
+     * step - advance by the specified time at the specified true rate of
+     * turn (counter-clockwise positive)
+     */
+    void step(double aRate_dps, double aDelta_sec)
+    {
+        rate_dps = aRate_dps + bias_dps;
+        heading_deg = heading_deg + rate_dps * aDelta_sec;
+    }
+
+    public double getHeading_deg()
+    {
+        return heading_deg;
+    }
+
+    public double getRate_dps()
+    {
+        return rate_dps;
+    }
+
+    public void reset()
+    {
+        heading_deg = 0.0;
+    }
+
+    /**
+     * setBias_dps - change the drift (e.g., 0 for a perfect gyro)
+     */
+    public void setBias_dps(double aBias_dps)
+    {
+        bias_dps = aBias_dps;
+    }
+
+    public double getBias_dps()
+    {
+        return bias_dps;
+    }
+}
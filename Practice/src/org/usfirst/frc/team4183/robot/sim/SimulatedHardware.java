@@ -0,0 +1,199 @@
+/**
+ * SimulatedHardware - keeps track of every simulated device so they can be
+ * found by CAN ID (followers need to find their master) and advanced in
+ * time together.
+ *
+ * Optionally a DrivetrainPhysics moves the drive motors (see
+ * setDrivetrain); it also decides the bus voltage, which is otherwise the
+ * nominal 12 volts, and turns the gyro (see createGyro).
+ */
+package org.usfirst.frc.team4183.robot.sim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.usfirst.frc.team4183.robot.hardware.CachingMotorController;
+import org.usfirst.frc.team4183.robot.hardware.DeviceFactory;
+import org.usfirst.frc.team4183.robot.hardware.HeadingSensor;
+import org.usfirst.frc.team4183.robot.hardware.MotorControllers;
+
+/**
+ * The SimulatedHardware class definition
+ */
+public class SimulatedHardware implements DeviceFactory
+{
+    private static final SimulatedHardware instance = new SimulatedHardware();
+
+    private final Map<Integer, SimulatedMotorController> motorsByID = new HashMap<Integer, SimulatedMotorController>();
+    private final List<SimulatedMotorController> motors = new ArrayList<SimulatedMotorController>();
+    
+    // Configuration caches in front of our controllers; they must forget
+    // what they sent when the controllers are reset
+    private final List<CachingMotorController> caches = new ArrayList<CachingMotorController>();
+
+    public static final double NOMINAL_BUS_VOLTAGE_V = 12.0;
+
+    private double residual_sec = 0.0;
+
+    private DrivetrainPhysics drivetrain = null;
+    private SimulatedGyro gyro = null;
+    private volatile double busVoltage_V = NOMINAL_BUS_VOLTAGE_V;
+
+    /**
+     * Constructor - for a private set of devices that must not mix with the
+     * shared ones (e.g., autonomous rehearsal); most users want getInstance
+     */
+    public SimulatedHardware()
+    {
+    }
+
+    public static SimulatedHardware getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * install - make these the devices hardware.MotorControllers and
+     * hardware.HeadingSensors create in simulation
+     */
+    public void install()
+    {
+        MotorControllers.installSimulation(this);
+    }
+
+    /**
+     * createMotorController - create (or return the existing) simulated
+     * controller at the specified CAN ID
+     */
+    public synchronized SimulatedMotorController createMotorController(int aDeviceID)
+    {
+        SimulatedMotorController motor = motorsByID.get(aDeviceID);
+        if (motor == null)
+        {
+            motor = new SimulatedMotorController(aDeviceID, this);
+            motorsByID.put(aDeviceID, motor);
+            motors.add(motor);
+        }
+        return motor;
+    }
+
+    public synchronized SimulatedMotorController getMotorController(int aDeviceID)
+    {
+        return motorsByID.get(aDeviceID);
+    }
+
+    /**
+     * addCache - a configuration cache wrapping one of these controllers,
+     * to be invalidated whenever they are reset
+     */
+    public synchronized void addCache(CachingMotorController aCache)
+    {
+        caches.add(aCache);
+    }
+
+    /**
+     * createGyro - create (or return the existing) simulated gyro; there is
+     * only one, turned with the drivetrain
+     */
+    public synchronized SimulatedGyro createGyro()
+    {
+        if (gyro == null)
+        {
+            gyro = new SimulatedGyro();
+        }
+        return gyro;
+    }
+
+    public HeadingSensor createHeadingSensor()
+    {
+        return createGyro();
+    }
+
+    /**
+     * step - advance every device by the specified time, in whole closed
+     * loop periods (any remainder carries over to the next step)
+     */
+    public synchronized void step(double aDelta_sec)
+    {
+        residual_sec += aDelta_sec;
+        while (residual_sec >= SimulatedMotorController.LOOP_PERIOD_sec)
+        {
+            // Every output first, then the drivetrain moves its motors
+            for (int i = 0; i < motors.size(); ++i)
+            {
+                motors.get(i).step();
+            }
+            if (drivetrain != null)
+            {
+                drivetrain.step(SimulatedMotorController.LOOP_PERIOD_sec);
+                busVoltage_V = drivetrain.getBusVoltage_V();
+            }
+            if (gyro != null)
+            {
+                gyro.step((drivetrain != null) ? drivetrain.getTurnRate_dps() : 0.0,
+                          SimulatedMotorController.LOOP_PERIOD_sec);
+            }
+            residual_sec -= SimulatedMotorController.LOOP_PERIOD_sec;
+        }
+    }
+
+    /**
+     * setDrivetrain - let the specified physics move the drive motors (it
+     * must have been made for this hardware); null to go back to each
+     * motor's own simple model
+     */
+    public synchronized void setDrivetrain(DrivetrainPhysics aDrivetrain)
+    {
+        if (drivetrain != null)
+        {
+            drivetrain.detach();
+        }
+        drivetrain = aDrivetrain;
+        if (drivetrain != null)
+        {
+            drivetrain.attach();
+        }
+        else
+        {
+            busVoltage_V = NOMINAL_BUS_VOLTAGE_V;
+        }
+    }
+
+    public synchronized DrivetrainPhysics getDrivetrain()
+    {
+        return drivetrain;
+    }
+
+    /**
+     * reset - put every device (and the drivetrain) back at rest at the
+     * origin, keeping their configuration (but not their control mode)
+     */
+    public synchronized void reset()
+    {
+        for (int i = 0; i < motors.size(); ++i)
+        {
+            motors.get(i).reset();
+        }
+        for (int i = 0; i < caches.size(); ++i)
+        {
+            caches.get(i).invalidate();
+        }
+        if (drivetrain != null)
+        {
+            drivetrain.reset();
+        }
+        if (gyro != null)
+        {
+            gyro.reset();
+        }
+        busVoltage_V = NOMINAL_BUS_VOLTAGE_V;
+        residual_sec = 0.0;
+    }
+
+    public double getBusVoltage()
+    {
+        return busVoltage_V;
+    }
+}
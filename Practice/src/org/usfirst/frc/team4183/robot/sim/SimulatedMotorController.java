@@ -0,0 +1,449 @@
+/**
+ * SimulatedMotorController - a pure Java stand-in for a Talon SRX with a
+ * motor and quadrature encoder attached.
+ *
+ * The model is deliberately simple:
+ *
+ *     - The closed loop (Position, Speed) is computed the way the Talon
+ *       documents it: error in native encoder units, output scaled so that
+ *       1023 is full output, run every millisecond
+ *     - The motor is a first-order lag from applied output to speed with a
+ *       free speed at full output; coasting (brake mode off) decays more
+ *       slowly than braking
+ *     - Followers apply the same output as their master
+ *     - Motion profiles use the Talon's two buffers: pushed points wait in
+ *       the top buffer until processMotionProfileBuffer moves them (one per
+ *       call) into a 128 point bottom buffer, which is executed one point
+ *       per point duration; running dry before the last point is an underrun
+ *
+ * This is good enough to exercise the command logic (does it converge, does
+ * it finish, how long does it take) but it is not a physics model of the
+ * robot; nothing here knows about mass, wheel slip or battery sag. For that
+ * the drive controllers can be attached to a DrivetrainPhysics, which then
+ * moves them (and their encoders) instead of the first-order lag.
+ */
+package org.usfirst.frc.team4183.robot.sim;
+
+import org.usfirst.frc.team4183.robot.hardware.MotorController;
+import org.usfirst.frc.team4183.robot.hardware.MotionProfileStatus;
+
+/**
+ * The SimulatedMotorController class definition
+ */
+public class SimulatedMotorController implements MotorController
+{
+    // Encoder RPM at full output; with the 3:1 encoder ratio and 9 inch
+    // wheels this is about 3 meters per second
+    public static final double FREE_SPEED_rpm = 750.0;
+
+    public static final double TIME_CONSTANT_sec = 0.1;
+    public static final double COAST_TIME_CONSTANT_sec = 1.0;
+
+    // The Talon runs its closed loop at 1 kHz
+    public static final double LOOP_PERIOD_sec = 0.001;
+
+    // Buffer sizes as documented for the Talon SRX
+    public static final int TOP_BUFFER_CAPACITY = 2048;
+    public static final int BOTTOM_BUFFER_CAPACITY = 128;
+
+    private static final double FULL_OUTPUT = 1023.0;
+
+    private final int deviceID;
+    private final SimulatedHardware hardware;
+
+    private ControlMode mode = ControlMode.PercentVbus;
+    private double setpoint = 0.0;
+
+    private int codesPerRev = 0;    // 0 --> no encoder configured
+    private boolean sensorAttached = true;
+
+    private double kP = 0.0;
+    private double kI = 0.0;
+    private double kD = 0.0;
+    private double kF = 0.0;
+    private boolean brakeMode = false;
+
+    private double position_rot = 0.0;
+    private double speed_rpm = 0.0;
+    private double output = 0.0;    // -1 to +1 applied to the motor
+    private double integral = 0.0;
+    private double lastError = 0.0;
+
+    // True when a DrivetrainPhysics moves this motor
+    private boolean driven = false;
+
+    // Motion profile buffers (rings) and the point being executed
+    private final ProfileBuffer topBuffer = new ProfileBuffer(TOP_BUFFER_CAPACITY);
+    private final ProfileBuffer bottomBuffer = new ProfileBuffer(BOTTOM_BUFFER_CAPACITY);
+    private boolean activeValid = false;
+    private double activePosition_rot = 0.0;
+    private double activeVelocity_rpm = 0.0;
+    private boolean activeLast = false;
+    private int activeRemaining_ms = 0;
+    private boolean hasUnderrun = false;
+    private boolean isUnderrun = false;
+
+    SimulatedMotorController(int aDeviceID, SimulatedHardware aHardware)
+    {
+        deviceID = aDeviceID;
+        hardware = aHardware;
+    }
+
+    public int getDeviceID()
+    {
+        return deviceID;
+    }
+
+    public void changeControlMode(ControlMode aMode)
+    {
+        if (mode != aMode)
+        {
+            mode = aMode;
+            setpoint = 0.0;
+            resetClosedLoop();
+        }
+    }
+
+    public ControlMode getControlMode()
+    {
+        return mode;
+    }
+
+    public void set(double aValue)
+    {
+        setpoint = aValue;
+    }
+
+    public double getSetpoint()
+    {
+        return setpoint;
+    }
+
+    public void follow(MotorController aMaster)
+    {
+        changeControlMode(ControlMode.Follower);
+        set(aMaster.getDeviceID());
+    }
+
+    public void configEncoderCodesPerRev(int aCodesPerRev)
+    {
+        codesPerRev = aCodesPerRev;
+    }
+
+    public SensorStatus isSensorPresent()
+    {
+        return ((codesPerRev > 0) && sensorAttached) ? SensorStatus.Present : SensorStatus.NotPresent;
+    }
+
+    /**
+     * setSensorAttached - simulate an unplugged (or repaired) encoder
+     */
+    public void setSensorAttached(boolean anAttached)
+    {
+        sensorAttached = anAttached;
+    }
+
+    public void setPosition(double aPosition_rot)
+    {
+        position_rot = aPosition_rot;
+        resetClosedLoop();
+    }
+
+    public double getPosition()
+    {
+        return position_rot;
+    }
+
+    public double getSpeed()
+    {
+        return speed_rpm;
+    }
+
+    public void setP(double aGain)
+    {
+        kP = aGain;
+    }
+
+    public void setI(double aGain)
+    {
+        kI = aGain;
+    }
+
+    public void setD(double aGain)
+    {
+        kD = aGain;
+    }
+
+    public void setF(double aGain)
+    {
+        kF = aGain;
+    }
+
+    public void enableBrakeMode(boolean aBrakeMode)
+    {
+        brakeMode = aBrakeMode;
+    }
+
+    public boolean isBrakeMode()
+    {
+        return brakeMode;
+    }
+
+    public double getBusVoltage()
+    {
+        return hardware.getBusVoltage();
+    }
+
+    public boolean pushMotionProfilePoint(double aPosition_rot, double aVelocity_rpm, int aDuration_ms, boolean isLast)
+    {
+        return topBuffer.push(aPosition_rot, aVelocity_rpm, aDuration_ms, isLast);
+    }
+
+    public void processMotionProfileBuffer()
+    {
+        if ((topBuffer.count > 0) && (bottomBuffer.count < BOTTOM_BUFFER_CAPACITY))
+        {
+            int i = topBuffer.head;
+            bottomBuffer.push(topBuffer.position_rot[i], topBuffer.velocity_rpm[i], topBuffer.duration_ms[i], topBuffer.last[i]);
+            topBuffer.pop();
+        }
+    }
+
+    public void clearMotionProfileTrajectories()
+    {
+        topBuffer.clear();
+        bottomBuffer.clear();
+        activeValid = false;
+        isUnderrun = false;
+    }
+
+    public void clearMotionProfileHasUnderrun()
+    {
+        hasUnderrun = false;
+    }
+
+    public void getMotionProfileStatus(MotionProfileStatus aStatus)
+    {
+        aStatus.topBufferRem = TOP_BUFFER_CAPACITY - topBuffer.count;
+        aStatus.topBufferCnt = topBuffer.count;
+        aStatus.btmBufferCnt = bottomBuffer.count;
+        aStatus.hasUnderrun = hasUnderrun;
+        aStatus.isUnderrun = isUnderrun;
+        aStatus.activePointValid = activeValid;
+        aStatus.activePointIsLast = activeLast;
+        aStatus.activePosition_rot = activePosition_rot;
+    }
+
+    /**
+     * getOutput returns the fraction of bus voltage currently applied
+     */
+    public double getOutput()
+    {
+        return output;
+    }
+
+    /**
+     * step - advance the model by one closed loop period
+     */
+    void step()
+    {
+        output = computeOutput();
+        if (driven)
+        {
+            return;     // The drivetrain moves us once every output is known
+        }
+
+        double targetSpeed_rpm = output * FREE_SPEED_rpm;
+        double tau_sec = ((output == 0.0) && ( ! brakeMode)) ? COAST_TIME_CONSTANT_sec : TIME_CONSTANT_sec;
+
+        speed_rpm += (targetSpeed_rpm - speed_rpm) * LOOP_PERIOD_sec / tau_sec;
+        position_rot += speed_rpm * LOOP_PERIOD_sec / 60.0;
+    }
+
+    /**
+     * setDriven - whether a DrivetrainPhysics moves this motor
+     */
+    void setDriven(boolean aDriven)
+    {
+        driven = aDriven;
+    }
+
+    /**
+     * move - called by the DrivetrainPhysics each closed loop period with
+     * the speed the drivetrain gave this motor's encoder
+     */
+    void move(double aSpeed_rpm, double aDelta_sec)
+    {
+        speed_rpm = aSpeed_rpm;
+        position_rot += aSpeed_rpm * aDelta_sec / 60.0;
+    }
+
+    /**
+     * reset - back to rest at position 0; the configuration (encoder,
+     * gains, brake mode and following) is kept
+     */
+    void reset()
+    {
+        if (ControlMode.Follower != mode)
+        {
+            mode = ControlMode.PercentVbus;
+            setpoint = 0.0;
+        }
+        position_rot = 0.0;
+        speed_rpm = 0.0;
+        output = 0.0;
+        resetClosedLoop();
+        clearMotionProfileTrajectories();
+        hasUnderrun = false;
+    }
+
+    private double computeOutput()
+    {
+        double ticksPerRot = 4.0 * codesPerRev;     // Quadrature: 4 edges per code
+        boolean haveSensor = (SensorStatus.Present == isSensorPresent());
+
+        switch (mode)
+        {
+        case Position:
+            if ( ! haveSensor)
+            {
+                return 0.0;
+            }
+            return closedLoop((setpoint - position_rot) * ticksPerRot, setpoint * ticksPerRot);
+
+        case Speed:
+            if ( ! haveSensor)
+            {
+                return 0.0;
+            }
+            // Talon speed units are native units per 100 ms
+            return closedLoop((setpoint - speed_rpm) * ticksPerRot / 600.0, setpoint * ticksPerRot / 600.0);
+
+        case MotionProfile:
+            if ( ! haveSensor)
+            {
+                return 0.0;
+            }
+            return motionProfileOutput(ticksPerRot);
+
+        case Follower:
+            SimulatedMotorController master = hardware.getMotorController((int) setpoint);
+            return (master != null) ? master.output : 0.0;
+
+        case PercentVbus:
+        default:
+            return limit(setpoint);
+        }
+    }
+
+    private double motionProfileOutput(double aTicksPerRot)
+    {
+        int value = (int) setpoint;
+        if (MP_ENABLE == value)
+        {
+            // Move to the next point when the active one has run its course
+            if (( ! activeValid) || ((activeRemaining_ms <= 0) && ( ! activeLast)))
+            {
+                if (bottomBuffer.count > 0)
+                {
+                    int i = bottomBuffer.head;
+                    activePosition_rot = bottomBuffer.position_rot[i];
+                    activeVelocity_rpm = bottomBuffer.velocity_rpm[i];
+                    activeRemaining_ms = bottomBuffer.duration_ms[i];
+                    activeLast = bottomBuffer.last[i];
+                    activeValid = true;
+                    isUnderrun = false;
+                    bottomBuffer.pop();
+                }
+                else if (activeValid)
+                {
+                    // Starved: hold where the last point said to be
+                    isUnderrun = true;
+                    hasUnderrun = true;
+                    activeVelocity_rpm = 0.0;
+                }
+            }
+            --activeRemaining_ms;   // Called once per (1 ms) loop period
+        }
+        else if (MP_HOLD != value)
+        {
+            return 0.0;     // Disabled
+        }
+
+        if ( ! activeValid)
+        {
+            return 0.0;
+        }
+
+        double velocity_rpm = (MP_HOLD == value) ? 0.0 : activeVelocity_rpm;
+        return closedLoop((activePosition_rot - position_rot) * aTicksPerRot, velocity_rpm * aTicksPerRot / 600.0);
+    }
+
+    private double closedLoop(double anError, double aTarget)
+    {
+        integral += anError;
+        double derivative = anError - lastError;
+        lastError = anError;
+
+        return limit((kP * anError + kI * integral + kD * derivative + kF * aTarget) / FULL_OUTPUT);
+    }
+
+    private void resetClosedLoop()
+    {
+        integral = 0.0;
+        lastError = 0.0;
+    }
+
+    private static double limit(double aValue)
+    {
+        return Math.max(-1.0, Math.min(1.0, aValue));
+    }
+
+    /**
+     * ProfileBuffer - a fixed size ring of motion profile points
+     */
+    private static final class ProfileBuffer
+    {
+        final double[] position_rot;
+        final double[] velocity_rpm;
+        final int[] duration_ms;
+        final boolean[] last;
+        int head = 0;
+        int count = 0;
+
+        ProfileBuffer(int aCapacity)
+        {
+            position_rot = new double[aCapacity];
+            velocity_rpm = new double[aCapacity];
+            duration_ms = new int[aCapacity];
+            last = new boolean[aCapacity];
+        }
+
+        boolean push(double aPosition_rot, double aVelocity_rpm, int aDuration_ms, boolean isLast)
+        {
+            if (count == position_rot.length)
+            {
+                return false;
+            }
+            int i = (head + count) % position_rot.length;
+            position_rot[i] = aPosition_rot;
+            velocity_rpm[i] = aVelocity_rpm;
+            duration_ms[i] = aDuration_ms;
+            last[i] = isLast;
+            ++count;
+            return true;
+        }
+
+        void pop()
+        {
+            head = (head + 1) % position_rot.length;
+            --count;
+        }
+
+        void clear()
+        {
+            head = 0;
+            count = 0;
+        }
+    }
+}
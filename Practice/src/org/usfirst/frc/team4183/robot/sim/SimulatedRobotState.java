@@ -0,0 +1,112 @@
+/**
+ * SimulatedRobotState - stands in for the driver station's idea of what
+ * mode the robot is in (Commands consult it to decide whether to run)
+ *
+ * RobotState.SetImplementation is public but the RobotState.Interface it
+ * takes is package private (only DriverStation is meant to implement it),
+ * so install looks both up by reflection and hands it a proxy that asks
+ * this object instead.
+ */
+package org.usfirst.frc.team4183.robot.sim;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import edu.wpi.first.wpilibj.RobotState;
+
+/**
+ * The SimulatedRobotState class definition
+ */
+public class SimulatedRobotState
+{
+    public enum Mode
+    {
+        Disabled,
+        Autonomous,
+        Teleop,
+        Test
+    }
+
+    private volatile Mode mode = Mode.Disabled;
+
+    /**
+     * install - make this the source for RobotState queries
+     *
+     * @throws IllegalStateException if this WPILib's RobotState has no
+     * Interface to implement
+     */
+    public void install()
+    {
+        try
+        {
+            Class<?> face = Class.forName(RobotState.class.getName() + "$Interface");
+            
+            // The mode questions are answered without reflection (or
+            // allocation); they are asked every cycle
+            Object proxy = Proxy.newProxyInstance(face.getClassLoader(), new Class<?>[] { face }, new InvocationHandler()
+            {
+                public Object invoke(Object aProxy, Method aMethod, Object[] someArgs) throws Throwable
+                {
+                    switch (aMethod.getName())
+                    {
+                    case "isDisabled":
+                        return isDisabled();
+                    case "isEnabled":
+                        return isEnabled();
+                    case "isOperatorControl":
+                        return isOperatorControl();
+                    case "isAutonomous":
+                        return isAutonomous();
+                    case "isTest":
+                        return isTest();
+                    default:
+                        // equals, hashCode and toString
+                        return aMethod.invoke(SimulatedRobotState.this, someArgs);
+                    }
+                }
+            });
+            RobotState.class.getMethod("SetImplementation", face).invoke(null, proxy);
+        }
+        catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException e)
+        {
+            throw new IllegalStateException("Cannot install the simulated robot state: " + e, e);
+        }
+    }
+
+    public void setMode(Mode aMode)
+    {
+        mode = aMode;
+    }
+
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    public boolean isDisabled()
+    {
+        return Mode.Disabled == mode;
+    }
+
+    public boolean isEnabled()
+    {
+        return Mode.Disabled != mode;
+    }
+
+    public boolean isOperatorControl()
+    {
+        return Mode.Teleop == mode;
+    }
+
+    public boolean isAutonomous()
+    {
+        return Mode.Autonomous == mode;
+    }
+
+    public boolean isTest()
+    {
+        return Mode.Test == mode;
+    }
+}
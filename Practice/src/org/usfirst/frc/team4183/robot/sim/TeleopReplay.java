@@ -0,0 +1,118 @@
+/**
+ * TeleopReplay - runs the teleop code on a desktop from a log of the sticks
+ * recorded on the robot (see oi.InputRecorder and RobotMap.OI_RECORD), as
+ * fast as the host can go.
+ *
+ * Usage (with the WPILib and CTRE jars on the classpath):
+ *
+ *     java org.usfirst.frc.team4183.robot.sim.TeleopReplay <log> [passes]
+ *
+ * Each record in the log becomes one TeleopCycle (the same code as
+ * Robot.teleopPeriodic) against simulated motor controllers. The virtual
+ * clock and the simulation are stepped by the recorded time between
+ * records, so the stick conditioning and the drive see exactly what they
+ * saw on the robot and every run gives the same result; only the wall
+ * clock time changes, which makes this a repeatable load for measuring
+ * throughput and latency.
+ *
+ * The log is replayed the specified number of times (the first passes let
+ * the JVM compile the code). For each pass the wall clock time, cycles
+ * per second and speed-up over real time are printed, with a checksum of
+ * the conditioned sticks that must be the same for every pass and every
+ * run; the teleop LoopTimer statistics of the last pass follow.
+ */
+package org.usfirst.frc.team4183.robot.sim;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.usfirst.frc.team4183.robot.DriveSample;
+import org.usfirst.frc.team4183.robot.OI;
+import org.usfirst.frc.team4183.robot.Robot;
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.TeleopCycle;
+import org.usfirst.frc.team4183.robot.oi.InputPlayer;
+
+import edu.wpi.first.wpilibj.HLUsageReporting;
+
+/**
+ * The TeleopReplay class definition
+ */
+public class TeleopReplay
+{
+    private static final int DEFAULT_PASSES = 5;
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("usage: TeleopReplay <log> [passes]");
+            System.exit(1);
+        }
+
+        // This MUST happen before anything touches RobotMap (or Robot)
+        System.setProperty(RobotMap.SIMULATION_PROPERTY, "true");
+
+        InputPlayer player = InputPlayer.open(new File(args[0]));
+        int passes = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PASSES;
+
+        SimulatedClock clock = new SimulatedClock();
+        clock.install();
+        SimulatedRobotState robotState = new SimulatedRobotState();
+        robotState.install();
+        SimulatedHardware.getInstance().install();
+        HLUsageReporting.SetImplementation(new HLUsageReporting.Null());
+
+        robotState.setMode(SimulatedRobotState.Mode.Teleop);
+
+        System.out.printf("%s: %d records, %.1f sec%n",
+                          player.getFile(), player.getCount(), player.getDuration_sec());
+
+        TeleopCycle teleop = new TeleopCycle(Robot.driveSubsystem);
+        OI.startReplay(player);
+        for (int pass = 0; pass < passes; ++pass)
+        {
+            player.rewind();
+            OI.resetFilters();
+            teleop.getTimer().reset();
+
+            long checksum = 0;
+            int cycles = 0;
+            double last_sec = 0.0;
+            long start_ns = System.nanoTime();
+            while (player.next())
+            {
+                // Bring the world up to the time of this record; the clock
+                // keeps counting up from pass to pass (the OI takes its
+                // times from the log itself)
+                double delta_sec = (cycles > 0) ? (player.getTimestamp_sec() - last_sec) : RobotMap.LOOP_PERIOD_sec;
+                last_sec = player.getTimestamp_sec();
+                SimulatedHardware.getInstance().step(delta_sec);
+                clock.advance(delta_sec);
+
+                teleop.run();
+
+                checksum = mix(checksum, teleop.getSample());
+                ++cycles;
+            }
+            long elapsed_ns = System.nanoTime() - start_ns;
+
+            System.out.printf("pass %d: %d cycles in %.1f ms, %.0f cycles/sec, %.0fx real time, checksum %016x%n",
+                              pass,
+                              cycles,
+                              elapsed_ns / 1.0e6,
+                              cycles / (elapsed_ns / 1.0e9),
+                              player.getDuration_sec() / (elapsed_ns / 1.0e9),
+                              checksum);
+        }
+        OI.stopReplay();
+
+        teleop.getTimer().dump(System.out);
+    }
+
+    private static long mix(long aHash, DriveSample aSample)
+    {
+        long hash = (aHash * 1000003L) ^ Double.doubleToLongBits(aSample.getSpeed());
+        return (hash * 1000003L) ^ Double.doubleToLongBits(aSample.getTurn());
+    }
+}
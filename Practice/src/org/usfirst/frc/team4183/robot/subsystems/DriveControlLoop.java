@@ -0,0 +1,229 @@
+/**
+ * DriveControlLoop - runs the DriveSubsystem's closed-loop work on its own
+ * fixed-rate thread instead of in the IterativeRobot periodic functions.
+ *
+ * The IterativeRobot only calls the periodic functions when a driver station
+ * packet arrives, so anything done there inherits the network's timing
+ * (nominally 20 ms, but packets bunch up and go missing). When this loop is
+ * running the DriveSubsystem's public drive functions (maintainPosition,
+ * arcadeDrive, stop, ...) no longer touch the motors; they just post the
+ * request here and this thread carries it out at a steady rate.
+ *
+ * The hand-off is a sequence lock: the single writer (the robot's main
+ * thread) bumps the version to an odd number, writes the fields, then bumps
+ * it to the next even number. The reader (this thread) retries if it sees
+ * an odd version or the version changed while it was reading. Neither side
+ * ever blocks and nothing is allocated.
+ *
+ * If no request arrives for RobotMap.DRIVE_REQUEST_TIMEOUT_sec (e.g., the
+ * robot was disabled or a command stopped calling execute) the loop stops
+ * the motors rather than holding the last request forever; this takes the
+ * place of the motor safety watchdog.
+ *
+ * The timing of this thread (jitter, time spent per tick) is measured with
+ * a LoopTimer and published to Telemetry as "driveLoop/...".
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.telemetry.LoopTimer;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * The DriveControlLoop class definition
+ */
+public class DriveControlLoop
+{
+    // The kinds of request that can be posted
+    static final int NONE         = 0;
+    static final int STOP         = 1;
+    static final int ARCADE       = 2;  // a = speed, b = (modified) turn
+    static final int TANK         = 3;  // a = left, b = right
+    static final int CURVE        = 4;  // a = speed, b = radius_m
+    static final int POSITION     = 5;  // a = position_m
+    static final int ORIENTATION  = 6;  // a = angle_deg
+    static final int SPEED        = 7;  // a = speed_mps
+    static final int PROFILE_MOVE = 8;  // a = position_m, b = profile ID
+    static final int PROFILE_TURN = 9;  // a = angle_deg, b = profile ID
+    static final int HEADING      = 10; // a = heading_deg
+    static final int VOLTAGE      = 11; // a = left_V, b = right_V
+    static final int PROFILE_PATH = 12; // b = profile ID (see DriveSubsystem.startPath)
+    static final int ABS_POSITION = 13; // a = left_m, b = right_m (see DriveSubsystem.maintainAbsolutePosition)
+
+    public static final double MIN_RATE_Hz = 100.0;
+    public static final double MAX_RATE_Hz = 1000.0;
+
+    private static final int STATE_PHASE   = 0;
+    private static final int CONTROL_PHASE = 1;
+
+    private final DriveSubsystem drive;
+    private final long period_ns;
+
+    // The control thread's own snapshot of the drive; the main thread keeps
+    // using the DriveSubsystem's snapshot so neither sees the other's
+    // half-written values
+    private final DriveState loopState = new DriveState();
+
+    private final LoopTimer timer;
+
+    // The sequence-locked request (written by the main thread only)
+    private volatile long version = 0;
+    private volatile int kind = NONE;
+    private volatile double a = 0.0;
+    private volatile double b = 0.0;
+    private volatile double postTime_sec = 0.0;
+
+    private volatile boolean running = false;
+    private Thread thread;
+
+    /**
+     * Constructor
+     *
+     * @param aDrive - the subsystem whose work we do
+     * @param aRate_Hz - how often to run, between MIN_RATE_Hz and MAX_RATE_Hz
+     */
+    DriveControlLoop(DriveSubsystem aDrive, double aRate_Hz)
+    {
+        if ((aRate_Hz < MIN_RATE_Hz) || (aRate_Hz > MAX_RATE_Hz))
+        {
+            throw new IllegalArgumentException("Drive control rate must be " + MIN_RATE_Hz +
+                                               " to " + MAX_RATE_Hz + " Hz: " + aRate_Hz);
+        }
+
+        drive = aDrive;
+        period_ns = (long) (1.0e9 / aRate_Hz);
+        timer = new LoopTimer("driveLoop", 1.0 / aRate_Hz, (int) aRate_Hz, "state", "control");
+    }
+
+    /**
+     * post - hand a new request to the control thread; must only be called
+     * from one thread (the robot's main thread)
+     */
+    void post(int aKind, double anA, double aB)
+    {
+        long v = version;
+        version = v + 1;    // Odd: writing
+        kind = aKind;
+        a = anA;
+        b = aB;
+        postTime_sec = Timer.getFPGATimestamp();
+        version = v + 2;    // Even: done
+    }
+
+    synchronized void start()
+    {
+        if (running)
+        {
+            return;
+        }
+        running = true;
+
+        thread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                loop();
+            }
+        }, "DriveControlLoop");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    synchronized void stop()
+    {
+        running = false;
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+            thread = null;
+        }
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    public LoopTimer getTimer()
+    {
+        return timer;
+    }
+
+    private void loop()
+    {
+        long lastVersion = -1;
+        boolean timedOut = false;
+        long next_ns = System.nanoTime();
+
+        while (running)
+        {
+            timer.begin();
+
+            double now_sec = Timer.getFPGATimestamp();
+            drive.readState(loopState, now_sec);
+            drive.updateOdometry(loopState);
+            timer.mark(STATE_PHASE);
+
+            // Take a consistent copy of the request
+            long v;
+            int k;
+            double anA;
+            double aB;
+            double posted_sec;
+            do
+            {
+                v = version;
+                k = kind;
+                anA = a;
+                aB = b;
+                posted_sec = postTime_sec;
+            } while (((v & 1L) != 0) || (v != version));
+
+            boolean fresh = (v != lastVersion);
+            lastVersion = v;
+            if (fresh)
+            {
+                timedOut = false;
+            }
+
+            if (k == STOP)
+            {
+                // Stopping is a one shot, not something to repeat every tick
+                if ( ! fresh)
+                {
+                    k = NONE;
+                }
+            }
+            else if ((k != NONE) && (now_sec - posted_sec > RobotMap.DRIVE_REQUEST_TIMEOUT_sec))
+            {
+                // Nobody has asked for anything lately; stop once and wait
+                k = timedOut ? NONE : STOP;
+                timedOut = true;
+            }
+
+            if (k != NONE)
+            {
+                drive.execute(k, anA, aB, loopState);
+            }
+            timer.mark(CONTROL_PHASE);
+            timer.end();
+
+            // Schedule against absolute deadlines so errors do not accumulate
+            next_ns += period_ns;
+            long wait_ns = next_ns - System.nanoTime();
+            if (wait_ns > 0)
+            {
+                LockSupport.parkNanos(wait_ns);
+            }
+            else
+            {
+                // We fell behind; do not try to catch up with a burst
+                next_ns = System.nanoTime();
+            }
+        }
+    }
+}
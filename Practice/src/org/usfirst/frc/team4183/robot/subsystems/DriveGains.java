@@ -0,0 +1,51 @@
+/**
+ * DriveGains - one set of Talon closed loop gains (P, I, D and F, in the
+ * Talon's own units; see the Talon SRX software reference).
+ *
+ * The drive keeps one set per closed loop mode (position, speed and motion
+ * profile), taken from the live parameters (params.Parameters, which start
+ * with the RobotMap values below), and hands them to the controllers
+ * whenever it switches into that mode. Gain sets are immutable so one can
+ * be swapped in from another thread (e.g., by a tuning tool) without the
+ * controllers ever seeing half of a change.
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+
+/**
+ * The DriveGains class definition
+ */
+public final class DriveGains
+{
+    public static final DriveGains POSITION = new DriveGains(RobotMap.DRIVE_POSITION_P,
+                                                             RobotMap.DRIVE_POSITION_I,
+                                                             RobotMap.DRIVE_POSITION_D,
+                                                             RobotMap.DRIVE_POSITION_F);
+    public static final DriveGains SPEED = new DriveGains(RobotMap.DRIVE_SPEED_P,
+                                                          RobotMap.DRIVE_SPEED_I,
+                                                          RobotMap.DRIVE_SPEED_D,
+                                                          RobotMap.DRIVE_SPEED_F);
+    public static final DriveGains PROFILE = new DriveGains(RobotMap.DRIVE_PROFILE_P,
+                                                            RobotMap.DRIVE_PROFILE_I,
+                                                            RobotMap.DRIVE_PROFILE_D,
+                                                            RobotMap.DRIVE_PROFILE_F);
+
+    public final double p;
+    public final double i;
+    public final double d;
+    public final double f;
+
+    public DriveGains(double aP, double anI, double aD, double anF)
+    {
+        p = aP;
+        i = anI;
+        d = aD;
+        f = anF;
+    }
+
+    public String toString()
+    {
+        return String.format("P %.4g, I %.4g, D %.4g, F %.4g", p, i, d, f);
+    }
+}
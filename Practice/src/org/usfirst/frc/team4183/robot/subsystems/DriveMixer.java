@@ -0,0 +1,163 @@
+/**
+ * DriveMixer - converts arcade, tank and curve style requests into left and
+ * right motor outputs.
+ *
+ * This is the same math the WPILib RobotDrive class uses (squared inputs,
+ * right side inverted, sensitivity of 0.5 for curves); we carry our own copy
+ * because RobotDrive only accepts WPILib SpeedController objects and reports
+ * usage through the HAL, neither of which exist off the roboRIO. Keeping the
+ * math identical means the robot drives exactly as it did with RobotDrive.
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+import org.usfirst.frc.team4183.robot.hardware.MotorController;
+
+/**
+ * The DriveMixer class definition
+ */
+public class DriveMixer
+{
+    // Same default as RobotDrive
+    private static final double SENSITIVITY = 0.5;
+
+    private final MotorController leftMotor;
+    private final MotorController rightMotor;
+
+    private double maxOutput = 1.0;
+
+    /**
+     * Constructor
+     *
+     * @param aLeftMotor - the primary (non-follower) left controller
+     * @param aRightMotor - the primary (non-follower) right controller
+     */
+    public DriveMixer(MotorController aLeftMotor, MotorController aRightMotor)
+    {
+        leftMotor = aLeftMotor;
+        rightMotor = aRightMotor;
+    }
+
+    public void setMaxOutput(double aMaxOutput)
+    {
+        maxOutput = aMaxOutput;
+    }
+
+    /**
+     * arcadeDrive - move (forward/backward) and rotate coefficients, -1 to +1
+     */
+    public void arcadeDrive(double moveValue, double rotateValue)
+    {
+        moveValue = square(limit(moveValue));
+        rotateValue = square(limit(rotateValue));
+
+        double leftMotorSpeed;
+        double rightMotorSpeed;
+
+        if (moveValue > 0.0)
+        {
+            if (rotateValue > 0.0)
+            {
+                leftMotorSpeed = moveValue - rotateValue;
+                rightMotorSpeed = Math.max(moveValue, rotateValue);
+            }
+            else
+            {
+                leftMotorSpeed = Math.max(moveValue, -rotateValue);
+                rightMotorSpeed = moveValue + rotateValue;
+            }
+        }
+        else
+        {
+            if (rotateValue > 0.0)
+            {
+                leftMotorSpeed = -Math.max(-moveValue, rotateValue);
+                rightMotorSpeed = moveValue + rotateValue;
+            }
+            else
+            {
+                leftMotorSpeed = moveValue - rotateValue;
+                rightMotorSpeed = -Math.max(-moveValue, -rotateValue);
+            }
+        }
+
+        setLeftRightMotorOutputs(leftMotorSpeed, rightMotorSpeed);
+    }
+
+    /**
+     * tankDrive - left and right coefficients, -1 to +1
+     */
+    public void tankDrive(double leftValue, double rightValue)
+    {
+        setLeftRightMotorOutputs(square(limit(leftValue)), square(limit(rightValue)));
+    }
+
+    /**
+     * drive - magnitude and curve, where curve < 0 turns left and curve > 0
+     * turns right; see RobotDrive.drive for the derivation
+     */
+    public void drive(double outputMagnitude, double curve)
+    {
+        double leftOutput;
+        double rightOutput;
+
+        if (curve < 0)
+        {
+            double value = Math.log(-curve);
+            double ratio = (value - SENSITIVITY) / (value + SENSITIVITY);
+            if (ratio == 0)
+            {
+                ratio = .0000000001;
+            }
+            leftOutput = outputMagnitude / ratio;
+            rightOutput = outputMagnitude;
+        }
+        else if (curve > 0)
+        {
+            double value = Math.log(curve);
+            double ratio = (value - SENSITIVITY) / (value + SENSITIVITY);
+            if (ratio == 0)
+            {
+                ratio = .0000000001;
+            }
+            leftOutput = outputMagnitude;
+            rightOutput = outputMagnitude / ratio;
+        }
+        else
+        {
+            leftOutput = outputMagnitude;
+            rightOutput = outputMagnitude;
+        }
+
+        setLeftRightMotorOutputs(leftOutput, rightOutput);
+    }
+
+    /**
+     * setLeftRightMotorOutputs - NOTE: the right side is inverted because
+     * the motors face the opposite direction (as RobotDrive assumes)
+     */
+    public void setLeftRightMotorOutputs(double leftOutput, double rightOutput)
+    {
+        leftMotor.set(limit(leftOutput) * maxOutput);
+        rightMotor.set(-limit(rightOutput) * maxOutput);
+    }
+
+    private static double limit(double num)
+    {
+        if (num > 1.0)
+        {
+            return 1.0;
+        }
+        if (num < -1.0)
+        {
+            return -1.0;
+        }
+        return num;
+    }
+
+    // Square the value while preserving the sign for finer control at
+    // low speeds
+    private static double square(double num)
+    {
+        return (num >= 0.0) ? (num * num) : -(num * num);
+    }
+}
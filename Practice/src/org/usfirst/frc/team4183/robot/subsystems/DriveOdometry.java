@@ -0,0 +1,196 @@
+/**
+ * DriveOdometry - keeps track of where the robot is by adding up how far
+ * each side has driven.
+ *
+ * For a differential (tank style) drive, if the left and right wheels move
+ * dLeft and dRight meters then the robot moves (dLeft + dRight) / 2 along
+ * its heading and turns (dRight - dLeft) / track radians. We apply the
+ * turn at the midpoint of each step, which is accurate as long as the
+ * steps are small (i.e., we update often).
+ *
+ * The wheels skid while turning, so given a HeadingEstimator (and the time
+ * of each reading) the turn comes from it instead, the encoders' turn
+ * fused with the gyro's; the distance always comes from the encoders.
+ *
+ * Everything is primitive fields with the scale factors computed once in
+ * RobotMap, so an update is a handful of multiplies, a sine and a cosine;
+ * nothing is allocated.
+ *
+ * One thread (whichever is reading the encoders) calls update(); any thread
+ * may call getPose(), which uses the same sequence lock idea as the
+ * DriveControlLoop to hand out a consistent x, y and heading.
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+
+/**
+ * The DriveOdometry class definition
+ */
+public class DriveOdometry
+{
+    // Encoder rotations to meters traveled forward (RobotMap.FORWARD folds in
+    // the direction the encoders count)
+    private static final double FORWARD_METERS_PER_ROT = RobotMap.FORWARD * RobotMap.METERS_PER_ENCODER_ROT;
+    private static final double INVERSE_TRACK_PER_m = 1.0 / RobotMap.WHEEL_TRACK_m;
+
+    // null for the encoders alone
+    private final HeadingEstimator headingEstimator;
+
+    // Owned by the updating thread
+    private double lastLeft_rot = 0.0;
+    private double lastRight_rot = 0.0;
+    private boolean haveLast = false;
+    private double x_m = 0.0;
+    private double y_m = 0.0;
+    private double heading_rad = 0.0;
+    private long updateCount = 0;
+
+    // Published copy
+    private volatile long version = 0;
+    private volatile double publishedX_m = 0.0;
+    private volatile double publishedY_m = 0.0;
+    private volatile double publishedHeading_rad = 0.0;
+
+    public DriveOdometry()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param aHeadingEstimator - fuses the turn with a gyro, or null for
+     * the encoders alone
+     */
+    public DriveOdometry(HeadingEstimator aHeadingEstimator)
+    {
+        headingEstimator = aHeadingEstimator;
+    }
+
+    /**
+     * update - integrate the change in encoder positions since the last call
+     * (encoders alone)
+     */
+    public void update(double aLeft_rot, double aRight_rot)
+    {
+        update(aLeft_rot, aRight_rot, Double.NaN);
+    }
+
+    /**
+     * update - integrate the change in encoder positions since the last
+     * call, turning by the HeadingEstimator if there is one
+     *
+     * @param aNow_sec - when the encoders were read
+     */
+    public void update(double aLeft_rot, double aRight_rot, double aNow_sec)
+    {
+        if (haveLast)
+        {
+            double dLeft_m  = (aLeft_rot - lastLeft_rot) * FORWARD_METERS_PER_ROT;
+            double dRight_m = (aRight_rot - lastRight_rot) * FORWARD_METERS_PER_ROT;
+
+            double distance_m = 0.5 * (dLeft_m + dRight_m);
+            double dHeading_rad = (dRight_m - dLeft_m) * INVERSE_TRACK_PER_m;
+            if ((headingEstimator != null) && ! Double.isNaN(aNow_sec))
+            {
+                dHeading_rad = headingEstimator.update(dHeading_rad, aNow_sec);
+            }
+
+            double midHeading_rad = heading_rad + 0.5 * dHeading_rad;
+            x_m += distance_m * Math.cos(midHeading_rad);
+            y_m += distance_m * Math.sin(midHeading_rad);
+            heading_rad += dHeading_rad;
+        }
+
+        lastLeft_rot = aLeft_rot;
+        lastRight_rot = aRight_rot;
+        haveLast = true;
+        ++updateCount;
+
+        publish();
+    }
+
+    /**
+     * encodersReset - tell the odometry the encoders were redefined (e.g.,
+     * zeroed) so the jump is not mistaken for motion
+     */
+    public void encodersReset(double aLeft_rot, double aRight_rot)
+    {
+        lastLeft_rot = aLeft_rot;
+        lastRight_rot = aRight_rot;
+        haveLast = true;
+    }
+
+    /**
+     * reset - declare the robot to be at the specified pose
+     */
+    public void reset(double anX_m, double aY_m, double aHeading_rad)
+    {
+        x_m = anX_m;
+        y_m = aY_m;
+        heading_rad = aHeading_rad;
+        if (headingEstimator != null)
+        {
+            headingEstimator.reset(aHeading_rad);
+        }
+        publish();
+    }
+
+    /**
+     * getPose - copy a consistent pose into the caller's holder
+     *
+     * @return the same holder, for convenience
+     */
+    public Pose getPose(Pose aPose)
+    {
+        long v;
+        do
+        {
+            v = version;
+            aPose.x_m = publishedX_m;
+            aPose.y_m = publishedY_m;
+            aPose.heading_rad = publishedHeading_rad;
+        } while (((v & 1L) != 0) || (v != version));
+        return aPose;
+    }
+
+    /**
+     * getHeading_rad - just the heading, for any thread (counter-clockwise
+     * positive, not wrapped)
+     */
+    public double getHeading_rad()
+    {
+        long v;
+        double heading;
+        do
+        {
+            v = version;
+            heading = publishedHeading_rad;
+        } while (((v & 1L) != 0) || (v != version));
+        return heading;
+    }
+
+    /**
+     * getHeadingEstimator returns the estimator, or null for the encoders alone
+     */
+    public HeadingEstimator getHeadingEstimator()
+    {
+        return headingEstimator;
+    }
+
+    public long getUpdateCount()
+    {
+        return updateCount;
+    }
+
+    private void publish()
+    {
+        long v = version;
+        version = v + 1;
+        publishedX_m = x_m;
+        publishedY_m = y_m;
+        publishedHeading_rad = heading_rad;
+        version = v + 2;
+    }
+}
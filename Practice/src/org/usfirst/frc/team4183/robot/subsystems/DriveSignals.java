@@ -0,0 +1,59 @@
+/**
+ * DriveSignals - the columns of the drive's SignalLog, one per signal, in
+ * the order DriveSubsystem.recordSignals writes them.
+ *
+ * Enumerations are logged as their ordinal (e.g., the control modes are
+ * MotorController.ControlMode.values()[n]) and flags as 0 or 1.
+ *
+ * The setpoints and brake mode are the ones in effect while the positions
+ * and speeds in the same row were measured, i.e., those commanded in the
+ * previous cycle, since the row is written at the end of updateState.
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+/**
+ * The DriveSignals class definition
+ */
+public class DriveSignals
+{
+    public static final int LEFT_SETPOINT       = 0;
+    public static final int RIGHT_SETPOINT      = 1;
+    public static final int LEFT_POSITION       = 2;
+    public static final int RIGHT_POSITION      = 3;
+    public static final int LEFT_SPEED          = 4;
+    public static final int RIGHT_SPEED         = 5;
+    public static final int LEFT_MODE           = 6;
+    public static final int RIGHT_MODE          = 7;
+    public static final int BRAKE_MODE          = 8;
+    public static final int MODIFIED_TURN       = 9;
+    public static final int BUS_VOLTAGE         = 10;
+    public static final int SENSORS_HEALTHY     = 11;
+    public static final int POSE_X              = 12;
+    public static final int POSE_Y              = 13;
+    public static final int POSE_HEADING        = 14;
+
+    // Indexed by the constants above
+    public static final String[] NAMES =
+    {
+        "left/setpoint",
+        "right/setpoint",
+        "left/position_rot",
+        "right/position_rot",
+        "left/speed_rpm",
+        "right/speed_rpm",
+        "left/mode",
+        "right/mode",
+        "brakeMode",
+        "modifiedTurn",
+        "busVoltage_V",
+        "sensorsHealthy",
+        "pose/x_m",
+        "pose/y_m",
+        "pose/heading_deg"
+    };
+
+    private DriveSignals()
+    {
+        // Static interface only
+    }
+}
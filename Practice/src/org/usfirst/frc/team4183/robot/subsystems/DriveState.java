@@ -0,0 +1,175 @@
+/**
+ * DriveState - a snapshot of everything the drive subsystem knows about
+ * itself at one moment in time.
+ *
+ * Each scheduler cycle the DriveSubsystem reads its controllers exactly once
+ * and stores the results here. Every command (and the Robot's periodic
+ * functions) then make their decisions from this same snapshot rather than
+ * each asking the controllers again. This has two benefits:
+ *
+ *     1. Fewer trips across the CAN bus (each get is a status frame lookup)
+ *     2. Every decision made in a cycle is based on the same moment in time;
+ *        e.g., execute() and isFinished() can no longer disagree because the
+ *        robot moved between them
+ *
+ * The object is allocated once and reused; only the DriveSubsystem (in this
+ * package) can change it, everyone else just reads it.
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+import org.usfirst.frc.team4183.robot.hardware.MotorController.ControlMode;
+
+/**
+ * The DriveState class definition
+ */
+public final class DriveState
+{
+    private long cycle;
+    private double timestamp_sec;
+
+    private double leftPosition_rot;
+    private double rightPosition_rot;
+    private double leftOrigin_rot;
+    private double rightOrigin_rot;
+    private double leftSpeed_rpm;
+    private double rightSpeed_rpm;
+
+    private ControlMode leftMode;
+    private ControlMode rightMode;
+
+    private SensorHealthMonitor.Status sensorStatus;
+    private double busVoltage_V;
+
+    DriveState()
+    {
+    }
+
+    /**
+     * update - called once per cycle by the DriveSubsystem after reading the
+     * controllers; package private so no one else can change the snapshot
+     */
+    void update(double aTimestamp_sec,
+                double aLeftPosition_rot,
+                double aRightPosition_rot,
+                double aLeftSpeed_rpm,
+                double aRightSpeed_rpm,
+                ControlMode aLeftMode,
+                ControlMode aRightMode,
+                double aLeftOrigin_rot,
+                double aRightOrigin_rot,
+                SensorHealthMonitor.Status aSensorStatus,
+                double aBusVoltage_V)
+    {
+        ++cycle;
+        timestamp_sec = aTimestamp_sec;
+        leftPosition_rot = aLeftPosition_rot;
+        rightPosition_rot = aRightPosition_rot;
+        leftOrigin_rot = aLeftOrigin_rot;
+        rightOrigin_rot = aRightOrigin_rot;
+        leftSpeed_rpm = aLeftSpeed_rpm;
+        rightSpeed_rpm = aRightSpeed_rpm;
+        leftMode = aLeftMode;
+        rightMode = aRightMode;
+        sensorStatus = aSensorStatus;
+        busVoltage_V = aBusVoltage_V;
+    }
+
+    /**
+     * getCycle returns the number of snapshots taken; useful to tell whether
+     * a value has been refreshed since it was last looked at
+     */
+    public long getCycle()
+    {
+        return cycle;
+    }
+
+    public double getTimestamp_sec()
+    {
+        return timestamp_sec;
+    }
+
+    /**
+     * Positions are in encoder rotations from where the drive last entered
+     * a position, speed or profile mode (the origin, see
+     * DriveSubsystem.markOrigin); what the position targets are relative to
+     */
+    public double getLeftPosition_rot()
+    {
+        return leftPosition_rot - leftOrigin_rot;
+    }
+
+    public double getRightPosition_rot()
+    {
+        return rightPosition_rot - rightOrigin_rot;
+    }
+
+    /**
+     * Absolute positions are in encoder rotations as reported by the
+     * controllers, which are never zeroed; they count on from power up
+     */
+    public double getLeftAbsolute_rot()
+    {
+        return leftPosition_rot;
+    }
+
+    public double getRightAbsolute_rot()
+    {
+        return rightPosition_rot;
+    }
+
+    public double getLeftOrigin_rot()
+    {
+        return leftOrigin_rot;
+    }
+
+    public double getRightOrigin_rot()
+    {
+        return rightOrigin_rot;
+    }
+
+    /**
+     * Speeds are in encoder RPM, as reported by the controllers
+     */
+    public double getLeftSpeed_rpm()
+    {
+        return leftSpeed_rpm;
+    }
+
+    public double getRightSpeed_rpm()
+    {
+        return rightSpeed_rpm;
+    }
+
+    public ControlMode getLeftMode()
+    {
+        return leftMode;
+    }
+
+    public ControlMode getRightMode()
+    {
+        return rightMode;
+    }
+
+    /**
+     * isInMode returns true only if both sides are in the specified mode
+     */
+    public boolean isInMode(ControlMode aMode)
+    {
+        return (leftMode == aMode) && (rightMode == aMode);
+    }
+
+    public SensorHealthMonitor.Status getSensorStatus()
+    {
+        return sensorStatus;
+    }
+
+    public boolean isSensorHealthy()
+    {
+        return (sensorStatus != null) && sensorStatus.isHealthy();
+    }
+
+    public double getBusVoltage_V()
+    {
+        return busVoltage_V;
+    }
+}
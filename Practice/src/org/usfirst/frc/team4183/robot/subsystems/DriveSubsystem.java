@@ -21,10 +21,26 @@ import edu.wpi.first.wpilibj.command.Subsystem;
 // Import mappings, controller types, and other API elements we need to tie it all together
 import org.usfirst.frc.team4183.robot.RobotMap;
 
-import com.ctre.CANTalon; // The type of motor controller we are using
-import com.ctre.CANTalon.FeedbackDeviceStatus;
-import com.ctre.CANTalon.TalonControlMode;
-import edu.wpi.first.wpilibj.RobotDrive; // A class that provides predefined controls for the motors
+import org.usfirst.frc.team4183.robot.hardware.HeadingSensor;
+import org.usfirst.frc.team4183.robot.hardware.HeadingSensors;
+import org.usfirst.frc.team4183.robot.hardware.MotorController; // The type of motor controller we are using
+import org.usfirst.frc.team4183.robot.hardware.MotorController.ControlMode;
+import org.usfirst.frc.team4183.robot.hardware.MotorControllers;
+import org.usfirst.frc.team4183.robot.motion.DrivePath;
+import org.usfirst.frc.team4183.robot.motion.DriveTrajectories;
+import org.usfirst.frc.team4183.robot.motion.MotionProfile;
+import org.usfirst.frc.team4183.robot.motion.MotionProfileStreamer;
+import org.usfirst.frc.team4183.robot.motion.TrajectoryStore;
+import org.usfirst.frc.team4183.robot.params.ParameterSnapshot;
+import org.usfirst.frc.team4183.robot.params.Parameters;
+import org.usfirst.frc.team4183.robot.telemetry.SignalLog;
+import org.usfirst.frc.team4183.robot.telemetry.Telemetry;
+
+import java.io.File;
+import java.io.IOException;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
 
 /**
  * The DriveSubsystem class definition
@@ -32,21 +48,102 @@ import edu.wpi.first.wpilibj.RobotDrive; // A class that provides predefined con
  * Our Robot class will be required to instantiate one of these subsystems in
  * order to be able to drive either autonomously or under user control
  */
-public class DriveSubsystem extends Subsystem
+public class DriveSubsystem extends Subsystem implements PhasedSubsystem
 {
     // Keep track of the parameters of our drive subsystem
     
     // Create motor controllers
     // In this case our robot has CANTalon (i.e., Talon SRX motor controllers
-    // are on the CAN bus)
+    // are on the CAN bus) but we only talk to them through the MotorController
+    // interface so the same code can drive simulated controllers
     // The CAN ID will be assigned at construction
-    private CANTalon leftMotor0;
-    private CANTalon leftMotor1;
-    private CANTalon rightMotor0;
-    private CANTalon rightMotor1;
+    private MotorController leftMotor0;
+    private MotorController leftMotor1;
+    private MotorController rightMotor0;
+    private MotorController rightMotor1;
 
-    // Create a RobotDrive object to bind the motors together
-    private RobotDrive robotDrive;
+    // Create a DriveMixer object to bind the motors together
+    private DriveMixer robotDrive;
+    
+    // Watches the encoders so the control functions below don't have to
+    // ask the controllers about them every cycle
+    private SensorHealthMonitor sensorMonitor;
+    
+    // One snapshot of the controllers per cycle, allocated once and reused;
+    // all of the control functions below decide based on this snapshot
+    private final DriveState state = new DriveState();
+    
+    // Where the robot is, integrated from the encoders (and the gyro, if
+    // there is one) by whichever thread is reading them
+    private final DriveOdometry odometry;
+    
+    // What the commands are waiting on to finish, checked once per snapshot
+    private final DriveTriggers triggers = new DriveTriggers(this, RobotMap.DRIVE_TRIGGER_CAPACITY);
+    
+    // Optional dedicated thread for the closed-loop work (see startControlLoop)
+    private DriveControlLoop controlLoop;
+    
+    // Between readInputs and writeOutputs (see CycleExecutor) the drive
+    // functions only note the latest request, as they would post it to the
+    // control loop, and writeOutputs carries it out
+    private boolean holding = false;
+    private int heldKind = DriveControlLoop.NONE;
+    private double heldA = 0.0;
+    private double heldB = 0.0;
+    
+    // Motion profiles are generated into one preallocated profile and
+    // streamed to the Talons by whichever thread drives the motors
+    private final MotionProfile profile = new MotionProfile(RobotMap.PROFILE_MAX_POINTS,
+                                                            RobotMap.PROFILE_POINT_DURATION_ms);
+    private MotionProfileStreamer streamer;
+    
+    // The encoders are never zeroed (a setPosition is a CAN round trip and
+    // the new count takes a while to come back); instead their readings
+    // when a position, speed or profile mode was last entered are kept here
+    // and the targets in those modes are relative to them (see markOrigin)
+    private volatile double leftOrigin_rot = 0.0;
+    private volatile double rightOrigin_rot = 0.0;
+    
+    // The heading maintainHeading is turning to and the wheel positions it
+    // latched for it (motor thread only; see _maintainHeading)
+    private double headingTarget_deg = Double.NaN;
+    private double headingLeft_rot = 0.0;
+    private double headingRight_rot = 0.0;
+    private double headingTrim_deg = 0.0;   // The integral part of the trim
+    private double headingLast_sec = 0.0;
+    
+    // Precomputed profiles, if a valid file has been loaded (see
+    // loadTrajectories); otherwise profiles are generated as needed
+    private volatile TrajectoryStore trajectories;
+    
+    // The profile the commands asked for (main thread only)...
+    private int profileKind = DriveControlLoop.NONE;
+    private double profileTarget = 0.0;
+    private long profileId = 0;
+    
+    // ... and the one actually being streamed
+    private volatile long streamingProfileId = 0;
+    
+    // The path to stream when the profile asked for is a PROFILE_PATH
+    private volatile DrivePath path;
+    
+    // Every signal of the drive is logged each cycle if there is a log (see
+    // setSignalLog); the brake mode and turn are remembered for it
+    private SignalLog signalLog;
+    private final Pose signalPose = new Pose();
+    private volatile boolean brakeMode = false;
+    private double modifiedTurn = 0.0;
+    
+    // The closed loop gains for each mode, handed to the controllers each
+    // time the mode is entered (see setPositionGains etc.); taken from the
+    // live parameters whenever they change (see applyParameters)
+    private volatile DriveGains positionGains = DriveGains.POSITION;
+    private volatile DriveGains speedGains = DriveGains.SPEED;
+    private volatile DriveGains profileGains = DriveGains.PROFILE;
+    private long parameterVersion;
+    
+    private static final int parameterVersionChannel = Telemetry.channel("params/version");
+    private static final int parameterLatencyChannel = Telemetry.channel("params/applyLatency_ms");
 
     /**
      * Constructor
@@ -56,59 +153,429 @@ public class DriveSubsystem extends Subsystem
         // Instantiate the motor controllers mapped to the IDs defined for our
         // robot
         // In our case we have four (4) motors defining the drive subsystem
+        // The MotorControllers factory decides whether these are real Talons
+        // or simulated ones
+        this(MotorControllers.create(RobotMap.leftMotor0),      // Left Side
+             MotorControllers.create(RobotMap.leftMotor1),
+             MotorControllers.create(RobotMap.rightMotor0),     // Right Side
+             MotorControllers.create(RobotMap.rightMotor1),
+             HeadingSensors.create());
+    }
+    
+    /**
+     * Constructor - for when the caller wants to supply the controllers
+     * (e.g., tools that run the drive against a simulation); the heading
+     * comes from the encoders alone
+     */
+    public DriveSubsystem(MotorController aLeftMotor0,
+                          MotorController aLeftMotor1,
+                          MotorController aRightMotor0,
+                          MotorController aRightMotor1)
+    {
+        this(aLeftMotor0, aLeftMotor1, aRightMotor0, aRightMotor1, null);
+    }
+    
+    /**
+     * Constructor - as above plus a gyro to fuse into the heading (see
+     * HeadingEstimator); null for none
+     */
+    public DriveSubsystem(MotorController aLeftMotor0,
+                          MotorController aLeftMotor1,
+                          MotorController aRightMotor0,
+                          MotorController aRightMotor1,
+                          HeadingSensor aGyro)
+    {
+        leftMotor0 = aLeftMotor0;
+        leftMotor1 = aLeftMotor1;
+        rightMotor0 = aRightMotor0;
+        rightMotor1 = aRightMotor1;
         
-        // Left Side
-        leftMotor0 = new CANTalon(RobotMap.leftMotor0);
-        leftMotor1 = new CANTalon(RobotMap.leftMotor1);
-                        
-        // Right Side
-        rightMotor0 = new CANTalon(RobotMap.rightMotor0);
-        rightMotor1 = new CANTalon(RobotMap.rightMotor1);
+        odometry = new DriveOdometry(new HeadingEstimator(aGyro));
 
         // Make second motor controller always follow the first
-        leftMotor1.changeControlMode(TalonControlMode.Follower);
-        leftMotor1.set(leftMotor0.getDeviceID());
-        
-        rightMotor0.changeControlMode(TalonControlMode.Follower);
-        rightMotor1.set(rightMotor0.getDeviceID());
+        leftMotor1.follow(leftMotor0);
+        rightMotor1.follow(rightMotor0);
         
         // Declare the encoder type for the controllers
         // NOTE: The two (2) encoders are attached to only one controller each
         // and since the other controllers a are following we will just
         // 
-        leftMotor0.setFeedbackDevice(RobotMap.DRIVE_ENCODER_TYPE);
         leftMotor0.configEncoderCodesPerRev(RobotMap.DRIVE_PULSES_PER_REV);
-        
-        rightMotor0.setFeedbackDevice(RobotMap.DRIVE_ENCODER_TYPE);
         rightMotor0.configEncoderCodesPerRev(RobotMap.DRIVE_PULSES_PER_REV);
         
+        // Watch the encoders at a slow rate; the control functions only
+        // read the cached result. Any change is reported to the driver
+        // station so a lost encoder does not go unnoticed
+        sensorMonitor = new SensorHealthMonitor(leftMotor0, 
+                                                rightMotor0, 
+                                                RobotMap.SENSOR_HEALTH_PERIOD_sec);
+        sensorMonitor.addListener(new SensorHealthMonitor.Listener()
+        {
+            public void statusChanged(SensorHealthMonitor.Status previous, SensorHealthMonitor.Status current)
+            {
+                if ( ! current.isHealthy())
+                {
+                    DriverStation.reportError("Drive encoder not present: " + current, false);
+                }
+            }
+        });
+        
         // Bind the motors into a single drive system
-        // The RobotDrive class provides several interfaces that support
-        // both autonomous and manual control (e.g., drive based on magnitude
-        // and curve,
+        // The DriveMixer class (a copy of the WPILib RobotDrive math that
+        // works with any MotorController) provides several interfaces that
+        // support both autonomous and manual control (e.g., drive based on
+        // magnitude and curve,
         // or tankDrive/arcadeDrive based on "stick" inputs)
         // We will have to provide methods for accessing the robotDrive object
         // through an instance of the DriveSubsystem.
         //
-        // Conveniently, the RobotDrive class accepts 2 or 4 motor solutions
-        //
         // Since we are slaving motors we just need to organize what looks like
         // a 2 motor solution
-        robotDrive = new RobotDrive(leftMotor0, rightMotor0);
+        robotDrive = new DriveMixer(leftMotor0, rightMotor0);
+        
+        // Profiles are only ever sent to the primary controllers
+        streamer = new MotionProfileStreamer(leftMotor0, rightMotor0);
+        
+        // Start with the current parameters; nothing is sent until a mode
+        // is entered
+        ParameterSnapshot parameters = Parameters.snapshot();
+        takeGains(parameters);
+        parameterVersion = parameters.getVersion();
 
     }
 
     // Put methods for controlling this subsystem
     // here. Call these from Commands.
     
+    /**
+     * getSensorMonitor provides access to the cached encoder status so
+     * others (e.g., telemetry) can see how often it changes and how old it is
+     */
+    public SensorHealthMonitor getSensorMonitor()
+    {
+        return sensorMonitor;
+    }
+    
+    /**
+     * updateState - read the controllers ONCE and capture the results in the
+     * state snapshot. The Robot calls this (through readInputs) at the
+     * start of every periodic cycle, before the Scheduler runs the commands.
+     */
+    public void updateState()
+    {
+        updateState(Timer.getFPGATimestamp());
+    }
+    
+    /**
+     * updateState - as above, at the specified time rather than the FPGA's
+     * (e.g., a simulated drive on its own virtual clock; see
+     * AutonomousRehearsal)
+     */
+    public void updateState(double now_sec)
+    {
+        // Only actually asks the controllers when the sample period is up
+        sensorMonitor.update(now_sec);
+        
+        readState(state, now_sec);
+        
+        // Pick up any change made on the dashboard or in the parameter file;
+        // only a new version costs more than this one read
+        ParameterSnapshot parameters = Parameters.snapshot();
+        if (parameters.getVersion() != parameterVersion)
+        {
+            applyParameters(parameters, state);
+        }
+        
+        // When the control loop is running it integrates the odometry at
+        // its own (higher) rate
+        if ( ! isControlLoopRunning())
+        {
+            updateOdometry(state);
+        }
+        
+        // Every command's completion is decided here, once
+        triggers.evaluate(state);
+        
+        if (signalLog != null)
+        {
+            recordSignals(signalLog, state);
+        }
+    }
+    
+    /**
+     * setSignalLog - log every signal of the drive (see DriveSignals) to the
+     * specified log at the end of each updateState; null to stop
+     */
+    public void setSignalLog(SignalLog aLog)
+    {
+        signalLog = aLog;
+    }
+    
+    public SignalLog getSignalLog()
+    {
+        return signalLog;
+    }
+    
+    /**
+     * recordSignals - write one row; only stores into the log's arrays
+     */
+    private void recordSignals(SignalLog aLog, DriveState aState)
+    {
+        aLog.put(DriveSignals.LEFT_SETPOINT, leftMotor0.getSetpoint());
+        aLog.put(DriveSignals.RIGHT_SETPOINT, rightMotor0.getSetpoint());
+        aLog.put(DriveSignals.LEFT_POSITION, aState.getLeftAbsolute_rot());
+        aLog.put(DriveSignals.RIGHT_POSITION, aState.getRightAbsolute_rot());
+        aLog.put(DriveSignals.LEFT_SPEED, aState.getLeftSpeed_rpm());
+        aLog.put(DriveSignals.RIGHT_SPEED, aState.getRightSpeed_rpm());
+        aLog.put(DriveSignals.LEFT_MODE, aState.getLeftMode().ordinal());
+        aLog.put(DriveSignals.RIGHT_MODE, aState.getRightMode().ordinal());
+        aLog.put(DriveSignals.BRAKE_MODE, brakeMode ? 1.0 : 0.0);
+        aLog.put(DriveSignals.MODIFIED_TURN, modifiedTurn);
+        aLog.put(DriveSignals.BUS_VOLTAGE, aState.getBusVoltage_V());
+        aLog.put(DriveSignals.SENSORS_HEALTHY, aState.isSensorHealthy() ? 1.0 : 0.0);
+        
+        odometry.getPose(signalPose);
+        aLog.put(DriveSignals.POSE_X, signalPose.x_m);
+        aLog.put(DriveSignals.POSE_Y, signalPose.y_m);
+        aLog.put(DriveSignals.POSE_HEADING, signalPose.getHeading_deg());
+        
+        aLog.endRow(aState.getTimestamp_sec());
+    }
+    
+    /**
+     * updateOdometry - integrate the encoder positions in the snapshot
+     */
+    void updateOdometry(DriveState aState)
+    {
+        odometry.update(aState.getLeftAbsolute_rot(), 
+                        aState.getRightAbsolute_rot(),
+                        aState.getTimestamp_sec());
+    }
+    
+    /**
+     * getHeading_deg returns the fused heading (counter-clockwise positive,
+     * not wrapped); any thread
+     */
+    public double getHeading_deg()
+    {
+        return Math.toDegrees(odometry.getHeading_rad());
+    }
+    
+    /**
+     * getTriggers provides the completion triggers (see DriveTriggers) for
+     * commands to arm
+     */
+    public DriveTriggers getTriggers()
+    {
+        return triggers;
+    }
+    
+    /**
+     * getOdometry provides the robot's estimated pose (see DriveOdometry.getPose)
+     */
+    public DriveOdometry getOdometry()
+    {
+        return odometry;
+    }
+    
+    /**
+     * readState - read the controllers into the specified snapshot; the
+     * control loop thread keeps its own snapshot so it uses this directly
+     */
+    void readState(DriveState aState, double now_sec)
+    {
+        // The origins are read after the modes (and markOrigin is called
+        // before the mode changes), so a snapshot in the new mode never
+        // has the old origin
+        aState.update(now_sec,
+                     leftMotor0.getPosition(),
+                     rightMotor0.getPosition(),
+                     leftMotor0.getSpeed(),
+                     rightMotor0.getSpeed(),
+                     leftMotor0.getControlMode(),
+                     rightMotor0.getControlMode(),
+                     leftOrigin_rot,
+                     rightOrigin_rot,
+                     sensorMonitor.getStatus(),
+                     leftMotor0.getBusVoltage());
+    }
+    
+    /**
+     * getState returns the snapshot taken by the most recent updateState;
+     * callers must treat it as read-only
+     */
+    public DriveState getState()
+    {
+        return state;
+    }
+    
+    /**
+     * startControlLoop - OPTIONAL: move the closed-loop work (position,
+     * orientation and speed maintenance, arcade/tank mixing) onto a
+     * dedicated thread running at a fixed rate. Once started, the drive
+     * functions below only post requests to that thread.
+     * 
+     * The decisions (inPosition, atOrientation) are still made by the
+     * commands from the per-cycle snapshot.
+     */
+    public void startControlLoop(double aRate_Hz)
+    {
+        if (controlLoop == null)
+        {
+            controlLoop = new DriveControlLoop(this, aRate_Hz);
+        }
+        controlLoop.start();
+    }
+    
+    public void stopControlLoop()
+    {
+        if (controlLoop != null)
+        {
+            controlLoop.stop();
+        }
+    }
+    
+    public boolean isControlLoopRunning()
+    {
+        return (controlLoop != null) && controlLoop.isRunning();
+    }
+    
+    /**
+     * getControlLoop returns the control loop (e.g., to look at its timing);
+     * null if it was never started
+     */
+    public DriveControlLoop getControlLoop()
+    {
+        return controlLoop;
+    }
+    
+    /**
+     * readInputs - the read phase of a CycleExecutor: take the snapshot
+     * (see updateState) and hold the drive requests until writeOutputs
+     */
+    public void readInputs()
+    {
+        updateState();
+        heldKind = DriveControlLoop.NONE;
+        holding = true;
+    }
+    
+    /**
+     * writeOutputs - the write phase of a CycleExecutor: carry out the last
+     * request made since readInputs, if any
+     */
+    public void writeOutputs()
+    {
+        holding = false;
+        if (heldKind != DriveControlLoop.NONE)
+        {
+            execute(heldKind, heldA, heldB, state);
+            heldKind = DriveControlLoop.NONE;
+        }
+    }
+    
+    /**
+     * post - pass a request on to the control loop, or hold it for
+     * writeOutputs, if either is taking them
+     * 
+     * @return false if the caller must carry out the request itself
+     */
+    private boolean post(int aKind, double anA, double aB)
+    {
+        if (isControlLoopRunning())
+        {
+            controlLoop.post(aKind, anA, aB);
+            return true;
+        }
+        if (holding)
+        {
+            // Only the last request of the cycle counts, as with the loop
+            heldKind = aKind;
+            heldA = anA;
+            heldB = aB;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * execute - carry out one posted request; called on the control loop
+     * thread with that thread's own snapshot, or by writeOutputs with the
+     * cycle's snapshot
+     */
+    void execute(int aKind, double anA, double aB, DriveState aState)
+    {
+        switch (aKind)
+        {
+        case DriveControlLoop.STOP:
+            _stop();
+            break;
+        case DriveControlLoop.ARCADE:
+            robotDrive.arcadeDrive(anA, aB);
+            break;
+        case DriveControlLoop.TANK:
+            robotDrive.tankDrive(anA, aB);
+            break;
+        case DriveControlLoop.CURVE:
+            _autoDrive(anA, aB);
+            break;
+        case DriveControlLoop.POSITION:
+            _maintainPosition(aState, anA);
+            break;
+        case DriveControlLoop.ABS_POSITION:
+            _maintainAbsolutePosition(aState, anA, aB);
+            break;
+        case DriveControlLoop.ORIENTATION:
+            _maintainOrientation(aState, anA);
+            break;
+        case DriveControlLoop.SPEED:
+            _maintainSpeed(aState, anA);
+            break;
+        case DriveControlLoop.HEADING:
+            _maintainHeading(aState, anA);
+            break;
+        case DriveControlLoop.VOLTAGE:
+            _driveVoltage(aState, anA, aB);
+            break;
+        case DriveControlLoop.PROFILE_MOVE:
+        case DriveControlLoop.PROFILE_TURN:
+        case DriveControlLoop.PROFILE_PATH:
+            _maintainProfile(aState, aKind, anA, (long) aB);
+            break;
+        default:
+            break;
+        }
+    }
+    
     public void stop()
+    {
+        if ( ! post(DriveControlLoop.STOP, 0.0, 0.0))
+        {
+            _stop();
+        }
+    }
+    
+    private void _stop()
     {
         configureBrakeMode(true);
         
+        // A stopped profile is abandoned, not paused
+        streamer.reset();
+        
         // In follower modes, only the primary motor controller
         // needs to be commanded
-        leftMotor0.set(0);
-        rightMotor0.set(0);
+        if (ControlMode.Position == leftMotor0.getControlMode())
+        {
+            // Hold where the wheels are now; the origin is where the mode
+            // was entered, and going back there would undo every move since
+            leftMotor0.set(leftMotor0.getPosition());
+            rightMotor0.set(rightMotor0.getPosition());
+        }
+        else
+        {
+            leftMotor0.set(0);
+            rightMotor0.set(0);
+        }
     }
       
 
@@ -201,9 +668,12 @@ public class DriveSubsystem extends Subsystem
         // Create a linear decay of turning power where 100% power into the turn when no speed
         // but never more than 50% power into the turn when commanding max speed.
       	double maxTurnFactor = 1.0 - Math.abs(speed) / 2.0;
-      	double modifiedTurn = (maxTurnFactor * turn);
+      	modifiedTurn = (maxTurnFactor * turn);
     	
-        robotDrive.arcadeDrive(speed, modifiedTurn);
+        if ( ! post(DriveControlLoop.ARCADE, speed, modifiedTurn))
+        {
+            robotDrive.arcadeDrive(speed, modifiedTurn);
+        }
         
         return modifiedTurn;
     }
@@ -257,7 +727,10 @@ public class DriveSubsystem extends Subsystem
         // we find that drive and turn values are coefficients from -1 to +1
         // and will be enforced by the RobotDrive class; this means there
         // is nothing more to do here.
-        robotDrive.tankDrive(leftStick, rightStick);
+        if ( ! post(DriveControlLoop.TANK, leftStick, rightStick))
+        {
+            robotDrive.tankDrive(leftStick, rightStick);
+        }
     }
     
     /**
@@ -275,7 +748,14 @@ public class DriveSubsystem extends Subsystem
      */
     public void autoDrive(double speedCoefficient, double radius_m)
     {
-
+        if ( ! post(DriveControlLoop.CURVE, speedCoefficient, radius_m))
+        {
+            _autoDrive(speedCoefficient, radius_m);
+        }
+    }
+    
+    private void _autoDrive(double speedCoefficient, double radius_m)
+    {
         robotDrive.drive(speedCoefficient, 
                          Math.signum(radius_m)*Math.exp(-Math.abs(radius_m) / RobotMap.WHEEL_TRACK_m));
     }
@@ -327,25 +807,148 @@ public class DriveSubsystem extends Subsystem
         // need to command the primary controller
         leftMotor0.enableBrakeMode(brakeMode);
         rightMotor0.enableBrakeMode(brakeMode);
+        this.brakeMode = brakeMode;
+    }
+    
+    /**
+     * applyParameters - take the gains from a new version of the parameters
+     * and send the ones for the mode we are in now straight away (the others
+     * are sent when their mode is entered); the time from the change to here
+     * is published as "params/applyLatency_ms"
+     */
+    private void applyParameters(ParameterSnapshot someParameters, DriveState aState)
+    {
+        takeGains(someParameters);
+        parameterVersion = someParameters.getVersion();
+        
+        switch (aState.getLeftMode())
+        {
+        case Position:
+            sendGains(positionGains);
+            break;
+        case Speed:
+            sendGains(speedGains);
+            break;
+        case MotionProfile:
+            sendGains(profileGains);
+            break;
+        default:
+            break;
+        }
+        
+        Telemetry.put(parameterVersionChannel, parameterVersion);
+        Telemetry.put(parameterLatencyChannel, (System.nanoTime() - someParameters.getUpdateTime_ns()) / 1.0e6);
+    }
+    
+    private void takeGains(ParameterSnapshot someParameters)
+    {
+        positionGains = gains(someParameters, Parameters.DRIVE_POSITION_GAINS);
+        speedGains = gains(someParameters, Parameters.DRIVE_SPEED_GAINS);
+        profileGains = gains(someParameters, Parameters.DRIVE_PROFILE_GAINS);
+    }
+    
+    private static DriveGains gains(ParameterSnapshot someParameters, int aFirst)
+    {
+        return new DriveGains(someParameters.get(aFirst),
+                              someParameters.get(aFirst + 1),
+                              someParameters.get(aFirst + 2),
+                              someParameters.get(aFirst + 3));
+    }
+    
+    /**
+     * sendGains - make both primary controllers use the specified gains
+     * 
+     * NOTE: All four are asked for every time; the controllers'
+     * configuration caches (see hardware.CachingMotorController) send only
+     * the ones that changed, and send them all again on each refresh in
+     * case a controller forgot them
+     */
+    private void sendGains(DriveGains someGains)
+    {
+        sendGains(leftMotor0, someGains);
+        sendGains(rightMotor0, someGains);
+    }
+    
+    private static void sendGains(MotorController aController, DriveGains someGains)
+    {
+        aController.setP(someGains.p);
+        aController.setI(someGains.i);
+        aController.setD(someGains.d);
+        aController.setF(someGains.f);
+    }
+    
+    /**
+     * setPositionGains, setSpeedGains and setProfileGains replace the gains
+     * used by that mode (initially the parameter values) until the
+     * parameters next change; they take effect the next time the drive
+     * enters the mode
+     */
+    public void setPositionGains(DriveGains someGains)
+    {
+        positionGains = someGains;
+    }
+    
+    public DriveGains getPositionGains()
+    {
+        return positionGains;
+    }
+    
+    public void setSpeedGains(DriveGains someGains)
+    {
+        speedGains = someGains;
+    }
+    
+    public DriveGains getSpeedGains()
+    {
+        return speedGains;
+    }
+    
+    public void setProfileGains(DriveGains someGains)
+    {
+        profileGains = someGains;
+    }
+    
+    public DriveGains getProfileGains()
+    {
+        return profileGains;
+    }
+    
+    /**
+     * markOrigin - measure the relative positions (maintainPosition,
+     * inPosition, etc.) from where the wheels are now
+     * 
+     * Only the cached encoder readings are used and nothing is sent to the
+     * controllers, so unlike zeroing the encoders this is cheap enough to do
+     * in the middle of a routine; the absolute positions (and the odometry)
+     * carry on as if nothing happened. Entering the position and speed
+     * modes and starting a profile all do this.
+     */
+    public void markOrigin()
+    {
+        leftOrigin_rot = leftMotor0.getPosition();
+        rightOrigin_rot = rightMotor0.getPosition();
     }
     
     /**
      * 
      */
-    private void _enablePositionMode(CANTalon aController)
+    private void _enablePositionMode(MotorController aController)
     {
-        aController.changeControlMode(TalonControlMode.Position);
-        aController.setPosition(0.0); // resets the encoder position to 0
-        aController.setP(RobotMap.DRIVE_POSITION_P);
-        aController.setI(RobotMap.DRIVE_POSITION_I);
-        aController.setD(RobotMap.DRIVE_POSITION_D);
-        aController.setF(RobotMap.DRIVE_POSITION_F);
+        aController.changeControlMode(ControlMode.Position);
     }
     public void enablePositionMode()
     {
-        stop();
+        _stop();   // NOTE: directly, since this may be called on the control loop thread
+        markOrigin();
+        headingTarget_deg = Double.NaN;
         _enablePositionMode(leftMotor0);
         _enablePositionMode(rightMotor0);
+        
+        // A new mode starts at 0, which is no longer here; hold where we
+        // are until the caller sends a target
+        leftMotor0.set(leftOrigin_rot);
+        rightMotor0.set(rightOrigin_rot);
+        sendGains(positionGains);
     }
     
     /**
@@ -356,30 +959,32 @@ public class DriveSubsystem extends Subsystem
      * to clarify any system-level inversions
      */
     public void maintainPosition(double position_m)     // Must call this repeatedly
+    {
+        if ( ! post(DriveControlLoop.POSITION, position_m, 0.0))
+        {
+            _maintainPosition(state, position_m);
+        }
+    }
+    
+    private void _maintainPosition(DriveState aState, double position_m)
     {
         // RobotDrive does not have interfaces to support
         // moving a distance based on encoders, so we
         // must specify our own
-        FeedbackDeviceStatus leftStatus  = leftMotor0.isSensorPresent(RobotMap.DRIVE_ENCODER_TYPE);
-        FeedbackDeviceStatus rightStatus = rightMotor0.isSensorPresent(RobotMap.DRIVE_ENCODER_TYPE);
-        
         // For now, if either sensor is not present the position control
         // will not function and an error state will be declared
+        // (the sensor monitor reports the error when the status changes)
         // TODO: future design may attempt a fall back by temporarily 
         // slaving all controllers to the master that has the working sensor.
-        if ((FeedbackDeviceStatus.FeedbackStatusPresent == leftStatus) &&
-            (FeedbackDeviceStatus.FeedbackStatusPresent == rightStatus))
+        if (aState.isSensorHealthy())
         {
-            if ((leftMotor0.getControlMode() == TalonControlMode.Position) &&
-                (rightMotor0.getControlMode() == TalonControlMode.Position))
+            if (aState.isInMode(ControlMode.Position))
             {
-                // Trig 101: arclen = angle * radius --> angle = arclen / radius
-                double angle_rad = position_m / RobotMap.WHEEL_RADIUS_m;
-                
-                double encoderTarget = RobotMap.WHEEL_TO_ENCODER * angle_rad / (Math.PI * 2.0);
+                // The meters to encoder rotations scaling is computed once in RobotMap
+                double encoderTarget = RobotMap.ENCODER_ROT_PER_METER * position_m;
                 
-                leftMotor0.set(encoderTarget);
-                rightMotor0.set(encoderTarget);
+                leftMotor0.set(leftOrigin_rot + encoderTarget);
+                rightMotor0.set(rightOrigin_rot + encoderTarget);
             }
             else
             {
@@ -394,45 +999,123 @@ public class DriveSubsystem extends Subsystem
     }
     
     public boolean inPosition(double position_m, double tolerance_m)
+    {
+        return inPosition(state, position_m, tolerance_m);
+    }
+    
+    static boolean inPosition(DriveState aState, double position_m, double tolerance_m)
+    {
+        return inPosition(aState, position_m, position_m, tolerance_m);
+    }
+    
+    /**
+     * inPosition - as above, but with a different target for each side
+     * (e.g., the end of a motion.DrivePath)
+     */
+    static boolean inPosition(DriveState aState, double left_m, double right_m, double tolerance_m)
+    {
+        // The meters to encoder rotations scaling is computed once in RobotMap
+        return near(aState,
+                    aState.getLeftOrigin_rot() + RobotMap.ENCODER_ROT_PER_METER * left_m,
+                    aState.getRightOrigin_rot() + RobotMap.ENCODER_ROT_PER_METER * right_m,
+                    tolerance_m);
+    }
+    
+    /**
+     * 
+     * @param left_m - absolute, as getLeftAbsolute_m; the encoders' sign,
+     * so a target ahead is the current value plus RobotMap.FORWARD times
+     * the distance (as for maintainPosition)
+     * @param right_m - ditto, right side
+     * 
+     * Unlike maintainPosition the targets do not move when the mode
+     * changes, so a command can come back to the same place after
+     * something else has driven in between
+     */
+    public void maintainAbsolutePosition(double left_m, double right_m)     // Must call this repeatedly
+    {
+        if ( ! post(DriveControlLoop.ABS_POSITION, left_m, right_m))
+        {
+            _maintainAbsolutePosition(state, left_m, right_m);
+        }
+    }
+    
+    private void _maintainAbsolutePosition(DriveState aState, double left_m, double right_m)
+    {
+        // Same sensor requirements as _maintainPosition
+        if (aState.isSensorHealthy())
+        {
+            if (aState.isInMode(ControlMode.Position))
+            {
+                leftMotor0.set(RobotMap.ENCODER_ROT_PER_METER * left_m);
+                rightMotor0.set(RobotMap.ENCODER_ROT_PER_METER * right_m);
+            }
+            else
+            {
+                // Enable on this pass and make user call again
+                enablePositionMode();
+            }
+        }
+    }
+    
+    public boolean inAbsolutePosition(double left_m, double right_m, double tolerance_m)
+    {
+        return inAbsolutePosition(state, left_m, right_m, tolerance_m);
+    }
+    
+    static boolean inAbsolutePosition(DriveState aState, double left_m, double right_m, double tolerance_m)
+    {
+        return near(aState,
+                    RobotMap.ENCODER_ROT_PER_METER * left_m,
+                    RobotMap.ENCODER_ROT_PER_METER * right_m,
+                    tolerance_m);
+    }
+    
+    /**
+     * getLeftAbsolute_m returns how far the left side has driven since the
+     * encoders were powered up, from the latest snapshot
+     * 
+     * The sign is the encoders', not the robot's: driving forward moves it
+     * by RobotMap.FORWARD per meter (negative on this robot), the same
+     * sense maintainAbsolutePosition takes. For meters actually traveled
+     * forward multiply by RobotMap.FORWARD (as DriveOdometry does with the
+     * rotations).
+     */
+    public double getLeftAbsolute_m()
+    {
+        return state.getLeftAbsolute_rot() / RobotMap.ENCODER_ROT_PER_METER;
+    }
+    
+    public double getRightAbsolute_m()
+    {
+        return state.getRightAbsolute_rot() / RobotMap.ENCODER_ROT_PER_METER;
+    }
+    
+    /**
+     * near - both sides within the tolerance of absolute encoder targets
+     */
+    private static boolean near(DriveState aState, double leftTarget_rot, double rightTarget_rot, double tolerance_m)
     {
         boolean weAreThere = false; // Until proven otherwise
         
-        FeedbackDeviceStatus leftStatus  = leftMotor0.isSensorPresent(RobotMap.DRIVE_ENCODER_TYPE);
-        FeedbackDeviceStatus rightStatus = rightMotor0.isSensorPresent(RobotMap.DRIVE_ENCODER_TYPE);
-        
         // For now, if either sensor is not present the position control
         // will not function and an error state will be declared
+        // (the sensor monitor reports the error when the status changes)
         // TODO: future design may attempt a fall back by temporarily 
         // slaving all controllers to the master that has the working sensor.
-        if ((FeedbackDeviceStatus.FeedbackStatusPresent == leftStatus) &&
-            (FeedbackDeviceStatus.FeedbackStatusPresent == rightStatus))
+        if (aState.isSensorHealthy())
         {
-            if ((leftMotor0.getControlMode() == TalonControlMode.Position) &&
-                (rightMotor0.getControlMode() == TalonControlMode.Position))
+            // A profile ends on the same target a position command would have
+            if (aState.isInMode(ControlMode.Position) || aState.isInMode(ControlMode.MotionProfile))
             {
-                // Trig 101: arclen = angle * radius --> angle = arclen / radius
-                double angle_rad = position_m / RobotMap.WHEEL_RADIUS_m;
-                
-                double tolerance_rad = tolerance_m / RobotMap.WHEEL_RADIUS_m;
+                double encoderTolerance = RobotMap.ENCODER_ROT_PER_METER * tolerance_m;
                 
-                double encoderTarget = RobotMap.WHEEL_TO_ENCODER * angle_rad / (Math.PI * 2.0);
-                
-                double encoderTolerance = RobotMap.WHEEL_TO_ENCODER * tolerance_rad / (Math.PI * 2.0);
-                
-                if ((Math.abs(leftMotor0.getPosition() - encoderTarget) <= encoderTolerance) &&
-                    (Math.abs(rightMotor0.getPosition() - encoderTarget) <= encoderTolerance))
+                if ((Math.abs(aState.getLeftAbsolute_rot() - leftTarget_rot) <= encoderTolerance) &&
+                    (Math.abs(aState.getRightAbsolute_rot() - rightTarget_rot) <= encoderTolerance))
                 {
                     weAreThere = true;
                 }
             }
-            else
-            {
-                // TODO: Insert error notification
-            }
-        }
-        else
-        {
-            // TODO: Insert error notification
         }
         
         return weAreThere;
@@ -446,28 +1129,32 @@ public class DriveSubsystem extends Subsystem
      * to clarify any system-level inversions
      */
     public void maintainOrientation(double angle_deg)     // Must call this repeatedly
+    {
+        if ( ! post(DriveControlLoop.ORIENTATION, angle_deg, 0.0))
+        {
+            _maintainOrientation(state, angle_deg);
+        }
+    }
+    
+    private void _maintainOrientation(DriveState aState, double angle_deg)
     {
         // RobotDrive does not have interfaces to support
         // moving a distance based on encoders, so we
         // must specify our own
-        FeedbackDeviceStatus leftStatus  = leftMotor0.isSensorPresent(RobotMap.DRIVE_ENCODER_TYPE);
-        FeedbackDeviceStatus rightStatus = rightMotor0.isSensorPresent(RobotMap.DRIVE_ENCODER_TYPE);
-        
         // For now, if either sensor is not present the position control
         // will not function and an error state will be declared
+        // (the sensor monitor reports the error when the status changes)
         // TODO: future design may attempt a fall back by temporarily 
         // slaving all controllers to the master that has the working sensor.
-        if ((FeedbackDeviceStatus.FeedbackStatusPresent == leftStatus) &&
-            (FeedbackDeviceStatus.FeedbackStatusPresent == rightStatus))
+        if (aState.isSensorHealthy())
         {
-            if ((leftMotor0.getControlMode() == TalonControlMode.Position) &&
-                (rightMotor0.getControlMode() == TalonControlMode.Position))
+            if (aState.isInMode(ControlMode.Position))
             {
-                double encoderTarget = RobotMap.WHEEL_TO_ENCODER * RobotMap.DIAMETER_TO_TRACK * angle_deg / 360.0;
+                double encoderTarget = RobotMap.ENCODER_ROT_PER_DEGREE * angle_deg;
                 
                 // Motors must move in opposite direction to rotate about robot center
-                leftMotor0.set(encoderTarget);
-                rightMotor0.set(-encoderTarget);
+                leftMotor0.set(leftOrigin_rot + encoderTarget);
+                rightMotor0.set(rightOrigin_rot - encoderTarget);
             }
             else
             {
@@ -485,25 +1172,22 @@ public class DriveSubsystem extends Subsystem
     {
         boolean weAreThere = false; // Until proven otherwise
         
-        FeedbackDeviceStatus leftStatus  = leftMotor0.isSensorPresent(RobotMap.DRIVE_ENCODER_TYPE);
-        FeedbackDeviceStatus rightStatus = rightMotor0.isSensorPresent(RobotMap.DRIVE_ENCODER_TYPE);
-        
         // For now, if either sensor is not present the position control
         // will not function and an error state will be declared
+        // (the sensor monitor reports the error when the status changes)
         // TODO: future design may attempt a fall back by temporarily 
         // slaving all controllers to the master that has the working sensor.
-        if ((FeedbackDeviceStatus.FeedbackStatusPresent == leftStatus) &&
-            (FeedbackDeviceStatus.FeedbackStatusPresent == rightStatus))
+        if (state.isSensorHealthy())
         {
-            if ((leftMotor0.getControlMode() == TalonControlMode.Position) &&
-                (rightMotor0.getControlMode() == TalonControlMode.Position))
+            if (state.isInMode(ControlMode.Position) || state.isInMode(ControlMode.MotionProfile))
             {
-                double encoderTarget = RobotMap.WHEEL_TO_ENCODER * RobotMap.DIAMETER_TO_TRACK * angle_deg / 360.0;
+                double encoderTarget = RobotMap.ENCODER_ROT_PER_DEGREE * angle_deg;
                 
-                double encoderTolerance = RobotMap.WHEEL_TO_ENCODER * RobotMap.DIAMETER_TO_TRACK * tolerance_deg / 360.0;
+                double encoderTolerance = RobotMap.ENCODER_ROT_PER_DEGREE * tolerance_deg;
                 
-                if ((Math.abs(leftMotor0.getPosition() - encoderTarget) <= encoderTolerance) &&
-                    (Math.abs(rightMotor0.getPosition() - encoderTarget) <= encoderTolerance))
+                // The right side was sent the opposite target (see _maintainOrientation)
+                if ((Math.abs(state.getLeftPosition_rot() - encoderTarget) <= encoderTolerance) &&
+                    (Math.abs(state.getRightPosition_rot() + encoderTarget) <= encoderTolerance))
                 {
                     weAreThere = true;
                 }
@@ -521,45 +1205,134 @@ public class DriveSubsystem extends Subsystem
         return weAreThere;
     }
     
-    private void _enableSpeedMode(CANTalon aController)
+    /**
+     * maintainHeading - turn in place to (and hold) the specified fused
+     * heading
+     * 
+     * Unlike maintainOrientation, which turns the wheels a fixed amount and
+     * so comes up short by whatever the wheels skid, the remaining turn is
+     * taken from the fused heading when a heading is first asked for and
+     * the wheels are sent to that fixed target. The target is not taken
+     * again from where the wheels are each cycle (that leaves the position
+     * loop only one cycle's error, and the robot creeps); instead the
+     * fused heading's remaining error plus its integral, bounded by
+     * RobotMap.DRIVE_HEADING_TRIM_deg, is added to it as a trim. The
+     * integral keeps growing while the robot is still short, so the turn
+     * settles on the target rather than just inside the tolerance.
+     * 
+     * Nothing is sent while the encoders are missing; SensorHealthMonitor
+     * has already told the driver station.
+     * 
+     * @param heading_deg - counter-clockwise positive, in the same frame as
+     * getHeading_deg (e.g., the heading when the turn started plus
+     * RIGHT/LEFT times the desired angle)
+     */
+    public void maintainHeading(double heading_deg)     // Must call this repeatedly
+    {
+        if ( ! post(DriveControlLoop.HEADING, heading_deg, 0.0))
+        {
+            _maintainHeading(state, heading_deg);
+        }
+    }
+    
+    private void _maintainHeading(DriveState aState, double heading_deg)
+    {
+        // Same sensor requirements as _maintainOrientation
+        if (aState.isSensorHealthy())
+        {
+            if (aState.isInMode(ControlMode.Position))
+            {
+                // The wheel targets are fixed once for each new heading...
+                double remaining_deg = heading_deg - getHeading_deg();
+                if (heading_deg != headingTarget_deg)
+                {
+                    double encoderTurn = RobotMap.ENCODER_ROT_PER_DEGREE * remaining_deg;
+                    
+                    // Motors must move in opposite direction to rotate about robot center
+                    headingTarget_deg = heading_deg;
+                    headingLeft_rot = aState.getLeftAbsolute_rot() + encoderTurn;
+                    headingRight_rot = aState.getRightAbsolute_rot() - encoderTurn;
+                    headingTrim_deg = 0.0;
+                    headingLast_sec = aState.getTimestamp_sec();
+                }
+                
+                // ... and the heading error still left pushes them further,
+                // more the longer it stays, so the wheels do not stall just
+                // short of the target against their own friction
+                double delta_sec = aState.getTimestamp_sec() - headingLast_sec;
+                headingLast_sec = aState.getTimestamp_sec();
+                headingTrim_deg = clampTrim(headingTrim_deg +
+                                            RobotMap.DRIVE_HEADING_TRIM_I_per_sec * remaining_deg * delta_sec);
+                double trim_deg = clampTrim(remaining_deg + headingTrim_deg);
+                double encoderTrim = RobotMap.ENCODER_ROT_PER_DEGREE * trim_deg;
+                leftMotor0.set(headingLeft_rot + encoderTrim);
+                rightMotor0.set(headingRight_rot - encoderTrim);
+            }
+            else
+            {
+                // Enable on this pass and make user call again
+                enablePositionMode();
+            }
+        }
+    }
+    
+    private static double clampTrim(double trim_deg)
+    {
+        return Math.max(-RobotMap.DRIVE_HEADING_TRIM_deg, Math.min(RobotMap.DRIVE_HEADING_TRIM_deg, trim_deg));
+    }
+    
+    public boolean atHeading(double heading_deg, double tolerance_deg)
+    {
+        return atHeading(state, heading_deg, tolerance_deg);
+    }
+    
+    boolean atHeading(DriveState aState, double heading_deg, double tolerance_deg)
     {
-        aController.changeControlMode(TalonControlMode.Speed);
-        aController.setPosition(0.0); // resets the encoder position to 0
-        aController.setP(RobotMap.DRIVE_SPEED_P);
-        aController.setI(RobotMap.DRIVE_SPEED_I);
-        aController.setD(RobotMap.DRIVE_SPEED_D);
-        aController.setF(RobotMap.DRIVE_SPEED_F);
+        // Only meaningful once the wheels are being held (not still
+        // finishing a profile or in another mode)
+        return aState.isSensorHealthy() &&
+               aState.isInMode(ControlMode.Position) &&
+               (Math.abs(heading_deg - getHeading_deg()) <= tolerance_deg);
+    }
+    
+    private void _enableSpeedMode(MotorController aController)
+    {
+        aController.changeControlMode(ControlMode.Speed);
     }
 
     public void enableSpeedMode()
     {
-        stop();
+        _stop();   // NOTE: directly, since this may be called on the control loop thread
+        markOrigin();
         _enableSpeedMode(leftMotor0);
         _enableSpeedMode(rightMotor0);      
+        sendGains(speedGains);
     }
     
     public void maintainSpeed(double speed_mps)     // Must call this repeatedly
+    {
+        if ( ! post(DriveControlLoop.SPEED, speed_mps, 0.0))
+        {
+            _maintainSpeed(state, speed_mps);
+        }
+    }
+    
+    private void _maintainSpeed(DriveState aState, double speed_mps)
     {
         // RobotDrive does not have interfaces to support
         // moving a distance based on encoders, so we
         // must specify our own
-        FeedbackDeviceStatus leftStatus  = leftMotor0.isSensorPresent(RobotMap.DRIVE_ENCODER_TYPE);
-        FeedbackDeviceStatus rightStatus = rightMotor0.isSensorPresent(RobotMap.DRIVE_ENCODER_TYPE);
-        
         // For now, if either sensor is not present the position control
         // will not function and an error state will be declared
+        // (the sensor monitor reports the error when the status changes)
         // TODO: future design may attempt a fall back by temporarily 
         // slaving all controllers to the master that has the working sensor.
-        if ((FeedbackDeviceStatus.FeedbackStatusPresent == leftStatus) &&
-            (FeedbackDeviceStatus.FeedbackStatusPresent == rightStatus))
+        if (aState.isSensorHealthy())
         {
-            if ((leftMotor0.getControlMode() == TalonControlMode.Speed) &&
-                (rightMotor0.getControlMode() == TalonControlMode.Speed))
+            if (aState.isInMode(ControlMode.Speed))
             {
-                // Trig 101: arcrate = anglerate * radius --> anglerate = arcrate / radius
-                double angle_radPerSec = speed_mps / RobotMap.WHEEL_RADIUS_m;
-                
-                double encoderTarget = RobotMap.WHEEL_TO_ENCODER * angle_radPerSec / (Math.PI * 2.0);
+                // Same scaling as position, just per second
+                double encoderTarget = RobotMap.ENCODER_ROT_PER_METER * speed_mps;
                 
                 leftMotor0.set(encoderTarget);
                 rightMotor0.set(encoderTarget);
@@ -576,14 +1349,224 @@ public class DriveSubsystem extends Subsystem
         }
         
     }    
+    /**
+     * --------------------------------------------------------------------------
+     * Motion profiles - rather than stepping the position target straight to
+     * the end, hand the Talons a list of points that gets there smoothly and
+     * let them follow it (see motion.MotionProfile and MotionProfileStreamer)
+     * 
+     * Usage from a command:
+     *      initialize  - startMoveProfile or startTurnProfile
+     *      execute     - maintainProfile (keeps the buffers fed)
+     *      isFinished  - isProfileComplete, then inPosition/atHeading
+     * --------------------------------------------------------------------------
+     */
+    private void _enableProfileMode(MotorController aController)
+    {
+        aController.changeControlMode(ControlMode.MotionProfile);
+    }
+    
+    public void enableProfileMode()
+    {
+        _stop();   // NOTE: directly, since this may be called on the control loop thread
+        _enableProfileMode(leftMotor0);
+        _enableProfileMode(rightMotor0);
+        sendGains(profileGains);
+    }
+    
+    /**
+     * @param position_m - at this interface forward > 0, backward < 0
+     * (same as maintainPosition)
+     */
+    public void startMoveProfile(double position_m)
+    {
+        startProfile(DriveControlLoop.PROFILE_MOVE, position_m);
+    }
+    
+    /**
+     * @param angle_deg - at this interface left < 0, right > 0
+     * (same as maintainOrientation)
+     */
+    public void startTurnProfile(double angle_deg)
+    {
+        startProfile(DriveControlLoop.PROFILE_TURN, angle_deg);
+    }
+    
+    /**
+     * startPath - run a blended sequence of moves and turns (see
+     * motion.DrivePath) as one profile; continue it with maintainProfile
+     * 
+     * @param aPath - must not be changed until the profile is done
+     */
+    public void startPath(DrivePath aPath)
+    {
+        path = aPath;
+        startProfile(DriveControlLoop.PROFILE_PATH, 0.0);
+    }
+    
+    private void startProfile(int aKind, double aTarget)
+    {
+        // Each start gets a new ID so that two identical moves in a row
+        // are still two profiles
+        profileKind = aKind;
+        profileTarget = aTarget;
+        ++profileId;
+        maintainProfile();
+    }
+    
+    public void maintainProfile()     // Must call this repeatedly
+    {
+        if (profileKind == DriveControlLoop.NONE)
+        {
+            return;
+        }
+        
+        if ( ! post(profileKind, profileTarget, profileId))
+        {
+            _maintainProfile(state, profileKind, profileTarget, profileId);
+        }
+    }
+    
+    private void _maintainProfile(DriveState aState, int aKind, double aTarget, long anId)
+    {
+        // Same sensor rules as position control
+        if (aState.isSensorHealthy())
+        {
+            if (aState.isInMode(ControlMode.MotionProfile))
+            {
+                if (anId != streamingProfileId)
+                {
+                    beginProfile(aKind, aTarget, anId);
+                }
+                streamer.process();
+            }
+            else
+            {
+                // Enable on this pass and make user call again
+                enableProfileMode();
+            }
+        }
+    }
+    
+    private void beginProfile(int aKind, double aTarget, long anId)
+    {
+        // Profiles are relative to where we are now
+        markOrigin();
+        streamer.setOrigin(leftOrigin_rot, rightOrigin_rot);
+        streamingProfileId = anId;
+        
+        // A path is already built, a different profile for each side
+        if (DriveControlLoop.PROFILE_PATH == aKind)
+        {
+            DrivePath current = path;
+            streamer.start(current.getLeft(), 1.0, current.getRight(), 1.0);
+            return;
+        }
+        
+        // Copied from the precomputed store when it has this one
+        int path = (DriveControlLoop.PROFILE_TURN == aKind) ? DriveTrajectories.TURN : DriveTrajectories.MOVE;
+        try
+        {
+            DriveTrajectories.prepare(trajectories, path, aTarget, profile);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Too long to fit; better to sit still than to crash the robot
+            DriverStation.reportError("Motion profile not started: " + e.getMessage(), false);
+            streamer.reset();
+            return;
+        }
+        streamer.start(profile, 1.0, DriveTrajectories.getRightSign(path));
+    }
+    
+    /**
+     * loadTrajectories - map the precomputed profiles (see
+     * motion.TrajectoryStore) so starting a profile is only a copy. Does
+     * nothing if they are already loaded. If the file is missing, corrupt
+     * or stale the reason is reported and profiles will be generated as
+     * they are needed instead.
+     * 
+     * @return true if precomputed profiles are in use
+     */
+    public boolean loadTrajectories(File aFile)
+    {
+        if (trajectories != null)
+        {
+            return true;
+        }
+        
+        try
+        {
+            trajectories = TrajectoryStore.open(aFile,
+                                                DriveTrajectories.fingerprint(),
+                                                RobotMap.PROFILE_POINT_DURATION_ms);
+            return true;
+        }
+        catch (IOException e)
+        {
+            DriverStation.reportError("Generating motion profiles as needed: " + e.getMessage(), false);
+            return false;
+        }
+    }
+    
+    /**
+     * isProfileComplete returns true once the Talons are holding the last
+     * point of the most recently started profile
+     */
+    public boolean isProfileComplete()
+    {
+        return (streamingProfileId == profileId) && streamer.isDone();
+    }
+    
+    /**
+     * getProfileStreamer provides access to the streaming metrics
+     */
+    public MotionProfileStreamer getProfileStreamer()
+    {
+        return streamer;
+    }
+    
+    /**
+     * driveVoltage - apply the specified volts to each side, open loop,
+     * whatever the battery is doing (e.g., to characterize the drive). A
+     * positive voltage turns that side's encoder positive, so FORWARD
+     * times the same voltage on both sides drives straight forward
+     */
+    public void driveVoltage(double left_V, double right_V)     // Must call this repeatedly
+    {
+        if ( ! post(DriveControlLoop.VOLTAGE, left_V, right_V))
+        {
+            _driveVoltage(state, left_V, right_V);
+        }
+    }
+    
+    private void _driveVoltage(DriveState aState, double left_V, double right_V)
+    {
+        if (aState.isInMode(ControlMode.PercentVbus))
+        {
+            // A fraction of what the battery gives right now
+            double bus_V = aState.getBusVoltage_V();
+            if (bus_V > 0.0)
+            {
+                leftMotor0.set(left_V / bus_V);
+                rightMotor0.set(right_V / bus_V);
+            }
+        }
+        else
+        {
+            // Enable on this pass and make user call again
+            enablePercentMode();
+        }
+    }
+    
     /**
      * 
      */    
     public void enablePercentMode()
     {
-        stop();
-        leftMotor0.changeControlMode(TalonControlMode.PercentVbus);        
-        rightMotor0.changeControlMode(TalonControlMode.PercentVbus);
+        _stop();   // NOTE: directly, since this may be called on the control loop thread
+        leftMotor0.changeControlMode(ControlMode.PercentVbus);        
+        rightMotor0.changeControlMode(ControlMode.PercentVbus);
         
     }
    
@@ -0,0 +1,241 @@
+/**
+ * DriveTriggers - the conditions commands are waiting on to finish, checked
+ * once per snapshot by the drive instead of by every command every cycle.
+ *
+ * A command arms a trigger when it starts (e.g., "both sides within 2 cm of
+ * 1 m for 60 ms, once the profile is done") and keeps the small integer it
+ * gets back. Each time the DriveSubsystem takes its snapshot (updateState)
+ * it checks every armed trigger against it, once; a trigger that has held
+ * its condition long enough fires and stays fired. All isFinished has to do
+ * is ask whether its trigger fired, which is one array read however many
+ * commands are running, and the command disarms it when it ends.
+ *
+ * The hold time keeps a command from finishing as the robot passes through
+ * its target on the way somewhere else; the clock restarts whenever the
+ * condition fails.
+ *
+ * The triggers are a fixed table allocated with the drive (see
+ * RobotMap.DRIVE_TRIGGER_CAPACITY); a command only ever holds one, so it
+ * only fills up if commands forget to disarm. Arming, disarming, checking
+ * and asking all happen on the thread that runs the commands (or in the
+ * read phase of a CycleExecutor, which that thread waits for).
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * The DriveTriggers class definition
+ */
+public class DriveTriggers
+{
+    // What arm returns when the table is full; never fires
+    public static final int NO_TRIGGER = -1;
+
+    // The kinds of condition
+    private static final int FREE     = 0;
+    private static final int POSITION = 1;  // target = left_m, rightTarget = right_m (see DriveSubsystem.inPosition)
+    private static final int HEADING  = 2;  // target = heading_deg (see DriveSubsystem.atHeading)
+    private static final int ABSOLUTE = 3;  // target = left_m, rightTarget = right_m (see DriveSubsystem.inAbsolutePosition)
+
+    private final DriveSubsystem drive;
+
+    // One row per trigger, indexed by the trigger
+    private final int[] kind;
+    private final double[] target;
+    private final double[] rightTarget;
+    private final double[] tolerance;
+    private final double[] hold_sec;
+    private final boolean[] afterProfile;
+    private final boolean[] profileDone;
+    private final double[] since_sec;      // NaN while the condition fails
+    private final boolean[] fired;
+
+    private int armed = 0;
+
+    /**
+     * Constructor
+     *
+     * @param aDrive - the drive whose snapshot is checked
+     * @param aCapacity - how many triggers can be armed at once
+     */
+    DriveTriggers(DriveSubsystem aDrive, int aCapacity)
+    {
+        drive = aDrive;
+        kind = new int[aCapacity];
+        target = new double[aCapacity];
+        rightTarget = new double[aCapacity];
+        tolerance = new double[aCapacity];
+        hold_sec = new double[aCapacity];
+        afterProfile = new boolean[aCapacity];
+        profileDone = new boolean[aCapacity];
+        since_sec = new double[aCapacity];
+        fired = new boolean[aCapacity];
+    }
+
+    /**
+     * armPosition - fire once both sides have been within the tolerance of
+     * the position for the hold time
+     *
+     * @param position_m - as for DriveSubsystem.maintainPosition
+     * @param tolerance_m - how close each side must be
+     * @param aHold_sec - how long they must stay there
+     * @param anAfterProfile - only once the most recent motion profile is
+     *        complete (it ends on the same target)
+     *
+     * @return the trigger, or NO_TRIGGER if the table is full
+     */
+    public int armPosition(double position_m, double tolerance_m, double aHold_sec, boolean anAfterProfile)
+    {
+        return arm(POSITION, position_m, position_m, tolerance_m, aHold_sec, anAfterProfile);
+    }
+
+    /**
+     * armSides - as armPosition, with a different target for each side
+     * (e.g., the end of a motion.DrivePath)
+     *
+     * @return the trigger, or NO_TRIGGER if the table is full
+     */
+    public int armSides(double left_m, double right_m, double tolerance_m, double aHold_sec, boolean anAfterProfile)
+    {
+        return arm(POSITION, left_m, right_m, tolerance_m, aHold_sec, anAfterProfile);
+    }
+
+    /**
+     * armAbsolute - as armSides, with absolute targets (see
+     * DriveSubsystem.maintainAbsolutePosition)
+     *
+     * @return the trigger, or NO_TRIGGER if the table is full
+     */
+    public int armAbsolute(double left_m, double right_m, double tolerance_m, double aHold_sec, boolean anAfterProfile)
+    {
+        return arm(ABSOLUTE, left_m, right_m, tolerance_m, aHold_sec, anAfterProfile);
+    }
+
+    /**
+     * armHeading - fire once the fused heading has been within the
+     * tolerance for the hold time, with the wheels held in position (see
+     * DriveSubsystem.atHeading)
+     *
+     * @param anAfterProfile - only once the most recent motion profile is
+     *        complete (it turns most of the way)
+     *
+     * @return the trigger, or NO_TRIGGER if the table is full
+     */
+    public int armHeading(double heading_deg, double tolerance_deg, double aHold_sec, boolean anAfterProfile)
+    {
+        return arm(HEADING, heading_deg, 0.0, tolerance_deg, aHold_sec, anAfterProfile);
+    }
+
+    private int arm(int aKind, double aTarget, double aRightTarget, double aTolerance, double aHold_sec, boolean anAfterProfile)
+    {
+        for (int i = 0; i < kind.length; ++i)
+        {
+            if (FREE == kind[i])
+            {
+                kind[i] = aKind;
+                target[i] = aTarget;
+                rightTarget[i] = aRightTarget;
+                tolerance[i] = aTolerance;
+                hold_sec[i] = aHold_sec;
+                afterProfile[i] = anAfterProfile;
+                profileDone[i] = false;
+                since_sec[i] = Double.NaN;
+                fired[i] = false;
+                ++armed;
+                return i;
+            }
+        }
+
+        // Someone is not disarming; better a command that never finishes
+        // than a robot that crashes
+        DriverStation.reportError("No drive trigger free (" + kind.length + " armed)", false);
+        return NO_TRIGGER;
+    }
+
+    /**
+     * disarm - free the trigger (NO_TRIGGER is ignored)
+     */
+    public void disarm(int aTrigger)
+    {
+        if ((aTrigger >= 0) && (kind[aTrigger] != FREE))
+        {
+            kind[aTrigger] = FREE;
+            fired[aTrigger] = false;
+            --armed;
+        }
+    }
+
+    /**
+     * hasFired returns true once the trigger's condition has held for its
+     * hold time (as of the latest snapshot)
+     */
+    public boolean hasFired(int aTrigger)
+    {
+        return (aTrigger >= 0) && fired[aTrigger];
+    }
+
+    /**
+     * getArmedCount returns how many triggers are being checked
+     */
+    public int getArmedCount()
+    {
+        return armed;
+    }
+
+    /**
+     * evaluate - check every armed trigger against the snapshot
+     */
+    void evaluate(DriveState aState)
+    {
+        if (0 == armed)
+        {
+            return;
+        }
+
+        double now_sec = aState.getTimestamp_sec();
+        boolean profileComplete = drive.isProfileComplete();
+        for (int i = 0; i < kind.length; ++i)
+        {
+            if ((FREE == kind[i]) || fired[i])
+            {
+                continue;
+            }
+
+            // A finished profile may be left behind; remember it was done
+            profileDone[i] |= profileComplete;
+
+            boolean met;
+            if (afterProfile[i] && ! profileDone[i])
+            {
+                met = false;
+            }
+            else if (POSITION == kind[i])
+            {
+                met = DriveSubsystem.inPosition(aState, target[i], rightTarget[i], tolerance[i]);
+            }
+            else if (ABSOLUTE == kind[i])
+            {
+                met = DriveSubsystem.inAbsolutePosition(aState, target[i], rightTarget[i], tolerance[i]);
+            }
+            else
+            {
+                met = drive.atHeading(aState, target[i], tolerance[i]);
+            }
+
+            if ( ! met)
+            {
+                since_sec[i] = Double.NaN;
+            }
+            else if (Double.isNaN(since_sec[i]))
+            {
+                since_sec[i] = now_sec;
+                fired[i] = (hold_sec[i] <= 0.0);
+            }
+            else
+            {
+                fired[i] = (now_sec - since_sec[i] >= hold_sec[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * FeedforwardFit - a least squares fit of the drive's feedforward model
+ *
+ *     volts = kS * sign(speed) + kV * speed + kA * acceleration
+ *
+ * to samples added one at a time. The three unknowns only need the sums of
+ * the normal equations, so adding a sample is a few multiplies and stores
+ * (it allocates nothing, so commands.CharacterizeDriveCommand can fit as it
+ * drives) and however many samples there are takes the same room; solve
+ * can be called whenever an answer is wanted (e.g., tools.DriveCharacterizer
+ * after reading whole logs).
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+/**
+ * The FeedforwardFit class definition
+ */
+public class FeedforwardFit
+{
+    // Slower than this the wheels may not have broken free, so a sample
+    // says nothing about kS and kV; leave it out
+    public static final double MIN_SPEED_rps = 0.05;
+
+    private final String name;
+    private final double[][] ata = new double[3][3];
+    private final double[] atb = new double[3];
+    private double sumV = 0.0;
+    private double sumVV = 0.0;
+    private long count = 0;
+
+    // The solution, once solved
+    private double kS = Double.NaN;
+    private double kV = Double.NaN;
+    private double kA = Double.NaN;
+    private double rSquared = Double.NaN;
+    private double rms_V = Double.NaN;
+
+    public FeedforwardFit(String aName)
+    {
+        name = aName;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * add - one sample to the sums
+     *
+     * @param aVoltage_V - applied over the sample
+     * @param aSpeed_rps - the average speed over the sample, in encoder
+     * rotations per second
+     * @param anAcceleration_rps2 - the acceleration over the sample
+     */
+    public void add(double aVoltage_V, double aSpeed_rps, double anAcceleration_rps2)
+    {
+        double sign = Math.signum(aSpeed_rps);
+        accumulate(0, sign, sign, aSpeed_rps, anAcceleration_rps2, aVoltage_V);
+        accumulate(1, aSpeed_rps, sign, aSpeed_rps, anAcceleration_rps2, aVoltage_V);
+        accumulate(2, anAcceleration_rps2, sign, aSpeed_rps, anAcceleration_rps2, aVoltage_V);
+        sumV += aVoltage_V;
+        sumVV += aVoltage_V * aVoltage_V;
+        ++count;
+    }
+
+    // One row of A'A and A'b, for the term x of [sign(speed), speed, acceleration]
+    private void accumulate(int aRow, double anX, double aSign, double aSpeed_rps, double anAcceleration_rps2,
+                            double aVoltage_V)
+    {
+        ata[aRow][0] += anX * aSign;
+        ata[aRow][1] += anX * aSpeed_rps;
+        ata[aRow][2] += anX * anAcceleration_rps2;
+        atb[aRow] += anX * aVoltage_V;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * solve - the normal equations, by elimination with partial pivoting
+     *
+     * @return false if there are too few samples or they cannot separate the
+     * three (e.g., no step)
+     */
+    public boolean solve()
+    {
+        if (count < 3)
+        {
+            return false;
+        }
+
+        double[][] a = new double[3][4];
+        for (int i = 0; i < 3; ++i)
+        {
+            System.arraycopy(ata[i], 0, a[i], 0, 3);
+            a[i][3] = atb[i];
+        }
+
+        for (int column = 0; column < 3; ++column)
+        {
+            int pivot = column;
+            for (int row = column + 1; row < 3; ++row)
+            {
+                if (Math.abs(a[row][column]) > Math.abs(a[pivot][column]))
+                {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(a[pivot][column]) < 1.0e-9 * Math.max(1.0, Math.abs(ata[column][column])))
+            {
+                return false;
+            }
+            double[] swap = a[column];
+            a[column] = a[pivot];
+            a[pivot] = swap;
+
+            for (int row = column + 1; row < 3; ++row)
+            {
+                double factor = a[row][column] / a[column][column];
+                for (int k = column; k < 4; ++k)
+                {
+                    a[row][k] -= factor * a[column][k];
+                }
+            }
+        }
+
+        double[] k = new double[3];
+        for (int row = 2; row >= 0; --row)
+        {
+            double sum = a[row][3];
+            for (int j = row + 1; j < 3; ++j)
+            {
+                sum -= a[row][j] * k[j];
+            }
+            k[row] = sum / a[row][row];
+        }
+        kS = k[0];
+        kV = k[1];
+        kA = k[2];
+
+        // Residual sum of squares from the sums: |b|^2 - 2 k.A'b + k'A'A k
+        double residual = sumVV;
+        for (int i = 0; i < 3; ++i)
+        {
+            residual -= 2.0 * k[i] * atb[i];
+            for (int j = 0; j < 3; ++j)
+            {
+                residual += k[i] * ata[i][j] * k[j];
+            }
+        }
+        residual = Math.max(0.0, residual);
+        double total = sumVV - sumV * sumV / count;
+        rSquared = (total > 0.0) ? 1.0 - residual / total : Double.NaN;
+        rms_V = Math.sqrt(residual / count);
+        return true;
+    }
+
+    // The last solution; NaN until solve has succeeded
+    public double getKS_V()
+    {
+        return kS;
+    }
+
+    public double getKV_V_per_rps()
+    {
+        return kV;
+    }
+
+    public double getKA_V_per_rps2()
+    {
+        return kA;
+    }
+
+    public double getRSquared()
+    {
+        return rSquared;
+    }
+
+    public double getRms_V()
+    {
+        return rms_V;
+    }
+}
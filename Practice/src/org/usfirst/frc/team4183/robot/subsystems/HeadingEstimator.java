@@ -0,0 +1,240 @@
+/**
+ * HeadingEstimator - works out which way the robot is facing from both the
+ * encoders and a gyro, trusting each where it is good.
+ *
+ * The encoders give the turn as (dRight - dLeft) / track, which is exact
+ * driving straight but reads too much whenever the robot turns, because the
+ * wheels skid sideways (scrub) by an amount that depends on the carpet and
+ * the speed. The gyro measures the turn of the frame, scrub or not, but it
+ * drifts: it adds a small, slowly changing rate (the bias) all the time.
+ * So the gyro is used for the turning and the encoders for the drift, with
+ * a two state Kalman filter:
+ *
+ *     state       heading (rad) and gyro bias (rad/sec)
+ *     predict     heading += gyro turn - bias * dt; both become less
+ *                 certain (the gyro's noise, the bias wandering)
+ *     measure     (gyro turn - encoder turn) / dt is the bias, give or take
+ *                 the encoders' error: a little noise plus the scrub,
+ *                 which grows with the rate of turn; so the encoders pin
+ *                 the bias down while driving straight or standing still
+ *                 and are not asked at all while turning
+ *
+ * The covariance is 2x2 and symmetric, so it is kept as three fields; an
+ * update is a few dozen multiplies and allocates nothing. It runs wherever
+ * the odometry does: at the drive control loop's fixed rate when that
+ * thread is running (RobotMap.DRIVE_CONTROL_RATE_Hz), otherwise once per
+ * periodic cycle. The gyro's own angle is integrated by the FPGA at a much
+ * higher rate, so nothing is missed between updates either way.
+ *
+ * Without a gyro the heading is simply the encoders' (as before). The same
+ * goes for a gyro that is configured but not there: the WPILib gyro then
+ * reads 0 forever, which a real one (always a little noisy) never does, so
+ * once the encoders have turned RobotMap.GYRO_MISSING_TURN_deg with the gyro
+ * frozen it is reported and dropped, and the turn it missed put back.
+ *
+ * Only the odometry's thread calls update and reset.
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.hardware.HeadingSensor;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * The HeadingEstimator class definition
+ */
+public class HeadingEstimator
+{
+    // Variances from the RobotMap tuning, per second where they accumulate
+    private static final double GYRO_ANGLE_VARIANCE_rad2_per_sec = square(Math.toRadians(RobotMap.GYRO_ANGLE_WALK_deg_per_rtsec));
+    private static final double BIAS_VARIANCE_rad2_per_sec3 = square(Math.toRadians(RobotMap.GYRO_BIAS_WALK_dps_per_rtsec));
+    private static final double INITIAL_BIAS_VARIANCE = square(Math.toRadians(RobotMap.GYRO_INITIAL_BIAS_dps));
+    private static final double ENCODER_RATE_VARIANCE = square(Math.toRadians(RobotMap.ENCODER_TURN_NOISE_dps));
+    private static final double SCRUB_FRACTION = RobotMap.ENCODER_SCRUB_FRACTION;
+
+    // The scrub is the same sample after sample, so unlike the noise it does
+    // not average out; the encoders only measure the bias when their scrub
+    // could be no more than a tenth of their noise
+    private static final double SCRUB_LIMIT_VARIANCE = 0.01 * ENCODER_RATE_VARIANCE;
+
+    private static final double GYRO_MISSING_TURN_rad = Math.toRadians(RobotMap.GYRO_MISSING_TURN_deg);
+
+    private final HeadingSensor gyro;
+    private boolean gyroMissing = false;
+
+    // How far the encoders have turned since the gyro last moved
+    private double frozenTurn_rad = 0.0;
+
+    // The state...
+    private double heading_rad = 0.0;
+    private double bias_radps = 0.0;
+
+    // ... and its covariance [p00 p01; p01 p11]
+    private double p00 = 0.0;
+    private double p01 = 0.0;
+    private double p11 = INITIAL_BIAS_VARIANCE;
+
+    private double lastGyro_rad = 0.0;
+    private double last_sec = 0.0;
+    private boolean haveLast = false;
+
+    /**
+     * Constructor
+     *
+     * @param aGyro - the gyro, or null to use the encoders alone
+     */
+    public HeadingEstimator(HeadingSensor aGyro)
+    {
+        gyro = aGyro;
+    }
+
+    /**
+     * update - take the turn the encoders saw since the last update
+     *
+     * @param anEncoderTurn_rad - counter-clockwise positive
+     * @param aNow_sec - when the encoders were read
+     *
+     * @return how far the heading estimate moved
+     */
+    public double update(double anEncoderTurn_rad, double aNow_sec)
+    {
+        if ((null == gyro) || gyroMissing)
+        {
+            heading_rad += anEncoderTurn_rad;
+            return anEncoderTurn_rad;
+        }
+
+        double gyro_rad = Math.toRadians(gyro.getHeading_deg());
+        if ( ! haveLast)
+        {
+            lastGyro_rad = gyro_rad;
+            last_sec = aNow_sec;
+            haveLast = true;
+            return 0.0;
+        }
+
+        double gyroTurn_rad = gyro_rad - lastGyro_rad;
+        if (gyroTurn_rad != 0.0)
+        {
+            frozenTurn_rad = 0.0;
+        }
+        else
+        {
+            frozenTurn_rad += anEncoderTurn_rad;
+            if (Math.abs(frozenTurn_rad) > GYRO_MISSING_TURN_rad)
+            {
+                dropGyro();
+                heading_rad += frozenTurn_rad;
+                return frozenTurn_rad;
+            }
+        }
+        double delta_sec = aNow_sec - last_sec;
+        lastGyro_rad = gyro_rad;
+        last_sec = aNow_sec;
+        if (delta_sec <= 0.0)
+        {
+            // No time has passed (e.g., a repeated timestamp); the turn
+            // still counts but tells us nothing about the bias
+            heading_rad += gyroTurn_rad;
+            return gyroTurn_rad;
+        }
+
+        double before_rad = heading_rad;
+
+        // Predict with the gyro: P = F P F' + Q, F = [1 -dt; 0 1]
+        heading_rad += gyroTurn_rad - bias_radps * delta_sec;
+        p00 += delta_sec * (delta_sec * p11 - 2.0 * p01) + GYRO_ANGLE_VARIANCE_rad2_per_sec * delta_sec;
+        p01 -= delta_sec * p11;
+        p11 += BIAS_VARIANCE_rad2_per_sec3 * delta_sec;
+
+        // Measure the bias with the encoders: H = [0 1]; only when hardly
+        // turning (see SCRUB_LIMIT_VARIANCE)
+        double encoderRate_radps = anEncoderTurn_rad / delta_sec;
+        double scrubVariance = square(SCRUB_FRACTION * encoderRate_radps);
+        if (scrubVariance > SCRUB_LIMIT_VARIANCE)
+        {
+            return heading_rad - before_rad;
+        }
+        double measured_radps = (gyroTurn_rad - anEncoderTurn_rad) / delta_sec;
+        double noise = ENCODER_RATE_VARIANCE + scrubVariance;
+        double s = p11 + noise;
+        double k0 = p01 / s;
+        double k1 = p11 / s;
+        double innovation = measured_radps - bias_radps;
+        heading_rad += k0 * innovation;
+        bias_radps += k1 * innovation;
+
+        // P = (I - K H) P
+        p00 -= k0 * p01;
+        p01 -= k0 * p11;
+        p11 -= k1 * p11;
+
+        return heading_rad - before_rad;
+    }
+
+    /**
+     * reset - declare the heading; what has been learned about the gyro's
+     * bias is kept. The gyro is read afresh on the next update, so it may
+     * have been reset meanwhile
+     */
+    public void reset(double aHeading_rad)
+    {
+        heading_rad = aHeading_rad;
+        p00 = 0.0;
+        p01 = 0.0;
+        haveLast = false;
+        frozenTurn_rad = 0.0;
+    }
+
+    private void dropGyro()
+    {
+        gyroMissing = true;
+        String message = "Gyro not responding; heading from the encoders alone";
+
+        // The desktop simulation has no driver station (it needs the
+        // roboRIO's HAL)
+        if (RobotMap.SIMULATION)
+        {
+            System.err.println(message);
+        }
+        else
+        {
+            DriverStation.reportError(message, false);
+        }
+    }
+
+    public double getHeading_rad()
+    {
+        return heading_rad;
+    }
+
+    /**
+     * getBias_dps returns the estimated gyro drift (0 without a gyro)
+     */
+    public double getBias_dps()
+    {
+        return Math.toDegrees(bias_radps);
+    }
+
+    /**
+     * getBiasSigma_dps returns the standard deviation of the bias estimate
+     */
+    public double getBiasSigma_dps()
+    {
+        return Math.toDegrees(Math.sqrt(Math.max(0.0, p11)));
+    }
+
+    /**
+     * hasGyro returns false without a gyro or once it has been dropped
+     */
+    public boolean hasGyro()
+    {
+        return (gyro != null) && ( ! gyroMissing);
+    }
+
+    private static double square(double aValue)
+    {
+        return aValue * aValue;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * PhasedSubsystem - a subsystem whose hardware work can be split out of the
+ * commands' work, so a CycleExecutor can run every periodic cycle as
+ *
+ *     read        each subsystem reads its sensors into its snapshot
+ *     compute     the Scheduler runs the commands, which only look at the
+ *                 snapshots and say what they want
+ *     write       each subsystem sends the last thing it was asked for to
+ *                 its controllers
+ *
+ * A subsystem's read and write may run on a worker thread, at the same time
+ * as other subsystems' (never its own), so they must touch only that
+ * subsystem. The executor waits for every read before the compute and for
+ * every write before the cycle ends, so nothing more is needed to hand the
+ * snapshots and requests between threads.
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+/**
+ * The PhasedSubsystem interface definition
+ */
+public interface PhasedSubsystem
+{
+    /**
+     * readInputs - take this cycle's snapshot of the sensors; from here
+     * until writeOutputs the subsystem holds requests instead of acting
+     */
+    void readInputs();
+
+    /**
+     * writeOutputs - carry out the latest request held since readInputs (if
+     * any) and go back to acting on requests as they are made
+     */
+    void writeOutputs();
+}
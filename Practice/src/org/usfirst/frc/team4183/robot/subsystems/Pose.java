@@ -0,0 +1,29 @@
+/**
+ * Pose - where the robot is on the field: x and y in meters and heading in
+ * radians (counter-clockwise positive, 0 = the direction the robot faced
+ * when the odometry was last reset).
+ *
+ * Pose objects are mutable holders owned by the caller; the odometry copies
+ * its current pose into one rather than handing out a new object each time.
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+/**
+ * The Pose class definition
+ */
+public final class Pose
+{
+    public double x_m;
+    public double y_m;
+    public double heading_rad;
+
+    public double getHeading_deg()
+    {
+        return Math.toDegrees(heading_rad);
+    }
+
+    public String toString()
+    {
+        return String.format("(%.3f m, %.3f m, %.1f deg)", x_m, y_m, getHeading_deg());
+    }
+}
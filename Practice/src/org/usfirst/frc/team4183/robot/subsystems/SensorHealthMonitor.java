@@ -0,0 +1,230 @@
+/**
+ * SensorHealthMonitor - watches the feedback sensors (encoders) attached to
+ * the primary drive motor controllers so the drive control functions do not
+ * need to ask the controllers about their sensors every time they run.
+ *
+ * Asking a Talon whether its sensor is present is a query against the
+ * most recent status frame from the device; doing that four times per
+ * 20 ms cycle (twice in execute and twice more in isFinished) tells us
+ * nothing new since sensors do not come and go that quickly. Instead we
+ * sample at a slow, configurable rate and publish the result as a single
+ * immutable Status object. The control functions then only need to read
+ * one field.
+ *
+ * The owner calls update() every cycle with the current time; the
+ * controllers are only actually queried when the sample period has passed.
+ * Tying the sampling to the caller's clock (rather than a Notifier thread)
+ * keeps the monitor usable on a desktop JVM with a simulated clock.
+ */
+package org.usfirst.frc.team4183.robot.subsystems;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.usfirst.frc.team4183.robot.hardware.MotorController;
+import org.usfirst.frc.team4183.robot.hardware.MotorController.SensorStatus;
+
+/**
+ * The SensorHealthMonitor class definition
+ */
+public class SensorHealthMonitor
+{
+    /**
+     * Status is an immutable picture of the sensors at one moment in time.
+     * Because it never changes after construction it can be handed to
+     * anyone (even on another thread) without any locking; the monitor
+     * simply replaces the reference when something changes.
+     */
+    public static final class Status
+    {
+        private final SensorStatus leftStatus;
+        private final SensorStatus rightStatus;
+        private final boolean healthy;
+
+        private Status(SensorStatus aLeftStatus, SensorStatus aRightStatus)
+        {
+            leftStatus = aLeftStatus;
+            rightStatus = aRightStatus;
+
+            // Pre-compute the answer the control functions actually want
+            healthy = (SensorStatus.Present == leftStatus) &&
+                      (SensorStatus.Present == rightStatus);
+        }
+
+        public SensorStatus getLeftStatus()
+        {
+            return leftStatus;
+        }
+
+        public SensorStatus getRightStatus()
+        {
+            return rightStatus;
+        }
+
+        /**
+         * isHealthy returns true only when both sensors are present
+         */
+        public boolean isHealthy()
+        {
+            return healthy;
+        }
+
+        boolean sameAs(SensorStatus aLeftStatus, SensorStatus aRightStatus)
+        {
+            return (leftStatus == aLeftStatus) && (rightStatus == aRightStatus);
+        }
+
+        public String toString()
+        {
+            return "left=" + leftStatus + " right=" + rightStatus;
+        }
+    }
+
+    /**
+     * Listener is called (from update) whenever the status changes.
+     * Listeners should be quick; they hold up the caller's cycle.
+     */
+    public interface Listener
+    {
+        void statusChanged(Status previous, Status current);
+    }
+
+    // Until the first sample arrives we know nothing
+    private static final Status UNKNOWN = new Status(SensorStatus.Unknown,
+                                                     SensorStatus.Unknown);
+
+    private final MotorController leftController;
+    private final MotorController rightController;
+    private final double period_sec;
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    // Written only by sample(), read by anyone
+    private volatile Status status = UNKNOWN;
+    private volatile double lastSampleTime_sec = Double.NaN;
+
+    // The latest time given to update (or sample), so staleness is measured
+    // on the caller's clock rather than the FPGA's
+    private volatile double lastUpdateTime_sec = Double.NaN;
+    private volatile long changeCount = 0;
+    private volatile long sampleCount = 0;
+
+    /**
+     * Constructor
+     *
+     * @param aLeftController - the controller with the left encoder attached
+     * @param aRightController - the controller with the right encoder attached
+     * @param aPeriod_sec - how often to sample the sensors
+     */
+    public SensorHealthMonitor(MotorController aLeftController,
+                               MotorController aRightController,
+                               double aPeriod_sec)
+    {
+        leftController = aLeftController;
+        rightController = aRightController;
+        period_sec = aPeriod_sec;
+    }
+
+    /**
+     * update - sample the sensors if the period has passed since the last
+     * sample (or if there has never been one); otherwise do nothing
+     *
+     * @param aNow_sec - the caller's notion of the current time
+     */
+    public void update(double aNow_sec)
+    {
+        lastUpdateTime_sec = aNow_sec;
+
+        // NOTE: NaN compares false, so the very first call always samples
+        if ( ! (aNow_sec - lastSampleTime_sec < period_sec))
+        {
+            sample(aNow_sec);
+        }
+    }
+
+    public void addListener(Listener aListener)
+    {
+        listeners.add(aListener);
+    }
+
+    public void removeListener(Listener aListener)
+    {
+        listeners.remove(aListener);
+    }
+
+    /**
+     * sample - query both controllers and publish a new Status only if
+     * something actually changed; this is the only place that talks to the
+     * controllers and is normally only called from update
+     */
+    public synchronized void sample(double aNow_sec)
+    {
+        SensorStatus leftStatus  = leftController.isSensorPresent();
+        SensorStatus rightStatus = rightController.isSensorPresent();
+
+        Status previous = status;
+        if ( ! previous.sameAs(leftStatus, rightStatus))
+        {
+            Status current = new Status(leftStatus, rightStatus);
+            status = current;
+            ++changeCount;
+
+            for (Listener listener : listeners)
+            {
+                listener.statusChanged(previous, current);
+            }
+        }
+
+        ++sampleCount;
+        lastSampleTime_sec = aNow_sec;
+        lastUpdateTime_sec = aNow_sec;
+    }
+
+    /**
+     * getStatus returns the most recently published status; this is just a
+     * field read and is safe to call as often as desired
+     */
+    public Status getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * isHealthy is the hot path short-cut for getStatus().isHealthy()
+     */
+    public boolean isHealthy()
+    {
+        return status.isHealthy();
+    }
+
+    /**
+     * getChangeCount returns the number of times the status has changed
+     * since construction (including the change from UNKNOWN on first sample)
+     */
+    public long getChangeCount()
+    {
+        return changeCount;
+    }
+
+    public long getSampleCount()
+    {
+        return sampleCount;
+    }
+
+    /**
+     * getStaleness_sec returns how long before the latest update the cached
+     * status was last confirmed by a sample, on the clock given to update;
+     * NaN if no sample has been taken yet
+     */
+    public double getStaleness_sec()
+    {
+        // The sample time first, so a sample in between cannot make this
+        // negative
+        double sampleTime_sec = lastSampleTime_sec;
+        return lastUpdateTime_sec - sampleTime_sec;
+    }
+
+    public double getPeriod_sec()
+    {
+        return period_sec;
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * LatencyHistogram - counts durations into logarithmic buckets so we can
+ * ask for percentiles (p50, p99) without keeping every sample.
+ *
+ * Each power of two (in microseconds) is split into SUB_BUCKETS buckets,
+ * so any reported value is within 25% of the true value, which is plenty
+ * to tell a 2 ms phase from a 15 ms one. The memory is fixed at
+ * construction and recording is a few shifts and an increment; nothing is
+ * allocated after construction.
+ *
+ * Not thread safe; each histogram should be recorded by one thread.
+ */
+package org.usfirst.frc.team4183.robot.telemetry;
+
+/**
+ * The LatencyHistogram class definition
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long total_us = 0;
+    private long max_us = 0;
+
+    /**
+     * record - add one duration, in nanoseconds
+     */
+    public void record(long aDuration_ns)
+    {
+        long duration_us = aDuration_ns / 1000L;
+        if (duration_us < 0)
+        {
+            duration_us = 0;
+        }
+
+        ++counts[bucketOf(duration_us)];
+        ++count;
+        total_us += duration_us;
+        if (duration_us > max_us)
+        {
+            max_us = duration_us;
+        }
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public double getMean_ms()
+    {
+        return (count > 0) ? (total_us / 1000.0) / count : 0.0;
+    }
+
+    public double getMax_ms()
+    {
+        return max_us / 1000.0;
+    }
+
+    /**
+     * getPercentile_ms - the duration that aFraction (e.g., 0.99) of the
+     * samples did not exceed, rounded up to the top of its bucket
+     */
+    public double getPercentile_ms(double aFraction)
+    {
+        if (count == 0)
+        {
+            return 0.0;
+        }
+
+        long threshold = (long) Math.ceil(aFraction * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            seen += counts[i];
+            if (seen >= threshold)
+            {
+                return Math.min(upperBoundOf(i), max_us) / 1000.0;
+            }
+        }
+        return getMax_ms();
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            counts[i] = 0;
+        }
+        count = 0;
+        total_us = 0;
+        max_us = 0;
+    }
+
+    private static int bucketOf(long aValue_us)
+    {
+        if (aValue_us < SUB_BUCKETS)
+        {
+            return (int) aValue_us;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(aValue_us);
+        int sub = (int) (aValue_us >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((msb - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + sub;
+    }
+
+    private static long upperBoundOf(int aBucket)
+    {
+        if (aBucket < SUB_BUCKETS)
+        {
+            return aBucket;
+        }
+        int msb = (aBucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long sub = aBucket & (SUB_BUCKETS - 1);
+        long lower = (1L << msb) | (sub << (msb - SUB_BUCKET_BITS));
+        return lower + (1L << (msb - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * LogFiles - names the logs written to the robot's flash and keeps the
+ * number of them (and the room they take) bounded.
+ *
+ * Logs are named <prefix>-NNN.<extension>, numbered in the order they are
+ * created; after 999 the numbers start again at 000. The clock on the
+ * roboRIO is not set until the driver station connects, so the numbers
+ * (not the file times) say which log is oldest: the kept logs are a run of
+ * numbers, and the biggest gap in the numbers (going round from 999 to 000)
+ * is where the oldest one starts.
+ *
+ * Before a new log is started the oldest are deleted until there are fewer
+ * than the number to keep and the new log can grow to its limit without
+ * the logs taking more than the total allowed.
+ */
+package org.usfirst.frc.team4183.robot.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The LogFiles class definition
+ */
+public class LogFiles
+{
+    // The number of names, NNN
+    public static final int MAX_FILES = 1000;
+
+    private LogFiles()
+    {
+    }
+
+    /**
+     * next - make room for and name the next log
+     *
+     * @param aDirectory - where the logs are kept
+     * @param aPrefix - the logs with this prefix and extension are counted;
+     * other files are left alone
+     * @param anExtension - without the dot
+     * @param aKeepFiles - at most this many logs, including the new one
+     * @param aMaxTotalBytes - the most all of them may take, including the
+     * new one at its largest
+     * @param aNewBytes - the most the new log can grow to
+     *
+     * @return the file for the new log; it does not exist yet
+     *
+     * @throws IOException if an old log cannot be deleted or there is not
+     * enough room even with none kept
+     */
+    public static File next(File aDirectory, String aPrefix, String anExtension,
+                            int aKeepFiles, long aMaxTotalBytes, long aNewBytes)
+        throws IOException
+    {
+        if (aNewBytes > aMaxTotalBytes)
+        {
+            throw new IOException("A " + aPrefix + " log can grow past the " + aMaxTotalBytes + " bytes allowed");
+        }
+
+        // The numbers in use, lowest first
+        int[] numbers = new int[MAX_FILES];
+        int count = 0;
+        for (int i = 0; i < MAX_FILES; ++i)
+        {
+            if (name(aDirectory, aPrefix, anExtension, i).exists())
+            {
+                numbers[count++] = i;
+            }
+        }
+        numbers = Arrays.copyOf(numbers, count);
+        if (count == MAX_FILES)
+        {
+            throw new IOException("No unused log name in " + aDirectory + "; remove old " + aPrefix + " logs");
+        }
+
+        // The oldest is just after the biggest gap, going round
+        int oldest = 0;
+        int widest = -1;
+        for (int i = 0; i < count; ++i)
+        {
+            int previous = (i == 0) ? numbers[count - 1] - MAX_FILES : numbers[i - 1];
+            if (numbers[i] - previous > widest)
+            {
+                widest = numbers[i] - previous;
+                oldest = i;
+            }
+        }
+
+        long totalBytes = 0;
+        for (int number : numbers)
+        {
+            totalBytes += name(aDirectory, aPrefix, anExtension, number).length();
+        }
+
+        // Delete from the oldest until the new one fits
+        int kept = count;
+        for (int i = 0; i < count; ++i)
+        {
+            if (kept < aKeepFiles && totalBytes + aNewBytes <= aMaxTotalBytes)
+            {
+                break;
+            }
+            File old = name(aDirectory, aPrefix, anExtension, numbers[(oldest + i) % count]);
+            long length = old.length();
+            if ( ! old.delete())
+            {
+                throw new IOException("Cannot delete old log " + old);
+            }
+            totalBytes -= length;
+            --kept;
+        }
+
+        int next = (count == 0) ? 0 : (numbers[(oldest + count - 1) % count] + 1) % MAX_FILES;
+        return name(aDirectory, aPrefix, anExtension, next);
+    }
+
+    private static File name(File aDirectory, String aPrefix, String anExtension, int aNumber)
+    {
+        return new File(aDirectory, String.format("%s-%03d.%s", aPrefix, aNumber, anExtension));
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * LoopTimer - measures where the time goes inside one periodic function.
+ *
+ * The periodic function calls begin() when it starts, mark(phase) after each
+ * phase of work (e.g., running the Scheduler, reading the OI, driving) and
+ * end() when it is done. Each phase's duration goes into its own
+ * LatencyHistogram, as does the total; any cycle whose total exceeds the
+ * period is counted as an overrun. The jitter (how far the time from one
+ * begin() to the next strays from the period) is recorded as well, which
+ * tells us how steady the caller's schedule is.
+ *
+ * Every publishCycles cycles the p50/p99/max of each phase are queued to
+ * Telemetry (e.g., "teleop/scheduler/p99_ms"); dump() prints the whole
+ * table, which we do when the robot is disabled at the end of a mode.
+ *
+ * Recording costs a System.nanoTime() and a histogram increment per phase;
+ * nothing is allocated per cycle.
+ */
+package org.usfirst.frc.team4183.robot.telemetry;
+
+import java.io.PrintStream;
+
+/**
+ * The LoopTimer class definition
+ */
+public class LoopTimer
+{
+    private final String name;
+    private final String[] phaseNames;
+    private final LatencyHistogram[] phases;
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram jitter = new LatencyHistogram();
+    private final long period_ns;
+    private final int publishCycles;
+
+    // Telemetry channels: p50, p99, max for each phase and the total
+    private final int[] p50Channels;
+    private final int[] p99Channels;
+    private final int[] maxChannels;
+    private final int jitterP99Channel;
+    private final int jitterMaxChannel;
+    private final int overrunChannel;
+
+    private long start_ns = 0;
+    private long last_ns;
+    private long lastTotal_ns = 0;
+    private long overruns = 0;
+    private int cyclesSincePublish = 0;
+
+    /**
+     * Constructor
+     *
+     * @param aName - prefix for telemetry and the dump (e.g., "teleop")
+     * @param aPeriod_sec - the budget for one cycle
+     * @param aPublishCycles - how many cycles between telemetry summaries
+     * @param somePhaseNames - names of the phases, in the order they are
+     *        passed to mark(); the index in this list is the phase ID
+     */
+    public LoopTimer(String aName, double aPeriod_sec, int aPublishCycles, String... somePhaseNames)
+    {
+        name = aName;
+        phaseNames = somePhaseNames.clone();
+        period_ns = (long) (aPeriod_sec * 1.0e9);
+        publishCycles = aPublishCycles;
+
+        int n = phaseNames.length;
+        phases = new LatencyHistogram[n];
+        p50Channels = new int[n + 1];
+        p99Channels = new int[n + 1];
+        maxChannels = new int[n + 1];
+        for (int i = 0; i <= n; ++i)
+        {
+            String prefix = name + "/" + ((i < n) ? phaseNames[i] : "total") + "/";
+            if (i < n)
+            {
+                phases[i] = new LatencyHistogram();
+            }
+            p50Channels[i] = Telemetry.channel(prefix + "p50_ms");
+            p99Channels[i] = Telemetry.channel(prefix + "p99_ms");
+            maxChannels[i] = Telemetry.channel(prefix + "max_ms");
+        }
+        jitterP99Channel = Telemetry.channel(name + "/jitter/p99_ms");
+        jitterMaxChannel = Telemetry.channel(name + "/jitter/max_ms");
+        overrunChannel = Telemetry.channel(name + "/overruns");
+    }
+
+    /**
+     * begin - call first thing in the periodic function
+     */
+    public void begin()
+    {
+        long now_ns = System.nanoTime();
+        if (start_ns != 0)
+        {
+            jitter.record(Math.abs((now_ns - start_ns) - period_ns));
+        }
+        start_ns = now_ns;
+        last_ns = now_ns;
+    }
+
+    /**
+     * mark - call at the end of a phase; the phase duration is the time
+     * since begin() or the previous mark()
+     */
+    public void mark(int aPhase)
+    {
+        long now_ns = System.nanoTime();
+        phases[aPhase].record(now_ns - last_ns);
+        last_ns = now_ns;
+    }
+
+    /**
+     * end - call last thing in the periodic function
+     */
+    public void end()
+    {
+        long elapsed_ns = System.nanoTime() - start_ns;
+        total.record(elapsed_ns);
+        lastTotal_ns = elapsed_ns;
+        if (elapsed_ns > period_ns)
+        {
+            ++overruns;
+        }
+
+        if (++cyclesSincePublish >= publishCycles)
+        {
+            publish();
+            cyclesSincePublish = 0;
+        }
+    }
+
+    /**
+     * getLastTotal_ms returns the duration of the most recent cycle
+     */
+    public double getLastTotal_ms()
+    {
+        return lastTotal_ns / 1.0e6;
+    }
+
+    public long getOverrunCount()
+    {
+        return overruns;
+    }
+
+    public LatencyHistogram getPhase(int aPhase)
+    {
+        return phases[aPhase];
+    }
+
+    public LatencyHistogram getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * getJitter returns the histogram of |actual period - nominal period|
+     */
+    public LatencyHistogram getJitter()
+    {
+        return jitter;
+    }
+
+    /**
+     * publish - queue the summary of every phase to Telemetry
+     */
+    public void publish()
+    {
+        for (int i = 0; i <= phases.length; ++i)
+        {
+            LatencyHistogram histogram = (i < phases.length) ? phases[i] : total;
+            Telemetry.put(p50Channels[i], histogram.getPercentile_ms(0.50));
+            Telemetry.put(p99Channels[i], histogram.getPercentile_ms(0.99));
+            Telemetry.put(maxChannels[i], histogram.getMax_ms());
+        }
+        Telemetry.put(jitterP99Channel, jitter.getPercentile_ms(0.99));
+        Telemetry.put(jitterMaxChannel, jitter.getMax_ms());
+        Telemetry.put(overrunChannel, overruns);
+    }
+
+    /**
+     * dump - print the summary table (e.g., to the console / riolog)
+     */
+    public void dump(PrintStream aStream)
+    {
+        aStream.printf("%s: %d cycles, %d overruns (> %.1f ms)%n",
+                       name, total.getCount(), overruns, period_ns / 1.0e6);
+        aStream.printf("    %-12s %9s %9s %9s %9s%n", "phase", "mean_ms", "p50_ms", "p99_ms", "max_ms");
+        for (int i = 0; i <= phases.length; ++i)
+        {
+            LatencyHistogram histogram = (i < phases.length) ? phases[i] : total;
+            aStream.printf("    %-12s %9.3f %9.3f %9.3f %9.3f%n",
+                           (i < phases.length) ? phaseNames[i] : "total",
+                           histogram.getMean_ms(),
+                           histogram.getPercentile_ms(0.50),
+                           histogram.getPercentile_ms(0.99),
+                           histogram.getMax_ms());
+        }
+        aStream.printf("    %-12s %9.3f %9.3f %9.3f %9.3f%n",
+                       "jitter",
+                       jitter.getMean_ms(),
+                       jitter.getPercentile_ms(0.50),
+                       jitter.getPercentile_ms(0.99),
+                       jitter.getMax_ms());
+    }
+
+    /**
+     * reset - start a fresh set of statistics
+     */
+    public void reset()
+    {
+        for (int i = 0; i < phases.length; ++i)
+        {
+            phases[i].reset();
+        }
+        total.reset();
+        jitter.reset();
+        start_ns = 0;
+        overruns = 0;
+        cyclesSincePublish = 0;
+    }
+}
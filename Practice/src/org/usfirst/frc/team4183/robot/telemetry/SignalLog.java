@@ -0,0 +1,513 @@
+/**
+ * SignalLog - records a fixed set of signals every cycle to a file, for
+ * looking at after the match (see tools.SignalLogDecoder).
+ *
+ * Telemetry only keeps the latest value of each channel and only what the
+ * dashboard can show; this keeps every value of every signal. To do that
+ * without the control thread paying for it:
+ *
+ *     1. The signals (columns) are named once, when the log is created
+ *     2. Rows are written into chunks allocated up front; each chunk holds
+ *        a number of rows of every column, one column after another, so
+ *        the control thread only stores into arrays
+ *     3. A full chunk is handed to a background writer thread, which
+ *        copies it into the memory mapped file and hands it back empty
+ *
+ * The hand off is a flag on each chunk (free, filling or full), written by
+ * one side and read by the other; there are no locks, no system calls and
+ * no allocation on the control thread. The work done there is bounded by
+ * the number of columns (one store each) plus a scan of the few chunks
+ * when one fills, however slow the file system is. If the writer falls so
+ * far behind that no chunk is free, rows are dropped (and counted) rather
+ * than waiting.
+ *
+ * Only one thread may write rows (put, endRow and flush).
+ *
+ * Layout (big-endian, as ByteBuffer defaults to):
+ *
+ *      header      int magic, int format version, int column count,
+ *                  int rows per chunk, then per column: short length,
+ *                  UTF-8 name
+ *      chunks      int row count (> 0), then the row times (double, sec),
+ *                  then each column in turn (float per row)
+ *
+ * The file grows in windows that are mapped as needed. The row count of a
+ * chunk is written after the rest of it, and unwritten space is zeros, so
+ * a reader stops at the first row count of 0 and never sees half a chunk.
+ * Signals are stored as floats, which is plenty for anything measured on
+ * a robot and halves the size.
+ */
+package org.usfirst.frc.team4183.robot.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * The SignalLog class definition
+ */
+public class SignalLog
+{
+    public static final int MAGIC = 0x5349474C;     // "SIGL"
+    public static final int FORMAT_VERSION = 1;
+
+    // The number of chunks the writer can fall behind by before rows drop
+    private static final int CHUNKS = 4;
+
+    // The file grows by this much at a time (less near the size limit)
+    private static final int WINDOW_BYTES = 1 << 20;
+
+    // Chunk states
+    private static final int FREE = 0;
+    private static final int FILLING = 1;
+    private static final int FULL = 2;
+
+    /**
+     * Chunk - a block of rows; the arrays are only touched by the control
+     * thread while FILLING and by the writer while FULL
+     */
+    private static final class Chunk
+    {
+        final double[] times_sec;
+        final float[] values;       // column after column
+        int rows = 0;
+        long sequence = 0;
+        volatile int state = FREE;
+
+        Chunk(int aColumns, int aRows)
+        {
+            times_sec = new double[aRows];
+            values = new float[aColumns * aRows];
+        }
+    }
+
+    private final File file;
+    private final String[] names;
+    private final int rowsPerChunk;
+    private final long maxBytes;
+
+    private final Chunk[] chunks = new Chunk[CHUNKS];
+
+    // Rows that cannot be kept are written here and forgotten
+    private final Chunk discard;
+
+    // Control thread state
+    private Chunk current;
+    private int row = 0;
+    private long nextSequence = 0;
+    private volatile long rows = 0;
+    private volatile long droppedRows = 0;
+
+    // Writer thread state (the file is reopened if an interrupt closes it)
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long end;                       // where the next chunk goes
+    private long nextToWrite = 0;
+    private volatile long bytesWritten = 0;
+    private volatile long droppedChunks = 0;
+    private volatile boolean flushRequested = false;
+    private volatile boolean closing = false;
+    private final Object wakeup = new Object();
+    private final Thread writer;
+    private final long period_ms;
+
+    private final int rowsChannel;
+    private final int droppedChannel;
+    private final int bytesChannel;
+
+    /**
+     * Constructor - creates (or replaces) the log file and starts the
+     * writer thread
+     *
+     * @param aFile - where to write the log
+     * @param someNames - the column names, in the order of the column
+     *        numbers passed to put()
+     * @param aRowsPerChunk - rows in each chunk (e.g., a few seconds' worth)
+     * @param aMaxBytes - stop writing when the file would grow past this
+     * @param aWritePeriod_sec - how often the writer looks for full chunks
+     *
+     * @throws IOException if the file cannot be created
+     */
+    public SignalLog(File aFile, String[] someNames, int aRowsPerChunk, long aMaxBytes, double aWritePeriod_sec)
+        throws IOException
+    {
+        if ((someNames.length == 0) || (aRowsPerChunk <= 0))
+        {
+            throw new IllegalArgumentException("A signal log needs columns and rows: " +
+                                               someNames.length + ", " + aRowsPerChunk);
+        }
+        file = aFile;
+        names = someNames.clone();
+        rowsPerChunk = aRowsPerChunk;
+        maxBytes = aMaxBytes;
+        period_ms = Math.max(1L, (long) (aWritePeriod_sec * 1000.0));
+
+        for (int i = 0; i < CHUNKS; ++i)
+        {
+            chunks[i] = new Chunk(names.length, rowsPerChunk);
+        }
+        discard = new Chunk(names.length, rowsPerChunk);
+        acquire();
+
+        rowsChannel = Telemetry.channel("signals/rows");
+        droppedChannel = Telemetry.channel("signals/droppedRows");
+        bytesChannel = Telemetry.channel("signals/bytes");
+
+        raf = new RandomAccessFile(aFile, "rw");
+        try
+        {
+            raf.setLength(0);
+            channel = raf.getChannel();
+            end = writeHeader();
+        }
+        catch (IOException e)
+        {
+            raf.close();
+            throw e;
+        }
+
+        writer = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                // NOTE: Stopped with a flag (see close), never an interrupt;
+                // interrupting a thread in (or on its way to) file channel
+                // I/O closes the channel, and the last chunks would be lost.
+                // A stray interrupt is ignored rather than ending the writer
+                // with chunks still to write
+                while ( ! closing)
+                {
+                    write();
+                    synchronized (wakeup)
+                    {
+                        if ( ! closing)
+                        {
+                            try
+                            {
+                                wakeup.wait(period_ms);
+                            }
+                            catch (InterruptedException e)
+                            {
+                                // Cleared by the throw; carry on
+                            }
+                        }
+                    }
+                }
+                write();
+            }
+        }, "SignalLog");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    /**
+     * create - start a log in the specified directory named by LogFiles
+     * (<prefix>-NNN.siglog), first deleting the oldest so that at most
+     * the specified number are kept and all of them, with this one at its
+     * maximum size, fit in the specified total
+     *
+     * @throws IOException if there is no room or the file cannot be created
+     */
+    public static SignalLog create(File aDirectory, String aPrefix, String[] someNames,
+                                   int aRowsPerChunk, long aMaxBytes, double aWritePeriod_sec,
+                                   int aKeepFiles, long aMaxTotalBytes)
+        throws IOException
+    {
+        File file = LogFiles.next(aDirectory, aPrefix, "siglog", aKeepFiles, aMaxTotalBytes, aMaxBytes);
+        return new SignalLog(file, someNames, aRowsPerChunk, aMaxBytes, aWritePeriod_sec);
+    }
+
+    /**
+     * put - set a column of the current row; columns not set in a row keep
+     * whatever was there (so set them all)
+     */
+    public void put(int aColumn, double aValue)
+    {
+        current.values[aColumn * rowsPerChunk + row] = (float) aValue;
+    }
+
+    /**
+     * endRow - finish the current row, stamped with the specified time
+     */
+    public void endRow(double aTimestamp_sec)
+    {
+        current.times_sec[row] = aTimestamp_sec;
+        if (current == discard)
+        {
+            droppedRows = droppedRows + 1;
+
+            // Perhaps the writer has caught up
+            acquire();
+            return;
+        }
+
+        rows = rows + 1;
+        if (++row == rowsPerChunk)
+        {
+            handOff();
+        }
+    }
+
+    /**
+     * flush - hand off the rows so far, even if the chunk is not full, and
+     * have the writer make sure everything written reaches the file system
+     * (e.g., when the robot is disabled); does not wait
+     */
+    public void flush()
+    {
+        if ((current != discard) && (row > 0))
+        {
+            handOff();
+        }
+        flushRequested = true;
+    }
+
+    private void handOff()
+    {
+        current.rows = row;
+        current.state = FULL;
+        acquire();
+    }
+
+    /**
+     * acquire - start filling a free chunk, or the discard chunk if the
+     * writer has them all
+     */
+    private void acquire()
+    {
+        row = 0;
+        for (int i = 0; i < CHUNKS; ++i)
+        {
+            if (FREE == chunks[i].state)
+            {
+                current = chunks[i];
+                current.sequence = nextSequence++;
+                current.state = FILLING;
+                return;
+            }
+        }
+        current = discard;
+    }
+
+    /**
+     * write - copy the full chunks to the file in the order they were
+     * filled; writer thread only
+     */
+    private void write()
+    {
+        boolean found = true;
+        while (found)
+        {
+            found = false;
+            for (int i = 0; i < CHUNKS; ++i)
+            {
+                Chunk chunk = chunks[i];
+                if ((FULL == chunk.state) && (chunk.sequence == nextToWrite))
+                {
+                    writeChunk(chunk);
+                    ++nextToWrite;
+                    chunk.state = FREE;
+                    found = true;
+                }
+            }
+        }
+
+        if (flushRequested && (window != null))
+        {
+            flushRequested = false;
+            window.force();
+        }
+
+        Telemetry.put(rowsChannel, rows);
+        Telemetry.put(droppedChannel, droppedRows + droppedChunks);
+        Telemetry.put(bytesChannel, bytesWritten);
+    }
+
+    private void writeChunk(Chunk aChunk)
+    {
+        int bytes = 4 + aChunk.rows * (8 + 4 * names.length);
+        if ( ! reserve(bytes))
+        {
+            droppedChunks = droppedChunks + aChunk.rows;
+            return;
+        }
+
+        int start = (int) (end - windowStart);
+        int offset = start + 4;
+        for (int r = 0; r < aChunk.rows; ++r)
+        {
+            window.putDouble(offset, aChunk.times_sec[r]);
+            offset += 8;
+        }
+        for (int c = 0; c < names.length; ++c)
+        {
+            int column = c * rowsPerChunk;
+            for (int r = 0; r < aChunk.rows; ++r)
+            {
+                window.putFloat(offset, aChunk.values[column + r]);
+                offset += 4;
+            }
+        }
+
+        // Only now does the chunk count
+        window.putInt(start, aChunk.rows);
+        end += bytes;
+        bytesWritten = end;
+    }
+
+    /**
+     * reserve - make sure the window has room for the specified bytes
+     * after the end (plus the 0 that marks the end)
+     *
+     * @return false if the file would grow past the limit
+     */
+    private boolean reserve(int aBytes)
+    {
+        long needed = end + aBytes + 4;
+        if ((window != null) && (needed <= windowStart + window.capacity()))
+        {
+            return true;
+        }
+        if (needed > maxBytes)
+        {
+            return false;
+        }
+        long size = Math.min(Math.max(WINDOW_BYTES, aBytes + 4), maxBytes - end);
+        try
+        {
+            // Mapping is channel I/O, which a pending interrupt would abort
+            // by closing the channel (see the writer thread)
+            Thread.interrupted();
+            try
+            {
+                // Mapping past the end of the file grows it (with zeros)
+                window = channel.map(FileChannel.MapMode.READ_WRITE, end, size);
+            }
+            catch (ClosedByInterruptException e)
+            {
+                // Interrupted anyway; what is already mapped is still
+                // there, so open the file again and carry on
+                Thread.interrupted();
+                raf = new RandomAccessFile(file, "rw");
+                channel = raf.getChannel();
+                window = channel.map(FileChannel.MapMode.READ_WRITE, end, size);
+            }
+            windowStart = end;
+            return true;
+        }
+        catch (IOException e)
+        {
+            String message = "SignalLog: cannot grow " + file + ": " + e.getMessage();
+            if (RobotMap.SIMULATION)
+            {
+                System.err.println(message);
+            }
+            else
+            {
+                DriverStation.reportError(message, false);
+            }
+            return false;
+        }
+    }
+
+    private long writeHeader() throws IOException
+    {
+        raf.writeInt(MAGIC);
+        raf.writeInt(FORMAT_VERSION);
+        raf.writeInt(names.length);
+        raf.writeInt(rowsPerChunk);
+        for (String name : names)
+        {
+            byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+            raf.writeShort(utf8.length);
+            raf.write(utf8);
+        }
+        return raf.getFilePointer();
+    }
+
+    /**
+     * close - write what is left, stop the writer and close the file; the
+     * log must not be used afterward
+     */
+    public void close() throws IOException
+    {
+        flush();
+        synchronized (wakeup)
+        {
+            closing = true;
+            wakeup.notifyAll();
+        }
+        
+        // The writer must be done before the file is closed under it, even
+        // if we are interrupted while waiting
+        boolean interrupted = false;
+        while (writer.isAlive())
+        {
+            try
+            {
+                writer.join();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (window != null)
+        {
+            window.force();
+        }
+        raf.close();
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public int getColumnCount()
+    {
+        return names.length;
+    }
+
+    public String getName(int aColumn)
+    {
+        return names[aColumn];
+    }
+
+    /**
+     * getRowCount returns the rows recorded (not counting dropped ones)
+     */
+    public long getRowCount()
+    {
+        return rows;
+    }
+
+    /**
+     * getDroppedRowCount returns the rows lost, because the writer fell
+     * behind or the file reached its limit
+     */
+    public long getDroppedRowCount()
+    {
+        return droppedRows + droppedChunks;
+    }
+
+    public long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+}
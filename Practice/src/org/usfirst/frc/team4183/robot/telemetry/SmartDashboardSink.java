@@ -0,0 +1,23 @@
+/**
+ * SmartDashboardSink - publishes telemetry to NetworkTables through the
+ * SmartDashboard so the values appear under the same names as before
+ */
+package org.usfirst.frc.team4183.robot.telemetry;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * The SmartDashboardSink class definition
+ */
+public class SmartDashboardSink implements TelemetrySink
+{
+    public void putNumber(String aName, double aValue)
+    {
+        SmartDashboard.putNumber(aName, aValue);
+    }
+
+    public void flush()
+    {
+        // NetworkTables sends on its own schedule
+    }
+}
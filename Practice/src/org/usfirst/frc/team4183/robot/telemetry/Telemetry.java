@@ -0,0 +1,192 @@
+/**
+ * Telemetry - gets numbers off the control thread and onto the dashboard
+ * without slowing the control thread down.
+ *
+ * Calling SmartDashboard.putNumber from teleopPeriodic means the control loop
+ * pays for a string hash lookup, a NetworkTables entry update and whatever
+ * locking NetworkTables does, every cycle, for every value. Instead:
+ *
+ *     1. Each value is given a channel ID once (at class load or init time)
+ *     2. The control loop writes (channel, value) into a lock-free ring;
+ *        this neither blocks nor allocates
+ *     3. A background publisher thread drains the ring and sends only the
+ *        latest value of each channel to the sink at a modest rate
+ *
+ * If the publisher falls behind the ring fills and new samples are dropped
+ * (and counted) rather than making the control loop wait.
+ *
+ * Like OI and SmartDashboard this is a static interface since there is only
+ * ever one.
+ */
+package org.usfirst.frc.team4183.robot.telemetry;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+
+/**
+ * The Telemetry class definition
+ */
+public class Telemetry
+{
+    public static final int MAX_CHANNELS = 256;
+
+    private static final TelemetryRing ring = new TelemetryRing(RobotMap.TELEMETRY_CAPACITY);
+
+    // Channel registry; names are only looked at by the publisher
+    private static final String[] names = new String[MAX_CHANNELS];
+    private static volatile int channelCount = 0;
+
+    // Publisher thread state (only touched by the publisher)
+    private static final double[] latest = new double[MAX_CHANNELS];
+    private static final boolean[] dirty = new boolean[MAX_CHANNELS];
+    private static final TelemetryRing.Consumer collector = new TelemetryRing.Consumer()
+    {
+        public void accept(int aChannel, double aValue)
+        {
+            latest[aChannel] = aValue;
+            dirty[aChannel] = true;
+        }
+    };
+
+    private static final int droppedChannel = channel("telemetry/dropped");
+
+    private static TelemetrySink sink;
+    private static Thread publisher;
+    private static volatile long publishCount = 0;
+
+    private Telemetry()
+    {
+        // Static interface only
+    }
+
+    /**
+     * channel - return the ID for the named channel, creating it if needed.
+     * This takes a lock and should be done once (e.g., in a static final)
+     * rather than on the control path.
+     */
+    public static synchronized int channel(String aName)
+    {
+        for (int i = 0; i < channelCount; ++i)
+        {
+            if (names[i].equals(aName))
+            {
+                return i;
+            }
+        }
+        if (channelCount == MAX_CHANNELS)
+        {
+            throw new IllegalStateException("Too many telemetry channels, cannot add " + aName);
+        }
+        names[channelCount] = aName.intern();
+        return channelCount++;
+    }
+
+    public static String getName(int aChannel)
+    {
+        return names[aChannel];
+    }
+
+    public static int getChannelCount()
+    {
+        return channelCount;
+    }
+
+    /**
+     * put - record a value; safe to call from the control loop
+     *
+     * @return false if the sample was dropped
+     */
+    public static boolean put(int aChannel, double aValue)
+    {
+        return ring.offer(aChannel, aValue);
+    }
+
+    /**
+     * start - begin publishing to the sink at the configured period; calling
+     * start again has no effect
+     */
+    public static synchronized void start(TelemetrySink aSink, double aPeriod_sec)
+    {
+        if (publisher != null)
+        {
+            return;
+        }
+
+        sink = aSink;
+        final long period_ms = Math.max(1L, (long) (aPeriod_sec * 1000.0));
+        publisher = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                while ( ! Thread.currentThread().isInterrupted())
+                {
+                    publish();
+                    try
+                    {
+                        Thread.sleep(period_ms);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "Telemetry");
+        publisher.setDaemon(true);
+        publisher.setPriority(Thread.MIN_PRIORITY);
+        publisher.start();
+    }
+
+    /**
+     * start - publish to the SmartDashboard at the default period
+     */
+    public static void start()
+    {
+        start(new SmartDashboardSink(), RobotMap.TELEMETRY_PERIOD_sec);
+    }
+
+    public static synchronized void stop()
+    {
+        if (publisher != null)
+        {
+            publisher.interrupt();
+            publisher = null;
+        }
+    }
+
+    /**
+     * publish - drain the ring and send the latest value of each changed
+     * channel to the sink; normally only called by the publisher thread
+     */
+    static synchronized void publish()
+    {
+        ring.drain(collector);
+        latest[droppedChannel] = ring.getDroppedCount();
+        dirty[droppedChannel] = true;
+
+        int count = channelCount;
+        for (int i = 0; i < count; ++i)
+        {
+            if (dirty[i])
+            {
+                sink.putNumber(names[i], latest[i]);
+                dirty[i] = false;
+            }
+        }
+        sink.flush();
+        ++publishCount;
+    }
+
+    /**
+     * getDroppedCount returns the number of samples lost because the ring
+     * was full when put was called
+     */
+    public static long getDroppedCount()
+    {
+        return ring.getDroppedCount();
+    }
+
+    public static long getPublishCount()
+    {
+        return publishCount;
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * TelemetryRing - a fixed size, lock-free queue of (channel, value) samples.
+ *
+ * The control loop must never wait on telemetry and must never create
+ * garbage for the collector to chase, so:
+ *
+ *     - All storage is allocated once, as primitive arrays
+ *     - Writers claim a slot with a compare-and-set and never block; when
+ *       the ring is full the sample is counted as dropped and discarded
+ *     - A single reader (the publisher thread) drains the samples
+ *
+ * Each slot carries a sequence number that tells writers when it is free
+ * and the reader when it has been filled (the classic bounded queue design
+ * by Dmitry Vyukov), so several threads may write at once.
+ */
+package org.usfirst.frc.team4183.robot.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The TelemetryRing class definition
+ */
+public class TelemetryRing
+{
+    private final int mask;
+    private final int[] channels;
+    private final double[] values;
+    private final AtomicLongArray sequence;
+
+    private final AtomicLong tail = new AtomicLong(0);  // Next slot to write
+    private long head = 0;                              // Next slot to read (reader only)
+
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    /**
+     * Constructor
+     *
+     * @param aCapacity - number of samples held; must be a power of 2
+     */
+    public TelemetryRing(int aCapacity)
+    {
+        if ((aCapacity <= 0) || ((aCapacity & (aCapacity - 1)) != 0))
+        {
+            throw new IllegalArgumentException("Telemetry capacity must be a power of 2: " + aCapacity);
+        }
+
+        mask = aCapacity - 1;
+        channels = new int[aCapacity];
+        values = new double[aCapacity];
+        sequence = new AtomicLongArray(aCapacity);
+        for (int i = 0; i < aCapacity; ++i)
+        {
+            sequence.set(i, i);
+        }
+    }
+
+    public int getCapacity()
+    {
+        return mask + 1;
+    }
+
+    /**
+     * offer - add a sample; never blocks and never allocates
+     *
+     * @return false if the ring was full and the sample was dropped
+     */
+    public boolean offer(int aChannel, double aValue)
+    {
+        long position;
+        int index;
+        while (true)
+        {
+            position = tail.get();
+            index = (int) (position & mask);
+            long difference = sequence.get(index) - position;
+            if (difference == 0)
+            {
+                if (tail.compareAndSet(position, position + 1))
+                {
+                    break;
+                }
+            }
+            else if (difference < 0)
+            {
+                // The reader has not caught up with this slot yet
+                dropped.incrementAndGet();
+                return false;
+            }
+            // Otherwise another writer got here first; try the next slot
+        }
+
+        channels[index] = aChannel;
+        values[index] = aValue;
+        sequence.lazySet(index, position + 1);  // Publish to the reader
+        return true;
+    }
+
+    /**
+     * drain - hand every available sample to the consumer; must only be
+     * called from one thread at a time
+     *
+     * @return the number of samples consumed
+     */
+    public int drain(Consumer aConsumer)
+    {
+        int count = 0;
+        while (true)
+        {
+            int index = (int) (head & mask);
+            if (sequence.get(index) != head + 1)
+            {
+                break;  // Nothing more has been published
+            }
+
+            aConsumer.accept(channels[index], values[index]);
+
+            sequence.lazySet(index, head + mask + 1);   // Free the slot for writers
+            ++head;
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * getDroppedCount returns the number of samples discarded because the
+     * ring was full
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Consumer receives drained samples as primitives (no boxing)
+     */
+    public interface Consumer
+    {
+        void accept(int aChannel, double aValue);
+    }
+}
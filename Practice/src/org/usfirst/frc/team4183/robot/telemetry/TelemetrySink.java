@@ -0,0 +1,18 @@
+/**
+ * TelemetrySink - where the publisher sends the latest value of each
+ * channel (normally NetworkTables via the SmartDashboard)
+ */
+package org.usfirst.frc.team4183.robot.telemetry;
+
+/**
+ * The TelemetrySink interface definition
+ */
+public interface TelemetrySink
+{
+    void putNumber(String aName, double aValue);
+
+    /**
+     * flush - called after each batch of puts
+     */
+    void flush();
+}
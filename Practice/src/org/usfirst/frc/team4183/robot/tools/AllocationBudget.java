@@ -0,0 +1,320 @@
+/**
+ * AllocationBudget - fails the build when a periodic path allocates more
+ * than it is allowed to.
+ *
+ * The roboRIO heap is small, so garbage piles up quickly and every
+ * collection is a pause the control loop feels as a missed cycle. Nothing
+ * in the compiler stops an allocation from creeping into teleopPeriodic,
+ * arcadeDrive or a command's execute, so this checks for one:
+ *
+ *     java org.usfirst.frc.team4183.robot.tools.AllocationBudget [cycles]
+ *
+ * Each hot path below is run against the simulated hardware (as
+ * sim.TeleopReplay and sim.HeadlessRunner do) for a warm up, then for the
+ * specified number of cycles, reading this thread's allocated bytes just
+ * before and just after every cycle; what the readings themselves cost is
+ * measured first and taken off. The sticks come from a generated input log
+ * (a slow weave), the commands are stepped by an AutonomousRehearsal, and
+ * the simulation is stepped between cycles, outside the measurement.
+ *
+ * Every path has a budget in bytes per cycle, checked against its worst
+ * cycle; ours are all zero. The Scheduler is WPILib's and allocates a
+ * little on its own, so it has a budget of its own and anything that runs
+ * it (TeleopCycle.run) is allowed what the Scheduler was measured to take,
+ * on top of its own budget. The report shows each path's budget, mean and
+ * worst bytes per cycle and how many cycles went over; if any did, the
+ * exit status is 1 (the ant "allocations" target fails the build).
+ *
+ * NOTE: The JIT can remove allocations it proves never escape; the
+ * roboRIO's JVM does not do that, so the ant target runs this with escape
+ * analysis off, to count what the robot would allocate. The JVM must
+ * provide the HotSpot extension that counts allocated bytes.
+ */
+package org.usfirst.frc.team4183.robot.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.usfirst.frc.team4183.robot.DriveSample;
+import org.usfirst.frc.team4183.robot.OI;
+import org.usfirst.frc.team4183.robot.Robot;
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.TeleopCycle;
+import org.usfirst.frc.team4183.robot.commands.AutonomousRehearsal;
+import org.usfirst.frc.team4183.robot.commands.AutonomousRoutines;
+import org.usfirst.frc.team4183.robot.oi.InputPlayer;
+import org.usfirst.frc.team4183.robot.oi.InputRecorder;
+import org.usfirst.frc.team4183.robot.sim.SimulatedClock;
+import org.usfirst.frc.team4183.robot.sim.SimulatedHardware;
+import org.usfirst.frc.team4183.robot.sim.SimulatedRobotState;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+
+import edu.wpi.first.wpilibj.HLUsageReporting;
+import edu.wpi.first.wpilibj.command.Scheduler;
+
+/**
+ * The AllocationBudget class definition
+ */
+public class AllocationBudget
+{
+    private static final int DEFAULT_CYCLES = 20000;
+    private static final int WARMUP_CYCLES = 20000;
+    private static final int CALIBRATION_READINGS = 10000;
+
+    // The generated stick log: a slow weave, as long as a match
+    private static final int INPUT_RECORDS = 7500;
+    private static final double INPUT_PERIOD_sec = 7.0;
+
+    // WPILib's own, which we do not control; only growth should fail
+    private static final long SCHEDULER_BUDGET_bytes = 256;
+
+    private static ThreadMXBean threads;
+    private static long readingCost_bytes = 0;
+
+    /**
+     * HotPath - one thing done every cycle, and what it may allocate
+     */
+    private abstract static class HotPath
+    {
+        final String name;
+        final long budget_bytes;
+        final HotPath includes;     // Allowed whatever this one took, or null
+
+        long total_bytes = 0;
+        long worst_bytes = 0;
+        int cycles = 0;
+        int over = 0;
+
+        HotPath(String aName, long aBudget_bytes, HotPath anIncludes)
+        {
+            name = aName;
+            budget_bytes = aBudget_bytes;
+            includes = anIncludes;
+        }
+
+        abstract void cycle();
+
+        long getAllowed_bytes()
+        {
+            return budget_bytes + ((includes != null) ? includes.worst_bytes : 0);
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int cycles = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_CYCLES;
+
+        threads = ManagementFactory.getThreadMXBean();
+        if (OdometryBenchmark.allocatedBytes(threads) < 0)
+        {
+            System.err.println("This JVM cannot count allocated bytes; nothing checked");
+            System.exit(1);
+        }
+
+        // This MUST happen before anything touches RobotMap (or Robot)
+        System.setProperty(RobotMap.SIMULATION_PROPERTY, "true");
+
+        final SimulatedClock clock = new SimulatedClock();
+        clock.install();
+        SimulatedRobotState robotState = new SimulatedRobotState();
+        robotState.install();
+        SimulatedHardware.getInstance().install();
+        HLUsageReporting.SetImplementation(new HLUsageReporting.Null());
+        robotState.setMode(SimulatedRobotState.Mode.Teleop);
+
+        final DriveSubsystem drive = Robot.driveSubsystem;
+        final TeleopCycle teleop = new TeleopCycle(drive);
+        final DriveSample sample = new DriveSample();
+        final InputPlayer player = weave();
+        OI.startReplay(player);
+
+        final HotPath scheduler = new HotPath("Scheduler.run", SCHEDULER_BUDGET_bytes, null)
+        {
+            void cycle()
+            {
+                Scheduler.getInstance().run();
+            }
+        };
+
+        HotPath[] paths =
+        {
+            new HotPath("OI.read", 0, null)
+            {
+                void cycle()
+                {
+                    nextInput(player);
+                    OI.read(sample);
+                }
+            },
+            new HotPath("DriveSubsystem.updateState", 0, null)
+            {
+                void cycle()
+                {
+                    drive.updateState();
+                }
+            },
+            new HotPath("DriveSubsystem.arcadeDrive", 0, null)
+            {
+                void cycle()
+                {
+                    drive.arcadeDrive(sample.getSpeed(), sample.getTurn());
+                }
+            },
+            new HotPath("DriveSubsystem.maintainPosition", 0, null)
+            {
+                void cycle()
+                {
+                    drive.maintainPosition(RobotMap.FORWARD * 1.0);
+                }
+            },
+            new HotPath("DriveSubsystem.maintainSpeed", 0, null)
+            {
+                void cycle()
+                {
+                    drive.maintainSpeed(RobotMap.FORWARD * 1.0);
+                }
+            },
+            scheduler,
+            new HotPath("TeleopCycle.run", 0, scheduler)
+            {
+                void cycle()
+                {
+                    nextInput(player);
+                    teleop.run();
+                }
+            },
+            rehearsed("1 Meter Forward"),
+            rehearsed("45 deg Right"),
+            rehearsed("Square")
+        };
+
+        readingCost_bytes = calibrate();
+
+        boolean passed = true;
+        for (HotPath path : paths)
+        {
+            drive.stop();
+            measure(path, clock, WARMUP_CYCLES);
+            path.total_bytes = 0;
+            path.worst_bytes = 0;
+            path.cycles = 0;
+            path.over = 0;
+            measure(path, clock, cycles);
+        }
+        OI.stopReplay();
+
+        System.out.printf("allocation per cycle (bytes; readings cost %d, taken off):%n", readingCost_bytes);
+        System.out.printf("    %-34s %8s %10s %8s %8s%n", "path", "budget", "mean", "worst", "over");
+        for (HotPath path : paths)
+        {
+            boolean ok = (0 == path.over);
+            passed &= ok;
+            System.out.printf("    %-34s %8d %10.1f %8d %8d %s%n",
+                              path.name,
+                              path.getAllowed_bytes(),
+                              path.total_bytes / (double) path.cycles,
+                              path.worst_bytes,
+                              path.over,
+                              ok ? "ok" : "OVER BUDGET");
+        }
+
+        if ( ! passed)
+        {
+            System.out.println("FAILED: a periodic path allocates more than its budget");
+            System.exit(1);
+        }
+        System.out.println("passed");
+    }
+
+    /**
+     * rehearsed - a path that steps the named autonomous routine, one
+     * command cycle at a time (initialize, execute, isFinished, end)
+     */
+    private static HotPath rehearsed(String aRoutine)
+    {
+        final AutonomousRehearsal rehearsal = new AutonomousRehearsal(Long.MAX_VALUE,
+                                                                      RobotMap.REHEARSAL_STEP_CYCLES);
+        rehearsal.select(AutonomousRoutines.getFactory(AutonomousRoutines.find(aRoutine)));
+        return new HotPath(aRoutine + " (commands)", 0, null)
+        {
+            void cycle()
+            {
+                rehearsal.step();
+            }
+        };
+    }
+
+    private static void measure(HotPath aPath, SimulatedClock aClock, int aCycles)
+    {
+        long allowed_bytes = aPath.getAllowed_bytes();
+        for (int i = 0; i < aCycles; ++i)
+        {
+            long before_bytes = OdometryBenchmark.allocatedBytes(threads);
+            aPath.cycle();
+            long after_bytes = OdometryBenchmark.allocatedBytes(threads);
+
+            long cycle_bytes = Math.max(0L, (after_bytes - before_bytes) - readingCost_bytes);
+            aPath.total_bytes += cycle_bytes;
+            aPath.worst_bytes = Math.max(aPath.worst_bytes, cycle_bytes);
+            ++aPath.cycles;
+            if (cycle_bytes > allowed_bytes)
+            {
+                ++aPath.over;
+            }
+
+            SimulatedHardware.getInstance().step(RobotMap.LOOP_PERIOD_sec);
+            aClock.advance(RobotMap.LOOP_PERIOD_sec);
+        }
+    }
+
+    /**
+     * calibrate - what a pair of readings with nothing between them shows
+     * (some JVMs allocate to answer)
+     */
+    private static long calibrate()
+    {
+        long least_bytes = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_READINGS; ++i)
+        {
+            long before_bytes = OdometryBenchmark.allocatedBytes(threads);
+            long after_bytes = OdometryBenchmark.allocatedBytes(threads);
+            least_bytes = Math.min(least_bytes, after_bytes - before_bytes);
+        }
+        return least_bytes;
+    }
+
+    /**
+     * weave - a stick log that drives forward while turning slowly one way
+     * and then the other, repeated; the log is a temporary file
+     */
+    private static InputPlayer weave() throws IOException
+    {
+        File file = File.createTempFile("allocation", ".oilog");
+        file.deleteOnExit();
+        InputRecorder recorder = new InputRecorder(file, INPUT_RECORDS);
+        for (int i = 0; i < INPUT_RECORDS; ++i)
+        {
+            double time_sec = i * RobotMap.LOOP_PERIOD_sec;
+            double phase = 2.0 * Math.PI * time_sec / INPUT_PERIOD_sec;
+            recorder.append(time_sec, -0.6 + 0.3 * Math.sin(phase), 0.5 * Math.sin(2.0 * phase));
+        }
+        recorder.flush();
+        return InputPlayer.open(file);
+    }
+
+    /**
+     * nextInput - the next record of the stick log, from the start again
+     * when it runs out
+     */
+    private static void nextInput(InputPlayer aPlayer)
+    {
+        if ( ! aPlayer.next())
+        {
+            aPlayer.rewind();
+            aPlayer.next();
+            OI.resetFilters();
+        }
+    }
+}
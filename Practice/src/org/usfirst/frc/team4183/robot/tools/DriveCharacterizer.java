@@ -0,0 +1,171 @@
+/**
+ * DriveCharacterizer - fits the drive's feedforward model to a log of the
+ * "Characterize Drive" routine (commands.CharacterizeDriveCommand), copied
+ * off the robot.
+ *
+ * Run on a desktop:
+ *
+ *     java org.usfirst.frc.team4183.robot.tools.DriveCharacterizer <log> [log...]
+ *
+ * Each side is modeled as
+ *
+ *     volts = kS * sign(speed) + kV * speed + kA * acceleration
+ *
+ * with speed in encoder rotations per second, and fitted by least squares
+ * (subsystems.FeedforwardFit) over every row of the ramps and steps where
+ * that side was moving (rests and rows slower than MIN_SPEED_rps say nothing
+ * about kS and kV). The fit only keeps sums, so each log is read once, a
+ * chunk at a time, however long it is; several logs (e.g., a few runs) are
+ * simply fitted together.
+ *
+ * The fit of each side and of both together is printed, then each side's
+ * values as RobotMap lines to paste in and the F of both together as a
+ * parameter file line (the speed gains are shared by the sides), to try it
+ * on the robot before giving the speed loop an F.
+ *
+ * A poor fit (r^2 well below 1) usually means the robot hit something,
+ * slipped, or the battery was nearly flat; run it again.
+ */
+package org.usfirst.frc.team4183.robot.tools;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.commands.CharacterizeDriveCommand;
+import org.usfirst.frc.team4183.robot.subsystems.FeedforwardFit;
+
+/**
+ * The DriveCharacterizer class definition
+ */
+public class DriveCharacterizer
+{
+    // Slower than this the wheels may not have broken free
+    public static final double MIN_SPEED_rps = FeedforwardFit.MIN_SPEED_rps;
+
+    private final FeedforwardFit left = new FeedforwardFit("left");
+    private final FeedforwardFit right = new FeedforwardFit("right");
+    private final FeedforwardFit both = new FeedforwardFit("both");
+    private long rows = 0;
+
+    /**
+     * read - add every usable row of the log to the fits
+     */
+    public void read(File aFile) throws IOException
+    {
+        SignalLogDecoder decoder = new SignalLogDecoder(aFile);
+        String[] names = decoder.getNames();
+        if ((names.length != CharacterizeDriveCommand.NAMES.length) ||
+            ! names[CharacterizeDriveCommand.PHASE].equals(CharacterizeDriveCommand.NAMES[CharacterizeDriveCommand.PHASE]))
+        {
+            throw new IOException(aFile + " is not a characterization log");
+        }
+
+        rows += decoder.decode(new SignalLogDecoder.Visitor()
+        {
+            public void chunk(int aRows, double[] times_sec, double[][] values)
+            {
+                for (int r = 0; r < aRows; ++r)
+                {
+                    if (values[CharacterizeDriveCommand.PHASE][r] == CharacterizeDriveCommand.REST)
+                    {
+                        continue;
+                    }
+                    add(left,
+                        values[CharacterizeDriveCommand.LEFT_VOLTAGE][r],
+                        values[CharacterizeDriveCommand.LEFT_SPEED][r],
+                        values[CharacterizeDriveCommand.LEFT_ACCELERATION][r]);
+                    add(right,
+                        values[CharacterizeDriveCommand.RIGHT_VOLTAGE][r],
+                        values[CharacterizeDriveCommand.RIGHT_SPEED][r],
+                        values[CharacterizeDriveCommand.RIGHT_ACCELERATION][r]);
+                }
+            }
+        });
+    }
+
+    private void add(FeedforwardFit aSide, double aVoltage_V, double aSpeed_rps, double anAcceleration_rps2)
+    {
+        if (Math.abs(aSpeed_rps) < MIN_SPEED_rps)
+        {
+            return;
+        }
+        aSide.add(aVoltage_V, aSpeed_rps, anAcceleration_rps2);
+        both.add(aVoltage_V, aSpeed_rps, anAcceleration_rps2);
+    }
+
+    /**
+     * getSpeedF - the Talon speed loop F for the specified kV: full output
+     * (1023) per native unit (4 per encoder code) per 100 ms of the speed
+     * kV says the nominal battery holds
+     */
+    public static double getSpeedF(double aKV_V_per_rps)
+    {
+        return 1023.0 * aKV_V_per_rps / RobotMap.DRIVE_NOMINAL_V / (4.0 * RobotMap.DRIVE_PULSES_PER_REV / 10.0);
+    }
+
+    /**
+     * report - solve the fits and print them
+     *
+     * @return false if there was not enough to fit
+     */
+    public boolean report()
+    {
+        System.out.printf("%d rows, %d used per side (moving faster than %.2f rot/s)%n",
+                          rows, Math.max(left.getCount(), right.getCount()), MIN_SPEED_rps);
+        System.out.println("    side      kS (V)   kV (V/rps)  kA (V/rps^2)     r^2   rms (V)       F");
+
+        boolean solved = true;
+        FeedforwardFit[] fits = { left, right, both };
+        for (FeedforwardFit fit : fits)
+        {
+            if ( ! fit.solve())
+            {
+                System.out.printf("    %-6s  not enough data to fit%n", fit.getName());
+                solved = false;
+                continue;
+            }
+            System.out.printf("    %-6s %8.4f %12.4f %13.4f %8.4f %9.4f %7.4f%n",
+                              fit.getName(), fit.getKS_V(), fit.getKV_V_per_rps(), fit.getKA_V_per_rps2(),
+                              fit.getRSquared(), fit.getRms_V(), getSpeedF(fit.getKV_V_per_rps()));
+        }
+        if ( ! solved)
+        {
+            return false;
+        }
+
+        System.out.println("RobotMap:");
+        printSide("LEFT", left);
+        printSide("RIGHT", right);
+        System.out.println("Parameter file, to try the F first:");
+        System.out.printf("    drive/speed/F = %.4f%n", getSpeedF(both.getKV_V_per_rps()));
+        return true;
+    }
+
+    private static void printSide(String aSide, FeedforwardFit aFit)
+    {
+        System.out.printf("    public static final double DRIVE_%s_KS_V = %.4f;%n", aSide, aFit.getKS_V());
+        System.out.printf("    public static final double DRIVE_%s_KV_V_per_rps = %.4f;%n", aSide, aFit.getKV_V_per_rps());
+        System.out.printf("    public static final double DRIVE_%s_KA_V_per_rps2 = %.4f;%n", aSide, aFit.getKA_V_per_rps2());
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("usage: DriveCharacterizer <log> [log...]");
+            System.exit(1);
+        }
+
+        // Several runs (e.g., on different days) are simply fitted together
+        DriveCharacterizer characterizer = new DriveCharacterizer();
+        for (String name : args)
+        {
+            characterizer.read(new File(name));
+        }
+        if ( ! characterizer.report())
+        {
+            System.exit(1);
+        }
+    }
+}
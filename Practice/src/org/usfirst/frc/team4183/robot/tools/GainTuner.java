@@ -0,0 +1,584 @@
+/**
+ * GainTuner - searches for drive closed loop gains against the simulated
+ * drivetrain (sim.DrivetrainPhysics) instead of on the carpet.
+ *
+ * Run on a desktop (the more cores the better):
+ *
+ *     java org.usfirst.frc.team4183.robot.tools.GainTuner <position|speed|profile> [threads] [report.csv]
+ *
+ * Every combination of the P, I, D and F values listed below for the loop
+ * is tried on each of its scenarios: moves and turns for the position and
+ * motion profile loops (driving the subsystem exactly as MoveCommand and
+ * TurnCommand do, with and without profiles), steps in maintainSpeed for
+ * the speed loop. Each scenario starts at rest and runs for a fixed time
+ * at the robot's 20 ms period, and is scored on:
+ *
+ *     settle time     when both sides last came inside the band around
+ *                     their target (SETTLE_FRACTION of the step) and
+ *                     stayed there; a scenario that never settles costs
+ *                     its whole run plus UNSETTLED_PENALTY_sec
+ *     overshoot       how far either side went past its target, as a
+ *                     fraction of the step, costing OVERSHOOT_COST_sec
+ *                     per 100%
+ *
+ * The costs of a candidate's scenarios add up to its score, lowest best.
+ * The candidates are split across a fork-join pool (one worker per core
+ * unless some other number of threads is given; 0 means one per core).
+ * Each worker builds its own drive, motors and physics once and reuses
+ * them, so the workers share nothing but the results array and the sweep
+ * scales with the number of cores.
+ *
+ * The best candidates are printed with their worst settle time and
+ * overshoot, then the best gains as RobotMap lines to paste in, and the
+ * current RobotMap gains for comparison. With a report file every
+ * candidate is written to it in rank order (CSV).
+ *
+ * The model is only a model: these gains are a starting point to confirm
+ * on the robot, not a replacement for trying them there.
+ *
+ * NOTE: maintainSpeed sends encoder rotations per second where the Talon
+ * expects RPM, so the speed loop is tuned to the speeds it actually
+ * commands; fix the units first and the speed gains must be tuned again.
+ */
+package org.usfirst.frc.team4183.robot.tools;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.sim.DrivetrainPhysics;
+import org.usfirst.frc.team4183.robot.sim.SimulatedClock;
+import org.usfirst.frc.team4183.robot.sim.SimulatedHardware;
+import org.usfirst.frc.team4183.robot.subsystems.DriveGains;
+import org.usfirst.frc.team4183.robot.subsystems.DriveState;
+import org.usfirst.frc.team4183.robot.subsystems.DriveSubsystem;
+
+import edu.wpi.first.wpilibj.HLUsageReporting;
+
+/**
+ * The GainTuner class definition
+ */
+public class GainTuner
+{
+    public static final double PERIOD_sec = 0.020;     // Same as IterativeRobot
+
+    // Scoring
+    public static final double SETTLE_FRACTION = 0.02;
+    public static final double UNSETTLED_PENALTY_sec = 10.0;
+    public static final double OVERSHOOT_COST_sec = 5.0;
+
+    // The candidates are split until a task has no more than this many
+    private static final int CANDIDATES_PER_TASK = 4;
+
+    private static final int REPORT_ROWS = 20;
+
+    // The values tried for each loop (Talon units); every combination of
+    // P, I, D and F is a candidate
+    private static final double[] POSITION_P = { 0.05, 0.1, 0.2, 0.3, 0.5, 0.8, 1.2, 2.0 };
+    private static final double[] POSITION_I = { 0.0, 0.0001, 0.0003, 0.001, 0.003 };
+    private static final double[] POSITION_D = { 0.0, 1.0, 2.0, 5.0, 10.0, 20.0 };
+    private static final double[] POSITION_F = { 0.0 };
+
+    private static final double[] SPEED_P = { 0.05, 0.1, 0.2, 0.5, 1.0, 2.0, 4.0, 8.0 };
+    private static final double[] SPEED_I = { 0.0, 0.001, 0.003, 0.01, 0.03 };
+    private static final double[] SPEED_D = { 0.0, 1.0, 5.0, 20.0 };
+    private static final double[] SPEED_F = { 0.0, 0.1, 0.2, 0.5, 1.0, 2.0 };
+
+    private static final double[] PROFILE_P = { 0.05, 0.1, 0.2, 0.4, 0.8, 1.6 };
+    private static final double[] PROFILE_I = { 0.0, 0.0001, 0.0003, 0.001 };
+    private static final double[] PROFILE_D = { 0.0, 2.0, 5.0, 10.0, 20.0 };
+    private static final double[] PROFILE_F = { 0.1, 0.15, 0.2, 0.25, 0.3 };
+
+    // What a scenario asks the drive to do
+    private static final int MOVE = 0;     // target in meters
+    private static final int TURN = 1;     // target in degrees
+    private static final int SPEED = 2;    // target in meters per second
+
+    /**
+     * Scenario - one step for the loop to follow
+     */
+    private static final class Scenario
+    {
+        final String name;
+        final int kind;
+        final double target;
+        final double duration_sec;
+
+        Scenario(String aName, int aKind, double aTarget, double aDuration_sec)
+        {
+            name = aName;
+            kind = aKind;
+            target = aTarget;
+            duration_sec = aDuration_sec;
+        }
+    }
+
+    private static final Scenario[] POSITION_SCENARIOS =
+    {
+        new Scenario("move 1 m", MOVE, RobotMap.FORWARD * 1.0, 4.0),
+        new Scenario("move -1 m", MOVE, RobotMap.BACKWARD * 1.0, 4.0),
+        new Scenario("move 2 m", MOVE, RobotMap.FORWARD * 2.0, 5.0),
+        new Scenario("turn 45 deg", TURN, RobotMap.RIGHT * 45.0, 3.0),
+        new Scenario("turn 90 deg", TURN, RobotMap.LEFT * 90.0, 3.0)
+    };
+
+    private static final Scenario[] SPEED_SCENARIOS =
+    {
+        new Scenario("0.5 m/s", SPEED, RobotMap.FORWARD * 0.5, 3.0),
+        new Scenario("1.5 m/s", SPEED, RobotMap.FORWARD * 1.5, 3.0),
+        new Scenario("-1.0 m/s", SPEED, RobotMap.BACKWARD * 1.0, 3.0)
+    };
+
+    // Profiles take longer, so allow for the profile itself
+    private static final Scenario[] PROFILE_SCENARIOS =
+    {
+        new Scenario("move 1 m", MOVE, RobotMap.FORWARD * 1.0, 5.0),
+        new Scenario("move -1 m", MOVE, RobotMap.BACKWARD * 1.0, 5.0),
+        new Scenario("move 2 m", MOVE, RobotMap.FORWARD * 2.0, 6.0),
+        new Scenario("turn 45 deg", TURN, RobotMap.RIGHT * 45.0, 4.0),
+        new Scenario("turn 90 deg", TURN, RobotMap.LEFT * 90.0, 4.0)
+    };
+
+    /**
+     * Result - how one candidate did
+     */
+    private static final class Result
+    {
+        final DriveGains gains;
+        double cost = 0.0;
+        double worstSettle_sec = 0.0;
+        double worstOvershoot = 0.0;
+        int unsettled = 0;
+        final double[] settle_sec;
+        final double[] overshoot;
+
+        Result(DriveGains someGains, int aScenarios)
+        {
+            gains = someGains;
+            settle_sec = new double[aScenarios];
+            overshoot = new double[aScenarios];
+        }
+    }
+
+    /**
+     * Rig - a drive on its own simulated hardware; one per worker thread
+     */
+    private static final class Rig
+    {
+        final SimulatedHardware hardware = new SimulatedHardware();
+        final DriveSubsystem drive;
+
+        Rig()
+        {
+            // Subsystems register with the (shared) Scheduler as they are
+            // built, so only build one at a time
+            synchronized (GainTuner.class)
+            {
+                drive = new DriveSubsystem(hardware.createMotorController(RobotMap.leftMotor0),
+                                           hardware.createMotorController(RobotMap.leftMotor1),
+                                           hardware.createMotorController(RobotMap.rightMotor0),
+                                           hardware.createMotorController(RobotMap.rightMotor1));
+            }
+            DrivetrainPhysics.create(hardware);
+        }
+    }
+
+    private static final ThreadLocal<Rig> rigs = new ThreadLocal<Rig>()
+    {
+        protected Rig initialValue()
+        {
+            return new Rig();
+        }
+    };
+
+    private final String loop;
+    private final Scenario[] scenarios;
+
+    private GainTuner(String aLoop, Scenario[] someScenarios)
+    {
+        loop = aLoop;
+        scenarios = someScenarios;
+    }
+
+    public static void main(String[] args) throws FileNotFoundException, UnsupportedEncodingException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("usage: GainTuner <position|speed|profile> [threads] [report.csv]");
+            System.exit(1);
+        }
+        String loop = args[0];
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 0;
+        if (threads <= 0)
+        {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        // This MUST happen before anything touches RobotMap
+        System.setProperty(RobotMap.SIMULATION_PROPERTY, "true");
+
+        // The drive reads the clock, but the scenarios keep their own time
+        new SimulatedClock().install();
+        HLUsageReporting.SetImplementation(new HLUsageReporting.Null());
+
+        GainTuner tuner;
+        DriveGains[] candidates;
+        DriveGains current;
+        if ("position".equals(loop))
+        {
+            tuner = new GainTuner(loop, POSITION_SCENARIOS);
+            candidates = grid(POSITION_P, POSITION_I, POSITION_D, POSITION_F);
+            current = DriveGains.POSITION;
+        }
+        else if ("speed".equals(loop))
+        {
+            tuner = new GainTuner(loop, SPEED_SCENARIOS);
+            candidates = grid(SPEED_P, SPEED_I, SPEED_D, SPEED_F);
+            current = DriveGains.SPEED;
+        }
+        else if ("profile".equals(loop))
+        {
+            tuner = new GainTuner(loop, PROFILE_SCENARIOS);
+            candidates = grid(PROFILE_P, PROFILE_I, PROFILE_D, PROFILE_F);
+            current = DriveGains.PROFILE;
+        }
+        else
+        {
+            System.err.println("Unknown loop " + loop + "; expected position, speed or profile");
+            System.exit(1);
+            return;
+        }
+
+        System.out.printf("Tuning the %s loop: %d candidates x %d scenarios on %d threads%n",
+                          loop, candidates.length, tuner.scenarios.length, threads);
+
+        Result[] results = new Result[candidates.length];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start_ns = System.nanoTime();
+        pool.invoke(tuner.new Sweep(candidates, results, 0, candidates.length));
+        long elapsed_ns = System.nanoTime() - start_ns;
+        pool.shutdown();
+
+        Arrays.sort(results, new Comparator<Result>()
+        {
+            public int compare(Result a, Result b)
+            {
+                return Double.compare(a.cost, b.cost);
+            }
+        });
+
+        double virtual_sec = 0.0;
+        for (Scenario scenario : tuner.scenarios)
+        {
+            virtual_sec += scenario.duration_sec;
+        }
+        virtual_sec *= candidates.length;
+        System.out.printf("Simulated %.0f sec in %.1f sec (%.0fx real time, %.1f candidates/sec)%n%n",
+                          virtual_sec, elapsed_ns / 1.0e9, virtual_sec / (elapsed_ns / 1.0e9),
+                          candidates.length / (elapsed_ns / 1.0e9));
+
+        tuner.printRanking(results, Math.min(REPORT_ROWS, results.length));
+        tuner.printBest(results[0]);
+
+        Result baseline = tuner.evaluate(current);
+        int rank = 1;
+        while ((rank <= results.length) && (results[rank - 1].cost < baseline.cost))
+        {
+            ++rank;
+        }
+        System.out.printf("%nCurrent RobotMap gains (%s): cost %.2f, would rank %d of %d%n",
+                          current, baseline.cost, rank, results.length);
+        tuner.printScenarios(baseline);
+
+        if (args.length > 2)
+        {
+            tuner.writeReport(results, args[2]);
+            System.out.println("Wrote the full ranking to " + args[2]);
+        }
+    }
+
+    /**
+     * grid - every combination of the values
+     */
+    private static DriveGains[] grid(double[] someP, double[] someI, double[] someD, double[] someF)
+    {
+        DriveGains[] candidates = new DriveGains[someP.length * someI.length * someD.length * someF.length];
+        int n = 0;
+        for (double p : someP)
+        {
+            for (double i : someI)
+            {
+                for (double d : someD)
+                {
+                    for (double f : someF)
+                    {
+                        candidates[n++] = new DriveGains(p, i, d, f);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Sweep - evaluates a range of candidates, splitting it in half until
+     * it is small enough to do directly
+     */
+    private final class Sweep extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final DriveGains[] candidates;
+        private final Result[] results;
+        private final int from;
+        private final int to;
+
+        Sweep(DriveGains[] someCandidates, Result[] someResults, int aFrom, int aTo)
+        {
+            candidates = someCandidates;
+            results = someResults;
+            from = aFrom;
+            to = aTo;
+        }
+
+        protected void compute()
+        {
+            if (to - from <= CANDIDATES_PER_TASK)
+            {
+                for (int n = from; n < to; ++n)
+                {
+                    results[n] = evaluate(candidates[n]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Sweep(candidates, results, from, middle),
+                      new Sweep(candidates, results, middle, to));
+        }
+    }
+
+    /**
+     * evaluate - run every scenario with the specified gains on this
+     * thread's rig
+     */
+    private Result evaluate(DriveGains someGains)
+    {
+        Rig rig = rigs.get();
+        Result result = new Result(someGains, scenarios.length);
+        for (int s = 0; s < scenarios.length; ++s)
+        {
+            run(rig, someGains, scenarios[s], result, s);
+        }
+        return result;
+    }
+
+    private void run(Rig aRig, DriveGains someGains, Scenario aScenario, Result aResult, int anIndex)
+    {
+        DriveSubsystem drive = aRig.drive;
+
+        // At rest, with the new gains taking effect as the mode is entered
+        drive.stop();
+        aRig.hardware.reset();
+        if ("position".equals(loop))
+        {
+            drive.setPositionGains(someGains);
+        }
+        else if ("speed".equals(loop))
+        {
+            drive.setSpeedGains(someGains);
+        }
+        else
+        {
+            drive.setProfileGains(someGains);
+        }
+
+        // Where each side should end up, in what the Talon compares
+        double leftTarget;
+        double rightTarget;
+        if (TURN == aScenario.kind)
+        {
+            leftTarget = RobotMap.ENCODER_ROT_PER_DEGREE * aScenario.target;
+            rightTarget = -leftTarget;
+        }
+        else
+        {
+            // Speed uses the same scaling, per second (see maintainSpeed)
+            leftTarget = RobotMap.ENCODER_ROT_PER_METER * aScenario.target;
+            rightTarget = leftTarget;
+        }
+        double leftBand = SETTLE_FRACTION * Math.abs(leftTarget);
+        double rightBand = SETTLE_FRACTION * Math.abs(rightTarget);
+
+        int cycles = (int) Math.round(aScenario.duration_sec / PERIOD_sec);
+        int lastOutside = -1;
+        double overshoot = 0.0;
+        for (int cycle = 0; cycle < cycles; ++cycle)
+        {
+            drive.updateState();
+            command(drive, aScenario, cycle);
+
+            aRig.hardware.step(PERIOD_sec);
+
+            DriveState state = drive.getState();
+            double left;
+            double right;
+            if (SPEED == aScenario.kind)
+            {
+                left = state.getLeftSpeed_rpm();
+                right = state.getRightSpeed_rpm();
+            }
+            else
+            {
+                left = state.getLeftPosition_rot();
+                right = state.getRightPosition_rot();
+            }
+
+            if ((Math.abs(left - leftTarget) > leftBand) || (Math.abs(right - rightTarget) > rightBand))
+            {
+                lastOutside = cycle;
+            }
+            overshoot = Math.max(overshoot, past(left, leftTarget));
+            overshoot = Math.max(overshoot, past(right, rightTarget));
+        }
+        drive.stop();
+
+        // The state read at the top of the last cycle saw the step before
+        // it, so the last cycle's step is never judged; close enough
+        double settle_sec = (lastOutside + 1) * PERIOD_sec;
+        boolean settled = (lastOutside < cycles - 1);
+        aResult.settle_sec[anIndex] = settled ? settle_sec : Double.POSITIVE_INFINITY;
+        aResult.overshoot[anIndex] = overshoot;
+        aResult.cost += (settled ? settle_sec : aScenario.duration_sec + UNSETTLED_PENALTY_sec) +
+                        OVERSHOOT_COST_sec * overshoot;
+        aResult.worstSettle_sec = Math.max(aResult.worstSettle_sec, aResult.settle_sec[anIndex]);
+        aResult.worstOvershoot = Math.max(aResult.worstOvershoot, overshoot);
+        if ( ! settled)
+        {
+            ++aResult.unsettled;
+        }
+    }
+
+    /**
+     * command - what the commands would call this cycle
+     */
+    private void command(DriveSubsystem aDrive, Scenario aScenario, int aCycle)
+    {
+        if (SPEED == aScenario.kind)
+        {
+            aDrive.maintainSpeed(aScenario.target);
+        }
+        else if ("profile".equals(loop))
+        {
+            if (0 == aCycle)
+            {
+                if (TURN == aScenario.kind)
+                {
+                    aDrive.startTurnProfile(aScenario.target);
+                }
+                else
+                {
+                    aDrive.startMoveProfile(aScenario.target);
+                }
+            }
+            else
+            {
+                aDrive.maintainProfile();
+            }
+        }
+        else if (TURN == aScenario.kind)
+        {
+            aDrive.maintainOrientation(aScenario.target);
+        }
+        else
+        {
+            aDrive.maintainPosition(aScenario.target);
+        }
+    }
+
+    /**
+     * past - how far a value has gone beyond its target, as a fraction of
+     * the target (0 if it has not)
+     */
+    private static double past(double aValue, double aTarget)
+    {
+        if (0.0 == aTarget)
+        {
+            return 0.0;
+        }
+        return Math.max(0.0, (aValue - aTarget) / aTarget);
+    }
+
+    private void printRanking(Result[] someResults, int aRows)
+    {
+        System.out.println("rank    cost  worst settle  overshoot  unsettled  gains");
+        for (int n = 0; n < aRows; ++n)
+        {
+            Result result = someResults[n];
+            System.out.printf("%4d %7.2f  %9.2f s  %8.1f%%  %9d  %s%n",
+                              n + 1, result.cost, result.worstSettle_sec, 100.0 * result.worstOvershoot,
+                              result.unsettled, result.gains);
+        }
+    }
+
+    private void printBest(Result aBest)
+    {
+        String prefix = "DRIVE_" + loop.toUpperCase();
+        System.out.printf("%nBest gains (cost %.2f):%n", aBest.cost);
+        printScenarios(aBest);
+        System.out.println();
+        System.out.printf("    public static final double %s_P = %s;%n", prefix, aBest.gains.p);
+        System.out.printf("    public static final double %s_I = %s;%n", prefix, aBest.gains.i);
+        System.out.printf("    public static final double %s_D = %s;%n", prefix, aBest.gains.d);
+        System.out.printf("    public static final double %s_F = %s;%n", prefix, aBest.gains.f);
+    }
+
+    private void printScenarios(Result aResult)
+    {
+        for (int s = 0; s < scenarios.length; ++s)
+        {
+            System.out.printf("    %-12s settle %s, overshoot %.1f%%%n",
+                              scenarios[s].name,
+                              Double.isInfinite(aResult.settle_sec[s])
+                                  ? "never"
+                                  : String.format("%.2f s", aResult.settle_sec[s]),
+                              100.0 * aResult.overshoot[s]);
+        }
+    }
+
+    private void writeReport(Result[] someResults, String aFile)
+        throws FileNotFoundException, UnsupportedEncodingException
+    {
+        PrintWriter out = new PrintWriter(aFile, "UTF-8");
+        try
+        {
+            out.print("rank,p,i,d,f,cost,worst_settle_sec,worst_overshoot,unsettled");
+            for (Scenario scenario : scenarios)
+            {
+                out.print("," + scenario.name + " settle_sec," + scenario.name + " overshoot");
+            }
+            out.println();
+
+            for (int n = 0; n < someResults.length; ++n)
+            {
+                Result result = someResults[n];
+                out.print((n + 1) + "," + result.gains.p + "," + result.gains.i + "," + result.gains.d + "," +
+                          result.gains.f + "," + result.cost + "," + result.worstSettle_sec + "," +
+                          result.worstOvershoot + "," + result.unsettled);
+                for (int s = 0; s < scenarios.length; ++s)
+                {
+                    out.print("," + result.settle_sec[s] + "," + result.overshoot[s]);
+                }
+                out.println();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
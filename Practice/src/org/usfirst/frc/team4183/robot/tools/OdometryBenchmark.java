@@ -0,0 +1,105 @@
+/**
+ * OdometryBenchmark - measures what one DriveOdometry update costs.
+ *
+ * Run on the roboRIO (or any JVM):
+ *
+ *     java org.usfirst.frc.team4183.robot.tools.OdometryBenchmark [updates]
+ *
+ * The encoder positions are fed from precomputed arrays (a gentle S-curve)
+ * so the loop measures only the odometry. A warm up pass lets the JIT
+ * compile the update before anything is timed. Where the JVM supports it
+ * the bytes allocated by this thread during the timed pass are reported
+ * too; the answer should be zero.
+ */
+package org.usfirst.frc.team4183.robot.tools;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.usfirst.frc.team4183.robot.subsystems.DriveOdometry;
+import org.usfirst.frc.team4183.robot.subsystems.Pose;
+
+/**
+ * The OdometryBenchmark class definition
+ */
+public class OdometryBenchmark
+{
+    private static final int SAMPLES = 4096;     // Distinct encoder readings, reused in a circle
+    private static final int WARMUP_UPDATES = 200000;
+    private static final int DEFAULT_UPDATES = 10000000;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args)
+    {
+        int updates = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_UPDATES;
+
+        double[] left = new double[SAMPLES];
+        double[] right = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; ++i)
+        {
+            left[i]  = -0.01 * i;
+            right[i] = -0.01 * i - 0.5 * Math.sin(i * 2.0 * Math.PI / SAMPLES);
+        }
+
+        DriveOdometry odometry = new DriveOdometry();
+        run(odometry, left, right, WARMUP_UPDATES);
+
+        // Nothing but the updates between the allocation readings; the
+        // results are printed afterwards
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long[] elapsed_ns = new long[RUNS];
+        long before_bytes = allocatedBytes(threads);
+        for (int r = 0; r < RUNS; ++r)
+        {
+            long start_ns = System.nanoTime();
+            run(odometry, left, right, updates);
+            elapsed_ns[r] = System.nanoTime() - start_ns;
+        }
+        long after_bytes = allocatedBytes(threads);
+
+        double best_ns = Double.MAX_VALUE;
+        for (int r = 0; r < RUNS; ++r)
+        {
+            double perUpdate_ns = elapsed_ns[r] / (double) updates;
+            best_ns = Math.min(best_ns, perUpdate_ns);
+            System.out.printf("run %d: %.1f ns/update%n", r, perUpdate_ns);
+        }
+
+        System.out.printf("best: %.1f ns/update (%d updates per run)%n", best_ns, updates);
+        if ((before_bytes >= 0) && (after_bytes >= 0))
+        {
+            System.out.printf("allocated: %d bytes over %d updates%n", after_bytes - before_bytes, (long) updates * RUNS);
+        }
+        else
+        {
+            System.out.println("allocated: (not supported by this JVM)");
+        }
+        System.out.println("final pose: " + odometry.getPose(new Pose()));
+    }
+
+    private static void run(DriveOdometry anOdometry, double[] someLeft, double[] someRight, int anUpdates)
+    {
+        for (int i = 0; i < anUpdates; ++i)
+        {
+            int index = i & (SAMPLES - 1);
+            anOdometry.update(someLeft[index], someRight[index]);
+        }
+    }
+
+    /**
+     * allocatedBytes - bytes allocated by this thread so far, or -1 if the
+     * JVM does not provide the HotSpot extension that counts them
+     */
+    static long allocatedBytes(ThreadMXBean aThreads)
+    {
+        if (aThreads instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) aThreads;
+            if (hotspot.isThreadAllocatedMemorySupported())
+            {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
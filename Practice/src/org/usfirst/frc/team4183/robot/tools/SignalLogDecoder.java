@@ -0,0 +1,295 @@
+/**
+ * SignalLogDecoder - turns a log written by telemetry.SignalLog (copied off
+ * the robot) into something a spreadsheet or analysis script can read.
+ *
+ * Run on a desktop:
+ *
+ *     java org.usfirst.frc.team4183.robot.tools.SignalLogDecoder <log> [csv]
+ *     java org.usfirst.frc.team4183.robot.tools.SignalLogDecoder <log> -columns <dir>
+ *
+ * The first form writes one CSV row per logged row, time first, to the
+ * specified file (or the standard output). The second keeps the log's
+ * column layout: each column (and the time) goes to its own file of
+ * little-endian doubles, named after the column with '/' replaced by '_'
+ * and ending in ".f64", with a schema.txt listing the columns and the row
+ * count; e.g., numpy.fromfile(name, '<f8') reads one back.
+ *
+ * Reading stops at the end of the last complete chunk, so a log from a
+ * robot that lost power decodes up to its last chunk.
+ */
+package org.usfirst.frc.team4183.robot.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.usfirst.frc.team4183.robot.telemetry.SignalLog;
+
+/**
+ * The SignalLogDecoder class definition
+ */
+public class SignalLogDecoder
+{
+    private final String[] names;
+    private final int rowsPerChunk;
+    private final ByteBuffer buffer;
+    private final int firstChunk;
+
+    /**
+     * Constructor - map and check a log
+     *
+     * @throws IOException if the file is missing, unreadable or not a log
+     *         in the current format
+     */
+    public SignalLogDecoder(File aFile) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(aFile, "r");
+        try
+        {
+            // The mapping stays valid after the channel is closed
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        if ((buffer.capacity() < 16) || (buffer.getInt(0) != SignalLog.MAGIC))
+        {
+            throw new IOException(aFile + " is not a signal log");
+        }
+        if (buffer.getInt(4) != SignalLog.FORMAT_VERSION)
+        {
+            throw new IOException(aFile + " has format " + buffer.getInt(4) + ", expected " +
+                                  SignalLog.FORMAT_VERSION);
+        }
+
+        names = new String[buffer.getInt(8)];
+        rowsPerChunk = buffer.getInt(12);
+        int offset = 16;
+        for (int c = 0; c < names.length; ++c)
+        {
+            int length = buffer.getShort(offset);
+            byte[] utf8 = new byte[length];
+            ByteBuffer name = buffer.duplicate();
+            name.position(offset + 2);
+            name.get(utf8);
+            names[c] = new String(utf8, StandardCharsets.UTF_8);
+            offset += 2 + length;
+        }
+        firstChunk = offset;
+    }
+
+    /**
+     * Visitor - receives the chunks in order
+     */
+    interface Visitor
+    {
+        /**
+         * chunk - the rows of one chunk; times_sec and values (column after
+         * column) hold aRows rows each
+         */
+        void chunk(int aRows, double[] times_sec, double[][] values) throws IOException;
+    }
+
+    /**
+     * decode - pass every complete chunk to the visitor
+     *
+     * @return the number of rows
+     */
+    long decode(Visitor aVisitor) throws IOException
+    {
+        double[] times_sec = new double[rowsPerChunk];
+        double[][] values = new double[names.length][rowsPerChunk];
+
+        long total = 0;
+        int offset = firstChunk;
+        while (offset + 4 <= buffer.capacity())
+        {
+            int rows = buffer.getInt(offset);
+            int bytes = 4 + rows * (8 + 4 * names.length);
+            if ((rows <= 0) || (rows > rowsPerChunk) || ((long) offset + bytes > buffer.capacity()))
+            {
+                break;
+            }
+
+            int at = offset + 4;
+            for (int r = 0; r < rows; ++r)
+            {
+                times_sec[r] = buffer.getDouble(at);
+                at += 8;
+            }
+            for (int c = 0; c < names.length; ++c)
+            {
+                for (int r = 0; r < rows; ++r)
+                {
+                    values[c][r] = buffer.getFloat(at);
+                    at += 4;
+                }
+            }
+
+            aVisitor.chunk(rows, times_sec, values);
+            total += rows;
+            offset += bytes;
+        }
+        return total;
+    }
+
+    public String[] getNames()
+    {
+        return names.clone();
+    }
+
+    /**
+     * writeCsv - one line per row, time first
+     */
+    public long writeCsv(PrintStream aStream) throws IOException
+    {
+        final PrintWriter out = new PrintWriter(aStream);
+        out.print("time_sec");
+        for (String name : names)
+        {
+            out.print(',');
+            out.print(name);
+        }
+        out.println();
+
+        long rows = decode(new Visitor()
+        {
+            public void chunk(int aRows, double[] times_sec, double[][] values)
+            {
+                for (int r = 0; r < aRows; ++r)
+                {
+                    out.print(times_sec[r]);
+                    for (int c = 0; c < values.length; ++c)
+                    {
+                        out.print(',');
+                        out.print(values[c][r]);
+                    }
+                    out.println();
+                }
+            }
+        });
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * writeColumns - one file of little-endian doubles per column plus a
+     * schema.txt
+     */
+    public long writeColumns(File aDirectory) throws IOException
+    {
+        if ( ! aDirectory.isDirectory() && ! aDirectory.mkdirs())
+        {
+            throw new IOException("Cannot create " + aDirectory);
+        }
+
+        final DataOutputStream[] outs = new DataOutputStream[names.length + 1];
+        final String[] files = new String[names.length + 1];
+        files[0] = "time_sec.f64";
+        for (int c = 0; c < names.length; ++c)
+        {
+            files[c + 1] = names[c].replace('/', '_') + ".f64";
+        }
+
+        long rows;
+        try
+        {
+            for (int i = 0; i < outs.length; ++i)
+            {
+                outs[i] = new DataOutputStream(new BufferedOutputStream(
+                              new FileOutputStream(new File(aDirectory, files[i]))));
+            }
+
+            rows = decode(new Visitor()
+            {
+                public void chunk(int aRows, double[] times_sec, double[][] values) throws IOException
+                {
+                    writeLittleEndian(outs[0], times_sec, aRows);
+                    for (int c = 0; c < values.length; ++c)
+                    {
+                        writeLittleEndian(outs[c + 1], values[c], aRows);
+                    }
+                }
+            });
+        }
+        finally
+        {
+            for (DataOutputStream out : outs)
+            {
+                if (out != null)
+                {
+                    out.close();
+                }
+            }
+        }
+
+        PrintWriter schema = new PrintWriter(new File(aDirectory, "schema.txt"), "UTF-8");
+        try
+        {
+            schema.println("rows " + rows);
+            schema.println("time_sec " + files[0]);
+            for (int c = 0; c < names.length; ++c)
+            {
+                schema.println(names[c] + " " + files[c + 1]);
+            }
+        }
+        finally
+        {
+            schema.close();
+        }
+        return rows;
+    }
+
+    private static void writeLittleEndian(DataOutputStream anOut, double[] someValues, int aCount)
+        throws IOException
+    {
+        for (int i = 0; i < aCount; ++i)
+        {
+            anOut.writeLong(Long.reverseBytes(Double.doubleToLongBits(someValues[i])));
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("usage: SignalLogDecoder <log> [csv] | <log> -columns <dir>");
+            System.exit(1);
+        }
+
+        SignalLogDecoder decoder = new SignalLogDecoder(new File(args[0]));
+        if ((args.length > 2) && "-columns".equals(args[1]))
+        {
+            long rows = decoder.writeColumns(new File(args[2]));
+            System.out.printf("Wrote %d rows of %d columns to %s%n", rows, decoder.getNames().length, args[2]);
+        }
+        else if (args.length > 1)
+        {
+            PrintStream out = new PrintStream(new FileOutputStream(args[1]), false, "UTF-8");
+            try
+            {
+                long rows = decoder.writeCsv(out);
+                System.out.printf("Wrote %d rows of %d columns to %s%n", rows, decoder.getNames().length, args[1]);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        else
+        {
+            decoder.writeCsv(System.out);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * TrajectoryCompiler - precomputes the autonomous motion profiles into a
+ * TrajectoryStore file for the robot to map at autonomousInit.
+ *
+ * Run on a desktop (the ant "trajectories" target does this and copies the
+ * result to the robot):
+ *
+ *     java org.usfirst.frc.team4183.robot.tools.TrajectoryCompiler [file]
+ *
+ * Every move and turn in DriveTrajectories.AUTONOMOUS_MOVES_m/TURNS_deg is
+ * generated exactly as the robot would generate it, and the file is
+ * stamped with the fingerprint of the current limits and scalings. After
+ * changing any of those in RobotMap, run this again; until then the robot
+ * sees the old file as stale and generates profiles itself.
+ */
+package org.usfirst.frc.team4183.robot.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.usfirst.frc.team4183.robot.RobotMap;
+import org.usfirst.frc.team4183.robot.motion.DriveTrajectories;
+import org.usfirst.frc.team4183.robot.motion.MotionProfile;
+import org.usfirst.frc.team4183.robot.motion.TrajectoryStore;
+
+/**
+ * The TrajectoryCompiler class definition
+ */
+public class TrajectoryCompiler
+{
+    private static final String DEFAULT_FILE = "trajectories.bin";
+
+    public static void main(String[] args) throws IOException
+    {
+        File file = new File((args.length > 0) ? args[0] : DEFAULT_FILE);
+
+        List<TrajectoryStore.Entry> entries = new ArrayList<TrajectoryStore.Entry>();
+        for (double target_m : DriveTrajectories.AUTONOMOUS_MOVES_m)
+        {
+            entries.add(compile(DriveTrajectories.MOVE, target_m));
+        }
+        for (double target_deg : DriveTrajectories.AUTONOMOUS_TURNS_deg)
+        {
+            entries.add(compile(DriveTrajectories.TURN, target_deg));
+        }
+
+        long fingerprint = DriveTrajectories.fingerprint();
+        TrajectoryStore.write(file, fingerprint, RobotMap.PROFILE_POINT_DURATION_ms, entries);
+
+        // Read it back the way the robot will, to be sure
+        TrajectoryStore store = TrajectoryStore.open(file, fingerprint, RobotMap.PROFILE_POINT_DURATION_ms);
+        System.out.printf("Wrote %d profiles to %s (%d bytes, fingerprint %016x)%n",
+                          store.getEntryCount(), file, file.length(), fingerprint);
+    }
+
+    private static TrajectoryStore.Entry compile(int aKind, double aTarget)
+    {
+        MotionProfile profile = new MotionProfile(RobotMap.PROFILE_MAX_POINTS, RobotMap.PROFILE_POINT_DURATION_ms);
+        DriveTrajectories.generate(aKind, aTarget, profile);
+        System.out.printf("    %s %8.2f: %4d points, %.2f sec%n",
+                          (DriveTrajectories.TURN == aKind) ? "turn" : "move",
+                          aTarget, profile.getCount(), profile.getDuration_sec());
+        return new TrajectoryStore.Entry(aKind, aTarget, profile);
+    }
+}